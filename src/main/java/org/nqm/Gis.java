@@ -2,6 +2,7 @@ package org.nqm;
 
 import org.nqm.command.GisVersion;
 import org.nqm.command.GitCommand;
+import org.nqm.command.Wrapper;
 import org.nqm.config.GisLog;
 import org.nqm.utils.GisProcessUtils;
 import picocli.CommandLine;
@@ -37,6 +38,11 @@ public class Gis extends GitCommand {
     GisProcessUtils.isDryRunEnabled(dryRun);
   }
 
+  @Option(names = "--recursive", description = "Also run in the modules nested in modules.", scope = ScopeType.INHERIT)
+  public static void setRecursive(boolean recursive) {
+    Wrapper.setRecursive(recursive);
+  }
+
   public static void main(String... args) {
     System.exit(launch(args));
   }
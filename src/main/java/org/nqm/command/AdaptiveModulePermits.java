@@ -0,0 +1,164 @@
+package org.nqm.command;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.nqm.config.GisLog;
+
+/**
+ * Moves the module limit with additive-increase/multiplicative-decrease: every module that ran
+ * git grows it by {@code 1/limit}, so a whole window of completions adds one permit, and it is
+ * halved once git latency inflates or Linux pressure stall info shows the disk or cpu
+ * saturated. Decreases are at most one per observed latency, the effect of a cut has to
+ * show before the next one.
+ *
+ * <p>Modules differ too much in size to compare their latencies with each other, so a latency
+ * is taken relative to how long the same module took on earlier runs. A module never timed
+ * before only counts through pressure stall info.
+ */
+final class AdaptiveModulePermits extends ModulePermits {
+
+  private static final Path PSI_IO = Path.of("/proc/pressure/io");
+  private static final Path PSI_CPU = Path.of("/proc/pressure/cpu");
+
+  // share of the last 10s in which some task stalled, above which the resource is saturated
+  private static final double IO_PRESSURE_LIMIT = 40.0;
+  private static final double CPU_PRESSURE_LIMIT = 60.0;
+
+  // smoothed slowdown may grow this far above the best seen before it counts as congestion
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final double LATENCY_SMOOTHING = 0.2;
+  private static final double BASELINE_DRIFT = 0.05;
+  private static final double DECREASE_FACTOR = 0.5;
+
+  // a module that used to take less was hardly waiting on git, its slowdown is noise
+  private static final long MIN_EXPECTED_MILLIS = 20;
+  // a module done in far less than its usual time had nothing to do, git was not faster
+  private static final double MIN_SLOWDOWN = 0.5;
+
+  // avg10 only moves every couple of seconds, no need to read it for every module
+  private static final long PRESSURE_READ_INTERVAL_MILLIS = 500;
+
+  record Pressure(double io, double cpu) {
+    static final Pressure NONE = new Pressure(0, 0);
+  }
+
+  private final int max;
+  private final Supplier<Pressure> pressureProbe;
+  private final LongSupplier clock;
+
+  private double window;
+  private double smoothedLatency = -1;
+  private double smoothedSlowdown = -1;
+  private double baselineSlowdown = -1;
+  private long lastDecreaseAt;
+  private Pressure pressure = Pressure.NONE;
+  private long pressureReadAt;
+
+  AdaptiveModulePermits(int max) {
+    this(max, AdaptiveModulePermits::readPressure, System::currentTimeMillis);
+  }
+
+  AdaptiveModulePermits(int max, Supplier<Pressure> pressureProbe, LongSupplier clock) {
+    super(initialLimit(max));
+    this.max = Math.max(1, max);
+    this.pressureProbe = pressureProbe;
+    this.clock = clock;
+    this.window = initialLimit(max);
+    this.lastDecreaseAt = clock.getAsLong();
+    this.pressureReadAt = lastDecreaseAt - PRESSURE_READ_INTERVAL_MILLIS;
+    GisLog.debug("adaptive parallelism starts at %d, may grow up to %d".formatted((int) window, this.max));
+  }
+
+  private static int initialLimit(int max) {
+    return Math.max(1, max / 4);
+  }
+
+  @Override
+  int nextLimit(int current, long latencyMillis, long expectedMillis) {
+    var now = clock.getAsLong();
+    observeLatency(latencyMillis, expectedMillis);
+    if (now - pressureReadAt >= PRESSURE_READ_INTERVAL_MILLIS) {
+      pressure = pressureProbe.get();
+      pressureReadAt = now;
+    }
+
+    var congested = baselineSlowdown > 0 && smoothedSlowdown > baselineSlowdown * LATENCY_TOLERANCE
+        || pressure.io() > IO_PRESSURE_LIMIT
+        || pressure.cpu() > CPU_PRESSURE_LIMIT;
+    if (congested) {
+      if (now - lastDecreaseAt >= (long) smoothedLatency) {
+        window = Math.max(1, window * DECREASE_FACTOR);
+        lastDecreaseAt = now;
+      }
+    } else {
+      window = Math.min(max, window + 1 / window);
+    }
+
+    var next = (int) window;
+    if (next != current) {
+      GisLog.debug("parallelism limit %d -> %d (latency %dms, slowdown %.2f, baseline %.2f, io %.1f%%, cpu %.1f%%)"
+          .formatted(current, next, (long) smoothedLatency, smoothedSlowdown, baselineSlowdown, pressure.io(),
+              pressure.cpu()));
+    }
+    return next;
+  }
+
+  private void observeLatency(long latencyMillis, long expectedMillis) {
+    smoothedLatency = smoothedLatency < 0
+        ? latencyMillis
+        : smoothedLatency + (latencyMillis - smoothedLatency) * LATENCY_SMOOTHING;
+    if (expectedMillis < MIN_EXPECTED_MILLIS) {
+      return;
+    }
+    var slowdown = Math.max(MIN_SLOWDOWN, (double) latencyMillis / expectedMillis);
+    if (smoothedSlowdown < 0) {
+      smoothedSlowdown = slowdown;
+      baselineSlowdown = slowdown;
+      return;
+    }
+    smoothedSlowdown += (slowdown - smoothedSlowdown) * LATENCY_SMOOTHING;
+    // the best slowdown seen, but let it creep up so one lucky module does not pin it forever
+    baselineSlowdown = slowdown < baselineSlowdown
+        ? slowdown
+        : baselineSlowdown + (slowdown - baselineSlowdown) * BASELINE_DRIFT;
+  }
+
+  static Pressure readPressure() {
+    return new Pressure(readSomeAvg10(PSI_IO), readSomeAvg10(PSI_CPU));
+  }
+
+  private static double readSomeAvg10(Path psi) {
+    if (!Files.isReadable(psi)) {
+      return 0;
+    }
+    try {
+      return parseSomeAvg10(Files.readString(psi));
+    } catch (IOException e) {
+      GisLog.debug(e);
+      return 0;
+    }
+  }
+
+  /**
+   * Reads {@code avg10} of the {@code some} row, e.g. {@code some avg10=1.23 avg60=0.50 ...}.
+   */
+  static double parseSomeAvg10(String psi) {
+    return psi.lines()
+        .filter(line -> line.startsWith("some "))
+        .flatMap(line -> Stream.of(line.split("\\s+")))
+        .filter(field -> field.startsWith("avg10="))
+        .mapToDouble(field -> {
+          try {
+            return Double.parseDouble(field.substring("avg10=".length()));
+          } catch (NumberFormatException e) {
+            return 0;
+          }
+        })
+        .findFirst()
+        .orElse(0);
+  }
+}
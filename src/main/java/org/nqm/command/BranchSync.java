@@ -0,0 +1,115 @@
+package org.nqm.command;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.nqm.git.GitBranches.FastForward;
+import org.nqm.git.GitBranches.FastForward.Outcome;
+import org.nqm.model.GisProcessDto;
+import org.nqm.utils.StdOutUtils;
+
+/**
+ * Collects what {@code sync-branches} did to each branch of each module. The report is one
+ * line per branch, then every module where a branch diverged from its upstream, since those
+ * need a hand.
+ */
+final class BranchSync {
+
+  private record Key(Path module, String branch) {}
+
+  private final String[] branches;
+  private final Map<Key, FastForward> results = new ConcurrentHashMap<>();
+  private final Set<Key> failures = ConcurrentHashMap.newKeySet();
+
+  BranchSync(String... branches) {
+    this.branches = branches;
+  }
+
+  String[] branches() {
+    return branches;
+  }
+
+  void record(Path module, String branch, FastForward fastForward) {
+    results.put(new Key(module, branch), fastForward);
+  }
+
+  void recordFailure(Path module, String branch) {
+    failures.add(new Key(module, branch));
+  }
+
+  /**
+   * What {@code git push --porcelain . <branch>@{upstream}:<branch>} did to the branch, going
+   * by the status line git prints for it. Empty when git failed for any other reason, e.g. the
+   * branch has no upstream or does not exist.
+   */
+  static Optional<Outcome> outcomeOf(GisProcessDto push) {
+    var output = push.output();
+    if (output.contains("[up to date]")) {
+      return Optional.of(Outcome.UP_TO_DATE);
+    }
+    if (output.contains("[rejected] (non-fast-forward)")) {
+      return Optional.of(Outcome.DIVERGED);
+    }
+    if (output.contains("(branch is currently checked out)")) {
+      return Optional.of(Outcome.CHECKED_OUT);
+    }
+    return push.exitCode() == 0 ? Optional.of(Outcome.FAST_FORWARDED) : Optional.empty();
+  }
+
+  /**
+   * e.g. {@code 'master': 12 fast-forwarded, 40 up to date, 2 checked out (pull them), 1 diverged}.
+   */
+  List<String> report() {
+    var lines = new ArrayList<String>();
+    for (var branch : branches) {
+      var counts = new EnumMap<Outcome, Integer>(Outcome.class);
+      results.forEach((key, fastForward) -> {
+        if (key.branch().equals(branch)) {
+          counts.merge(fastForward.outcome(), 1, Integer::sum);
+        }
+      });
+      var failed = failures.stream().filter(key -> key.branch().equals(branch)).count();
+      var parts = new ArrayList<String>();
+      parts.add("%d fast-forwarded".formatted(counts.getOrDefault(Outcome.FAST_FORWARDED, 0)));
+      parts.add("%d up to date".formatted(counts.getOrDefault(Outcome.UP_TO_DATE, 0)));
+      if (counts.containsKey(Outcome.CHECKED_OUT)) {
+        parts.add("%d checked out (pull them)".formatted(counts.get(Outcome.CHECKED_OUT)));
+      }
+      if (counts.containsKey(Outcome.NO_UPSTREAM)) {
+        parts.add("%d without upstream".formatted(counts.get(Outcome.NO_UPSTREAM)));
+      }
+      if (counts.containsKey(Outcome.DIVERGED)) {
+        parts.add(StdOutUtils.CL_YELLOW + "%d diverged".formatted(counts.get(Outcome.DIVERGED))
+            + StdOutUtils.CL_RESET);
+      }
+      if (failed > 0) {
+        parts.add(StdOutUtils.CL_RED + "%d failed".formatted(failed) + StdOutUtils.CL_RESET);
+      }
+      // a branch no module has is not worth a line
+      if (counts.keySet().stream().anyMatch(outcome -> outcome != Outcome.ABSENT) || failed > 0) {
+        lines.add("%s: %s".formatted(StdOutUtils.infof("'%s'".formatted(branch)), String.join(", ", parts)));
+      }
+    }
+    var diverged = results.entrySet().stream()
+        .filter(entry -> entry.getValue().outcome() == Outcome.DIVERGED)
+        .sorted(Map.Entry.comparingByKey((a, b) -> a.module().equals(b.module())
+            ? a.branch().compareTo(b.branch())
+            : a.module().compareTo(b.module())))
+        .map(entry -> "  %s %s: ahead %d, behind %d".formatted(
+            StdOutUtils.infof("" + entry.getKey().module().getFileName()),
+            StdOutUtils.branchf(entry.getKey().branch()),
+            entry.getValue().ahead(),
+            entry.getValue().behind()))
+        .toList();
+    if (!diverged.isEmpty()) {
+      lines.add("diverged from upstream:");
+      lines.addAll(diverged);
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,96 @@
+package org.nqm.command;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.nqm.git.GitHead;
+import org.nqm.git.GitRefs;
+import org.nqm.utils.StdOutUtils;
+
+/**
+ * Sorts modules by what {@code git checkout <branch>} would do to them, going by HEAD and
+ * the refs read straight from each module: already on the branch, without the branch, or in
+ * need of an actual checkout. Only the last ones are handed to git. Whatever cannot be told
+ * that way (unreadable refs, a name that may be a revision or a path) goes to git too.
+ */
+final class CheckoutPlan {
+
+  // the summary lists this many modules without the branch by name, then counts the rest
+  private static final int MAX_LISTED = 10;
+
+  enum Step { ON_BRANCH, MISSING, CHECKOUT }
+
+  private final String branch;
+  private final Map<Path, Step> steps = new ConcurrentHashMap<>();
+  private final Map<Path, Boolean> checkedOut = new ConcurrentHashMap<>();
+
+  CheckoutPlan(String branch) {
+    this.branch = branch;
+  }
+
+  String branch() {
+    return branch;
+  }
+
+  Step classify(Path module) {
+    var step = stepOf(module);
+    steps.put(module, step);
+    return step;
+  }
+
+  private Step stepOf(Path module) {
+    if (GitHead.currentBranch(module).filter(branch::equals).isPresent()) {
+      return Step.ON_BRANCH;
+    }
+    // git checkout restores a path of that name instead
+    if (Files.exists(module.resolve(branch), LinkOption.NOFOLLOW_LINKS)) {
+      return Step.CHECKOUT;
+    }
+    return GitRefs.hasCheckoutTarget(module, branch)
+        .map(found -> Boolean.TRUE.equals(found) ? Step.CHECKOUT : Step.MISSING)
+        .orElse(Step.CHECKOUT);
+  }
+
+  void checkedOut(Path module, boolean succeeded) {
+    checkedOut.put(module, succeeded);
+  }
+
+  /**
+   * One line, e.g. {@code 'main': 3 checked out, 1 failed, 580 already on it, 2 without it: a, b}.
+   */
+  String summary() {
+    var parts = new ArrayList<String>();
+    var succeeded = checkedOut.values().stream().filter(Boolean::booleanValue).count();
+    var failed = checkedOut.size() - succeeded;
+    parts.add("%d checked out".formatted(succeeded));
+    if (failed > 0) {
+      parts.add(StdOutUtils.CL_RED + "%d failed".formatted(failed) + StdOutUtils.CL_RESET);
+    }
+    parts.add("%d already on it".formatted(count(Step.ON_BRANCH)));
+    var missing = modules(Step.MISSING);
+    if (!missing.isEmpty()) {
+      var listed = missing.stream().limit(MAX_LISTED).collect(Collectors.joining(", "));
+      var more = missing.size() > MAX_LISTED ? " and %d more".formatted(missing.size() - MAX_LISTED) : "";
+      parts.add(StdOutUtils.CL_YELLOW + "%d without it: %s%s".formatted(missing.size(), listed, more)
+          + StdOutUtils.CL_RESET);
+    }
+    return "%s: %s".formatted(StdOutUtils.infof("'%s'".formatted(branch)), String.join(", ", parts));
+  }
+
+  private long count(Step step) {
+    return steps.values().stream().filter(step::equals).count();
+  }
+
+  private List<String> modules(Step step) {
+    return steps.entrySet().stream()
+        .filter(entry -> entry.getValue() == step)
+        .map(entry -> "" + entry.getKey().getFileName())
+        .sorted()
+        .toList();
+  }
+}
@@ -6,6 +6,8 @@ import static org.nqm.utils.StdOutUtils.infof;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 import org.nqm.GisException;
 import org.nqm.config.GisConfig;
@@ -13,6 +15,7 @@ import org.nqm.config.GisLog;
 import org.nqm.model.GisProcessDto;
 import org.nqm.utils.GisProcessUtils;
 import org.nqm.utils.GisStringUtils;
+import org.nqm.utils.LineSink;
 
 public class CommandVerticle {
 
@@ -66,65 +69,144 @@ public class CommandVerticle {
     }
   }
 
+  public static CompletableFuture<Integer> executeStreamingAsync(Path path, LineSink sink, String... args) {
+    var commandWithArgs = prependCommandToArgs(args);
+
+    GisLog.debug("executing command '%s' under module '%s'", commandWithArgs, path);
+
+    try {
+      return GisProcessUtils.runStreamingAsync(path.toFile(), sink, commandWithArgs);
+    } catch (IOException e) {
+      GisLog.debug(e);
+      throw new GisException(e.getMessage());
+    }
+  }
+
   public static String execute(Path path, String... args) {
     if (path == null) {
       throw new GisException("path must not be null");
     }
-    var result = executeForDto(path, args);
+    var sb = new StringBuilder();
+    var commandWithArgs = prependCommandToArgs(args);
+
+    GisLog.debug("executing command '%s' under module '%s'", commandWithArgs, path);
+
+    try {
+      GisProcessUtils.runStreaming(path.toFile(), renderer(path, args, sb), commandWithArgs);
+    } catch (IOException e) {
+      GisLog.debug(e);
+      throw new GisException(e.getMessage());
+    } catch (InterruptedException e) {
+      GisLog.debug(e);
+      Thread.currentThread().interrupt();
+      throw new GisException(e.getMessage());
+    }
+    return sb.toString();
+  }
+
+  public static CompletableFuture<String> executeAsync(Path path, String... args) {
+    return executeForDtoAsync(path, args).thenApply(GisProcessDto::output);
+  }
+
+  /**
+   * Like {@link #executeAsync} but keeps the exit code next to the rendered output.
+   */
+  public static CompletableFuture<GisProcessDto> executeForDtoAsync(Path path, String... args) {
+    if (path == null) {
+      throw new GisException("path must not be null");
+    }
+    var sb = new StringBuilder();
+    return executeStreamingAsync(path, renderer(path, args, sb), args)
+        .thenApply(exitCode -> new GisProcessDto(sb.toString(), exitCode));
+  }
+
+  /**
+   * Renders {@code lines} read without git the same way the output of {@code git args} would
+   * have been rendered.
+   */
+  public static String render(Path path, List<String> lines, String... args) {
+    var sb = new StringBuilder();
+    var sink = renderer(path, args, sb);
+    lines.forEach(sink::accept);
+    return sb.toString();
+  }
+
+  /**
+   * Like {@link #render} for status lines, {@code branchNote} is shown right after the
+   * module's branch.
+   */
+  public static String renderStatus(Path path, List<String> lines, String branchNote, String... args) {
+    var sb = new StringBuilder();
+    var sink = statusPrinter(path, args, branchNote, sb);
+    lines.forEach(sink::accept);
+    return sb.toString();
+  }
+
+  /**
+   * Renders each output line into {@code sb} as it arrives, so a module's output is never
+   * held twice.
+   */
+  private static LineSink renderer(Path path, String[] args, StringBuilder sb) {
     var gisOptions = Stream.of(args)
         .filter(arg -> arg.startsWith(OPTION_PREFIX))
         .toArray(String[]::new);
 
     if (args[0].equals(GitCommand.GIT_STATUS)) {
-      return safelyPrintStatus(path, args, result);
+      return statusPrinter(path, args, "", sb);
     }
     if (Stream.of(gisOptions).anyMatch(GIS_NO_PRINT_MODULES_NAME_OPT::equals)) {
-      return result.output().trim();
+      return nonBlank(line -> {
+        if (!sb.isEmpty()) {
+          sb.append(GisStringUtils.NEWLINE);
+        }
+        sb.append(line.trim());
+      });
     }
     if (Stream.of(gisOptions).anyMatch(GIS_CONCAT_MODULES_NAME_OPT::equals)) {
-      return safelyConcatModuleNames(path, result);
+      return moduleNamesConcatenator(path, sb);
     }
-    return safelyPrint(path, result);
+    return printer(path, sb);
   }
 
-  private static String safelyPrintStatus(Path path, String[] gisOptions, GisProcessDto result) {
-    var sb = new StringBuilder(infof("" + path.getFileName()));
+  private static LineSink nonBlank(LineSink sink) {
+    return line -> {
+      if (GisStringUtils.isNotBlank(line)) {
+        sink.accept(line);
+      }
+    };
+  }
+
+  private static LineSink statusPrinter(Path path, String[] gisOptions, String branchNote, StringBuilder sb) {
+    sb.append(infof("" + path.getFileName()));
     var isOneLineOpt = Stream.of(gisOptions).anyMatch("--gis-one-line"::equals);
     var isRootModule = ("" + path).equals(GisConfig.currentDir());
     var rootModuleName = isRootModule ? "" + path.getFileName() : "";
-    Stream.of(result.output().split(GisStringUtils.NEWLINE))
-        .filter(GisStringUtils::isNotBlank)
-        .forEach(line -> sb.append(isOneLineOpt
-            ? gitStatusOneLine(line, isRootModule, rootModuleName)
-            : gitStatus(line, isRootModule, rootModuleName)));
-    return sb.toString();
+    return nonBlank(line -> {
+      sb.append(isOneLineOpt
+          ? gitStatusOneLine(line, isRootModule, rootModuleName)
+          : gitStatus(line, isRootModule, rootModuleName));
+      if (line.startsWith("## ")) {
+        sb.append(branchNote);
+      }
+    });
   }
 
-  private static String safelyPrint(Path path, GisProcessDto result) {
-    var sb = new StringBuilder(infof("" + path.getFileName()));
-    Stream.of(result.output().split(GisStringUtils.NEWLINE))
-        .filter(GisStringUtils::isNotBlank)
-        .forEach(line -> sb.append("%n  %s".formatted(line)));
-    return sb.toString();
+  private static LineSink printer(Path path, StringBuilder sb) {
+    sb.append(infof("" + path.getFileName()));
+    return nonBlank(line -> sb.append("%n  %s".formatted(line)));
   }
 
-  private static String safelyConcatModuleNames(Path path, GisProcessDto result) {
-    if (GisStringUtils.isBlank(result.output())) {
-      return "";
-    }
-    var sb = new StringBuilder();
+  private static LineSink moduleNamesConcatenator(Path path, StringBuilder sb) {
     var isRootModule = ("" + path).equals(GisConfig.currentDir());
     var shortPath = path.getFileName();
-    Stream.of(result.output().split(GisStringUtils.NEWLINE))
-        .filter(GisStringUtils::isNotBlank)
-        .filter(line -> new File("%s/%s".formatted(path, line)).isFile())
-        .forEach(line -> {
-          if (isRootModule) {
-            sb.append("./%s%n".formatted(line));
-          } else {
-            sb.append("%s/%s%n".formatted(shortPath, line));
-          }
-        });
-    return sb.toString().trim();
+    return nonBlank(line -> {
+      if (!new File("%s/%s".formatted(path, line)).isFile()) {
+        return;
+      }
+      if (!sb.isEmpty()) {
+        sb.append(GisStringUtils.NEWLINE);
+      }
+      sb.append(isRootModule ? "./%s".formatted(line) : "%s/%s".formatted(shortPath, line));
+    });
   }
 }
@@ -3,10 +3,20 @@ package org.nqm.command;
 import static org.nqm.command.CommandVerticle.GIS_CONCAT_MODULES_NAME_OPT;
 import static org.nqm.command.CommandVerticle.GIS_NO_PRINT_MODULES_NAME_OPT;
 import static org.nqm.command.Wrapper.ORIGIN;
+import static org.nqm.command.Wrapper.forEachModuleCheckout;
 import static org.nqm.command.Wrapper.forEachModuleDo;
+import static org.nqm.command.Wrapper.forEachModuleDoCached;
 import static org.nqm.command.Wrapper.forEachModuleDoRebaseCurrent;
 import static org.nqm.command.Wrapper.forEachModuleFetch;
 import static org.nqm.command.Wrapper.forEachModuleFetchInBackground;
+import static org.nqm.command.Wrapper.forEachModuleListRefs;
+import static org.nqm.command.Wrapper.forEachModuleRemoveBranch;
+import static org.nqm.command.Wrapper.forEachModuleSpinOff;
+import static org.nqm.command.Wrapper.forEachModuleStatus;
+import static org.nqm.command.Wrapper.forEachModuleStatusWithLastCommit;
+import static org.nqm.command.Wrapper.forEachModuleSummary;
+import static org.nqm.command.Wrapper.forEachModuleSyncBranches;
+import static org.nqm.command.Wrapper.forEachModuleUnlessUpToDate;
 import static org.nqm.command.Wrapper.forEachModulePruneExcept;
 import static org.nqm.command.Wrapper.forEachModuleWith;
 import static org.nqm.command.Wrapper.getCurrentBranchUnderPath;
@@ -24,30 +34,48 @@ import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.nqm.config.GisConfig;
+import org.nqm.git.GitFingerprint;
+import org.nqm.git.GitHistory;
+import org.nqm.git.GitRefs;
 import org.nqm.model.GisSort;
 import org.nqm.utils.GisStringUtils;
 import org.nqm.utils.StdOutUtils;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
 
 public class GitCommand {
 
-  private static final String CHECKOUT = "checkout";
+  static final String CHECKOUT = "checkout";
   private static final String FETCHED_AT = "(fetched at: %s)";
   private static final String FETCH_STARTED_IN_BACKGROUND = "git fetch started in background";
+  private static final String FAIL_FAST_DESCRIPTION =
+      "stop at the first module that fails, modules not started yet are left untouched";
 
   static final String GIS_AUTOCOMPLETE_FILE = "_gis";
   static final Pattern CONFIRM_YES = Pattern.compile("[Yy]+([Ee][Ss])*");
 
   public static final String GIT_STATUS = "status";
 
+  @Spec
+  private CommandSpec spec;
+
+  private static void printOutput(String output) {
+    if (GisStringUtils.isNotBlank(output)) {
+      StdOutUtils.println(output);
+    }
+  }
+
   private static void printOutput(Stream<String> output) {
-    output.filter(GisStringUtils::isNotBlank).forEach(StdOutUtils::println);
+    output.forEach(GitCommand::printOutput);
   }
 
   private static void printOutput(Collection<String> output) {
@@ -56,7 +84,7 @@ public class GitCommand {
 
   @Command(name = "pull", aliases = "pu", description = "Fetch from and integrate with remote repositories")
   void pull() throws IOException {
-    printOutput(forEachModuleDo("pull"));
+    forEachModuleDo(GitCommand::printOutput, "pull");
   }
 
   static int sort(boolean oneLineOpt, GisSort sort, String currentDirName, String a, String b) {
@@ -113,17 +141,33 @@ public class GitCommand {
   @Command(name = GIT_STATUS, aliases = "st", description = "Show the working trees status")
   void status(
       @Option(names = "--one-line") boolean oneLineOpt,
+      @Option(names = "--last-commit", description = "show the subject and age of each module's last commit")
+      boolean lastCommit,
+      @Option(names = "--summary",
+          description = "only count the modules on each branch and list those in a rebase, merge or without upstream")
+      boolean summary,
+      @Option(names = "--dirty-only", description = "only show the modules with changes") boolean dirtyOnly,
       @Option(names = "--sort",
           description = "Valid values: ${COMPLETION-CANDIDATES}. "
               + "Default value is 'module_name'. "
               + "Note that the root module will always be on top no matter the sort") GisSort sort)
       throws IOException {
-    Queue<String> output;
-    if (oneLineOpt) {
-      output = forEachModuleDo(GIT_STATUS, "-sb", "--ignore-submodules", "--porcelain=v1", "--gis-one-line");
-    } else {
-      output = forEachModuleDo(GIT_STATUS, "-sb", "--ignore-submodules", "--porcelain=v1");
+    if (summary && (oneLineOpt || lastCommit || dirtyOnly || sort != null)) {
+      throw new ParameterException(spec.commandLine().getSubcommands().get(GIT_STATUS),
+          "--summary cannot be combined with --one-line, --last-commit, --dirty-only or --sort");
+    }
+    if (summary) {
+      var workspace = new WorkspaceSummary();
+      forEachModuleSummary(workspace);
+      printOutput(workspace.lines());
+      return;
     }
+    var args = oneLineOpt
+        ? new String[] {GIT_STATUS, "-sb", "--ignore-submodules", "--porcelain=v1", "--gis-one-line"}
+        : new String[] {GIT_STATUS, "-sb", "--ignore-submodules", "--porcelain=v1"};
+    Queue<String> output = lastCommit
+        ? forEachModuleStatusWithLastCommit(dirtyOnly, args)
+        : forEachModuleStatus(dirtyOnly, args);
     printOutput(sort(oneLineOpt, sort, output));
     printFetchedTime();
   }
@@ -147,18 +191,25 @@ public class GitCommand {
 
   @Command(name = "rebase-current-origin", aliases = "ru",
       description = "Reapply commits on top of current repositories' origin")
-  void rebaseCurrentOrigin() throws IOException {
-    forEachModuleDoRebaseCurrent();
+  void rebaseCurrentOrigin(
+      @Option(names = "--fail-fast", description = FAIL_FAST_DESCRIPTION) boolean failFast) throws IOException {
+    forEachModuleDoRebaseCurrent(failFast);
   }
 
   @Command(name = "rebase-origin", aliases = "re", description = "Reapply commits on top of other base tip")
-  void rebaseOrigin(@Parameters(index = "0", paramLabel = "<branch name>") String branch) throws IOException {
-    printOutput(forEachModuleDo("rebase", "%s/%s".formatted(ORIGIN, branch)));
+  void rebaseOrigin(@Parameters(index = "0", paramLabel = "<branch name>") String branch,
+      @Option(names = "--fail-fast", description = FAIL_FAST_DESCRIPTION) boolean failFast) throws IOException {
+    var originBranch = "%s/%s".formatted(ORIGIN, branch);
+    forEachModuleUnlessUpToDate(p -> true, path -> Wrapper.hasNothingNewOn(path, originBranch),
+        GitCommand::printOutput, failFast, "rebase", originBranch);
   }
 
   @Command(name = CHECKOUT, aliases = "co", description = "Switch branches or restore working tree files")
-  void checkout(@Parameters(index = "0", paramLabel = "<branch name>") String branch) throws IOException {
-    printOutput(forEachModuleDo(CHECKOUT, branch));
+  void checkout(@Parameters(index = "0", paramLabel = "<branch name>") String branch,
+      @Option(names = "--fail-fast", description = FAIL_FAST_DESCRIPTION) boolean failFast) throws IOException {
+    var plan = new CheckoutPlan(branch);
+    forEachModuleCheckout(plan, GitCommand::printOutput, failFast);
+    StdOutUtils.println(plan.summary());
   }
 
   @Command(name = "spin-off",
@@ -168,10 +219,11 @@ public class GitCommand {
       @Parameters(index = "0", paramLabel = "<new_branch_name>",
           description = "branch name") String newBranch,
       @Parameters(paramLabel = "<modules>",
-          description = "Specified modules. If empty, will create for all submodules and root.") String... modules)
+          description = "Specified modules. If empty, will create for all submodules and root.") String[] modules,
+      @Option(names = "--fail-fast", description = FAIL_FAST_DESCRIPTION) boolean failFast)
       throws IOException {
     if (null == modules || modules.length < 1) {
-      printOutput(forEachModuleDo(CHECKOUT, "-b", newBranch));
+      forEachModuleSpinOff(p -> true, newBranch, GitCommand::printOutput, failFast);
       return;
     }
     var currentDir = currentDir();
@@ -189,7 +241,7 @@ public class GitCommand {
         })
         .filter(p -> p.toFile().exists())
         .toList();
-    printOutput(forEachModuleWith(specifiedPaths::contains, CHECKOUT, "-b", newBranch));
+    forEachModuleSpinOff(specifiedPaths::contains, newBranch, GitCommand::printOutput, failFast);
   }
 
   @Command(name = "remove-branch", aliases = "rm",
@@ -199,7 +251,7 @@ public class GitCommand {
           description = "force to delete branch without interactive prompt") boolean isForce)
       throws IOException {
     if (isForce || isConfirmed("Sure you want to remove branch '%s' ? [Y/n]".formatted(branch))) {
-      printOutput(forEachModuleDo("branch", "-d", branch));
+      forEachModuleRemoveBranch(branch, GitCommand::printOutput);
     }
   }
 
@@ -217,13 +269,26 @@ public class GitCommand {
         ? new String[] {"push", "-u", ORIGIN, branch}
         : shouldForcePush(force);
 
-    printOutput(forEachModuleWith(path -> branch.equals(getCurrentBranchUnderPath(path)), args));
+    // a module level with its upstream has nothing to push, unless the upstream is being set up
+    Predicate<Path> upToDate = newRemoteBranch
+        ? path -> false
+        : path -> GitHistory.ofUpstream(path).filter(GitHistory.Divergence::isEven).isPresent();
+    forEachModuleUnlessUpToDate(path -> branch.equals(getCurrentBranchUnderPath(path)), upToDate,
+        GitCommand::printOutput, args);
+  }
+
+  @Command(name = "sync-branches", aliases = "sync",
+      description = "Fast-forward the local default branches to their upstream, without checking anything out")
+  void syncBranches() throws IOException {
+    var sync = new BranchSync(GisConfig.getDefaultBranches());
+    forEachModuleSyncBranches(sync);
+    printOutput(sync.report());
   }
 
   @Command(name = "remote-prune-origin", aliases = "rpo",
       description = "Deletes stale references associated with <branch>")
   void remotePruneOrigin() throws IOException {
-    printOutput(forEachModuleDo("remote", "prune", ORIGIN));
+    forEachModuleDo(GitCommand::printOutput, "remote", "prune", ORIGIN);
   }
 
   @Command(name = "local-prune", aliases = "prune",
@@ -234,10 +299,14 @@ public class GitCommand {
   }
 
   @Command(name = "stash", description = "Stash the changes in a dirty working directories away")
-  void stash(@Option(names = "--pop", description = "pop first stashed changes") boolean isPop)
+  void stash(@Option(names = "--pop", description = "pop first stashed changes") boolean isPop,
+      @Option(names = "--fail-fast", description = FAIL_FAST_DESCRIPTION) boolean failFast)
       throws IOException {
-    var args = isPop ? new String[] {"stash", "pop"} : new String[] {"stash"};
-    printOutput(forEachModuleDo(args));
+    if (isPop) {
+      forEachModuleWith(p -> true, GitCommand::printOutput, failFast, "stash", "pop");
+      return;
+    }
+    forEachModuleUnlessUpToDate(p -> true, Wrapper::hasNothingToStash, GitCommand::printOutput, failFast, "stash");
   }
 
   @Command(name = "branches", description = "List branches from all submodules")
@@ -245,6 +314,10 @@ public class GitCommand {
       @Option(names = "--no-module-name", description = "do not print module name") boolean noPrintModuleName,
       @Option(names = "--include-remotes", description = "include remote branches") boolean includeRemotes)
       throws IOException {
+    var namespaces = includeRemotes
+        ? new String[] {GitRefs.HEADS, GitRefs.REMOTES}
+        : new String[] {GitRefs.HEADS};
+    // only run for a module whose refs cannot be read without git
     var sArgs = Stream.of("for-each-ref", "--format=%(refname:short)", "refs/heads");
     if (includeRemotes) {
       sArgs = Stream.concat(sArgs, Stream.of("refs/remotes"));
@@ -253,33 +326,35 @@ public class GitCommand {
       sArgs = Stream.concat(sArgs, Stream.of(GIS_NO_PRINT_MODULES_NAME_OPT));
     }
     final var args = sArgs.toArray(String[]::new);
-    var resultWithDuplicatedBranches = forEachModuleDo(args);
     if (noPrintModuleName) {
-      var result = resultWithDuplicatedBranches.stream()
-          .map(x -> x.split(GisStringUtils.NEWLINE))
-          .flatMap(Stream::of)
-          .distinct();
-      printOutput(result);
+      var printed = ConcurrentHashMap.<String>newKeySet();
+      forEachModuleListRefs(output -> output.lines()
+          .filter(printed::add)
+          .forEach(GitCommand::printOutput), namespaces, args);
     } else {
-      printOutput(resultWithDuplicatedBranches);
+      forEachModuleListRefs(GitCommand::printOutput, namespaces, args);
     }
   }
 
   @Command(name = "init", description = "init .gis-modules for current directory")
-  void init() throws IOException {
+  void init(
+      @Option(names = "--depth",
+          description = "how many directories deep to look for repositories, default is "
+              + RepositoryScan.DEFAULT_DEPTH) Integer depth)
+      throws IOException {
     var currentDir = Path.of(currentDir());
-    try (var stream = Files.list(currentDir)) {
-      var lines = stream.filter(Files::isDirectory)
-          .map(Path::getFileName)
-          .map("path = %s"::formatted)
-          .toList();
-      Files.write(currentDir.resolve(".gis-modules"), lines);
-    }
+    var lines = RepositoryScan.find(currentDir, depth == null ? RepositoryScan.DEFAULT_DEPTH : Math.max(1, depth))
+        .stream()
+        .map(currentDir::relativize)
+        .map("path = %s"::formatted)
+        .toList();
+    Files.write(currentDir.resolve(".gis-modules"), lines);
   }
 
   @Command(name = "files", description = "List all modified files from submodules")
   void files() throws IOException {
-    printOutput(forEachModuleDo("diff", "--name-only", GIS_CONCAT_MODULES_NAME_OPT));
+    forEachModuleDoCached(GitFingerprint.Scope.INDEX, GitCommand::printOutput,
+        "diff", "--name-only", GIS_CONCAT_MODULES_NAME_OPT);
   }
 
   @Command(name = "completion", description = "Generate an zsh auto completion script")
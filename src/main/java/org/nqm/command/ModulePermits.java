@@ -0,0 +1,89 @@
+package org.nqm.command;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fair pool of permits a module holds while its git processes run. The limit is fixed here,
+ * {@link AdaptiveModulePermits} moves it while modules complete.
+ */
+class ModulePermits {
+
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final Condition released = lock.newCondition();
+
+  private int limit;
+  private int inFlight;
+
+  ModulePermits(int limit) {
+    this.limit = Math.max(1, limit);
+  }
+
+  void acquire() throws InterruptedException {
+    acquire(Long.MAX_VALUE);
+  }
+
+  boolean acquire(long timeoutNanos) throws InterruptedException {
+    var remaining = timeoutNanos;
+    lock.lockInterruptibly();
+    try {
+      while (inFlight >= limit) {
+        if (remaining <= 0) {
+          return false;
+        }
+        remaining = released.awaitNanos(remaining);
+      }
+      inFlight++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * For a module that started no git process, it says nothing about how loaded git is and
+   * leaves the limit as it is.
+   */
+  void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * For a module that ran git, {@code expectedNanos} is how long the module took on earlier
+   * runs, zero or less when it is not known.
+   */
+  void release(long latencyNanos, long expectedNanos) {
+    lock.lock();
+    try {
+      inFlight--;
+      limit = Math.max(1, nextLimit(limit, TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+          TimeUnit.NANOSECONDS.toMillis(expectedNanos)));
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int limit() {
+    lock.lock();
+    try {
+      return limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Called under the lock after every completed module that ran git.
+   */
+  int nextLimit(int current, long latencyMillis, long expectedMillis) {
+    return current;
+  }
+}
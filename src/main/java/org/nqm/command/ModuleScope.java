@@ -0,0 +1,68 @@
+package org.nqm.command;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.nqm.config.GisLog;
+import org.nqm.utils.GisProcessUtils;
+
+/**
+ * Owns the tasks of one run over the modules: nothing forked in the scope outlives it once
+ * it is shut down, neither the task nor any process tree it started. A scope still open when
+ * the JVM goes down (Ctrl-C) is shut down from a shutdown hook, so no git, ssh or
+ * git-remote-https keeps running behind an aborted gis.
+ */
+final class ModuleScope implements AutoCloseable {
+
+  private static final Set<ModuleScope> OPEN_SCOPES = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> OPEN_SCOPES.forEach(ModuleScope::shutdown)));
+  }
+
+  private final ExecutorService exe = Executors.newVirtualThreadPerTaskExecutor();
+  private final Queue<Future<?>> forked = new ConcurrentLinkedQueue<>();
+  private volatile boolean shutdown;
+
+  ModuleScope() {
+    OPEN_SCOPES.add(this);
+  }
+
+  <T> Future<T> fork(Callable<T> task) {
+    var future = exe.submit(task);
+    forked.add(future);
+    return future;
+  }
+
+  /**
+   * Cancels the unfinished tasks and kills every process tree below gis.
+   */
+  void shutdown() {
+    if (shutdown) {
+      return;
+    }
+    shutdown = true;
+    var started = System.nanoTime();
+    forked.forEach(future -> future.cancel(true));
+    GisProcessUtils.destroyLiveProcesses();
+    GisLog.debug("module scope shut down in %dus".formatted((System.nanoTime() - started) / 1000));
+  }
+
+  boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public void close() {
+    try {
+      exe.close();
+    } finally {
+      OPEN_SCOPES.remove(this);
+    }
+  }
+}
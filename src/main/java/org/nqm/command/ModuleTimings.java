@@ -0,0 +1,113 @@
+package org.nqm.command;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.nqm.config.GisLog;
+
+/**
+ * Wall-clock time each module took per command on earlier runs, kept in
+ * {@code .git/gis-timings} of the workspace as {@code <command>\t<module>\t<millis>} lines.
+ * Modules are handed out longest expected first, so the heaviest ones do not start last
+ * and stretch the end of the run.
+ */
+final class ModuleTimings {
+
+  private static final String STORE_NAME = "gis-timings";
+
+  // weight of the newest run, older runs fade out instead of being dropped at once
+  private static final double NEW_RUN_WEIGHT = 0.5;
+
+  private final Path workspace;
+  private final Path store;
+  private final String command;
+  private final Map<String, Map<String, Long>> timings;
+  private final Map<String, Long> observed = new ConcurrentHashMap<>();
+
+  private ModuleTimings(Path workspace, Path store, String command, Map<String, Map<String, Long>> timings) {
+    this.workspace = workspace;
+    this.store = store;
+    this.command = command;
+    this.timings = timings;
+  }
+
+  static ModuleTimings load(Path workspace, String command) {
+    var store = workspace.resolve(".git").resolve(STORE_NAME);
+    var timings = new HashMap<String, Map<String, Long>>();
+    if (Files.isReadable(store)) {
+      try {
+        Files.readAllLines(store).forEach(line -> parseLine(line, timings));
+      } catch (IOException e) {
+        GisLog.debug(e);
+      }
+    }
+    return new ModuleTimings(workspace, store, command, timings);
+  }
+
+  static void parseLine(String line, Map<String, Map<String, Long>> timings) {
+    var fields = line.split("\t");
+    if (fields.length != 3) {
+      return;
+    }
+    try {
+      timings.computeIfAbsent(fields[0], c -> new HashMap<>()).put(fields[1], Long.parseLong(fields[2]));
+    } catch (NumberFormatException e) {
+      GisLog.debug("ignoring malformed timing '%s'".formatted(line));
+    }
+  }
+
+  /**
+   * Modules without history are expected to take the average of those with history.
+   */
+  List<Path> longestFirst(List<Path> modules) {
+    var known = timings.getOrDefault(command, Map.of());
+    var defaultEstimate = (long) known.values().stream().mapToLong(Long::longValue).average().orElse(0);
+    return modules.stream()
+        .sorted(Comparator.comparingLong((Path path) -> known.getOrDefault(key(path), defaultEstimate)).reversed())
+        .toList();
+  }
+
+  /**
+   * How long {@code module} took on earlier runs, -1 when it was never timed.
+   */
+  long expectedMillis(Path module) {
+    return timings.getOrDefault(command, Map.of()).getOrDefault(key(module), -1L);
+  }
+
+  void record(Path module, long millis) {
+    observed.put(key(module), millis);
+  }
+
+  void save() {
+    if (observed.isEmpty() || !Files.isDirectory(store.getParent())) {
+      return;
+    }
+    var known = timings.computeIfAbsent(command, c -> new HashMap<>());
+    observed.forEach((module, millis) -> known.merge(module, millis,
+        (old, latest) -> Math.round(old * (1 - NEW_RUN_WEIGHT) + latest * NEW_RUN_WEIGHT)));
+    var lines = timings.entrySet().stream()
+        .flatMap(byCommand -> byCommand.getValue().entrySet().stream()
+            .map(e -> "%s\t%s\t%d".formatted(byCommand.getKey(), e.getKey(), e.getValue())))
+        .sorted()
+        .collect(Collectors.joining("\n", "", "\n"));
+    try {
+      var tmp = Files.createTempFile(store.getParent(), STORE_NAME, ".tmp");
+      Files.writeString(tmp, lines);
+      Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      GisLog.debug(e);
+    }
+  }
+
+  private String key(Path module) {
+    var relative = "" + workspace.relativize(module);
+    return relative.isEmpty() ? "." : relative;
+  }
+}
@@ -0,0 +1,105 @@
+package org.nqm.command;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.nqm.GisException;
+import org.nqm.config.GisLog;
+import org.nqm.utils.GisProcessUtils;
+import org.nqm.utils.StdOutUtils;
+
+/**
+ * The modules of a workspace with the modules nested in them, for {@code --recursive}. A
+ * module with a {@code .gitmodules} or {@code .gis-modules} of its own is a workspace too, read
+ * through its own {@link WorkspaceManifest}.
+ *
+ * <p>Every module is a fork-join task that forks one task per module it holds, so idle workers
+ * steal whole subtrees and a deep branch never waits for a shallow one to finish its level.
+ * The result lists every module right after the one holding it, in marker file order.
+ */
+final class ModuleTree {
+
+  private ModuleTree() {}
+
+  /**
+   * {@code modules} of {@code workspace} with everything nested in them, each module once even
+   * when reached through a symbolic link.
+   */
+  static List<Path> expand(Path workspace, List<Path> modules) {
+    var seen = ConcurrentHashMap.<Path>newKeySet();
+    seen.add(realPathOf(workspace));
+    var tasks = modules.stream()
+        .filter(module -> seen.add(realPathOf(module)))
+        .map(module -> new Expand(module, seen))
+        .toList();
+    return ForkJoinPool.commonPool().invoke(new RecursiveTask<List<Path>>() {
+      @Override
+      protected List<Path> compute() {
+        return joinAll(tasks);
+      }
+    });
+  }
+
+  private static List<Path> joinAll(List<Expand> tasks) {
+    RecursiveTask.invokeAll(tasks);
+    var modules = new ArrayList<Path>();
+    tasks.forEach(task -> modules.addAll(task.join()));
+    return modules;
+  }
+
+  private static final class Expand extends RecursiveTask<List<Path>> {
+
+    private final Path module;
+    private final Set<Path> seen;
+
+    Expand(Path module, Set<Path> seen) {
+      this.module = module;
+      this.seen = seen;
+    }
+
+    @Override
+    protected List<Path> compute() {
+      var modules = new ArrayList<Path>();
+      modules.add(module);
+      var marker = WorkspaceManifest.markerOf(module);
+      if (marker.isEmpty()) {
+        return modules;
+      }
+      WorkspaceManifest manifest;
+      try {
+        manifest = WorkspaceManifest.load(module, marker.get());
+      } catch (IOException | GisException e) {
+        GisLog.debug(e);
+        StdOutUtils.errln("could not read '%s': %s".formatted(marker.get(), e.getMessage()));
+        return modules;
+      }
+      var nested = new ArrayList<Expand>();
+      for (var child : manifest.modules()) {
+        if (!child.exists()) {
+          StdOutUtils.errln("directory '%s' does not exist, will be ignored!".formatted("" + child.path()));
+        } else if (seen.add(realPathOf(child.path()))) {
+          // claimed before forking, so a module listed twice stays with the first to list it
+          nested.add(new Expand(child.path(), seen));
+        }
+      }
+      if (!GisProcessUtils.dryRunEnabled()) {
+        manifest.save();
+      }
+      modules.addAll(joinAll(nested));
+      return modules;
+    }
+  }
+
+  private static Path realPathOf(Path path) {
+    try {
+      return path.toRealPath();
+    } catch (IOException e) {
+      return path.toAbsolutePath().normalize();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.nqm.command;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caps how many modules talk to the same remote host at once. Instead of waiting for the
+ * next module in line, {@link #takeNext} hands out the first pending module whose host has
+ * room, so a throttled host never holds back modules of other hosts. Modules without a host
+ * are never capped.
+ */
+class RemoteHostPermits {
+
+  private final Map<Path, String> hosts;
+  private final ToIntFunction<String> capOf;
+  private final Map<String, Integer> inFlight = new HashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+
+  RemoteHostPermits(Map<Path, String> hosts, ToIntFunction<String> capOf) {
+    this.hosts = hosts;
+    this.capOf = capOf;
+  }
+
+  Path takeNext(List<Path> pending) throws InterruptedException {
+    return takeNext(pending, Long.MAX_VALUE).orElseThrow();
+  }
+
+  /**
+   * Removes the first module of {@code pending} whose host has room and takes a permit of that
+   * host, or gives up once the timeout has passed.
+   */
+  Optional<Path> takeNext(List<Path> pending, long timeoutNanos) throws InterruptedException {
+    var remaining = timeoutNanos;
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        for (Iterator<Path> it = pending.iterator(); it.hasNext();) {
+          var path = it.next();
+          var host = hosts.get(path);
+          if (host == null || inFlight.getOrDefault(host, 0) < capOf.applyAsInt(host)) {
+            it.remove();
+            if (host != null) {
+              inFlight.merge(host, 1, Integer::sum);
+            }
+            return Optional.of(path);
+          }
+        }
+        if (remaining <= 0) {
+          return Optional.empty();
+        }
+        remaining = released.awaitNanos(remaining);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release(Path path) {
+    var host = hosts.get(path);
+    if (host == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      inFlight.merge(host, -1, Integer::sum);
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package org.nqm.command;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import org.nqm.git.GitConfigFile;
+import org.nqm.git.GitDirs;
+
+/**
+ * Finds which server a module talks to, from the {@code origin} url in its git config as git
+ * rewrites it with {@code url.<base>.insteadOf} and, for a push, {@code pushurl} and
+ * {@code url.<base>.pushInsteadOf}. Modules whose origin is a local path, a {@code file://}
+ * url or missing have no host.
+ */
+final class RemoteHosts {
+
+  private RemoteHosts() {}
+
+  static Optional<String> of(Path module, boolean push) {
+    return GitDirs.of(module)
+        .map(GitConfigFile::load)
+        .flatMap(config -> originUrl(config, push))
+        .flatMap(RemoteHosts::parseHost);
+  }
+
+  /**
+   * The url git fetches origin from, or pushes it to with {@code push}.
+   */
+  static Optional<String> originUrl(GitConfigFile config, boolean push) {
+    var pushUrl = push ? first(config.getAll("remote", Wrapper.ORIGIN, "pushurl")) : Optional.<String>empty();
+    if (pushUrl.isPresent()) {
+      return pushUrl.map(url -> rewrite(config, url, "insteadOf").orElse(url));
+    }
+    // pushInsteadOf is matched against the url as written, not as insteadOf left it
+    return first(config.getAll("remote", Wrapper.ORIGIN, "url")).map(url -> (push
+        ? rewrite(config, url, "pushInsteadOf")
+        : Optional.<String>empty())
+        .or(() -> rewrite(config, url, "insteadOf"))
+        .orElse(url));
+  }
+
+  // git uses the first of several urls
+  private static Optional<String> first(List<String> urls) {
+    return urls.stream().findFirst().filter(url -> !url.isEmpty());
+  }
+
+  /**
+   * {@code url} with the longest {@code url.<base>.<key>} prefix it starts with replaced by
+   * that {@code <base>}.
+   */
+  private static Optional<String> rewrite(GitConfigFile config, String url, String key) {
+    String base = null;
+    var longest = -1;
+    for (var candidate : config.subsections("url")) {
+      for (var prefix : config.getAll("url", candidate, key)) {
+        if (url.startsWith(prefix) && prefix.length() > longest) {
+          base = candidate;
+          longest = prefix.length();
+        }
+      }
+    }
+    return base == null ? Optional.empty() : Optional.of(base + url.substring(longest));
+  }
+
+  /**
+   * Understands {@code scheme://[user@]host[:port]/path} and the scp-like
+   * {@code [user@]host:path}, anything else is taken as a local path.
+   */
+  static Optional<String> parseHost(String url) {
+    var schemeEnd = url.indexOf("://");
+    String host;
+    if (schemeEnd >= 0) {
+      if (url.substring(0, schemeEnd).equalsIgnoreCase("file")) {
+        return Optional.empty();
+      }
+      var authority = url.substring(schemeEnd + 3);
+      var slash = authority.indexOf('/');
+      host = slash < 0 ? authority : authority.substring(0, slash);
+      host = host.substring(host.lastIndexOf('@') + 1);
+      var colon = host.lastIndexOf(':');
+      if (colon >= 0 && !host.endsWith("]")) {
+        host = host.substring(0, colon);
+      }
+    } else {
+      var colon = url.indexOf(':');
+      var slash = url.indexOf('/');
+      if (colon <= 0 || (slash >= 0 && slash < colon)) {
+        return Optional.empty();
+      }
+      host = url.substring(0, colon);
+      host = host.substring(host.lastIndexOf('@') + 1);
+    }
+    return Optional.of(host.toLowerCase(Locale.ROOT)).filter(h -> !h.isEmpty());
+  }
+}
@@ -0,0 +1,81 @@
+package org.nqm.command;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.nqm.config.GisLog;
+import org.nqm.git.GitDirs;
+
+/**
+ * Finds the git repositories under a directory for {@code gis init}, each directory listed by
+ * its own fork-join task so idle workers steal whole subtrees. A repository is a directory
+ * with a {@code .git} directory, or a {@code .git} file pointing to one, that has a HEAD.
+ *
+ * <p>The scan does not go into a repository it found, its nested repositories are its own
+ * modules (see {@code --recursive}), nor into the trees known to be heavy and never hold a
+ * repository of their own. Symbolic links to directories are taken as repositories but not
+ * followed any further, so a link cycle cannot trap the scan.
+ */
+final class RepositoryScan {
+
+  private RepositoryScan() {}
+
+  static final int DEFAULT_DEPTH = 3;
+
+  private static final Set<String> PRUNED = Set.of(".git", "node_modules", "target", ".gradle", ".venv",
+      "__pycache__");
+
+  /**
+   * The repositories at most {@code depth} directories below {@code root}, sorted, not
+   * counting {@code root} itself.
+   */
+  static List<Path> find(Path root, int depth) {
+    return ForkJoinPool.commonPool().invoke(new Scan(root, depth)).stream().sorted().toList();
+  }
+
+  private static final class Scan extends RecursiveTask<List<Path>> {
+
+    private final Path dir;
+    private final int depth;
+
+    Scan(Path dir, int depth) {
+      this.dir = dir;
+      this.depth = depth;
+    }
+
+    @Override
+    protected List<Path> compute() {
+      var found = new ArrayList<Path>();
+      var scans = new ArrayList<Scan>();
+      try (var children = Files.newDirectoryStream(dir, child -> !PRUNED.contains("" + child.getFileName()))) {
+        for (var child : children) {
+          if (!Files.isDirectory(child)) {
+            continue;
+          }
+          if (isRepository(child)) {
+            found.add(child);
+          } else if (depth > 1 && !Files.isSymbolicLink(child)) {
+            scans.add(new Scan(child, depth - 1));
+          }
+        }
+      } catch (IOException | DirectoryIteratorException e) {
+        GisLog.debug(e);
+      }
+      RecursiveTask.invokeAll(scans).forEach(scan -> found.addAll(scan.join()));
+      return found;
+    }
+  }
+
+  private static boolean isRepository(Path dir) {
+    return GitDirs.of(dir)
+        .filter(gitDir -> Files.isRegularFile(gitDir.resolve("HEAD"), LinkOption.NOFOLLOW_LINKS))
+        .isPresent();
+  }
+}
@@ -0,0 +1,135 @@
+package org.nqm.command;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.nqm.config.GisLog;
+
+/**
+ * Output git gave for a read-only command on earlier runs, kept in {@code .git/gis-cache} of the
+ * workspace per command and module, together with the module's
+ * {@link org.nqm.git.GitFingerprint} at the time. An entry is only handed out while the module
+ * still has that fingerprint, and is dropped as soon as it has another.
+ *
+ * <p>The file is {@code GISC}, a version and the entry count, then each entry as its command,
+ * module and fingerprint in modified UTF-8 and its output as a length-prefixed UTF-8 string.
+ * An entry of the command that ran but of no module it looked up is dropped on save, so the
+ * file holds no more than one entry per module and command.
+ */
+final class ResultCache {
+
+  private static final String STORE_NAME = "gis-cache";
+  private static final int MAGIC = 0x47495343;
+  // 2: last-commit status keeps git's lines, not what they were rendered into
+  private static final int VERSION = 2;
+
+  // a module printing more than this is cheaper to ask again than to keep
+  private static final int MAX_OUTPUT_BYTES = 1 << 20;
+
+  private record Key(String command, String module) {}
+
+  private record Entry(String fingerprint, String output) {}
+
+  private final Path workspace;
+  private final Path store;
+  private final String command;
+  private final Map<Key, Entry> entries;
+  private final Set<Key> touched = ConcurrentHashMap.newKeySet();
+
+  private ResultCache(Path workspace, Path store, String command, Map<Key, Entry> entries) {
+    this.workspace = workspace;
+    this.store = store;
+    this.command = command;
+    this.entries = entries;
+  }
+
+  static ResultCache load(Path workspace, String command) {
+    var store = workspace.resolve(".git").resolve(STORE_NAME);
+    var entries = new ConcurrentHashMap<Key, Entry>();
+    if (Files.isReadable(store)) {
+      try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store)))) {
+        if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+          for (var count = in.readInt(); count > 0; count--) {
+            var key = new Key(in.readUTF(), in.readUTF());
+            var fingerprint = in.readUTF();
+            entries.put(key, new Entry(fingerprint, new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8)));
+          }
+        }
+      } catch (IOException e) {
+        GisLog.debug(e);
+        entries.clear();
+      }
+    }
+    return new ResultCache(workspace, store, command, entries);
+  }
+
+  /**
+   * The output kept for {@code module}, if it was made at {@code fingerprint}. One made at
+   * any other is dropped.
+   */
+  Optional<String> get(Path module, String fingerprint) {
+    var key = key(module);
+    touched.add(key);
+    var entry = entries.get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (!entry.fingerprint().equals(fingerprint)) {
+      entries.remove(key);
+      return Optional.empty();
+    }
+    return Optional.of(entry.output());
+  }
+
+  void put(Path module, String fingerprint, String output) {
+    var key = key(module);
+    touched.add(key);
+    if (output.length() * 3L > MAX_OUTPUT_BYTES
+        && output.getBytes(StandardCharsets.UTF_8).length > MAX_OUTPUT_BYTES) {
+      entries.remove(key);
+      return;
+    }
+    entries.put(key, new Entry(fingerprint, output));
+  }
+
+  void save() {
+    if (touched.isEmpty() || !Files.isDirectory(store.getParent())) {
+      return;
+    }
+    entries.keySet().removeIf(key -> key.command().equals(command) && !touched.contains(key));
+    try {
+      var tmp = Files.createTempFile(store.getParent(), STORE_NAME, ".tmp");
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (var entry : entries.entrySet()) {
+          out.writeUTF(entry.getKey().command());
+          out.writeUTF(entry.getKey().module());
+          out.writeUTF(entry.getValue().fingerprint());
+          var output = entry.getValue().output().getBytes(StandardCharsets.UTF_8);
+          out.writeInt(output.length);
+          out.write(output);
+        }
+      }
+      Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      GisLog.debug(e);
+    }
+  }
+
+  private Key key(Path module) {
+    var relative = "" + workspace.relativize(module);
+    return new Key(command, relative.isEmpty() ? "." : relative);
+  }
+}
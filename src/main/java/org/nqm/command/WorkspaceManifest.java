@@ -0,0 +1,289 @@
+package org.nqm.command;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.nqm.GisException;
+import org.nqm.config.GisLog;
+import org.nqm.git.GitConfigFile;
+import org.nqm.git.GitDirs;
+import org.nqm.git.GitFingerprint;
+
+/**
+ * The modules of a workspace as resolved from its marker file, kept in
+ * {@code .git/gis-manifest} so a run neither parses the marker file nor probes every module
+ * directory before its first git process. The manifest holds for as long as the marker file
+ * and the directories the modules sit in keep their mtimes: a module directory that is
+ * created or removed changes its parent's.
+ *
+ * <p>Each module also keeps the git dir and the hosts its origin is fetched from and pushed to
+ * once a remote command asked for them, checked against the mtimes of the configs they were
+ * read from.
+ *
+ * <p>The file is read with one mapped read: {@code GISM}, a version, the marker file with its
+ * mtime and size, the parent directories with their mtimes, then each module. Strings are
+ * length-prefixed UTF-8 and a missing file has an mtime of -1.
+ */
+final class WorkspaceManifest {
+
+  private static final String STORE_NAME = "gis-manifest";
+  private static final int MAGIC = 0x4749534d;
+  private static final int VERSION = 2;
+  private static final long MISSING = -1;
+
+  /**
+   * {@code configStamp} is {@link #MISSING} until the origin of the module was looked up.
+   */
+  record Module(String name, Path path, boolean exists, String gitDir, long configStamp, String host,
+      String pushHost) {
+
+    private Module withRemote(String gitDir, long configStamp, String host, String pushHost) {
+      return new Module(name, path, exists, gitDir, configStamp, host, pushHost);
+    }
+  }
+
+  private final Path store;
+  private final Path marker;
+  private final long markerMtime;
+  private final long markerSize;
+  private final Map<Path, Long> parents;
+  private final Map<Path, Module> modules;
+  private boolean changed;
+
+  private WorkspaceManifest(Path workspace, Path marker, long markerMtime, long markerSize, Map<Path, Long> parents,
+      Map<Path, Module> modules, boolean changed) {
+    this.store = workspace.resolve(".git").resolve(STORE_NAME);
+    this.marker = marker;
+    this.markerMtime = markerMtime;
+    this.markerSize = markerSize;
+    this.parents = parents;
+    this.modules = modules;
+    this.changed = changed;
+  }
+
+  static WorkspaceManifest load(Path workspace, Path marker) throws IOException {
+    var store = workspace.resolve(".git").resolve(STORE_NAME);
+    if (Files.isRegularFile(store)) {
+      try {
+        var manifest = read(workspace, store);
+        if (manifest.isPresent() && manifest.get().isCurrent(marker)) {
+          return manifest.get();
+        }
+      } catch (IOException | RuntimeException e) {
+        GisLog.debug(e);
+      }
+      GisLog.debug("manifest of '%s' is outdated, reading '%s'".formatted(workspace, marker.getFileName()));
+    }
+    return build(workspace, marker);
+  }
+
+  List<Module> modules() {
+    return List.copyOf(modules.values());
+  }
+
+  /**
+   * The host the module's origin is fetched from, or pushed to with {@code push}, looked up
+   * again when one of its configs changed since.
+   */
+  Optional<String> hostOf(Path path, boolean push) {
+    var module = modules.get(path);
+    if (module == null) {
+      return RemoteHosts.of(path, push);
+    }
+    if (module.configStamp() != MISSING && module.configStamp() == configStamp(module.gitDir())) {
+      return Optional.of(push ? module.pushHost() : module.host()).filter(host -> !host.isEmpty());
+    }
+    var gitDir = GitDirs.of(path).map(dir -> "" + dir).orElse("");
+    var configStamp = gitDir.isEmpty() ? MISSING : configStamp(gitDir);
+    var host = RemoteHosts.of(path, false);
+    var pushHost = RemoteHosts.of(path, true);
+    if (configStamp != MISSING) {
+      modules.put(path, module.withRemote(gitDir, configStamp, host.orElse(""), pushHost.orElse("")));
+      changed = true;
+    }
+    return push ? pushHost : host;
+  }
+
+  void save() {
+    if (!changed || !Files.isDirectory(store.getParent())) {
+      return;
+    }
+    // a marker file or directory changed in the same tick could go unseen
+    if (!isSettled(markerMtime) || parents.values().stream().anyMatch(mtime -> !isSettled(mtime))) {
+      return;
+    }
+    try {
+      var bytes = new ByteArrayOutputStream();
+      try (var out = new DataOutputStream(bytes)) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, "" + marker);
+        out.writeLong(markerMtime);
+        out.writeLong(markerSize);
+        out.writeInt(parents.size());
+        for (var parent : parents.entrySet()) {
+          writeString(out, "" + parent.getKey());
+          out.writeLong(parent.getValue());
+        }
+        out.writeInt(modules.size());
+        for (var module : modules.values()) {
+          writeString(out, module.name());
+          out.writeBoolean(module.exists());
+          writeString(out, module.gitDir());
+          out.writeLong(module.configStamp());
+          writeString(out, module.host());
+          writeString(out, module.pushHost());
+        }
+      }
+      var tmp = Files.createTempFile(store.getParent(), STORE_NAME, ".tmp");
+      Files.write(tmp, bytes.toByteArray());
+      Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      changed = false;
+    } catch (IOException e) {
+      GisLog.debug(e);
+    }
+  }
+
+  private boolean isCurrent(Path currentMarker) {
+    return marker.equals(currentMarker)
+        && markerMtime == mtimeOf(currentMarker)
+        && markerSize == sizeOf(currentMarker)
+        && parents.entrySet().stream().allMatch(parent -> parent.getValue() == mtimeOf(parent.getKey()));
+  }
+
+  private static WorkspaceManifest build(Path workspace, Path marker) throws IOException {
+    var markerMtime = mtimeOf(marker);
+    var markerSize = sizeOf(marker);
+    var modules = new LinkedHashMap<Path, Module>();
+    var parents = new LinkedHashMap<Path, Long>();
+    List<String> names;
+    try {
+      names = modulePaths(Files.readString(marker));
+    } catch (IllegalArgumentException e) {
+      throw new GisException("Could not read '%s': %s".formatted(marker, e.getMessage()));
+    }
+    for (var name : names) {
+      var path = workspace.resolve(name).normalize();
+      modules.put(path, new Module(name, path, Files.exists(path), "", MISSING, "", ""));
+      parents.computeIfAbsent(path.getParent(), WorkspaceManifest::mtimeOf);
+    }
+    return new WorkspaceManifest(workspace, marker, markerMtime, markerSize, parents, modules, true);
+  }
+
+  /**
+   * The module paths of a marker file read as git config: the {@code path} of each
+   * {@code [submodule "<name>"]} of a {@code .gitmodules}, and the {@code path} lines of a
+   * {@code .gis-modules}, which come before any section.
+   *
+   * @throws IllegalArgumentException on a line git would refuse
+   */
+  static List<String> modulePaths(String content) {
+    // git refuses variables outside a section, the same line keeps the line numbers of errors
+    var config = GitConfigFile.parse("[gis] " + content);
+    var paths = new ArrayList<>(config.getAll("gis", null, "path"));
+    config.subsections("submodule").forEach(name -> config.get("submodule", name, "path").ifPresent(paths::add));
+    return paths.stream().filter(path -> !path.isBlank()).distinct().toList();
+  }
+
+  /**
+   * The marker file of {@code dir}, a {@code .gitmodules} before a {@code .gis-modules}.
+   */
+  static Optional<Path> markerOf(Path dir) {
+    return Stream.of(".gitmodules", ".gis-modules").map(dir::resolve).filter(Files::isRegularFile).findFirst();
+  }
+
+  private static Optional<WorkspaceManifest> read(Path workspace, Path store) throws IOException {
+    ByteBuffer buffer;
+    try (var channel = FileChannel.open(store)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return Optional.empty();
+      }
+      var marker = Path.of(readString(buffer));
+      var markerMtime = buffer.getLong();
+      var markerSize = buffer.getLong();
+      var parents = new LinkedHashMap<Path, Long>();
+      for (var count = buffer.getInt(); count > 0; count--) {
+        parents.put(Path.of(readString(buffer)), buffer.getLong());
+      }
+      var modules = new LinkedHashMap<Path, Module>();
+      for (var count = buffer.getInt(); count > 0; count--) {
+        var name = readString(buffer);
+        var path = workspace.resolve(name).normalize();
+        modules.put(path, new Module(name, path, buffer.get() != 0, readString(buffer), buffer.getLong(),
+            readString(buffer), readString(buffer)));
+      }
+      return Optional.of(new WorkspaceManifest(workspace, marker, markerMtime, markerSize, parents, modules, false));
+    } catch (BufferUnderflowException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    var bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The mtimes of the repository's config and of the system, XDG and global ones, which
+   * {@code insteadOf} rules come from as well. {@link #MISSING} while one of them may still be
+   * written to.
+   */
+  private static long configStamp(String gitDir) {
+    var stamp = 17L;
+    for (var file : GitConfigFile.files(Path.of(gitDir))) {
+      var mtime = mtimeOf(file);
+      if (!isSettled(mtime)) {
+        return MISSING;
+      }
+      stamp = 31 * stamp + mtime;
+    }
+    return stamp == MISSING ? MISSING + 1 : stamp;
+  }
+
+  private static long mtimeOf(Path path) {
+    try {
+      return Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+    } catch (IOException e) {
+      return MISSING;
+    }
+  }
+
+  private static long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return MISSING;
+    }
+  }
+
+  private static boolean isSettled(long mtime) {
+    var settled = Instant.now().minus(GitFingerprint.SETTLE_TIME);
+    return mtime == MISSING || TimeUnit.NANOSECONDS.toMillis(mtime) < settled.toEpochMilli();
+  }
+}
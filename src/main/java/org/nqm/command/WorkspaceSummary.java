@@ -0,0 +1,86 @@
+package org.nqm.command;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.nqm.git.GitModuleState;
+import org.nqm.utils.StdOutUtils;
+
+/**
+ * Which branch every module is on, as a histogram, and the modules that stand out: in the
+ * middle of a rebase or merge, on a detached HEAD, without an upstream, or with a HEAD that
+ * cannot be read. Everything comes from the modules' git dirs, git is never started.
+ */
+final class WorkspaceSummary {
+
+  private static final int BAR_WIDTH = 40;
+  private static final String DETACHED = "(detached)";
+  private static final String UNKNOWN = "(unknown)";
+
+  private final Map<Path, Optional<GitModuleState>> states = new ConcurrentHashMap<>();
+
+  void add(Path module) {
+    states.put(module, GitModuleState.of(module));
+  }
+
+  List<String> lines() {
+    var counts = states.values().stream()
+        .collect(Collectors.groupingBy(WorkspaceSummary::branchOf, Collectors.counting()));
+    var branches = counts.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+        .toList();
+    var lines = new ArrayList<String>();
+    lines.add("%d modules on %d branches".formatted(states.size(), counts.size()));
+    if (branches.isEmpty()) {
+      return lines;
+    }
+    var most = branches.get(0).getValue();
+    var nameWidth = branches.stream().mapToInt(entry -> entry.getKey().length()).max().orElse(0);
+    var countWidth = Long.toString(most).length();
+    for (var entry : branches) {
+      var name = entry.getKey();
+      var bar = "#".repeat((int) Math.max(1, entry.getValue() * BAR_WIDTH / most));
+      var padded = name + " ".repeat(nameWidth - name.length());
+      lines.add(("  %s %" + countWidth + "d %s").formatted(
+          name.startsWith("(") ? padded : StdOutUtils.branchf(name) + padded.substring(name.length()),
+          entry.getValue(),
+          StdOutUtils.CL_GRAY + bar + StdOutUtils.CL_RESET));
+    }
+    var outliers = states.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .map(entry -> outlier(entry.getKey(), entry.getValue()))
+        .flatMap(Optional::stream)
+        .toList();
+    if (!outliers.isEmpty()) {
+      lines.add("outliers:");
+      outliers.forEach(outlier -> lines.add("  " + outlier));
+    }
+    return lines;
+  }
+
+  private static String branchOf(Optional<GitModuleState> state) {
+    return state.map(s -> s.isDetached() ? DETACHED : s.branch()).orElse(UNKNOWN);
+  }
+
+  private static Optional<String> outlier(Path module, Optional<GitModuleState> state) {
+    var reasons = new ArrayList<String>();
+    if (state.isEmpty()) {
+      reasons.add("HEAD cannot be read");
+    } else {
+      state.get().operation().ifPresent(operation -> reasons.add(StdOutUtils.CL_RED
+          + operation + " in progress" + StdOutUtils.CL_RESET));
+      if (state.get().isDetached()) {
+        reasons.add("detached HEAD");
+      } else if (!state.get().hasUpstream()) {
+        reasons.add("no upstream for '%s'".formatted(state.get().branch()));
+      }
+    }
+    return reasons.isEmpty()
+        ? Optional.empty()
+        : Optional.of("%s: %s".formatted(StdOutUtils.infof("" + module.getFileName()), String.join(", ", reasons)));
+  }
+}
@@ -4,6 +4,15 @@ import static org.nqm.config.GisConfig.currentDir;
 import org.nqm.GisException;
 import org.nqm.config.GisConfig;
 import org.nqm.config.GisLog;
+import org.nqm.git.GitBranches;
+import org.nqm.git.GitBranches.FastForward;
+import org.nqm.git.GitBranches.FastForward.Outcome;
+import org.nqm.git.GitFingerprint;
+import org.nqm.git.GitHead;
+import org.nqm.git.GitHistory;
+import org.nqm.git.GitRefs;
+import org.nqm.git.GitStatus;
+import org.nqm.model.GisParallelism;
 import org.nqm.model.GisProcessDto;
 import org.nqm.utils.GisProcessUtils;
 import org.nqm.utils.GisStringUtils;
@@ -13,15 +22,28 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class Wrapper {
@@ -30,6 +52,18 @@ public final class Wrapper {
 
   public static final String ORIGIN = "origin";
 
+  private static final Set<String> REMOTE_COMMANDS = Set.of("fetch", "pull", "push");
+
+  private static boolean recursive;
+
+  /**
+   * With {@code recursive} the modules nested in modules, through their own
+   * {@code .gitmodules} or {@code .gis-modules}, are run on as well.
+   */
+  public static void setRecursive(boolean recursive) {
+    Wrapper.recursive = recursive;
+  }
+
   private static File getFileMarker() {
     var currentDir = currentDir();
     Future<File> gitModulesFilePath;
@@ -61,89 +95,545 @@ public final class Wrapper {
   }
 
   public static Queue<String> forEachModuleWith(Predicate<Path> pred, String... args) throws IOException {
-    return runOnModules(pred, path -> CommandVerticle.execute(path, args));
+    var output = new ConcurrentLinkedQueue<String>();
+    forEachModuleWith(pred, output::add, args);
+    return output;
   }
 
-  private record ModuleTask(Path path, Future<?> future) {}
+  public static void forEachModuleDo(Consumer<String> onFinished, String... args) throws IOException {
+    forEachModuleWith(p -> true, onFinished, false, args);
+  }
 
-  private static Queue<String> runOnModules(Predicate<Path> pred, Function<Path, String> action)
+  public static void forEachModuleWith(Predicate<Path> pred, Consumer<String> onFinished, String... args)
+      throws IOException {
+    forEachModuleWith(pred, onFinished, false, args);
+  }
+
+  /**
+   * Hands the output of each module to {@code onFinished} as soon as that module is done,
+   * instead of once all of them are. With {@code failFast} the first module that fails stops
+   * the run.
+   */
+  public static void forEachModuleWith(Predicate<Path> pred, Consumer<String> onFinished, boolean failFast,
+      String... args) throws IOException {
+    runOnModules(pred, args.length > 0 ? args[0] : "", path -> CommandVerticle.executeForDtoAsync(path, args),
+        onFinished, failFast);
+  }
+
+  /**
+   * A module's task only launches its git process, so the thread behind {@code launch} is
+   * gone long before the module finishes; the result arrives through {@code launch}'s future.
+   */
+  private record ModuleTask(Path path, long timeoutSeconds, Future<CompletableFuture<Void>> launch) {}
+
+  private static List<Path> listModules(WorkspaceManifest manifest, Predicate<Path> pred) {
+    var modules = new ArrayList<Path>();
+    var workspace = Path.of(currentDir());
+    Optional.of(workspace).filter(pred).ifPresent(modules::add);
+    var listed = new ArrayList<Path>();
+    for (var module : manifest.modules()) {
+      if (!module.exists()) {
+        StdOutUtils.errln("directory '%s' does not exist, will be ignored!".formatted("" + module.path()));
+      } else {
+        listed.add(module.path());
+      }
+    }
+    (recursive ? ModuleTree.expand(workspace, listed) : listed).stream().filter(pred).forEach(modules::add);
+    return modules;
+  }
+
+  /**
+   * Modules queue behind a fair pool of {@code max_parallel_processes} permits, a module
+   * holds its permit from launch until its last git process is done. With
+   * {@code parallelism=adaptive} that number is only the ceiling the pool may grow to.
+   * Commands that talk to a remote also hold a permit of their origin's host. Modules are
+   * handed out longest expected first, going by how long {@code command} took on them before.
+   *
+   * <p>Every module has its own timeout, a module running past it is killed and reported as
+   * timed out while the others carry on. {@code onFinished} gets a module's output as soon as
+   * the module is done.
+   *
+   * <p>With {@code failFast} the first module that exits non-zero, times out or fails stops the
+   * run: queued modules are no longer started, the git processes still running are asked to
+   * stop (SIGTERM, so git removes its lock files) and the modules never touched are reported.
+   */
+  private static void runOnModules(Predicate<Path> pred, String command,
+      Function<Path, CompletableFuture<GisProcessDto>> action, Consumer<String> onFinished, boolean failFast)
       throws IOException {
-    var output = new ConcurrentLinkedQueue<String>();
     var tasks = new ArrayList<ModuleTask>();
-    var gitModulesFilePath = getFileMarker();
-    var currentDir = currentDir();
-    try (var exe = Executors.newVirtualThreadPerTaskExecutor()) {
-      Optional.of(Path.of(currentDir)).filter(pred).ifPresent(path ->
-          tasks.add(new ModuleTask(path, exe.submit(() -> output.add(action.apply(path))))));
-
-      Files.readAllLines(gitModulesFilePath.toPath()).stream()
-          .map(String::trim)
-          .filter(s -> s.startsWith("path"))
-          .map(s -> s.replace("path = ", ""))
-          .map(dir -> Path.of(currentDir, dir))
-          .filter(dir -> {
-            if (dir.toFile().exists()) {
-              return true;
-            }
-            StdOutUtils.errln("directory '%s' does not exist, will be ignored!".formatted("" + dir));
-            return false;
-          })
-          .filter(pred)
-          .forEach(path -> tasks.add(new ModuleTask(path, exe.submit(() -> output.add(action.apply(path))))));
+    var firstFailure = new AtomicReference<Path>();
+    Consumer<Path> onFailure = path -> {
+      if (failFast && firstFailure.compareAndSet(null, path)) {
+        GisProcessUtils.terminateLiveProcesses();
+      }
+    };
+    var manifest = WorkspaceManifest.load(Path.of(currentDir()), getFileMarker().toPath());
+    var modules = listModules(manifest, pred);
+    var maxParallel = GisConfig.getMaxParallelProcesses();
+    var permits = GisConfig.getParallelism() == GisParallelism.adaptive
+        ? new AdaptiveModulePermits(maxParallel)
+        : new ModulePermits(maxParallel);
+    GisLog.debug("running %d modules, at most %d at once".formatted(modules.size(), maxParallel));
+    var timings = ModuleTimings.load(Path.of(currentDir()), command);
+    var hostPermits = REMOTE_COMMANDS.contains(command)
+        ? remoteHostPermits(manifest, modules, "push".equals(command))
+        : new RemoteHostPermits(Map.of(), host -> 0);
 
-      // Wait for all futures with configured timeout
-      long timeoutSeconds = org.nqm.config.GisConfig.getModuleTimeoutSeconds();
-      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+    var scope = new ModuleScope();
+    try (scope) {
+      var pending = new LinkedList<>(timings.longestFirst(modules));
+      while (!pending.isEmpty() && firstFailure.get() == null) {
+        var path = hostPermits.takeNext(pending);
+        permits.acquire();
+        if (firstFailure.get() != null) {
+          // a module failed while this one waited for its permits
+          pending.addFirst(path);
+          break;
+        }
+        var timeoutSeconds = GisConfig.getModuleTimeoutSeconds(moduleName(path));
+        tasks.add(new ModuleTask(path, timeoutSeconds, scope.fork(() -> launch(
+            path, timeoutSeconds, action, onFailure, permits, hostPermits, timings).thenAccept(onFinished))));
+      }
+
+      GisLog.debug("all modules launched, parallelism limit ended at %d".formatted(permits.limit()));
       for (var task : tasks) {
-        long remaining = deadline - System.nanoTime();
         try {
-          task.future().get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
-        } catch (java.util.concurrent.TimeoutException te) {
-          StdOutUtils.warnln(
-              "module execution timed out after %ds, unfinished modules are aborted!".formatted(timeoutSeconds));
-          cancelUnfinished(tasks);
-          break;
-        } catch (InterruptedException ie) {
-          GisLog.debug(ie);
-          cancelUnfinished(tasks);
-          Thread.currentThread().interrupt();
-          break;
+          // launching is quick unless it got stuck before its git process even started
+          task.launch().get(task.timeoutSeconds(), TimeUnit.SECONDS).get();
+        } catch (TimeoutException te) {
+          task.launch().cancel(true);
+          onFailure.accept(task.path());
+          onFinished.accept(timedOut(task.path(), task.timeoutSeconds()));
         } catch (ExecutionException ee) {
           GisLog.debug(ee);
           var cause = ee.getCause() == null ? ee : ee.getCause();
+          if (cause instanceof CompletionException ce && ce.getCause() != null) {
+            cause = ce.getCause();
+          }
+          onFailure.accept(task.path());
           StdOutUtils.errln("module '%s' failed: %s".formatted(task.path().getFileName(), cause.getMessage()));
         }
       }
+      if (firstFailure.get() != null) {
+        reportUntouched(firstFailure.get(), pending);
+      }
+    } catch (InterruptedException ie) {
+      GisLog.debug(ie);
+      scope.shutdown();
+      Thread.currentThread().interrupt();
     }
+    if (!GisProcessUtils.dryRunEnabled()) {
+      timings.save();
+      manifest.save();
+    }
+  }
+
+  private static Queue<String> runOnModules(Predicate<Path> pred, String command,
+      Function<Path, CompletableFuture<GisProcessDto>> action) throws IOException {
+    var output = new ConcurrentLinkedQueue<String>();
+    runOnModules(pred, command, action, output::add, false);
     return output;
   }
 
-  private static void cancelUnfinished(Iterable<ModuleTask> tasks) {
-    for (var task : tasks) {
-      if (!task.future().isDone()) {
-        task.future().cancel(true);
+  private static void reportUntouched(Path failed, Collection<Path> untouched) {
+    GisProcessUtils.recordProcessFailure();
+    if (untouched.isEmpty()) {
+      StdOutUtils.warnln("stopped after module '%s' failed".formatted(failed.getFileName()));
+      return;
+    }
+    StdOutUtils.warnln("stopped after module '%s' failed, %d modules were not touched: %s".formatted(
+        failed.getFileName(),
+        untouched.size(),
+        untouched.stream().map(path -> "" + path.getFileName()).sorted().collect(Collectors.joining(", "))));
+  }
+
+  private static CompletableFuture<String> launch(Path path, long timeoutSeconds,
+      Function<Path, CompletableFuture<GisProcessDto>> action, Consumer<Path> onFailure, ModulePermits permits,
+      RemoteHostPermits hostPermits, ModuleTimings timings) {
+    var startedAt = System.nanoTime();
+    var startsBefore = GisProcessUtils.processesStartedIn(path.toFile());
+    var expectedNanos = TimeUnit.MILLISECONDS.toNanos(timings.expectedMillis(path));
+    Runnable release = () -> {
+      hostPermits.release(path);
+      // a module read in-process or served from cache tells nothing about git's latency
+      if (GisProcessUtils.processesStartedIn(path.toFile()) == startsBefore) {
+        permits.release();
+      } else {
+        permits.release(System.nanoTime() - startedAt, expectedNanos);
       }
+    };
+    try {
+      return action.apply(path)
+          .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+          .thenApply(result -> {
+            if (result.exitCode() != 0) {
+              onFailure.accept(path);
+            }
+            return result.output();
+          })
+          .exceptionally(e -> {
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof TimeoutException)) {
+              throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+            }
+            onFailure.accept(path);
+            return timedOut(path, timeoutSeconds);
+          })
+          .whenComplete((out, e) -> {
+            release.run();
+            if (e == null) {
+              timings.record(path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+          });
+    } catch (RuntimeException e) {
+      release.run();
+      throw e;
     }
   }
 
-  public static void forEachModuleDoRebaseCurrent() throws IOException {
-    runOnModules(p -> true, path ->
-        CommandVerticle.execute(path, "rebase", "%s/%s".formatted(ORIGIN, getCurrentBranchUnderPath(path))));
+  /**
+   * Kills what is left of a module that ran out of time and gives its output entry.
+   */
+  private static String timedOut(Path path, long timeoutSeconds) {
+    GisProcessUtils.destroyLiveProcessesIn(path.toFile());
+    GisProcessUtils.recordProcessFailure();
+    return "%s %s".formatted(
+        StdOutUtils.infof("" + path.getFileName()),
+        StdOutUtils.CL_RED + "timed out after %ds".formatted(timeoutSeconds) + StdOutUtils.CL_RESET);
   }
 
-  public static Queue<String> forEachModuleFetch() throws IOException {
-    return runOnModules(p -> true, path -> {
-      CommandVerticle.execute(path, "fetch");
-      return CommandVerticle.execute(
-          path,
-          GitCommand.GIT_STATUS, "-sb", "--ignore-submodules", "--porcelain=v1", "--gis-one-line");
+  // the module's path as written in the marker file, the root module goes by its directory name
+  private static String moduleName(Path path) {
+    var root = Path.of(currentDir());
+    return path.equals(root) ? "" + root.getFileName() : "" + root.relativize(path);
+  }
+
+  /**
+   * Modules are grouped by the host of their origin, each host gets its own
+   * {@code remote_host_max_parallel} cap. Local remotes are not capped.
+   */
+  private static RemoteHostPermits remoteHostPermits(WorkspaceManifest manifest, List<Path> modules,
+      boolean push) {
+    var hosts = new HashMap<Path, String>();
+    modules.forEach(path -> manifest.hostOf(path, push).ifPresent(host -> hosts.put(path, host)));
+    var caps = new HashMap<String, Integer>();
+    GisLog.debug("modules per remote host: %s".formatted(hosts.values().stream()
+        .collect(Collectors.groupingBy(Function.identity(), TreeMap::new, Collectors.counting()))));
+    return new RemoteHostPermits(hosts, host -> caps.computeIfAbsent(host, GisConfig::getRemoteHostMaxParallel));
+  }
+
+  /**
+   * Lists the refs under {@code namespaces} of each module straight from its ref database,
+   * {@code args} only runs, as a git command, for a module whose refs cannot be read directly.
+   */
+  public static void forEachModuleListRefs(Consumer<String> onFinished, String[] namespaces, String... args)
+      throws IOException {
+    var cache = ResultCache.load(Path.of(currentDir()), String.join(" ", args));
+    runOnModules(p -> true, args[0], readOrRun(path -> GitRefs.shortNames(path, namespaces),
+        cached(cache, GitFingerprint.Scope.REFS, path -> CommandVerticle.executeForDtoAsync(path, args)), args),
+        onFinished, false);
+    cache.save();
+  }
+
+  /**
+   * Status of each module worked out from its index and working tree, {@code git status} with
+   * {@code args} only runs for a module whose status cannot be told that way. With
+   * {@code dirtyOnly} a module found clean is left out.
+   */
+  public static Queue<String> forEachModuleStatus(boolean dirtyOnly, String... args) throws IOException {
+    var cache = ResultCache.load(Path.of(currentDir()), String.join(" ", args));
+    var output = runOnModules(p -> true, GitCommand.GIT_STATUS, skipping(cleanIf(dirtyOnly),
+        readOrRun(GitStatus::shortStatus,
+            cached(cache, GitFingerprint.Scope.WORKTREE, path -> CommandVerticle.executeForDtoAsync(path, args)),
+            args)));
+    cache.save();
+    return output;
+  }
+
+  /**
+   * Like {@link #forEachModuleStatus(boolean, String...)}, with each module's last commit read
+   * from its object store shown after its branch. A module whose commit cannot be read is
+   * shown without it, git is never asked for it.
+   */
+  public static Queue<String> forEachModuleStatusWithLastCommit(boolean dirtyOnly, String... args)
+      throws IOException {
+    var oneLine = Stream.of(args).anyMatch("--gis-one-line"::equals);
+    // the note tells the commit's age, only the lines of git are kept
+    var cache = ResultCache.load(Path.of(currentDir()), "status-lines " + String.join(" ", args));
+    var output = runOnModules(p -> true, GitCommand.GIT_STATUS, skipping(cleanIf(dirtyOnly), path -> {
+      var note = GitHistory.lastCommit(path)
+          .map(commit -> StdOutUtils.gitLastCommit(commit.oid(), commit.subject(), commit.time(), oneLine))
+          .orElse("");
+      return GitStatus.shortStatus(path)
+          .map(lines -> CompletableFuture.completedFuture(new GisProcessDto(String.join("\n", lines), 0)))
+          .orElseGet(() -> cached(cache, GitFingerprint.Scope.WORKTREE, p -> linesOf(p, args)).apply(path))
+          .thenApply(result -> new GisProcessDto(
+              CommandVerticle.renderStatus(path, result.output().lines().toList(), note, args), result.exitCode()));
+    }));
+    cache.save();
+    return output;
+  }
+
+  // what git prints, line by line and not rendered yet
+  private static CompletableFuture<GisProcessDto> linesOf(Path path, String... args) {
+    var lines = new ArrayList<String>();
+    return CommandVerticle.executeStreamingAsync(path, lines::add, args)
+        .thenApply(exitCode -> new GisProcessDto(String.join("\n", lines), exitCode));
+  }
+
+  /**
+   * Like {@link #forEachModuleDo(Consumer, String...)} for a read-only command whose output only
+   * depends on what {@code scope} covers. A module whose fingerprint has not moved since an
+   * earlier run gets the output of then, without a git process.
+   */
+  public static void forEachModuleDoCached(GitFingerprint.Scope scope, Consumer<String> onFinished, String... args)
+      throws IOException {
+    var cache = ResultCache.load(Path.of(currentDir()), String.join(" ", args));
+    runOnModules(p -> true, args[0], cached(cache, scope, path -> CommandVerticle.executeForDtoAsync(path, args)),
+        onFinished, false);
+    cache.save();
+  }
+
+  // only output of a git that succeeded is kept, a dry run always shows the git command
+  private static Function<Path, CompletableFuture<GisProcessDto>> cached(ResultCache cache,
+      GitFingerprint.Scope scope, Function<Path, CompletableFuture<GisProcessDto>> run) {
+    return path -> {
+      var fingerprint = GisProcessUtils.dryRunEnabled() ? Optional.<String>empty() : GitFingerprint.of(path, scope);
+      if (fingerprint.isEmpty()) {
+        return run.apply(path);
+      }
+      var kept = cache.get(path, fingerprint.get());
+      if (kept.isPresent()) {
+        GisLog.debug("module '%s' has not changed, output reused".formatted(path.getFileName()));
+        return CompletableFuture.completedFuture(new GisProcessDto(kept.get(), 0));
+      }
+      return run.apply(path).thenApply(result -> {
+        if (result.exitCode() == 0) {
+          cache.put(path, fingerprint.get(), result.output());
+        }
+        return result;
+      });
+    };
+  }
+
+  // a module is only left out when it is known to be clean, untracked files included
+  private static Predicate<Path> cleanIf(boolean dirtyOnly) {
+    return path -> dirtyOnly && GitStatus.hasChanges(path, true).filter(changed -> !changed).isPresent();
+  }
+
+  /**
+   * Whether {@code git stash} would find nothing to save in the module, asking
+   * {@code git diff-index --quiet HEAD} when that cannot be told from the index. A module git
+   * is unsure about counts as dirty.
+   */
+  public static boolean hasNothingToStash(Path path) {
+    var changed = GitStatus.hasChanges(path, false);
+    if (changed.isPresent()) {
+      return !changed.get();
+    }
+    if (GisProcessUtils.dryRunEnabled()) {
+      return false;
+    }
+    try {
+      return GisProcessUtils.quickRun(path.toFile(), GisConfig.GIT_HOME_DIR, "diff-index", "--quiet", "HEAD", "--")
+          .exitCode() == 0;
+    } catch (InterruptedException e) {
+      GisLog.debug(e);
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (IOException e) {
+      GisLog.debug(e);
+      return false;
+    }
+  }
+
+  /**
+   * Reads where each module stands into {@code summary}, without a single git process.
+   */
+  static void forEachModuleSummary(WorkspaceSummary summary) throws IOException {
+    runOnModules(p -> true, "status-summary", path -> {
+      summary.add(path);
+      return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
+    });
+  }
+
+  /**
+   * Fast-forwards each of {@code sync}'s branches to its upstream in every module, in-process
+   * where the history can be read here and with {@code git push . <branch>@{upstream}:<branch>}
+   * otherwise. Either way a working tree is never touched, and git's outcome is read back from
+   * its porcelain output.
+   */
+  static void forEachModuleSyncBranches(BranchSync sync) throws IOException {
+    runOnModules(p -> true, "sync-branches", path -> {
+      var done = CompletableFuture.completedFuture(GisProcessDto.EMPTY);
+      for (var branch : sync.branches()) {
+        var fastForward = GisProcessUtils.dryRunEnabled()
+            ? Optional.<FastForward>empty()
+            : GitBranches.fastForward(path, branch);
+        if (fastForward.isPresent()) {
+          sync.record(path, branch, fastForward.get());
+          continue;
+        }
+        done = done.thenCompose(previous -> CommandVerticle.executeForDtoAsync(
+                path, "push", "--porcelain", ".", "%s@{upstream}:%s".formatted(branch, branch)))
+            .thenCompose(result -> {
+              // a dry run only prints the command
+              if (GisProcessUtils.dryRunEnabled()) {
+                return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
+              }
+              var outcome = BranchSync.outcomeOf(result);
+              if (outcome.isEmpty()) {
+                sync.recordFailure(path, branch);
+              } else if (outcome.get() == Outcome.DIVERGED) {
+                return recordDiverged(sync, path, branch);
+              } else {
+                sync.record(path, branch, new FastForward(outcome.get(), 0, 0));
+              }
+              return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
+            });
+      }
+      return done;
     });
   }
 
+  // git's push does not say how far apart the branch and its upstream are
+  private static CompletableFuture<GisProcessDto> recordDiverged(BranchSync sync, Path path, String branch) {
+    var counts = new ArrayList<String>();
+    return CommandVerticle.executeStreamingAsync(path, counts::add,
+        "rev-list", "--left-right", "--count", "%s...%s@{upstream}".formatted(branch, branch))
+        .thenApply(exitCode -> {
+          var aheadBehind = counts.isEmpty() ? new String[0] : counts.get(0).trim().split("\\s+");
+          sync.record(path, branch, aheadBehind.length == 2 && exitCode == 0
+              ? new FastForward(Outcome.DIVERGED, Integer.parseInt(aheadBehind[0]), Integer.parseInt(aheadBehind[1]))
+              : new FastForward(Outcome.DIVERGED, 0, 0));
+          return GisProcessDto.EMPTY;
+        });
+  }
+
+  /**
+   * Renders the lines {@code reader} finds for a module as the output of {@code git args}
+   * would have been, git only runs when the reader cannot tell.
+   */
+  private static Function<Path, CompletableFuture<GisProcessDto>> readOrRun(
+      Function<Path, Optional<List<String>>> reader, String... args) {
+    return readOrRun(reader, path -> CommandVerticle.executeForDtoAsync(path, args), args);
+  }
+
+  private static Function<Path, CompletableFuture<GisProcessDto>> readOrRun(
+      Function<Path, Optional<List<String>>> reader, Function<Path, CompletableFuture<GisProcessDto>> run,
+      String... args) {
+    return path -> reader.apply(path)
+        .map(lines -> CompletableFuture.completedFuture(
+            new GisProcessDto(CommandVerticle.render(path, lines, args), 0)))
+        .orElseGet(() -> run.apply(path));
+  }
+
+  /**
+   * Creates {@code branch} at HEAD of each module and switches to it, in-process unless the
+   * module needs what only git does.
+   */
+  public static void forEachModuleSpinOff(Predicate<Path> pred, String branch, Consumer<String> onFinished,
+      boolean failFast) throws IOException {
+    var args = new String[] {GitCommand.CHECKOUT, "-b", branch};
+    runOnModules(pred, args[0], readOrRun(unlessDryRun(path -> GitBranches.spinOff(path, branch)), args),
+        onFinished, failFast);
+  }
+
+  /**
+   * Deletes {@code branch} from each module, in-process where it is fully merged and git would
+   * not have more to do.
+   */
+  public static void forEachModuleRemoveBranch(String branch, Consumer<String> onFinished) throws IOException {
+    var args = new String[] {"branch", "-d", branch};
+    runOnModules(p -> true, args[0], readOrRun(unlessDryRun(path -> GitBranches.deleteMerged(path, branch)), args),
+        onFinished, false);
+  }
+
+  // a dry run prints the git command a module would get
+  private static Function<Path, Optional<List<String>>> unlessDryRun(
+      Function<Path, Optional<List<String>>> reader) {
+    return path -> GisProcessUtils.dryRunEnabled() ? Optional.empty() : reader.apply(path);
+  }
+
+  /**
+   * Checks the branch of {@code plan} out where that takes git, a module already on the branch
+   * or without it gets no git process.
+   */
+  static void forEachModuleCheckout(CheckoutPlan plan, Consumer<String> onFinished, boolean failFast)
+      throws IOException {
+    runOnModules(p -> true, GitCommand.CHECKOUT, path -> {
+      if (plan.classify(path) != CheckoutPlan.Step.CHECKOUT) {
+        return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
+      }
+      return CommandVerticle.executeForDtoAsync(path, GitCommand.CHECKOUT, plan.branch())
+          .thenApply(result -> {
+            plan.checkedOut(path, result.exitCode() == 0);
+            return result;
+          });
+    }, onFinished, failFast);
+  }
+
+  /**
+   * Like {@link #forEachModuleWith(Predicate, Consumer, String...)}, except that git is not
+   * started at all for a module {@code upToDate} holds for.
+   */
+  public static void forEachModuleUnlessUpToDate(Predicate<Path> pred, Predicate<Path> upToDate,
+      Consumer<String> onFinished, String... args) throws IOException {
+    forEachModuleUnlessUpToDate(pred, upToDate, onFinished, false, args);
+  }
+
+  public static void forEachModuleUnlessUpToDate(Predicate<Path> pred, Predicate<Path> upToDate,
+      Consumer<String> onFinished, boolean failFast, String... args) throws IOException {
+    runOnModules(pred, args[0], skipping(upToDate, path -> CommandVerticle.executeForDtoAsync(path, args)),
+        onFinished, failFast);
+  }
+
+  /**
+   * Rebases each module on the origin branch of its current branch, a module with nothing new
+   * on origin is left alone.
+   */
+  public static void forEachModuleDoRebaseCurrent(boolean failFast) throws IOException {
+    // the current branch is resolved once per module, for the check and for the rebase
+    runOnModules(p -> true, "rebase-current", path -> {
+      var originBranch = "%s/%s".formatted(ORIGIN, getCurrentBranchUnderPath(path));
+      return skipping(p -> hasNothingNewOn(p, originBranch),
+          p -> CommandVerticle.executeForDtoAsync(p, "rebase", originBranch)).apply(path);
+    }, output -> {}, failFast);
+  }
+
+  /**
+   * Whether the current branch of the module already holds everything on
+   * {@code originBranch}, a rebase onto it would have nothing to do.
+   */
+  public static boolean hasNothingNewOn(Path path, String originBranch) {
+    return GitHistory.against(path, GitRefs.REMOTES + originBranch)
+        .filter(divergence -> divergence.behind() == 0)
+        .isPresent();
+  }
+
+  // checked inside the module's own task, so modules are weighed in parallel
+  private static Function<Path, CompletableFuture<GisProcessDto>> skipping(Predicate<Path> upToDate,
+      Function<Path, CompletableFuture<GisProcessDto>> action) {
+    return path -> {
+      if (upToDate.test(path)) {
+        GisLog.debug("module '%s' has nothing to do, skipped".formatted(path.getFileName()));
+        return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
+      }
+      return action.apply(path);
+    };
+  }
+
+  public static Queue<String> forEachModuleFetch() throws IOException {
+    return runOnModules(p -> true, "fetch", path -> CommandVerticle.executeAsync(path, "fetch")
+        .thenCompose(fetched -> CommandVerticle.executeForDtoAsync(
+            path,
+            GitCommand.GIT_STATUS, "-sb", "--ignore-submodules", "--porcelain=v1", "--gis-one-line")));
+  }
+
   public static void forEachModuleFetchInBackground() throws IOException {
-    runOnModules(p -> true, path -> {
+    runOnModules(p -> true, "fetch-in-background", path -> {
       CommandVerticle.executeInBackground(path, "fetch");
-      return "";
+      return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
     });
   }
 
@@ -156,19 +646,34 @@ public final class Wrapper {
         "--no-contains",
         mergedBranch
     };
-    runOnModules(p -> true, path -> {
-      var result = CommandVerticle.executeForDto(path, args).output();
-      if (GisStringUtils.isBlank(result)) {
-        return "";
-      }
-      Stream.of(result.split(GisStringUtils.NEWLINE))
-          .filter(GisStringUtils::isNotBlank)
-          .forEach(branch -> CommandVerticle.execute(path, "branch", "-d", branch));
-      return "";
+    runOnModules(p -> true, "prune-merged", path -> {
+      var mergedBranches = new ArrayList<String>();
+      return CommandVerticle.executeStreamingAsync(path, branch -> {
+        if (GisStringUtils.isNotBlank(branch)) {
+          mergedBranches.add(branch);
+        }
+      }, args).thenCompose(exitCode -> deleteBranches(path, mergedBranches))
+          .thenApply(deleted -> GisProcessDto.EMPTY);
     });
   }
 
+  // one git for all of them, gits deleting side by side would race for the module's packed-refs.lock
+  private static CompletableFuture<String> deleteBranches(Path path, List<String> branches) {
+    if (branches.isEmpty()) {
+      return CompletableFuture.completedFuture("");
+    }
+    var args = Stream.concat(Stream.of("branch", "-d"), branches.stream()).toArray(String[]::new);
+    return CommandVerticle.executeAsync(path, args);
+  }
+
+  /**
+   * Read from the module's HEAD, git is only asked when HEAD cannot be read directly.
+   */
   public static String getCurrentBranchUnderPath(Path path) {
+    return GitHead.currentBranch(path).orElseGet(() -> getCurrentBranchFromGit(path));
+  }
+
+  private static String getCurrentBranchFromGit(Path path) {
     GisProcessDto result;
     try {
       result = GisProcessUtils.quickRun(path.toFile(), GisConfig.GIT_HOME_DIR, "branch", "--show-current");
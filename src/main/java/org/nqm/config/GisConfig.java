@@ -3,10 +3,14 @@ package org.nqm.config;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.function.Function;
 import org.nqm.GisException;
+import org.nqm.model.GisLauncherMode;
+import org.nqm.model.GisOutputCapture;
+import org.nqm.model.GisParallelism;
 import org.nqm.utils.StdOutUtils;
 
 public class GisConfig {
@@ -42,30 +46,146 @@ public class GisConfig {
   private static final String MODULE_TIMEOUT_KEY = "module_timeout_seconds";
   private static final int MODULE_TIMEOUT_DEFAULT = 60;
 
-  public static int getModuleTimeoutSeconds() {
-    return parseModuleTimeoutSeconds(props.getProperty(MODULE_TIMEOUT_KEY));
+  /**
+   * How long one module may run, {@code module_timeout_seconds.<module>} overrides the
+   * timeout shared by all modules.
+   */
+  public static int getModuleTimeoutSeconds(String module) {
+    var moduleKey = MODULE_TIMEOUT_KEY + "." + module;
+    return props.getProperty(moduleKey) != null
+        ? parseModuleTimeoutSeconds(moduleKey, props.getProperty(moduleKey))
+        : parseModuleTimeoutSeconds(props.getProperty(MODULE_TIMEOUT_KEY));
   }
 
   static int parseModuleTimeoutSeconds(String val) {
+    return parseModuleTimeoutSeconds(MODULE_TIMEOUT_KEY, val);
+  }
+
+  static int parseModuleTimeoutSeconds(String key, String val) {
+    return parsePositiveInt(key, val, MODULE_TIMEOUT_DEFAULT, "%ds");
+  }
+
+  private static final String MAX_PARALLEL_PROCESSES_KEY = "max_parallel_processes";
+
+  private static int maxParallelProcessesDefault;
+
+  /**
+   * Unless configured, derived from the cgroup CPU quota and the open files limit.
+   */
+  public static int getMaxParallelProcesses() {
+    return parseMaxParallelProcesses(props.getProperty(MAX_PARALLEL_PROCESSES_KEY), defaultMaxParallelProcesses());
+  }
+
+  static int parseMaxParallelProcesses(String val, int fallback) {
+    return parsePositiveInt(MAX_PARALLEL_PROCESSES_KEY, val, fallback, "%d");
+  }
+
+  private static int defaultMaxParallelProcesses() {
+    if (maxParallelProcessesDefault == 0) {
+      maxParallelProcessesDefault = GisSystemLimits.defaultParallelProcesses();
+    }
+    return maxParallelProcessesDefault;
+  }
+
+  private static final String PARALLELISM_KEY = "parallelism";
+  private static final GisParallelism PARALLELISM_DEFAULT = GisParallelism.fixed;
+
+  public static GisParallelism getParallelism() {
+    return parseParallelism(props.getProperty(PARALLELISM_KEY));
+  }
+
+  static GisParallelism parseParallelism(String val) {
+    return parseEnum(PARALLELISM_KEY, val, GisParallelism.class, PARALLELISM_DEFAULT);
+  }
+
+  private static final String REMOTE_HOST_MAX_PARALLEL_KEY = "remote_host_max_parallel";
+  private static final int REMOTE_HOST_MAX_PARALLEL_DEFAULT = 8;
+
+  /**
+   * Cap of one remote host, {@code remote_host_max_parallel.<host>} overrides the cap shared
+   * by all hosts.
+   */
+  public static int getRemoteHostMaxParallel(String host) {
+    var hostKey = REMOTE_HOST_MAX_PARALLEL_KEY + "." + host;
+    return props.getProperty(hostKey) != null
+        ? parseRemoteHostMaxParallel(hostKey, props.getProperty(hostKey))
+        : parseRemoteHostMaxParallel(REMOTE_HOST_MAX_PARALLEL_KEY, props.getProperty(REMOTE_HOST_MAX_PARALLEL_KEY));
+  }
+
+  static int parseRemoteHostMaxParallel(String key, String val) {
+    return parsePositiveInt(key, val, REMOTE_HOST_MAX_PARALLEL_DEFAULT, "%d");
+  }
+
+  private static int parsePositiveInt(String key, String val, int fallback, String fallbackFormat) {
     if (val == null || val.isBlank()) {
-      return MODULE_TIMEOUT_DEFAULT;
+      return fallback;
     }
+    var fallbackMsg = fallbackFormat.formatted(fallback);
     int parsed;
     try {
       parsed = Integer.parseInt(val.trim());
     } catch (NumberFormatException e) {
-      StdOutUtils.warnln("config '%s=%s' is not a number, falling back to %ds"
-          .formatted(MODULE_TIMEOUT_KEY, val, MODULE_TIMEOUT_DEFAULT));
-      return MODULE_TIMEOUT_DEFAULT;
+      StdOutUtils.warnln("config '%s=%s' is not a number, falling back to %s".formatted(key, val, fallbackMsg));
+      return fallback;
     }
     if (parsed <= 0) {
-      StdOutUtils.warnln("config '%s=%s' must be positive, falling back to %ds"
-          .formatted(MODULE_TIMEOUT_KEY, val, MODULE_TIMEOUT_DEFAULT));
-      return MODULE_TIMEOUT_DEFAULT;
+      StdOutUtils.warnln("config '%s=%s' must be positive, falling back to %s".formatted(key, val, fallbackMsg));
+      return fallback;
     }
     return parsed;
   }
 
+  private static final String OUTPUT_CAPTURE_KEY = "output_capture";
+  private static final GisOutputCapture OUTPUT_CAPTURE_DEFAULT = GisOutputCapture.pipe;
+
+  private static GisOutputCapture outputCapture;
+
+  /**
+   * Read once, every process start asks for it and a bad value is only worth one warning.
+   */
+  public static synchronized GisOutputCapture getOutputCapture() {
+    if (outputCapture == null) {
+      outputCapture = parseOutputCapture(props.getProperty(OUTPUT_CAPTURE_KEY));
+    }
+    return outputCapture;
+  }
+
+  static GisOutputCapture parseOutputCapture(String val) {
+    return parseEnum(OUTPUT_CAPTURE_KEY, val, GisOutputCapture.class, OUTPUT_CAPTURE_DEFAULT);
+  }
+
+  private static final String PROCESS_LAUNCHER_KEY = "process_launcher";
+  private static final GisLauncherMode PROCESS_LAUNCHER_DEFAULT = GisLauncherMode.direct;
+
+  private static GisLauncherMode processLauncher;
+
+  /**
+   * Read once like {@link #getOutputCapture()}, each child asks which launcher forks it.
+   */
+  public static synchronized GisLauncherMode getProcessLauncher() {
+    if (processLauncher == null) {
+      processLauncher = parseProcessLauncher(props.getProperty(PROCESS_LAUNCHER_KEY));
+    }
+    return processLauncher;
+  }
+
+  static GisLauncherMode parseProcessLauncher(String val) {
+    return parseEnum(PROCESS_LAUNCHER_KEY, val, GisLauncherMode.class, PROCESS_LAUNCHER_DEFAULT);
+  }
+
+  private static <E extends Enum<E>> E parseEnum(String key, String val, Class<E> type, E fallback) {
+    if (val == null || val.isBlank()) {
+      return fallback;
+    }
+    try {
+      return Enum.valueOf(type, val.trim());
+    } catch (IllegalArgumentException e) {
+      StdOutUtils.warnln("config '%s=%s' is not one of %s, falling back to '%s'"
+          .formatted(key, val, Arrays.toString(type.getEnumConstants()), fallback));
+      return fallback;
+    }
+  }
+
   private static Function<String, String[]> splitValue = val -> val.split(",");
 
   public static String[] getDefaultBranches() {
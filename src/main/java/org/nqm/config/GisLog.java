@@ -17,6 +17,10 @@ public class GisLog {
     isDebugEnabled = b;
   }
 
+  public static boolean isDebugEnabled() {
+    return isDebugEnabled;
+  }
+
   private static void debug(String msg, Throwable e) {
     if (Boolean.TRUE.equals(isDebugEnabled)) {
       Optional.ofNullable(msg).filter(GisStringUtils::isNotBlank).ifPresent(StdOutUtils::debugln);
@@ -0,0 +1,98 @@
+package org.nqm.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+/**
+ * Derives how many git processes the machine (or container) can take at once from the
+ * cgroup CPU quota and the open files limit.
+ */
+final class GisSystemLimits {
+
+  private GisSystemLimits() {}
+
+  // git spends much of its time waiting on the disk, so a cpu can keep a few of them busy
+  private static final int PROCESSES_PER_CPU = 4;
+
+  // stdin, stdout and stderr pipes of a child plus a mapped or scratch file
+  private static final int FDS_PER_PROCESS = 4;
+
+  private static final int RESERVED_FDS = 64;
+
+  private static final Path CGROUP_V2_CPU_MAX = Path.of("/sys/fs/cgroup/cpu.max");
+  private static final Path CGROUP_V1_CFS_QUOTA = Path.of("/sys/fs/cgroup/cpu/cpu.cfs_quota_us");
+  private static final Path CGROUP_V1_CFS_PERIOD = Path.of("/sys/fs/cgroup/cpu/cpu.cfs_period_us");
+  private static final Path PROC_LIMITS = Path.of("/proc/self/limits");
+  private static final String OPEN_FILES_ROW = "Max open files";
+
+  static int defaultParallelProcesses() {
+    var byCpu = (long) cpus() * PROCESSES_PER_CPU;
+    var byFds = openFilesLimit().stream()
+        .map(limit -> (limit - RESERVED_FDS) / FDS_PER_PROCESS)
+        .findFirst()
+        .orElse(Long.MAX_VALUE);
+    return (int) Math.max(1, Math.min(byCpu, byFds));
+  }
+
+  static int cpus() {
+    var available = Runtime.getRuntime().availableProcessors();
+    var quota = readString(CGROUP_V2_CPU_MAX)
+        .map(GisSystemLimits::parseCgroupV2CpuMax)
+        .orElseGet(() -> parseCgroupV1Quota(
+            readString(CGROUP_V1_CFS_QUOTA).orElse(""), readString(CGROUP_V1_CFS_PERIOD).orElse("")));
+    return quota.isPresent() ? Math.min(available, quota.getAsInt()) : available;
+  }
+
+  static OptionalLong openFilesLimit() {
+    return readString(PROC_LIMITS).map(GisSystemLimits::parseOpenFilesLimit).orElse(OptionalLong.empty());
+  }
+
+  /**
+   * {@code cpu.max} holds {@code "<quota> <period>"}, or {@code "max <period>"} when unlimited.
+   */
+  static OptionalInt parseCgroupV2CpuMax(String content) {
+    var fields = content.trim().split("\\s+");
+    if (fields.length != 2) {
+      return OptionalInt.empty();
+    }
+    return parseCgroupV1Quota(fields[0], fields[1]);
+  }
+
+  static OptionalInt parseCgroupV1Quota(String quota, String period) {
+    try {
+      var q = Long.parseLong(quota.trim());
+      var p = Long.parseLong(period.trim());
+      if (q <= 0 || p <= 0) {
+        return OptionalInt.empty();
+      }
+      return OptionalInt.of((int) Math.max(1, (q + p - 1) / p));
+    } catch (NumberFormatException e) {
+      return OptionalInt.empty();
+    }
+  }
+
+  /**
+   * Reads the soft limit from the {@code Max open files} row of {@code /proc/self/limits}.
+   */
+  static OptionalLong parseOpenFilesLimit(String limits) {
+    return limits.lines()
+        .filter(line -> line.startsWith(OPEN_FILES_ROW))
+        .map(line -> line.substring(OPEN_FILES_ROW.length()).trim().split("\\s+")[0])
+        .filter(soft -> soft.chars().allMatch(Character::isDigit) && !soft.isEmpty())
+        .mapToLong(Long::parseLong)
+        .findFirst();
+  }
+
+  private static Optional<String> readString(Path path) {
+    try {
+      return Files.isReadable(path) ? Optional.of(Files.readString(path)) : Optional.empty();
+    } catch (IOException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.nqm.config.GisLog;
+
+/**
+ * Creates and deletes branches without git, through a {@link GitRefTransaction}. Neither
+ * touches the working tree: a new branch at HEAD leaves the index and files as they are, and
+ * deleting a branch never involved them. Anything these cannot do exactly as git would (an
+ * existing branch, an unmerged or checked out one, tracking to set up, an identity to guess,
+ * a hook git would run) is empty, so the caller runs git and gets its behaviour and messages.
+ */
+public final class GitBranches {
+
+  private GitBranches() {}
+
+  private static final String HEAD = "HEAD";
+
+  private static final String REFERENCE_TRANSACTION_HOOK = "reference-transaction";
+
+  private static final DateTimeFormatter ZONE = DateTimeFormatter.ofPattern("xx");
+
+  /**
+   * {@code git checkout -b <branch>}: the branch is created at HEAD and HEAD switched to it.
+   * Prints nothing, as git only talks on stderr here.
+   */
+  public static Optional<List<String>> spinOff(Path worktree, String branch) {
+    if (!GitRefs.isPlainBranchName(branch)) {
+      return Optional.empty();
+    }
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      var head = GitRefs.value(gitDir, HEAD);
+      var headOid = GitRefs.resolve(gitDir, HEAD);
+      var from = GitHead.currentBranchOf(gitDir);
+      var config = GitConfigFile.load(gitDir);
+      // 'always' and 'inherit' set up tracking from a local start point too
+      var autoSetupMerge = config.get("branch", "autoSetupMerge").orElse("");
+      if (head.isEmpty() || headOid.isEmpty() || from.isEmpty() || clashes(gitDir, branch)
+          || "always".equalsIgnoreCase(autoSetupMerge) || "inherit".equalsIgnoreCase(autoSetupMerge)
+          // without reflogs git would not start one for the new branch
+          || !config.getBoolean("core", "logAllRefUpdates", true)
+          || hasHook(worktree, gitDir, config, "post-checkout", REFERENCE_TRANSACTION_HOOK)) {
+        return Optional.empty();
+      }
+      var movingFrom = from.get().isEmpty() ? headOid.get() : from.get();
+      var ident = ident(config);
+      if (ident.isEmpty()) {
+        return Optional.empty();
+      }
+      try (var transaction = new GitRefTransaction(gitDir, ident.get())) {
+        transaction
+            .update(GitRefs.HEADS + branch, null, headOid.get(), null, headOid.get(), "branch: Created from HEAD")
+            .update(HEAD, head.get(), "ref: " + GitRefs.HEADS + branch, headOid.get(), headOid.get(),
+                "checkout: moving from %s to %s".formatted(movingFrom, branch))
+            .commit();
+        return Optional.of(List.<String>of());
+      } catch (IOException | UncheckedIOException e) {
+        GisLog.debug(e);
+        return Optional.empty();
+      }
+    });
+  }
+
+  /**
+   * {@code git branch -d <branch>} for a branch fully merged into HEAD, with no upstream or
+   * other config of its own and not checked out in any worktree.
+   */
+  public static Optional<List<String>> deleteMerged(Path worktree, String branch) {
+    if (!GitRefs.isPlainBranchName(branch)) {
+      return Optional.empty();
+    }
+    var refname = GitRefs.HEADS + branch;
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      var oid = GitRefs.value(gitDir, refname).filter(GitHead::isObjectId);
+      var headOid = GitRefs.resolve(gitDir, HEAD);
+      var config = GitConfigFile.load(gitDir);
+      // git also drops the branch's config section, and checks an upstream rather than HEAD
+      var hasConfig = config.subsections("branch").contains(branch);
+      if (oid.isEmpty() || headOid.isEmpty() || hasConfig || isCheckedOut(gitDir, refname)
+          || hasHook(worktree, gitDir, config, REFERENCE_TRANSACTION_HOOK)) {
+        return Optional.empty();
+      }
+      var merged = GitHistory.aheadBehind(gitDir, oid.get(), headOid.get()).filter(d -> d.ahead() == 0);
+      if (merged.isEmpty()) {
+        return Optional.empty();
+      }
+      // a deletion logs nothing, so needs no identity
+      try (var transaction = new GitRefTransaction(gitDir, "")) {
+        transaction.delete(refname, oid.get()).commit();
+        // git abbreviates the oid by core.abbrev, or by the object count and as far as it is
+        // ambiguous, which cannot be told here without a look at every object
+        return Optional.of(List.of("Deleted branch %s.".formatted(branch)));
+      } catch (IOException | UncheckedIOException e) {
+        GisLog.debug(e);
+        return Optional.empty();
+      }
+    });
+  }
+
+  /**
+   * What {@link #fastForward} did to a branch, {@code ahead} and {@code behind} are counted
+   * against its upstream before the update.
+   */
+  public record FastForward(Outcome outcome, int ahead, int behind) {
+
+    public enum Outcome { ABSENT, NO_UPSTREAM, UP_TO_DATE, CHECKED_OUT, DIVERGED, FAST_FORWARDED }
+
+    private static FastForward of(Outcome outcome) {
+      return new FastForward(outcome, 0, 0);
+    }
+  }
+
+  /**
+   * Moves {@code branch} to its upstream when that is a fast-forward, the way
+   * {@code git push . <branch>@{upstream}:<branch>} would, without touching any working tree.
+   * A branch checked out anywhere is left for a pull. Empty when the history or refs cannot
+   * be read here, or the update cannot be made exactly as git would make it.
+   */
+  public static Optional<FastForward> fastForward(Path worktree, String branch) {
+    if (!GitRefs.isPlainBranchName(branch)) {
+      return Optional.empty();
+    }
+    var refname = GitRefs.HEADS + branch;
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      if (GitHead.currentBranchOf(gitDir).isEmpty()) {
+        return Optional.empty();
+      }
+      var oid = GitRefs.value(gitDir, refname);
+      if (oid.isEmpty()) {
+        return Optional.of(FastForward.of(FastForward.Outcome.ABSENT));
+      }
+      if (!GitHead.isObjectId(oid.get())) {
+        return Optional.empty();
+      }
+      var config = GitConfigFile.load(gitDir);
+      var upstream = GitStatus.upstreamRef(config, branch).flatMap(ref -> GitRefs.resolve(gitDir, ref));
+      if (upstream.isEmpty()) {
+        return Optional.of(FastForward.of(FastForward.Outcome.NO_UPSTREAM));
+      }
+      return GitHistory.aheadBehind(gitDir, oid.get(), upstream.get()).flatMap(divergence -> {
+        if (divergence.behind() == 0) {
+          return Optional.of(FastForward.of(FastForward.Outcome.UP_TO_DATE));
+        }
+        if (divergence.ahead() > 0) {
+          return Optional.of(new FastForward(FastForward.Outcome.DIVERGED, divergence.ahead(), divergence.behind()));
+        }
+        if (isCheckedOut(gitDir, refname)) {
+          return Optional.of(new FastForward(FastForward.Outcome.CHECKED_OUT, 0, divergence.behind()));
+        }
+        var ident = ident(config);
+        if (ident.isEmpty() || !config.getBoolean("core", "logAllRefUpdates", true)
+            || hasHook(worktree, gitDir, config, "pre-push", REFERENCE_TRANSACTION_HOOK)) {
+          return Optional.empty();
+        }
+        try (var transaction = new GitRefTransaction(gitDir, ident.get())) {
+          transaction
+              .update(refname, oid.get(), upstream.get(), oid.get(), upstream.get(), "sync-branches: fast-forward")
+              .commit();
+          return Optional.of(new FastForward(FastForward.Outcome.FAST_FORWARDED, 0, divergence.behind()));
+        } catch (IOException | UncheckedIOException e) {
+          GisLog.debug(e);
+          return Optional.empty();
+        }
+      });
+    });
+  }
+
+  /**
+   * Whether git would run one of {@code hooks}, from {@code core.hooksPath} or the hooks
+   * directory of the repository. Writing the refs here would skip it.
+   */
+  private static boolean hasHook(Path worktree, Path gitDir, GitConfigFile config, String... hooks) {
+    var hooksDir = config.get("core", "hooksPath")
+        .map(path -> path.startsWith("~/")
+            ? Path.of(System.getProperty("user.home"), path.substring(2))
+            // a relative hooksPath is taken from where git runs hooks, the top of the worktree
+            : worktree.resolve(path))
+        .orElseGet(() -> GitDirs.commonDir(gitDir).resolve("hooks"));
+    return Stream.of(hooks)
+        .map(hooksDir::resolve)
+        .anyMatch(hook -> Files.isRegularFile(hook) && Files.isExecutable(hook));
+  }
+
+  // an existing branch, or one that would have to be a directory or sit in place of one
+  private static boolean clashes(Path gitDir, String branch) {
+    var refname = GitRefs.HEADS + branch;
+    for (var at = refname.indexOf('/', GitRefs.HEADS.length()); at > 0; at = refname.indexOf('/', at + 1)) {
+      if (GitRefs.value(gitDir, refname.substring(0, at)).isPresent()) {
+        return true;
+      }
+    }
+    return GitRefs.value(gitDir, refname).isPresent()
+        || GitRefs.shortNamesOf(gitDir, refname + "/").map(names -> !names.isEmpty()).orElse(true);
+  }
+
+  // HEAD, or a rebase in progress, of any worktree sharing the refs
+  private static boolean isCheckedOut(Path gitDir, String refname) {
+    var commonDir = GitDirs.commonDir(gitDir);
+    var worktrees = commonDir.resolve("worktrees");
+    Stream<Path> gitDirs = Stream.of(commonDir);
+    if (Files.isDirectory(worktrees)) {
+      try (var dirs = Files.list(worktrees)) {
+        gitDirs = Stream.concat(gitDirs, dirs.toList().stream());
+      } catch (IOException e) {
+        GisLog.debug(e);
+        return true;
+      }
+    }
+    return gitDirs
+        .flatMap(dir -> Stream.of(HEAD, "rebase-merge/head-name", "rebase-apply/head-name").map(dir::resolve))
+        .map(file -> GitDirs.readString(file).map(String::trim).orElse(""))
+        .anyMatch(value -> value.equals(refname) || GitHead.parseSymref(value).filter(refname::equals).isPresent());
+  }
+
+  /**
+   * The committer identity git would log with, from the environment first and the config
+   * then. Empty when git would have to make one up from the host.
+   */
+  private static Optional<String> ident(GitConfigFile config) {
+    var name = Optional.ofNullable(System.getenv("GIT_COMMITTER_NAME"))
+        .or(() -> config.get("committer", "name"))
+        .or(() -> config.get("user", "name"));
+    var email = Optional.ofNullable(System.getenv("GIT_COMMITTER_EMAIL"))
+        .or(() -> config.get("committer", "email"))
+        .or(() -> config.get("user", "email"))
+        .or(() -> Optional.ofNullable(System.getenv("EMAIL")));
+    if (name.isEmpty() || email.isEmpty() || System.getenv("GIT_COMMITTER_DATE") != null) {
+      return Optional.empty();
+    }
+    var now = Instant.now();
+    return Optional.of("%s <%s> %d %s".formatted(name.get(), email.get(), now.getEpochSecond(),
+        ZONE.format(now.atZone(ZoneId.systemDefault()))));
+  }
+}
@@ -0,0 +1,249 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * The commit-graph git keeps in {@code objects/info}: every commit's parents, generation
+ * (topological level) and commit time, so history can be walked without parsing commits.
+ * Both a single {@code commit-graph} file and a split chain of
+ * {@code commit-graphs/graph-<hash>.graph} layers are read, each layer mapped.
+ *
+ * <p>A position is global over the chain: the base layer's commits come first, a layer's
+ * parents may sit in any layer below it.
+ */
+public final class GitCommitGraph {
+
+  private static final int SIGNATURE = 0x43475048; // CGPH
+
+  private static final int CHUNK_OID_FANOUT = 0x4f494446; // OIDF
+  private static final int CHUNK_OID_LOOKUP = 0x4f49444c; // OIDL
+  private static final int CHUNK_COMMIT_DATA = 0x43444154; // CDAT
+  private static final int CHUNK_EXTRA_EDGES = 0x45444745; // EDGE
+
+  private static final int PARENT_NONE = 0x70000000;
+  private static final int EXTRA_EDGES_NEEDED = 0x80000000;
+  private static final int LAST_EDGE = 0x80000000;
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  private record Layer(ByteBuffer buffer, int hashSize, int count, int offset, int fanout, int lookup,
+      int data, int edges) {}
+
+  private final List<Layer> layers;
+  private final int hashSize;
+
+  private GitCommitGraph(List<Layer> layers, int hashSize) {
+    this.layers = layers;
+    this.hashSize = hashSize;
+  }
+
+  /**
+   * The graph of {@code gitDir}, empty when there is none or it is not in a form read here.
+   */
+  public static Optional<GitCommitGraph> open(Path gitDir) throws IOException {
+    var info = GitDirs.commonDir(gitDir).resolve("objects/info");
+    var chain = info.resolve("commit-graphs/commit-graph-chain");
+    List<Path> files;
+    if (Files.isRegularFile(chain)) {
+      files = Files.readAllLines(chain).stream()
+          .map(String::trim)
+          .filter(hash -> !hash.isEmpty())
+          .map(hash -> info.resolve("commit-graphs/graph-%s.graph".formatted(hash)))
+          .toList();
+    } else if (Files.isRegularFile(info.resolve("commit-graph"))) {
+      files = List.of(info.resolve("commit-graph"));
+    } else {
+      return Optional.empty();
+    }
+    var layers = new ArrayList<Layer>();
+    var offset = 0;
+    for (var file : files) {
+      var layer = readLayer(file, offset);
+      if (layer == null || (!layers.isEmpty() && layer.hashSize() != layers.get(0).hashSize())) {
+        return Optional.empty();
+      }
+      layers.add(layer);
+      offset += layer.count();
+    }
+    return layers.isEmpty()
+        ? Optional.empty()
+        : Optional.of(new GitCommitGraph(List.copyOf(layers), layers.get(0).hashSize()));
+  }
+
+  private static Layer readLayer(Path file, int offset) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        return null;
+      }
+      return parseLayer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), offset);
+    }
+  }
+
+  static Layer parseLayer(ByteBuffer buffer, int offset) {
+    if (buffer.limit() < 8 || buffer.getInt(0) != SIGNATURE || buffer.get(4) != 1) {
+      return null;
+    }
+    var hashSize = switch (buffer.get(5)) {
+      case 1 -> 20;
+      case 2 -> 32;
+      default -> 0;
+    };
+    var chunks = Byte.toUnsignedInt(buffer.get(6));
+    if (hashSize == 0 || 8 + (chunks + 1) * 12 > buffer.limit()) {
+      return null;
+    }
+    int fanout = -1;
+    int lookup = -1;
+    int data = -1;
+    int edges = -1;
+    for (var i = 0; i < chunks; i++) {
+      var at = 8 + i * 12;
+      var chunkOffset = buffer.getLong(at + 4);
+      if (chunkOffset < 0 || chunkOffset > buffer.limit()) {
+        return null;
+      }
+      switch (buffer.getInt(at)) {
+        case CHUNK_OID_FANOUT -> fanout = (int) chunkOffset;
+        case CHUNK_OID_LOOKUP -> lookup = (int) chunkOffset;
+        case CHUNK_COMMIT_DATA -> data = (int) chunkOffset;
+        case CHUNK_EXTRA_EDGES -> edges = (int) chunkOffset;
+        default -> {
+          // generation data, bloom filters, base graphs: not needed to walk
+        }
+      }
+    }
+    if (fanout < 0 || lookup < 0 || data < 0 || fanout + 256 * 4 > buffer.limit()) {
+      return null;
+    }
+    var count = buffer.getInt(fanout + 255 * 4);
+    if (count < 0 || (long) lookup + (long) count * hashSize > buffer.limit()
+        || (long) data + (long) count * (hashSize + 16) > buffer.limit()) {
+      return null;
+    }
+    return new Layer(buffer, hashSize, count, offset, fanout, lookup, data, edges);
+  }
+
+  public int hashSize() {
+    return hashSize;
+  }
+
+  public OptionalInt position(String oid) {
+    if (oid.length() != hashSize * 2) {
+      return OptionalInt.empty();
+    }
+    var key = HEX.parseHex(oid);
+    for (var i = layers.size() - 1; i >= 0; i--) {
+      var local = find(layers.get(i), key);
+      if (local >= 0) {
+        return OptionalInt.of(layers.get(i).offset() + local);
+      }
+    }
+    return OptionalInt.empty();
+  }
+
+  // binary search between the fanout bounds of the first byte
+  private static int find(Layer layer, byte[] key) {
+    var first = Byte.toUnsignedInt(key[0]);
+    var lo = first == 0 ? 0 : layer.buffer().getInt(layer.fanout() + (first - 1) * 4);
+    var hi = layer.buffer().getInt(layer.fanout() + first * 4);
+    while (lo < hi) {
+      var mid = (lo + hi) >>> 1;
+      var cmp = compareOid(layer, mid, key);
+      if (cmp == 0) {
+        return mid;
+      }
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return -1;
+  }
+
+  private static int compareOid(Layer layer, int local, byte[] key) {
+    var at = layer.lookup() + local * layer.hashSize();
+    for (var i = 0; i < key.length; i++) {
+      var diff = Byte.toUnsignedInt(layer.buffer().get(at + i)) - Byte.toUnsignedInt(key[i]);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return 0;
+  }
+
+  public String oid(int position) {
+    var layer = layerOf(position);
+    var bytes = new byte[hashSize];
+    layer.buffer().get(layer.lookup() + (position - layer.offset()) * hashSize, bytes);
+    return HEX.formatHex(bytes);
+  }
+
+  /**
+   * Topological level, always higher than the level of any parent.
+   */
+  public int generation(int position) {
+    return commitData(position, 8) >>> 2;
+  }
+
+  public long commitTime(int position) {
+    return ((long) (commitData(position, 8) & 3) << 32) | Integer.toUnsignedLong(commitData(position, 12));
+  }
+
+  public List<Integer> parents(int position) {
+    var first = commitData(position, 0);
+    if (first == PARENT_NONE) {
+      return List.of();
+    }
+    var second = commitData(position, 4);
+    if (second == PARENT_NONE) {
+      return List.of(first);
+    }
+    if ((second & EXTRA_EDGES_NEEDED) == 0) {
+      return List.of(first, second);
+    }
+    // an octopus merge lists its other parents in the extra edges chunk
+    var layer = layerOf(position);
+    var parents = new ArrayList<Integer>();
+    parents.add(first);
+    var at = layer.edges() + (second & ~EXTRA_EDGES_NEEDED) * 4;
+    while (layer.edges() >= 0 && at + 4 <= layer.buffer().limit()) {
+      var edge = layer.buffer().getInt(at);
+      parents.add(edge & ~LAST_EDGE);
+      if ((edge & LAST_EDGE) != 0) {
+        break;
+      }
+      at += 4;
+    }
+    return parents;
+  }
+
+  // the 16 bytes following a commit's tree id: parent 1, parent 2, generation and time
+  private int commitData(int position, int field) {
+    var layer = layerOf(position);
+    return layer.buffer().getInt(layer.data() + (position - layer.offset()) * (hashSize + 16) + hashSize + field);
+  }
+
+  private Layer layerOf(int position) {
+    for (var i = layers.size() - 1; i >= 0; i--) {
+      if (position >= layers.get(i).offset()) {
+        var layer = layers.get(i);
+        if (position - layer.offset() >= layer.count()) {
+          throw new IndexOutOfBoundsException("no commit at graph position " + position);
+        }
+        return layer;
+      }
+    }
+    throw new IndexOutOfBoundsException("no commit at graph position " + position);
+  }
+}
@@ -0,0 +1,328 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.nqm.config.GisLog;
+
+/**
+ * Values of a file in git's config syntax ({@code config}, {@code .gitmodules}), read the way
+ * git reads them: section and variable names are case-insensitive, subsections are not,
+ * values may be quoted, escaped and continued over several lines, {@code #} and {@code ;}
+ * start a comment. {@code include} directives are not followed.
+ */
+public final class GitConfigFile {
+
+  private static final GitConfigFile EMPTY = new GitConfigFile(Map.of());
+
+  private static final String GLOBAL_CONFIG = ".gitconfig";
+  private static final Path SYSTEM_CONFIG = Path.of("/etc/gitconfig");
+
+  // key to its values in file order, the last one is what git uses for a single-valued key
+  private final Map<String, List<String>> values;
+
+  private GitConfigFile(Map<String, List<String>> values) {
+    this.values = values;
+  }
+
+  public static GitConfigFile read(Path file) {
+    try {
+      return Files.isRegularFile(file) ? parse(Files.readString(file)) : EMPTY;
+    } catch (NoSuchFileException e) {
+      return EMPTY;
+    } catch (IOException | IllegalArgumentException e) {
+      GisLog.debug(e);
+      return EMPTY;
+    }
+  }
+
+  /**
+   * The system, global and repository config of {@code gitDir} stacked up as git does, later
+   * files win.
+   */
+  public static GitConfigFile load(Path gitDir) {
+    return files(gitDir).stream()
+        .map(GitConfigFile::read)
+        .reduce(EMPTY, GitConfigFile::stack);
+  }
+
+  /**
+   * The files {@link #load} reads for {@code gitDir}, whether they exist or not.
+   */
+  public static List<Path> files(Path gitDir) {
+    var home = System.getProperty("user.home");
+    var xdgHome = Optional.ofNullable(System.getenv("XDG_CONFIG_HOME"))
+        .filter(dir -> !dir.isEmpty())
+        .map(Path::of)
+        .orElseGet(() -> Path.of(home, ".config"));
+    return List.of(
+        SYSTEM_CONFIG,
+        xdgHome.resolve("git/config"),
+        Path.of(home, GLOBAL_CONFIG),
+        GitDirs.commonDir(gitDir).resolve("config"));
+  }
+
+  private GitConfigFile stack(GitConfigFile over) {
+    if (over.values.isEmpty()) {
+      return this;
+    }
+    var stacked = new LinkedHashMap<String, List<String>>();
+    values.forEach((key, list) -> stacked.put(key, new ArrayList<>(list)));
+    over.values.forEach((key, list) -> stacked.computeIfAbsent(key, k -> new ArrayList<>()).addAll(list));
+    return new GitConfigFile(stacked);
+  }
+
+  public Optional<String> get(String section, String subsection, String name) {
+    var all = getAll(section, subsection, name);
+    return all.isEmpty() ? Optional.empty() : Optional.of(all.get(all.size() - 1));
+  }
+
+  public Optional<String> get(String section, String name) {
+    return get(section, null, name);
+  }
+
+  public List<String> getAll(String section, String subsection, String name) {
+    return values.getOrDefault(key(section, subsection, name), List.of());
+  }
+
+  /**
+   * {@code true} for {@code true}, {@code yes}, {@code on}, a non-zero number or a variable
+   * without value, as git reads booleans.
+   */
+  public boolean getBoolean(String section, String subsection, String name, boolean fallback) {
+    return get(section, subsection, name).map(value -> switch (value.toLowerCase(Locale.ROOT)) {
+      case "true", "yes", "on" -> true;
+      case "false", "no", "off", "" -> false;
+      default -> {
+        try {
+          yield Integer.parseInt(value) != 0;
+        } catch (NumberFormatException e) {
+          yield fallback;
+        }
+      }
+    }).orElse(fallback);
+  }
+
+  public boolean getBoolean(String section, String name, boolean fallback) {
+    return getBoolean(section, null, name, fallback);
+  }
+
+  /**
+   * Subsections of {@code section} in the order they first appear, e.g. the names of all
+   * {@code [submodule "<name>"]}.
+   */
+  public List<String> subsections(String section) {
+    var prefix = section.toLowerCase(Locale.ROOT) + "\"";
+    return values.keySet().stream()
+        .filter(key -> key.startsWith(prefix))
+        .map(key -> key.substring(prefix.length(), key.lastIndexOf('"')))
+        .distinct()
+        .toList();
+  }
+
+  /**
+   * Whether an {@code include.path} or {@code includeIf.<condition>.path} pulls in values
+   * this file does not hold.
+   */
+  public boolean hasIncludes() {
+    return !getAll("include", null, "path").isEmpty()
+        || subsections("includeif").stream().anyMatch(condition -> !getAll("includeif", condition, "path").isEmpty());
+  }
+
+  private static String key(String section, String subsection, String name) {
+    return section.toLowerCase(Locale.ROOT)
+        + (subsection == null ? "" : "\"" + subsection + "\"")
+        + "." + name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @throws IllegalArgumentException on a line git would refuse as well
+   */
+  public static GitConfigFile parse(String content) {
+    return new Parser(content).parse();
+  }
+
+  private static final class Parser {
+
+    // a variable without '=' is a boolean true, kept apart from an empty value
+    private static final String IMPLICIT_TRUE = "true";
+
+    private final String s;
+    private int pos;
+    private int line = 1;
+
+    private String section;
+    private String subsection;
+
+    private final Map<String, List<String>> values = new LinkedHashMap<>();
+
+    Parser(String content) {
+      this.s = content;
+    }
+
+    GitConfigFile parse() {
+      while (pos < s.length()) {
+        var c = s.charAt(pos);
+        if (c == '\n') {
+          line++;
+          pos++;
+        } else if (Character.isWhitespace(c)) {
+          pos++;
+        } else if (c == '#' || c == ';') {
+          skipLine();
+        } else if (c == '[') {
+          pos++;
+          parseSection();
+        } else if (Character.isLetter(c)) {
+          parseVariable();
+        } else {
+          throw error();
+        }
+      }
+      return new GitConfigFile(values);
+    }
+
+    private void parseSection() {
+      var start = pos;
+      while (pos < s.length() && isKeyChar(s.charAt(pos), true)) {
+        pos++;
+      }
+      var name = s.substring(start, pos);
+      if (name.isEmpty() || pos >= s.length()) {
+        throw error();
+      }
+      if (s.charAt(pos) == ']') {
+        pos++;
+        // old [section.subsection] syntax, its subsection is case-insensitive
+        var dot = name.indexOf('.');
+        section = (dot < 0 ? name : name.substring(0, dot)).toLowerCase(Locale.ROOT);
+        subsection = dot < 0 ? null : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return;
+      }
+      if (name.indexOf('.') >= 0) {
+        throw error();
+      }
+      while (pos < s.length() && (s.charAt(pos) == ' ' || s.charAt(pos) == '\t')) {
+        pos++;
+      }
+      if (pos >= s.length() || s.charAt(pos) != '"') {
+        throw error();
+      }
+      pos++;
+      var sub = new StringBuilder();
+      while (pos < s.length() && s.charAt(pos) != '"') {
+        var c = s.charAt(pos++);
+        if (c == '\n') {
+          throw error();
+        }
+        if (c == '\\' && pos < s.length()) {
+          c = s.charAt(pos++);
+        }
+        sub.append(c);
+      }
+      if (pos + 1 >= s.length() || s.charAt(pos + 1) != ']') {
+        throw error();
+      }
+      pos += 2;
+      section = name.toLowerCase(Locale.ROOT);
+      subsection = sub.toString();
+    }
+
+    private void parseVariable() {
+      if (section == null) {
+        throw error();
+      }
+      var start = pos;
+      while (pos < s.length() && isKeyChar(s.charAt(pos), false)) {
+        pos++;
+      }
+      var name = s.substring(start, pos);
+      while (pos < s.length() && (s.charAt(pos) == ' ' || s.charAt(pos) == '\t')) {
+        pos++;
+      }
+      String value;
+      if (pos >= s.length() || s.charAt(pos) == '\n' || s.charAt(pos) == '#' || s.charAt(pos) == ';') {
+        value = IMPLICIT_TRUE;
+        skipLine();
+      } else if (s.charAt(pos) == '=') {
+        pos++;
+        value = parseValue();
+      } else {
+        throw error();
+      }
+      values.computeIfAbsent(key(section, subsection, name), k -> new ArrayList<>()).add(value);
+    }
+
+    private String parseValue() {
+      var value = new StringBuilder();
+      var quoted = false;
+      // whitespace is only kept when something follows it
+      var pendingSpace = 0;
+      while (pos < s.length()) {
+        var c = s.charAt(pos++);
+        if (c == '\n') {
+          if (quoted) {
+            throw error();
+          }
+          line++;
+          break;
+        }
+        if (!quoted && (c == '#' || c == ';')) {
+          skipLine();
+          break;
+        }
+        if (!quoted && Character.isWhitespace(c)) {
+          if (!value.isEmpty()) {
+            pendingSpace++;
+          }
+          continue;
+        }
+        value.append(" ".repeat(pendingSpace));
+        pendingSpace = 0;
+        if (c == '"') {
+          quoted = !quoted;
+        } else if (c == '\\') {
+          if (pos >= s.length()) {
+            throw error();
+          }
+          var escaped = s.charAt(pos++);
+          switch (escaped) {
+            case '\n' -> line++;
+            case 'n' -> value.append('\n');
+            case 't' -> value.append('\t');
+            case 'b' -> value.append('\b');
+            case '\\', '"' -> value.append(escaped);
+            default -> throw error();
+          }
+        } else {
+          value.append(c);
+        }
+      }
+      if (quoted) {
+        throw error();
+      }
+      return value.toString();
+    }
+
+    private void skipLine() {
+      while (pos < s.length() && s.charAt(pos) != '\n') {
+        pos++;
+      }
+    }
+
+    private static boolean isKeyChar(char c, boolean inSection) {
+      return Character.isLetterOrDigit(c) || c == '-' || (inSection && c == '.');
+    }
+
+    private IllegalArgumentException error() {
+      return new IllegalArgumentException("bad config line %d".formatted(line));
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.nqm.config.GisLog;
+
+/**
+ * Locates the git directory of a working tree without asking git. A submodule's {@code .git}
+ * is a file holding {@code gitdir: <path>} into the parent's {@code .git/modules}, and a
+ * linked worktree's git dir names the repository it shares refs and config with in
+ * {@code commondir}.
+ */
+public final class GitDirs {
+
+  private GitDirs() {}
+
+  private static final String DOT_GIT = ".git";
+  private static final String GITDIR_PREFIX = "gitdir:";
+  private static final String COMMONDIR = "commondir";
+
+  public static Optional<Path> of(Path worktree) {
+    var dotGit = worktree.resolve(DOT_GIT);
+    if (Files.isDirectory(dotGit)) {
+      return Optional.of(dotGit);
+    }
+    if (!Files.isRegularFile(dotGit)) {
+      return Optional.empty();
+    }
+    return readString(dotGit)
+        .flatMap(GitDirs::parseGitDirFile)
+        .map(gitDir -> worktree.resolve(gitDir).normalize())
+        .filter(Files::isDirectory);
+  }
+
+  /**
+   * Where refs, packed-refs and config live, which is {@code gitDir} itself unless it belongs
+   * to a linked worktree.
+   */
+  public static Path commonDir(Path gitDir) {
+    var commondir = gitDir.resolve(COMMONDIR);
+    if (!Files.isRegularFile(commondir)) {
+      return gitDir;
+    }
+    return readString(commondir)
+        .map(String::trim)
+        .filter(dir -> !dir.isEmpty())
+        .map(dir -> gitDir.resolve(dir).normalize())
+        .orElse(gitDir);
+  }
+
+  static Optional<String> parseGitDirFile(String content) {
+    var line = content.lines().findFirst().orElse("").trim();
+    if (!line.startsWith(GITDIR_PREFIX)) {
+      return Optional.empty();
+    }
+    return Optional.of(line.substring(GITDIR_PREFIX.length()).trim()).filter(dir -> !dir.isEmpty());
+  }
+
+  static Optional<String> readString(Path file) {
+    try {
+      return Optional.of(Files.readString(file));
+    } catch (IOException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.nqm.config.GisLog;
+
+/**
+ * A digest of what the output of a read-only git command depends on, made of file metadata
+ * (mtime, ctime, size and inode) rather than contents. Every scope covers HEAD, the index,
+ * packed-refs, the configs and each directory under {@code refs/}: git moves a ref by renaming
+ * its lock file over it, which always leaves the ref's directory with a new mtime.
+ *
+ * <p>Results are kept by fingerprint, so one taken while a file may still be written to is not
+ * given: a write within the same timestamp could leave the metadata as it was. Anything
+ * modified in the last {@link #SETTLE_TIME} makes the fingerprint empty.
+ */
+public final class GitFingerprint {
+
+  private GitFingerprint() {}
+
+  /**
+   * How much of a module a fingerprint covers.
+   */
+  public enum Scope {
+    /** The git dir alone, for output about refs. */
+    REFS,
+    /** Also the stat data of every file in the index, for output comparing index and working tree. */
+    INDEX,
+    /** Also the untracked files, for the whole of {@code git status}. */
+    WORKTREE
+  }
+
+  public static final Duration SETTLE_TIME = Duration.ofSeconds(2);
+
+  private static final String STAT_ATTRIBUTES = "unix:ino,size,lastModifiedTime,ctime";
+
+  public static Optional<String> of(Path worktree, Scope scope) {
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      try {
+        return of(worktree, gitDir, scope, Instant.now().minus(SETTLE_TIME));
+      } catch (IOException | UncheckedIOException e) {
+        GisLog.debug(e);
+        return Optional.empty();
+      }
+    });
+  }
+
+  private static Optional<String> of(Path worktree, Path gitDir, Scope scope, Instant settled)
+      throws IOException {
+    var commonDir = GitDirs.commonDir(gitDir);
+    var files = new LinkedHashSet<Path>();
+    Stream.of("HEAD", "index", "config").map(gitDir::resolve).forEach(files::add);
+    Stream.of("packed-refs", "config").map(commonDir::resolve).forEach(files::add);
+    files.addAll(globalConfigs());
+    try (var dirs = Files.walk(commonDir.resolve("refs"))) {
+      dirs.filter(path -> Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)).forEach(files::add);
+    }
+    var lines = new ArrayList<String>();
+    for (var file : files) {
+      var line = statLine("" + file, file, settled);
+      if (line.isEmpty()) {
+        return Optional.empty();
+      }
+      lines.add(line.get());
+    }
+    if (scope != Scope.REFS) {
+      var worktreeLines = worktreeLines(worktree, gitDir, scope, settled);
+      if (worktreeLines.isEmpty()) {
+        return Optional.empty();
+      }
+      lines.addAll(worktreeLines.get());
+    }
+    return Optional.of(digest(lines));
+  }
+
+  // the files of the index as they are now, and what is untracked when the scope asks for it
+  private static Optional<List<String>> worktreeLines(Path worktree, Path gitDir, Scope scope, Instant settled)
+      throws IOException {
+    var config = GitConfigFile.load(gitDir);
+    var indexFile = gitDir.resolve("index");
+    if (!Files.isRegularFile(indexFile)) {
+      return Optional.empty();
+    }
+    var index = GitIndex.read(indexFile, GitStatus.hashSizeOf(config));
+    if (index.isEmpty()) {
+      return Optional.empty();
+    }
+    var stats = index.get().entries().parallelStream()
+        .map(entry -> statLine(entry.path(), worktree.resolve(entry.path()), settled))
+        .toList();
+    if (stats.stream().anyMatch(Optional::isEmpty)) {
+      return Optional.empty();
+    }
+    var lines = new ArrayList<String>(stats.stream().map(Optional::get).toList());
+    if (scope == Scope.WORKTREE) {
+      var untracked = GitStatus.untracked(worktree, gitDir, config, index.get());
+      if (untracked.isEmpty()) {
+        return Optional.empty();
+      }
+      lines.addAll(untracked.get());
+    }
+    return Optional.of(lines);
+  }
+
+  /**
+   * {@code <name> <inode> <size> <mtime> <ctime>}, or {@code <name> -} for a missing file.
+   * Empty when the file has not settled yet.
+   */
+  private static Optional<String> statLine(String name, Path file, Instant settled) {
+    Map<String, Object> stat;
+    try {
+      stat = Files.readAttributes(file, STAT_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException | NotDirectoryException e) {
+      return Optional.of(name + " -");
+    } catch (IOException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+    var mtime = ((FileTime) stat.get("lastModifiedTime")).toInstant();
+    if (mtime.isAfter(settled)) {
+      return Optional.empty();
+    }
+    return Optional.of("%s %s %s %s %s".formatted(name, stat.get("ino"), stat.get("size"), mtime,
+        ((FileTime) stat.get("ctime")).toInstant()));
+  }
+
+  // the system, global and XDG configs, which git reads along with the repository's
+  private static List<Path> globalConfigs() {
+    var home = System.getProperty("user.home");
+    var xdg = Optional.ofNullable(System.getenv("XDG_CONFIG_HOME"))
+        .filter(dir -> !dir.isEmpty())
+        .map(Path::of)
+        .orElseGet(() -> Path.of(home, ".config"));
+    return List.of(Path.of("/etc/gitconfig"), Path.of(home, ".gitconfig"), xdg.resolve("git/config"));
+  }
+
+  private static String digest(List<String> lines) {
+    try {
+      var sha = MessageDigest.getInstance("SHA-256");
+      lines.forEach(line -> {
+        sha.update(line.getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) '\n');
+      });
+      return HexFormat.of().formatHex(sha.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package org.nqm.git;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Reads which branch a working tree is on straight from {@code HEAD}, the way
+ * {@code git branch --show-current} answers it: symbolic refs are followed to the branch they
+ * end at, a detached HEAD is on no branch.
+ */
+public final class GitHead {
+
+  private GitHead() {}
+
+  private static final String SYMREF_PREFIX = "ref:";
+  private static final String BRANCH_PREFIX = "refs/heads/";
+
+  // same limit git puts on chains of symbolic refs
+  private static final int MAX_SYMREF_DEPTH = 5;
+
+  // HEAD of a repository keeping its refs in a reftable, the real HEAD is not a file there
+  private static final String REFTABLE_HEAD = "refs/heads/.invalid";
+
+  /**
+   * The current branch, empty string when HEAD is detached. Empty when HEAD cannot be read
+   * here (no git dir, reftable refs, broken symref chain), so the caller can ask git instead.
+   */
+  public static Optional<String> currentBranch(Path worktree) {
+    return GitDirs.of(worktree).flatMap(GitHead::currentBranchOf);
+  }
+
+  static Optional<String> currentBranchOf(Path gitDir) {
+    var head = GitDirs.readString(gitDir.resolve("HEAD")).map(String::trim);
+    if (head.isEmpty()) {
+      return Optional.empty();
+    }
+    var target = parseSymref(head.get());
+    if (target.isEmpty()) {
+      return isObjectId(head.get()) ? Optional.of("") : Optional.empty();
+    }
+    var commonDir = GitDirs.commonDir(gitDir);
+    var refname = target.get();
+    for (var depth = 1; depth < MAX_SYMREF_DEPTH; depth++) {
+      if (REFTABLE_HEAD.equals(refname)) {
+        return Optional.empty();
+      }
+      var next = looseRef(gitDir, commonDir, refname).flatMap(GitHead::parseSymref);
+      if (next.isEmpty()) {
+        break;
+      }
+      refname = next.get();
+    }
+    if (REFTABLE_HEAD.equals(refname) || !refname.startsWith(BRANCH_PREFIX)) {
+      return Optional.empty();
+    }
+    return Optional.of(refname.substring(BRANCH_PREFIX.length()));
+  }
+
+  /**
+   * What the working tree is in the middle of, as {@code git status} finds it from the state
+   * files git leaves in the git dir: {@code merge}, {@code am}, {@code rebase},
+   * {@code cherry-pick}, {@code revert} or {@code bisect}. Empty when there is none.
+   */
+  public static Optional<String> operationInProgress(Path worktree) {
+    return GitDirs.of(worktree).flatMap(GitHead::operationOf);
+  }
+
+  static Optional<String> operationOf(Path gitDir) {
+    if (Files.isRegularFile(gitDir.resolve("MERGE_HEAD"))) {
+      return Optional.of("merge");
+    }
+    if (Files.isDirectory(gitDir.resolve("rebase-apply"))) {
+      return Optional.of(Files.exists(gitDir.resolve("rebase-apply/applying")) ? "am" : "rebase");
+    }
+    if (Files.isDirectory(gitDir.resolve("rebase-merge"))) {
+      return Optional.of("rebase");
+    }
+    if (Files.isRegularFile(gitDir.resolve("CHERRY_PICK_HEAD"))) {
+      return Optional.of("cherry-pick");
+    }
+    if (Files.isRegularFile(gitDir.resolve("REVERT_HEAD"))) {
+      return Optional.of("revert");
+    }
+    return Files.isRegularFile(gitDir.resolve("BISECT_LOG")) ? Optional.of("bisect") : Optional.empty();
+  }
+
+  /**
+   * The branch a rebase in progress works on, HEAD itself is detached meanwhile.
+   */
+  static Optional<String> rebasingBranchOf(Path gitDir) {
+    return Stream.of("rebase-merge/head-name", "rebase-apply/head-name")
+        .map(gitDir::resolve)
+        .filter(Files::isRegularFile)
+        .findFirst()
+        .flatMap(GitDirs::readString)
+        .map(String::trim)
+        .filter(refname -> refname.startsWith(BRANCH_PREFIX))
+        .map(refname -> refname.substring(BRANCH_PREFIX.length()));
+  }
+
+  // per-worktree refs (HEAD and friends) stay in the worktree's git dir, branches are shared
+  private static Optional<String> looseRef(Path gitDir, Path commonDir, String refname) {
+    var dir = refname.startsWith("refs/") ? commonDir : gitDir;
+    var file = dir.resolve(refname);
+    return Files.isRegularFile(file) ? GitDirs.readString(file).map(String::trim) : Optional.empty();
+  }
+
+  static Optional<String> parseSymref(String content) {
+    if (!content.startsWith(SYMREF_PREFIX)) {
+      return Optional.empty();
+    }
+    return Optional.of(content.substring(SYMREF_PREFIX.length()).trim()).filter(ref -> !ref.isEmpty());
+  }
+
+  static boolean isObjectId(String content) {
+    return (content.length() == 40 || content.length() == 64)
+        && content.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+  }
+}
@@ -0,0 +1,302 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import org.nqm.config.GisLog;
+
+/**
+ * Counts how far two commits diverged, what {@code git rev-list --left-right --count a...b}
+ * prints. Commits come from the commit-graph when they are in it, from the object store
+ * otherwise; whatever cannot be read makes the count empty so the caller asks git.
+ *
+ * <p>The walk goes from both tips at once, highest generation first, so a commit is only
+ * taken off the queue once every commit that can reach it has been. Commits not in the graph
+ * yet get their generation from their parents. The walk stops as soon as all that is left is
+ * reachable from both sides.
+ */
+public final class GitHistory {
+
+  private GitHistory() {}
+
+  // more than this and git, with its own caches, is the better place to count
+  private static final int MAX_COMMITS = 100_000;
+
+  // each one is inflated from the object store, a repository without a commit-graph soon hits it
+  private static final int MAX_COMMITS_READ = 5_000;
+
+  private static final int OURS = 1;
+  private static final int THEIRS = 2;
+  private static final int BOTH = OURS | THEIRS;
+
+  public record Divergence(int ahead, int behind) {
+
+    public boolean isEven() {
+      return ahead == 0 && behind == 0;
+    }
+  }
+
+  /**
+   * A commit's subject and committer time, in seconds.
+   */
+  public record LastCommit(String oid, String subject, long time) {}
+
+  private record Commit(String oid, int generation, long time, List<String> parents) {}
+
+  private static final Comparator<Commit> NEWEST_FIRST = Comparator
+      .comparingInt(Commit::generation).thenComparingLong(Commit::time).reversed();
+
+  /**
+   * How the current branch of {@code worktree} and its upstream diverged, empty when there is
+   * no upstream or it cannot be worked out here.
+   */
+  public static Optional<Divergence> ofUpstream(Path worktree) {
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      var branch = GitHead.currentBranchOf(gitDir);
+      if (branch.isEmpty()) {
+        return Optional.empty();
+      }
+      var upstream = GitStatus.upstreamRef(GitConfigFile.load(gitDir), branch.get());
+      return upstream.flatMap(ref -> between(gitDir, GitRefs.HEADS + branch.get(), ref));
+    });
+  }
+
+  /**
+   * How the current branch of {@code worktree} and {@code refname} diverged.
+   */
+  public static Optional<Divergence> against(Path worktree, String refname) {
+    return GitDirs.of(worktree).flatMap(gitDir -> GitHead.currentBranchOf(gitDir)
+        .flatMap(branch -> between(gitDir, GitRefs.HEADS + branch, refname)));
+  }
+
+  /**
+   * The commit HEAD of {@code worktree} points to, empty on an unborn branch or when the
+   * commit cannot be read here.
+   */
+  public static Optional<LastCommit> lastCommit(Path worktree) {
+    return GitDirs.of(worktree)
+        .flatMap(gitDir -> GitRefs.resolve(gitDir, "HEAD")
+            .flatMap(oid -> GitObjects.read(gitDir, oid)
+                .filter(object -> "commit".equals(object.type()))
+                .flatMap(object -> parseLastCommit(oid, object.data()))));
+  }
+
+  static Optional<LastCommit> parseLastCommit(String oid, byte[] data) {
+    var text = new String(data, StandardCharsets.UTF_8);
+    var bodyStart = text.indexOf("\n\n");
+    var committer = text.lines()
+        .takeWhile(line -> !line.isEmpty())
+        .filter(line -> line.startsWith("committer "))
+        .findFirst();
+    if (committer.isEmpty() || parseTime(committer.get()) < 0) {
+      return Optional.empty();
+    }
+    // like git's %s, the subject is the whole first paragraph on one line
+    var subject = bodyStart < 0 ? "" : text.substring(bodyStart + 2).lines()
+        .dropWhile(String::isBlank)
+        .takeWhile(line -> !line.isBlank())
+        .map(String::trim)
+        .collect(Collectors.joining(" "));
+    return Optional.of(new LastCommit(oid, subject, parseTime(committer.get())));
+  }
+
+  private static Optional<Divergence> between(Path gitDir, String ours, String theirs) {
+    var oursOid = GitRefs.resolve(gitDir, ours);
+    var theirsOid = GitRefs.resolve(gitDir, theirs);
+    if (oursOid.isEmpty() || theirsOid.isEmpty()) {
+      return Optional.empty();
+    }
+    return aheadBehind(gitDir, oursOid.get(), theirsOid.get());
+  }
+
+  public static Optional<Divergence> aheadBehind(Path gitDir, String ours, String theirs) {
+    if (ours.equals(theirs)) {
+      return Optional.of(new Divergence(0, 0));
+    }
+    try {
+      return new Walk(gitDir, GitCommitGraph.open(gitDir).orElse(null)).count(ours, theirs);
+    } catch (IOException | RuntimeException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+
+  private static final class Walk {
+
+    private final Path gitDir;
+    private final GitCommitGraph graph;
+    private final Map<String, Integer> flags = new HashMap<>();
+    private final Map<String, Commit> loaded = new HashMap<>();
+    private final Map<String, Optional<Commit>> headers = new HashMap<>();
+    private int read;
+    private final PriorityQueue<Commit> queue = new PriorityQueue<>(NEWEST_FIRST);
+    private int interesting;
+
+    Walk(Path gitDir, GitCommitGraph graph) {
+      this.gitDir = gitDir;
+      this.graph = graph;
+    }
+
+    Optional<Divergence> count(String ours, String theirs) {
+      if (!mark(ours, OURS) || !mark(theirs, THEIRS)) {
+        return Optional.empty();
+      }
+      var ahead = 0;
+      var behind = 0;
+      while (interesting > 0) {
+        var commit = queue.poll();
+        var flag = flags.get(commit.oid());
+        if (flag != BOTH) {
+          interesting--;
+        }
+        if (flag == OURS) {
+          ahead++;
+        } else if (flag == THEIRS) {
+          behind++;
+        }
+        for (var parent : commit.parents()) {
+          if (!mark(parent, flag)) {
+            return Optional.empty();
+          }
+        }
+      }
+      return Optional.of(new Divergence(ahead, behind));
+    }
+
+    /**
+     * Adds {@code flag} to a commit, queueing it the first time it is reached; false when it
+     * cannot be read.
+     */
+    private boolean mark(String oid, int flag) {
+      var previous = flags.get(oid);
+      if (previous != null) {
+        var merged = previous | flag;
+        if (merged != previous) {
+          flags.put(oid, merged);
+          if (merged == BOTH) {
+            interesting--;
+          }
+        }
+        return true;
+      }
+      var commit = load(oid);
+      if (commit.isEmpty()) {
+        return false;
+      }
+      flags.put(oid, flag);
+      queue.add(commit.get());
+      if (flag != BOTH) {
+        interesting++;
+      }
+      return true;
+    }
+
+    private Optional<Commit> load(String oid) {
+      var commit = loaded.get(oid);
+      if (commit != null) {
+        return Optional.of(commit);
+      }
+      // a commit outside the graph is one above its highest parent, so its parents come first
+      var stack = new ArrayDeque<String>();
+      stack.push(oid);
+      while (!stack.isEmpty()) {
+        var top = stack.peek();
+        if (loaded.containsKey(top)) {
+          stack.pop();
+          continue;
+        }
+        if (loaded.size() >= MAX_COMMITS) {
+          return Optional.empty();
+        }
+        var position = graph == null ? OptionalInt.empty() : graph.position(top);
+        if (position.isPresent()) {
+          loaded.put(top, fromGraph(top, position.getAsInt()));
+          stack.pop();
+          continue;
+        }
+        var header = headers.computeIfAbsent(top, this::readHeader);
+        if (header.isEmpty()) {
+          return Optional.empty();
+        }
+        var unknown = header.get().parents().stream().filter(parent -> !loaded.containsKey(parent)).toList();
+        if (unknown.isEmpty()) {
+          var generation = 1 + header.get().parents().stream()
+              .mapToInt(parent -> loaded.get(parent).generation())
+              .max().orElse(0);
+          loaded.put(top, new Commit(top, generation, header.get().time(), header.get().parents()));
+          headers.remove(top);
+          stack.pop();
+        } else {
+          unknown.forEach(stack::push);
+        }
+      }
+      return Optional.of(loaded.get(oid));
+    }
+
+    private Commit fromGraph(String oid, int position) {
+      var parents = new ArrayList<String>();
+      for (var parent : graph.parents(position)) {
+        parents.add(graph.oid(parent));
+      }
+      return new Commit(oid, graph.generation(position), graph.commitTime(position), parents);
+    }
+
+    private Optional<Commit> readHeader(String oid) {
+      if (++read > MAX_COMMITS_READ) {
+        return Optional.empty();
+      }
+      return GitObjects.read(gitDir, oid)
+          .filter(object -> "commit".equals(object.type()))
+          .flatMap(object -> parseCommit(oid, object.data()));
+    }
+  }
+
+  /**
+   * Parents and committer time from a commit's header, the generation is left to the walk.
+   */
+  private static Optional<Commit> parseCommit(String oid, byte[] data) {
+    var parents = new ArrayList<String>();
+    var time = -1L;
+    var start = 0;
+    while (start < data.length) {
+      var end = start;
+      while (end < data.length && data[end] != '\n') {
+        end++;
+      }
+      if (end == start) {
+        break;
+      }
+      var line = new String(data, start, end - start, StandardCharsets.UTF_8);
+      if (line.startsWith("parent ")) {
+        parents.add(line.substring("parent ".length()));
+      } else if (line.startsWith("committer ")) {
+        time = parseTime(line);
+      }
+      start = end + 1;
+    }
+    if (time < 0 || !parents.stream().allMatch(GitHead::isObjectId)) {
+      return Optional.empty();
+    }
+    return Optional.of(new Commit(oid, 0, time, parents));
+  }
+
+  // committer <name> <<email>> <seconds> <zone>
+  private static long parseTime(String line) {
+    var fields = line.substring(line.lastIndexOf('>') + 1).trim().split(" ");
+    try {
+      return Long.parseLong(fields[0]);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
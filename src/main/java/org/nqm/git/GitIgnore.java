@@ -0,0 +1,197 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import org.nqm.config.GisLog;
+
+/**
+ * The patterns of one ignore file ({@code .gitignore}, {@code info/exclude},
+ * {@code core.excludesFile}) matched as git matches them: the last matching pattern decides,
+ * {@code !} re-includes, a trailing {@code /} only matches directories, a pattern holding a
+ * {@code /} is anchored at the file's directory and {@code **} spans directories.
+ */
+final class GitIgnore {
+
+  private record Rule(Pattern pattern, boolean negated, boolean directoryOnly, boolean basenameOnly) {}
+
+  static final GitIgnore EMPTY = new GitIgnore("", List.of());
+
+  // the directory the file sits in relative to the working tree, "" or ending in '/'
+  private final String base;
+  private final List<Rule> rules;
+
+  private GitIgnore(String base, List<Rule> rules) {
+    this.base = base;
+    this.rules = rules;
+  }
+
+  static GitIgnore read(Path file, String base) {
+    try {
+      return Files.isRegularFile(file) ? parse(Files.readString(file), base) : EMPTY;
+    } catch (NoSuchFileException e) {
+      return EMPTY;
+    } catch (IOException e) {
+      GisLog.debug(e);
+      return EMPTY;
+    }
+  }
+
+  static GitIgnore parse(String content, String base) {
+    var rules = new ArrayList<Rule>();
+    content.lines().map(GitIgnore::parseRule).flatMap(Optional::stream).forEach(rules::add);
+    return rules.isEmpty() ? EMPTY : new GitIgnore(base, List.copyOf(rules));
+  }
+
+  boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * Whether the last pattern matching {@code path} (relative to the working tree) ignores or
+   * re-includes it, empty when no pattern matches or the path is outside this file's directory.
+   */
+  Optional<Boolean> match(String path, boolean isDirectory) {
+    if (!path.startsWith(base)) {
+      return Optional.empty();
+    }
+    var relative = path.substring(base.length());
+    var basename = relative.substring(relative.lastIndexOf('/') + 1);
+    for (var i = rules.size() - 1; i >= 0; i--) {
+      var rule = rules.get(i);
+      if (rule.directoryOnly() && !isDirectory) {
+        continue;
+      }
+      if (rule.pattern().matcher(rule.basenameOnly() ? basename : relative).matches()) {
+        return Optional.of(!rule.negated());
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<Rule> parseRule(String line) {
+    if (line.isEmpty() || line.startsWith("#")) {
+      return Optional.empty();
+    }
+    var pattern = trimTrailingSpaces(line);
+    var negated = pattern.startsWith("!");
+    if (negated) {
+      pattern = pattern.substring(1);
+    } else if (pattern.startsWith("\\!") || pattern.startsWith("\\#")) {
+      pattern = pattern.substring(1);
+    }
+    var directoryOnly = pattern.endsWith("/");
+    if (directoryOnly) {
+      pattern = pattern.substring(0, pattern.length() - 1);
+    }
+    if (pattern.isEmpty()) {
+      return Optional.empty();
+    }
+    var basenameOnly = pattern.indexOf('/') < 0;
+    if (pattern.startsWith("/")) {
+      pattern = pattern.substring(1);
+    }
+    return Optional.of(new Rule(Pattern.compile(toRegex(pattern)), negated, directoryOnly, basenameOnly));
+  }
+
+  // trailing spaces are dropped unless escaped with a backslash
+  private static String trimTrailingSpaces(String line) {
+    var end = line.length();
+    while (end > 0 && line.charAt(end - 1) == ' ' && !(end > 1 && line.charAt(end - 2) == '\\')) {
+      end--;
+    }
+    return line.substring(0, end);
+  }
+
+  static String toRegex(String glob) {
+    var regex = new StringBuilder();
+    var i = 0;
+    while (i < glob.length()) {
+      var c = glob.charAt(i);
+      if (c == '*' && glob.startsWith("**", i) && (i == 0 || glob.charAt(i - 1) == '/')
+          && (i + 2 == glob.length() || glob.charAt(i + 2) == '/')) {
+        if (i + 2 == glob.length()) {
+          // trailing '**' matches everything inside
+          regex.append(".*");
+        } else {
+          // leading '**/' or '/**/' matches zero or more directories
+          regex.append("(?:.*/)?");
+          i++;
+        }
+        i += 2;
+        continue;
+      }
+      switch (c) {
+        case '*' -> {
+          while (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+            i++;
+          }
+          regex.append("[^/]*");
+        }
+        case '?' -> regex.append("[^/]");
+        case '[' -> {
+          var end = bracketEnd(glob, i);
+          if (end < 0) {
+            regex.append("\\[");
+          } else {
+            regex.append(bracket(glob.substring(i + 1, end)));
+            i = end;
+          }
+        }
+        case '\\' -> {
+          if (i + 1 < glob.length()) {
+            i++;
+            regex.append(Pattern.quote("" + glob.charAt(i)));
+          }
+        }
+        default -> regex.append(Pattern.quote("" + c));
+      }
+      i++;
+    }
+    return regex.toString();
+  }
+
+  // a ']' right after '[' or '[!' is part of the set
+  private static int bracketEnd(String glob, int open) {
+    var i = open + 1;
+    if (i < glob.length() && (glob.charAt(i) == '!' || glob.charAt(i) == '^')) {
+      i++;
+    }
+    if (i < glob.length() && glob.charAt(i) == ']') {
+      i++;
+    }
+    while (i < glob.length() && glob.charAt(i) != ']') {
+      i++;
+    }
+    return i < glob.length() ? i : -1;
+  }
+
+  private static String bracket(String set) {
+    var regex = new StringBuilder("[");
+    var i = 0;
+    if (!set.isEmpty() && (set.charAt(0) == '!' || set.charAt(0) == '^')) {
+      // a negated set still never matches a directory separator
+      regex.append("^/");
+      i++;
+    }
+    for (; i < set.length(); i++) {
+      var c = set.charAt(i);
+      if (c == '\\' && i + 1 < set.length()) {
+        c = set.charAt(++i);
+      }
+      if (c == '-' && i > 0 && i + 1 < set.length()) {
+        regex.append('-');
+      } else if (Character.isLetterOrDigit(c)) {
+        regex.append(c);
+      } else {
+        regex.append('\\').append(c);
+      }
+    }
+    return regex.append(']').toString();
+  }
+}
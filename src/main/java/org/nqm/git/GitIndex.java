@@ -0,0 +1,247 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The entries of a git index ({@code .git/index}) with the stat data git cached for each of
+ * them, read from a mapped buffer. Versions 2 to 4 are understood, including the prefix
+ * compressed paths of version 4.
+ *
+ * <p>Of the extensions only the cache tree is kept, it tells whether the index still matches a
+ * tree. The untracked cache and fsmonitor data are optional to readers and skipped: both are
+ * only valid together with state gis cannot see (the untracked cache's exclude file hashes,
+ * the fsmonitor daemon's changes since its token), so the working tree is stat'ed regardless.
+ * A split or sparse index is refused, its entries are not all in this file.
+ */
+public final class GitIndex {
+
+  private static final int SIGNATURE = 0x44495243; // DIRC
+
+  private static final int FLAG_ASSUME_VALID = 0x8000;
+  private static final int FLAG_EXTENDED = 0x4000;
+  private static final int FLAG_STAGE = 0x3000;
+  private static final int FLAG_NAME_LENGTH = 0x0fff;
+
+  private static final int EXT_FLAG_SKIP_WORKTREE = 0x4000;
+  private static final int EXT_FLAG_INTENT_TO_ADD = 0x2000;
+
+  private static final int EXT_CACHE_TREE = 0x54524545; // TREE
+  private static final int EXT_SPLIT_INDEX = 0x6c696e6b; // link
+  private static final int EXT_SPARSE_DIRECTORIES = 0x73646972; // sdir
+
+  // the ten 32 bit stat fields in front of the object id
+  private static final int STAT_SIZE = 40;
+
+  public static final int MODE_TYPE = 0170000;
+  public static final int MODE_REGULAR = 0100000;
+  public static final int MODE_SYMLINK = 0120000;
+  public static final int MODE_GITLINK = 0160000;
+
+  public record Entry(String path, int mode, int ctimeSeconds, int ctimeNanos, int mtimeSeconds,
+      int mtimeNanos, int ino, int uid, int gid, int size, int flags, int extendedFlags) {
+
+    public int stage() {
+      return (flags & FLAG_STAGE) >> 12;
+    }
+
+    public boolean isAssumeValid() {
+      return (flags & FLAG_ASSUME_VALID) != 0;
+    }
+
+    public boolean isSkipWorktree() {
+      return (extendedFlags & EXT_FLAG_SKIP_WORKTREE) != 0;
+    }
+
+    public boolean isIntentToAdd() {
+      return (extendedFlags & EXT_FLAG_INTENT_TO_ADD) != 0;
+    }
+
+    public boolean isGitlink() {
+      return (mode & MODE_TYPE) == MODE_GITLINK;
+    }
+  }
+
+  private final int version;
+  private final List<Entry> entries;
+  private final String rootTree;
+
+  private GitIndex(int version, List<Entry> entries, String rootTree) {
+    this.version = version;
+    this.entries = entries;
+    this.rootTree = rootTree;
+  }
+
+  public int version() {
+    return version;
+  }
+
+  public List<Entry> entries() {
+    return entries;
+  }
+
+  /**
+   * The tree the whole index amounts to, empty when the cache tree is missing or was
+   * invalidated by a change to the index since it was last written out as a tree.
+   */
+  public Optional<String> rootTree() {
+    return Optional.ofNullable(rootTree);
+  }
+
+  /**
+   * Empty when the index is missing or in a form not read here.
+   */
+  public static Optional<GitIndex> read(Path file, int hashSize) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return Optional.empty();
+      }
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), hashSize);
+    }
+  }
+
+  static Optional<GitIndex> parse(ByteBuffer buffer, int hashSize) {
+    if (buffer.limit() < 12 + hashSize || buffer.getInt(0) != SIGNATURE) {
+      return Optional.empty();
+    }
+    var version = buffer.getInt(4);
+    if (version < 2 || version > 4) {
+      return Optional.empty();
+    }
+    var count = buffer.getInt(8);
+    var end = buffer.limit() - hashSize;
+    if (count < 0 || count > (end - 12) / (STAT_SIZE + hashSize + 2)) {
+      return Optional.empty();
+    }
+    var entries = new ArrayList<Entry>(count);
+    var pos = 12;
+    var previousPath = new byte[0];
+    for (var i = 0; i < count; i++) {
+      if (pos + STAT_SIZE + hashSize + 2 > end) {
+        return Optional.empty();
+      }
+      var flagsAt = pos + STAT_SIZE + hashSize;
+      var flags = Short.toUnsignedInt(buffer.getShort(flagsAt));
+      var extended = (flags & FLAG_EXTENDED) != 0;
+      if (extended && version < 3) {
+        return Optional.empty();
+      }
+      var extendedFlags = extended ? Short.toUnsignedInt(buffer.getShort(flagsAt + 2)) : 0;
+      var nameAt = flagsAt + (extended ? 4 : 2);
+      byte[] path;
+      if (version == 4) {
+        // bytes to drop from the end of the previous path, then what follows them
+        var c = Byte.toUnsignedInt(buffer.get(nameAt++));
+        long strip = c & 0x7f;
+        while ((c & 0x80) != 0) {
+          c = Byte.toUnsignedInt(buffer.get(nameAt++));
+          strip = ((strip + 1) << 7) | (c & 0x7f);
+        }
+        if (strip > previousPath.length) {
+          return Optional.empty();
+        }
+        var suffixEnd = indexOfNul(buffer, nameAt, end);
+        if (suffixEnd < 0) {
+          return Optional.empty();
+        }
+        var keep = previousPath.length - (int) strip;
+        path = new byte[keep + suffixEnd - nameAt];
+        System.arraycopy(previousPath, 0, path, 0, keep);
+        buffer.get(nameAt, path, keep, suffixEnd - nameAt);
+        pos = suffixEnd + 1;
+      } else {
+        var nameEnd = indexOfNul(buffer, nameAt, end);
+        if (nameEnd < 0) {
+          return Optional.empty();
+        }
+        path = new byte[nameEnd - nameAt];
+        buffer.get(nameAt, path);
+        // entries are padded with 1 to 8 NULs to a multiple of 8 bytes
+        pos = pos + ((nameAt - pos + path.length + 8) & ~7);
+      }
+      previousPath = path;
+      entries.add(new Entry(new String(path, StandardCharsets.UTF_8),
+          buffer.getInt(pos(flagsAt, hashSize, 24)),
+          buffer.getInt(pos(flagsAt, hashSize, 0)),
+          buffer.getInt(pos(flagsAt, hashSize, 4)),
+          buffer.getInt(pos(flagsAt, hashSize, 8)),
+          buffer.getInt(pos(flagsAt, hashSize, 12)),
+          buffer.getInt(pos(flagsAt, hashSize, 20)),
+          buffer.getInt(pos(flagsAt, hashSize, 28)),
+          buffer.getInt(pos(flagsAt, hashSize, 32)),
+          buffer.getInt(pos(flagsAt, hashSize, 36)),
+          flags & ~FLAG_NAME_LENGTH,
+          extendedFlags));
+    }
+    String rootTree = null;
+    while (pos + 8 <= end) {
+      var signature = buffer.getInt(pos);
+      var length = buffer.getInt(pos + 4);
+      var dataAt = pos + 8;
+      if (length < 0 || dataAt + length > end) {
+        return Optional.empty();
+      }
+      if (signature == EXT_SPLIT_INDEX || signature == EXT_SPARSE_DIRECTORIES) {
+        return Optional.empty();
+      }
+      if (signature == EXT_CACHE_TREE) {
+        rootTree = parseRootTree(buffer, dataAt, dataAt + length, hashSize);
+      } else if (!isOptional(signature)) {
+        return Optional.empty();
+      }
+      pos = dataAt + length;
+    }
+    return Optional.of(new GitIndex(version, List.copyOf(entries), rootTree));
+  }
+
+  // stat fields sit in front of the object id, counted back from the flags
+  private static int pos(int flagsAt, int hashSize, int statOffset) {
+    return flagsAt - hashSize - STAT_SIZE + statOffset;
+  }
+
+  /**
+   * The first cache tree entry is the root: {@code NUL <entry count> SP <subtrees> LF} and,
+   * unless the entry count is -1 (invalidated), the tree's object id.
+   */
+  private static String parseRootTree(ByteBuffer buffer, int from, int to, int hashSize) {
+    if (from >= to || buffer.get(from) != 0) {
+      return null;
+    }
+    var lineEnd = from + 1;
+    while (lineEnd < to && buffer.get(lineEnd) != '\n') {
+      lineEnd++;
+    }
+    var header = new byte[lineEnd - from - 1];
+    buffer.get(from + 1, header);
+    var counts = new String(header, StandardCharsets.US_ASCII).split(" ");
+    if (counts.length != 2 || counts[0].startsWith("-") || lineEnd + 1 + hashSize > to) {
+      return null;
+    }
+    var oid = new byte[hashSize];
+    buffer.get(lineEnd + 1, oid);
+    return GitObjects.hex(oid);
+  }
+
+  // only extensions whose signature starts with an upper case letter may be ignored
+  private static boolean isOptional(int signature) {
+    var first = signature >>> 24;
+    return first >= 'A' && first <= 'Z';
+  }
+
+  private static int indexOfNul(ByteBuffer buffer, int from, int to) {
+    for (var i = from; i < to; i++) {
+      if (buffer.get(i) == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,29 @@
+package org.nqm.git;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where a module stands, read from its git dir alone: the branch it is on, anything it is in
+ * the middle of, and whether that branch has an upstream configured. During a rebase the
+ * branch is the one being rebased, not the detached HEAD. A detached HEAD otherwise has a
+ * blank branch.
+ */
+public record GitModuleState(String branch, Optional<String> operation, boolean hasUpstream) {
+
+  public boolean isDetached() {
+    return branch.isEmpty();
+  }
+
+  /**
+   * Empty when HEAD cannot be read here.
+   */
+  public static Optional<GitModuleState> of(Path worktree) {
+    return GitDirs.of(worktree).flatMap(gitDir -> GitHead.currentBranchOf(gitDir).map(current -> {
+      var operation = GitHead.operationOf(gitDir);
+      var branch = current.isEmpty() ? GitHead.rebasingBranchOf(gitDir).orElse("") : current;
+      var hasUpstream = !branch.isEmpty() && GitStatus.upstreamRef(GitConfigFile.load(gitDir), branch).isPresent();
+      return new GitModuleState(branch, operation, hasUpstream);
+    }));
+  }
+}
@@ -0,0 +1,208 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.nqm.config.GisLog;
+
+/**
+ * Reads objects straight from a repository's object store, its packs first and loose
+ * objects after. Packs are mapped once per process and looked up again only when the pack
+ * directory changes, the object directories listed as alternates are searched last. An
+ * object that cannot be found here (a pack too large to map, say) reads as missing so the
+ * caller asks git.
+ */
+public final class GitObjects {
+
+  private GitObjects() {}
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  private static final String TREE_PREFIX = "tree ";
+
+  // inflaters hold native memory, only as many as threads inflate at once are kept
+  private static final int MAX_POOLED_INFLATERS = 64;
+
+  // as deep as git follows alternates of alternates
+  private static final int MAX_ALTERNATE_DEPTH = 5;
+
+  private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+  private record PackDirectory(FileTime modified, List<GitPack> packs) {}
+
+  private static final Map<Path, PackDirectory> PACKS = new ConcurrentHashMap<>();
+
+  public record RawObject(String type, byte[] data) {}
+
+  public static Optional<RawObject> read(Path gitDir, String oid) {
+    if (!GitHead.isObjectId(oid)) {
+      return Optional.empty();
+    }
+    try {
+      return readFrom(GitDirs.commonDir(gitDir).resolve("objects"), oid, 0);
+    } catch (IOException | DataFormatException | RuntimeException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<RawObject> readFrom(Path objects, String oid, int alternateDepth)
+      throws IOException, DataFormatException {
+    for (var pack : packsOf(objects.resolve("pack"), oid.length() / 2)) {
+      var offset = pack.offsetOf(oid);
+      if (offset >= 0) {
+        return pack.read(offset, base -> readQuietly(objects, base));
+      }
+    }
+    try {
+      return parseLoose(Files.readAllBytes(objects.resolve(oid.substring(0, 2)).resolve(oid.substring(2))));
+    } catch (NoSuchFileException e) {
+      // not here, maybe in a repository this one borrows objects from
+    }
+    if (alternateDepth >= MAX_ALTERNATE_DEPTH) {
+      return Optional.empty();
+    }
+    for (var alternate : alternatesOf(objects)) {
+      var found = readFrom(alternate, oid, alternateDepth + 1);
+      if (found.isPresent()) {
+        return found;
+      }
+    }
+    return Optional.empty();
+  }
+
+  // the base of a delta stored by object id, looked up in the whole store again
+  private static Optional<RawObject> readQuietly(Path objects, String oid) {
+    try {
+      return readFrom(objects, oid, 0);
+    } catch (IOException | DataFormatException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * {@code objects/info/alternates} lists one object directory per line, relative ones
+   * against this object directory.
+   */
+  private static List<Path> alternatesOf(Path objects) throws IOException {
+    var file = objects.resolve("info/alternates");
+    if (!Files.isRegularFile(file)) {
+      return List.of();
+    }
+    return Files.readAllLines(file).stream()
+        .map(String::trim)
+        .filter(line -> !line.isEmpty() && !line.startsWith("#") && !line.startsWith("\""))
+        .map(objects::resolve)
+        .map(Path::normalize)
+        .toList();
+  }
+
+  private static List<GitPack> packsOf(Path packDir, int hashSize) throws IOException {
+    if (!Files.isDirectory(packDir)) {
+      return List.of();
+    }
+    var modified = Files.getLastModifiedTime(packDir);
+    var known = PACKS.get(packDir);
+    if (known != null && known.modified().equals(modified)) {
+      return known.packs();
+    }
+    var packs = new ArrayList<GitPack>();
+    try (var files = Files.newDirectoryStream(packDir, "pack-*.idx")) {
+      for (var idx : files) {
+        GitPack.open(idx, hashSize).ifPresent(packs::add);
+      }
+    }
+    PACKS.put(packDir, new PackDirectory(modified, List.copyOf(packs)));
+    return packs;
+  }
+
+  static Inflater inflater() {
+    var inflater = INFLATERS.poll();
+    return inflater == null ? new Inflater() : inflater;
+  }
+
+  static void release(Inflater inflater) {
+    inflater.reset();
+    if (INFLATERS.size() < MAX_POOLED_INFLATERS) {
+      INFLATERS.offer(inflater);
+    } else {
+      inflater.end();
+    }
+  }
+
+  /**
+   * The tree a commit points to, from the {@code tree <oid>} line its header starts with.
+   */
+  public static Optional<String> commitTree(Path gitDir, String commitOid) {
+    return read(gitDir, commitOid)
+        .filter(object -> "commit".equals(object.type()))
+        .flatMap(object -> parseCommitTree(object.data()));
+  }
+
+  static Optional<String> parseCommitTree(byte[] commit) {
+    var header = new String(commit, 0, Math.min(commit.length, 128), StandardCharsets.US_ASCII);
+    if (!header.startsWith(TREE_PREFIX)) {
+      return Optional.empty();
+    }
+    var lineEnd = header.indexOf('\n');
+    return Optional.of(lineEnd < 0 ? "" : header.substring(TREE_PREFIX.length(), lineEnd))
+        .filter(GitHead::isObjectId);
+  }
+
+  /**
+   * A loose object is the zlib stream of {@code <type> SP <size> NUL <data>}.
+   */
+  static Optional<RawObject> parseLoose(byte[] compressed) throws DataFormatException {
+    var inflater = inflater();
+    try {
+      inflater.setInput(compressed);
+      var header = new byte[64];
+      var headerLength = 0;
+      // the header is inflated a byte at a time, so the data can be sized exactly after it
+      while (headerLength < header.length) {
+        if (inflater.inflate(header, headerLength, 1) == 0) {
+          return Optional.empty();
+        }
+        if (header[headerLength++] == 0) {
+          break;
+        }
+      }
+      var fields = new String(header, 0, headerLength - 1, StandardCharsets.US_ASCII).split(" ");
+      if (fields.length != 2) {
+        return Optional.empty();
+      }
+      var data = new byte[Integer.parseInt(fields[1])];
+      var read = 0;
+      while (read < data.length) {
+        var n = inflater.inflate(data, read, data.length - read);
+        if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+          return Optional.empty();
+        }
+        read += n;
+      }
+      return Optional.of(new RawObject(fields[0], data));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    } finally {
+      release(inflater);
+    }
+  }
+
+  static String hex(byte[] oid) {
+    return HEX.formatHex(oid);
+  }
+}
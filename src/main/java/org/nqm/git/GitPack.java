@@ -0,0 +1,318 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import org.nqm.git.GitObjects.RawObject;
+
+/**
+ * A packfile and its version 2 {@code .idx}, both mapped. An object is found by a binary
+ * search of the index and inflated straight out of the mapped pack; deltas, against an
+ * offset in the same pack or an object id anywhere in the repository, are resolved by
+ * reading their base first.
+ *
+ * <p>Bases are kept in a small cache shared by all packs: the objects of one delta chain
+ * usually sit next to each other in a pack, so the next read tends to need the same base.
+ */
+final class GitPack {
+
+  private static final int IDX_SIGNATURE = 0xff744f63; // \377tOc
+  private static final int PACK_SIGNATURE = 0x5041434b; // PACK
+
+  private static final int OBJ_COMMIT = 1;
+  private static final int OBJ_TREE = 2;
+  private static final int OBJ_BLOB = 3;
+  private static final int OBJ_TAG = 4;
+  private static final int OBJ_OFS_DELTA = 6;
+  private static final int OBJ_REF_DELTA = 7;
+
+  // git's own default chain limit is 50, anything far deeper is a broken pack
+  private static final int MAX_DELTA_DEPTH = 10_000;
+
+  private static final long BASE_CACHE_BYTES = 16L * 1024 * 1024;
+
+  private record CacheKey(GitPack pack, long offset) {}
+
+  private static final Map<CacheKey, RawObject> BASE_CACHE = new LinkedHashMap<>(64, 0.75f, true);
+  private static long baseCacheSize;
+
+  private final ByteBuffer idx;
+  private final ByteBuffer pack;
+  private final int hashSize;
+  private final int count;
+  private final int names;
+  private final int offsets;
+  private final int largeOffsets;
+
+  private GitPack(ByteBuffer idx, ByteBuffer pack, int hashSize) {
+    this.idx = idx;
+    this.pack = pack;
+    this.hashSize = hashSize;
+    this.count = idx.getInt(8 + 255 * 4);
+    this.names = 8 + 256 * 4;
+    this.offsets = names + count * (hashSize + 4);
+    this.largeOffsets = offsets + count * 4;
+  }
+
+  /**
+   * The pack next to {@code idxFile}, empty when it is not in a form read here (version 1
+   * index, larger than a mapping can hold).
+   */
+  static Optional<GitPack> open(Path idxFile, int hashSize) throws IOException {
+    var name = "" + idxFile.getFileName();
+    var packFile = idxFile.resolveSibling(name.substring(0, name.length() - ".idx".length()) + ".pack");
+    var idx = map(idxFile);
+    if (idx == null || idx.limit() < 8 + 256 * 4 || idx.getInt(0) != IDX_SIGNATURE || idx.getInt(4) != 2) {
+      return Optional.empty();
+    }
+    var count = idx.getInt(8 + 255 * 4);
+    if (count < 0 || 8 + 256 * 4 + (long) count * (hashSize + 8) + 2L * hashSize > idx.limit()) {
+      return Optional.empty();
+    }
+    var pack = map(packFile);
+    if (pack == null || pack.limit() < 12 || pack.getInt(0) != PACK_SIGNATURE) {
+      return Optional.empty();
+    }
+    return Optional.of(new GitPack(idx, pack, hashSize));
+  }
+
+  private static ByteBuffer map(Path file) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return channel.size() > Integer.MAX_VALUE ? null : channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Where {@code oid} starts in the pack, -1 when the pack does not hold it.
+   */
+  long offsetOf(String oid) {
+    if (oid.length() != hashSize * 2) {
+      return -1;
+    }
+    var key = HexFormat.of().parseHex(oid);
+    var first = Byte.toUnsignedInt(key[0]);
+    var lo = first == 0 ? 0 : idx.getInt(8 + (first - 1) * 4);
+    var hi = idx.getInt(8 + first * 4);
+    while (lo < hi) {
+      var mid = (lo + hi) >>> 1;
+      var cmp = compareName(mid, key);
+      if (cmp == 0) {
+        return offsetAt(mid);
+      }
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return -1;
+  }
+
+  private int compareName(int position, byte[] key) {
+    var at = names + position * hashSize;
+    for (var i = 0; i < hashSize; i++) {
+      var diff = Byte.toUnsignedInt(idx.get(at + i)) - Byte.toUnsignedInt(key[i]);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return 0;
+  }
+
+  // an offset past 2 GiB is an index into the table of 8 byte offsets
+  private long offsetAt(int position) {
+    var offset = idx.getInt(offsets + position * 4);
+    return offset >= 0 ? offset : idx.getLong(largeOffsets + (offset & 0x7fffffff) * 8);
+  }
+
+  /**
+   * The object at {@code offset}, {@code objects} finds the base of a delta stored by object
+   * id, wherever that base lives.
+   */
+  Optional<RawObject> read(long offset, Function<String, Optional<RawObject>> objects) throws DataFormatException {
+    return read(offset, objects, 0);
+  }
+
+  private Optional<RawObject> read(long offset, Function<String, Optional<RawObject>> objects, int depth)
+      throws DataFormatException {
+    if (offset < 12 || offset >= pack.limit() || depth > MAX_DELTA_DEPTH) {
+      return Optional.empty();
+    }
+    var at = (int) offset;
+    var c = Byte.toUnsignedInt(pack.get(at++));
+    var type = (c >> 4) & 7;
+    long size = c & 0x0f;
+    for (var shift = 4; (c & 0x80) != 0; shift += 7) {
+      c = Byte.toUnsignedInt(pack.get(at++));
+      size |= (long) (c & 0x7f) << shift;
+    }
+    if (size > Integer.MAX_VALUE) {
+      return Optional.empty();
+    }
+    switch (type) {
+      case OBJ_COMMIT, OBJ_TREE, OBJ_BLOB, OBJ_TAG -> {
+        return inflate(at, (int) size).map(data -> new RawObject(typeName(type), data));
+      }
+      case OBJ_OFS_DELTA -> {
+        c = Byte.toUnsignedInt(pack.get(at++));
+        long distance = c & 0x7f;
+        while ((c & 0x80) != 0) {
+          c = Byte.toUnsignedInt(pack.get(at++));
+          distance = ((distance + 1) << 7) | (c & 0x7f);
+        }
+        var baseOffset = offset - distance;
+        var base = cachedBase(baseOffset, objects, depth);
+        return applyDelta(base, at, (int) size);
+      }
+      case OBJ_REF_DELTA -> {
+        var baseOid = new byte[hashSize];
+        pack.get(at, baseOid);
+        var hex = HexFormat.of().formatHex(baseOid);
+        var baseOffset = offsetOf(hex);
+        var base = baseOffset >= 0 ? cachedBase(baseOffset, objects, depth) : objects.apply(hex);
+        return applyDelta(base, at + hashSize, (int) size);
+      }
+      default -> {
+        return Optional.empty();
+      }
+    }
+  }
+
+  private Optional<RawObject> cachedBase(long offset, Function<String, Optional<RawObject>> objects, int depth)
+      throws DataFormatException {
+    var key = new CacheKey(this, offset);
+    synchronized (BASE_CACHE) {
+      var cached = BASE_CACHE.get(key);
+      if (cached != null) {
+        return Optional.of(cached);
+      }
+    }
+    var base = read(offset, objects, depth + 1);
+    base.ifPresent(object -> cache(key, object));
+    return base;
+  }
+
+  private static void cache(CacheKey key, RawObject object) {
+    if (object.data().length > BASE_CACHE_BYTES / 4) {
+      return;
+    }
+    synchronized (BASE_CACHE) {
+      if (BASE_CACHE.put(key, object) == null) {
+        baseCacheSize += object.data().length;
+      }
+      var eldest = BASE_CACHE.entrySet().iterator();
+      while (baseCacheSize > BASE_CACHE_BYTES && eldest.hasNext()) {
+        baseCacheSize -= eldest.next().getValue().data().length;
+        eldest.remove();
+      }
+    }
+  }
+
+  private Optional<RawObject> applyDelta(Optional<RawObject> base, int at, int size) throws DataFormatException {
+    if (base.isEmpty()) {
+      return Optional.empty();
+    }
+    var delta = inflate(at, size);
+    if (delta.isEmpty()) {
+      return Optional.empty();
+    }
+    return applyDelta(base.get().data(), delta.get()).map(data -> new RawObject(base.get().type(), data));
+  }
+
+  /**
+   * A delta is the base and result sizes followed by instructions that either copy a range
+   * of the base or insert the bytes that follow them.
+   */
+  static Optional<byte[]> applyDelta(byte[] base, byte[] delta) {
+    var at = new int[1];
+    var baseSize = deltaSize(delta, at);
+    var resultSize = deltaSize(delta, at);
+    if (baseSize != base.length || resultSize > Integer.MAX_VALUE) {
+      return Optional.empty();
+    }
+    var result = new byte[(int) resultSize];
+    var written = 0;
+    var i = at[0];
+    try {
+      while (i < delta.length) {
+        var op = Byte.toUnsignedInt(delta[i++]);
+        if ((op & 0x80) != 0) {
+          long copyOffset = 0;
+          var copySize = 0;
+          for (var bit = 0; bit < 4; bit++) {
+            if ((op & (1 << bit)) != 0) {
+              copyOffset |= (long) Byte.toUnsignedInt(delta[i++]) << (bit * 8);
+            }
+          }
+          for (var bit = 0; bit < 3; bit++) {
+            if ((op & (0x10 << bit)) != 0) {
+              copySize |= Byte.toUnsignedInt(delta[i++]) << (bit * 8);
+            }
+          }
+          if (copySize == 0) {
+            copySize = 0x10000;
+          }
+          System.arraycopy(base, Math.toIntExact(copyOffset), result, written, copySize);
+          written += copySize;
+        } else if (op != 0) {
+          System.arraycopy(delta, i, result, written, op);
+          i += op;
+          written += op;
+        } else {
+          return Optional.empty();
+        }
+      }
+    } catch (IndexOutOfBoundsException | ArithmeticException e) {
+      return Optional.empty();
+    }
+    return written == result.length ? Optional.of(result) : Optional.empty();
+  }
+
+  private static long deltaSize(byte[] delta, int[] at) {
+    long size = 0;
+    for (var shift = 0; at[0] < delta.length; shift += 7) {
+      var c = Byte.toUnsignedInt(delta[at[0]++]);
+      size |= (long) (c & 0x7f) << shift;
+      if ((c & 0x80) == 0) {
+        return size;
+      }
+    }
+    return -1;
+  }
+
+  private Optional<byte[]> inflate(int at, int size) throws DataFormatException {
+    var inflater = GitObjects.inflater();
+    try {
+      inflater.setInput(pack.slice(at, pack.limit() - at));
+      var data = new byte[size];
+      var read = 0;
+      while (read < size) {
+        var n = inflater.inflate(data, read, size - read);
+        if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          return Optional.empty();
+        }
+        read += n;
+      }
+      return Optional.of(data);
+    } finally {
+      GitObjects.release(inflater);
+    }
+  }
+
+  private static String typeName(int type) {
+    return switch (type) {
+      case OBJ_COMMIT -> "commit";
+      case OBJ_TREE -> "tree";
+      case OBJ_BLOB -> "blob";
+      default -> "tag";
+    };
+  }
+}
@@ -0,0 +1,223 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.nqm.config.GisLog;
+
+/**
+ * Updates refs the way git's files backend does. Every ref is locked first by creating its
+ * {@code <ref>.lock} file, which fails if another process holds it. Its value is then checked
+ * against what the caller saw. The new value goes into the lock file, and the lock file is
+ * renamed over the ref. A deleted ref is also dropped from {@code packed-refs}, which is
+ * rewritten under its own lock the same way.
+ *
+ * <p>Each update is logged to the ref's reflog, as git does for branches and HEAD in a
+ * non-bare repository. Deleting a ref deletes its reflog too.
+ *
+ * <p>Nothing is renamed until every lock is held and every value checked, so a transaction
+ * that fails early leaves the refs untouched. Closing the transaction drops the locks still
+ * held.
+ */
+final class GitRefTransaction implements AutoCloseable {
+
+  private static final String LOCK_SUFFIX = ".lock";
+  private static final String PACKED_REFS = "packed-refs";
+
+  /**
+   * {@code newValue} is an object id or {@code ref: <target>}, null to delete the ref.
+   * {@code expected} is the value the ref must still hold, null when it must not exist.
+   */
+  private record Update(String refname, String expected, String newValue, String oldOid, String newOid,
+      String message) {}
+
+  private final Path gitDir;
+  private final Path commonDir;
+  private final String ident;
+  private final List<Update> updates = new ArrayList<>();
+  private final List<Path> locks = new ArrayList<>();
+
+  /**
+   * {@code ident} is who the reflog entries are by, {@code Name <email> <seconds> <zone>}.
+   */
+  GitRefTransaction(Path gitDir, String ident) {
+    this.gitDir = gitDir;
+    this.commonDir = GitDirs.commonDir(gitDir);
+    this.ident = ident;
+  }
+
+  /**
+   * Sets {@code refname} to {@code newValue}. The reflog gets {@code message} with the object
+   * ids the ref moved between, a symbolic ref logs the commit it points at on both sides.
+   */
+  GitRefTransaction update(String refname, String expected, String newValue, String oldOid, String newOid,
+      String message) {
+    updates.add(new Update(refname, expected, Objects.requireNonNull(newValue), oldOid, newOid, message));
+    return this;
+  }
+
+  GitRefTransaction delete(String refname, String expected) {
+    updates.add(new Update(refname, Objects.requireNonNull(expected), null, expected, null, null));
+    return this;
+  }
+
+  void commit() throws IOException {
+    try {
+      for (var update : updates) {
+        lock(fileOf(update.refname()));
+        var current = GitRefs.value(gitDir, update.refname()).orElse(null);
+        if (!Objects.equals(current, update.expected())) {
+          throw new IOException("ref '%s' changed, it now holds %s".formatted(update.refname(), current));
+        }
+      }
+      var deleted = updates.stream().filter(update -> update.newValue() == null).map(Update::refname).toList();
+      var packedRefs = commonDir.resolve(PACKED_REFS);
+      var packedLock = deleted.isEmpty() ? Optional.<Path>empty() : rewritePacked(packedRefs, deleted);
+
+      for (var update : updates) {
+        if (update.newValue() != null) {
+          var file = fileOf(update.refname());
+          Files.writeString(lockOf(file), update.newValue() + "\n", StandardCharsets.UTF_8,
+              StandardOpenOption.TRUNCATE_EXISTING);
+          rename(lockOf(file), file);
+          appendReflog(update);
+        }
+      }
+      if (packedLock.isPresent()) {
+        rename(packedLock.get(), packedRefs);
+      }
+      for (var refname : deleted) {
+        var file = fileOf(refname);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(lockOf(file));
+        locks.remove(lockOf(file));
+        var reflog = logOf(refname);
+        Files.deleteIfExists(reflog);
+        pruneEmptyParents(file, GitRefs.HEADS);
+        pruneEmptyParents(reflog, "logs/" + GitRefs.HEADS);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * packed-refs without the deleted refs and the peeled lines that follow them, empty when
+   * untouched. The file is only read under its lock, a pack-refs or fetch rewriting it in the
+   * meantime would otherwise be undone.
+   */
+  private Optional<Path> rewritePacked(Path packedRefs, List<String> deleted) throws IOException {
+    var lock = lock(packedRefs);
+    if (!Files.isRegularFile(packedRefs)) {
+      unlock(lock);
+      return Optional.empty();
+    }
+    var lines = Files.readAllLines(packedRefs, StandardCharsets.UTF_8);
+    var kept = new ArrayList<String>(lines.size());
+    var dropping = false;
+    for (var line : lines) {
+      if (line.startsWith("^")) {
+        if (!dropping) {
+          kept.add(line);
+        }
+        continue;
+      }
+      var space = line.indexOf(' ');
+      dropping = !line.startsWith("#") && space > 0 && deleted.contains(line.substring(space + 1));
+      if (!dropping) {
+        kept.add(line);
+      }
+    }
+    if (kept.size() == lines.size()) {
+      unlock(lock);
+      return Optional.empty();
+    }
+    Files.write(lock, kept, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+    return Optional.of(lock);
+  }
+
+  private Path lock(Path file) throws IOException {
+    var lock = lockOf(file);
+    Files.createDirectories(lock.getParent());
+    // fails when the lock is held, git reports the same as "Unable to create '...lock': File exists"
+    Files.createFile(lock);
+    locks.add(lock);
+    return lock;
+  }
+
+  private void unlock(Path lock) throws IOException {
+    Files.deleteIfExists(lock);
+    locks.remove(lock);
+  }
+
+  private void rename(Path lock, Path file) throws IOException {
+    try {
+      Files.move(lock, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(lock, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    locks.remove(lock);
+  }
+
+  private void appendReflog(Update update) throws IOException {
+    if (update.message() == null) {
+      return;
+    }
+    var reflog = logOf(update.refname());
+    Files.createDirectories(reflog.getParent());
+    var entry = "%s %s %s\t%s\n".formatted(
+        update.oldOid() == null ? "0".repeat(update.newOid().length()) : update.oldOid(), update.newOid(), ident,
+        update.message());
+    Files.writeString(reflog, entry, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  // per-worktree refs (HEAD and friends) stay in the worktree's git dir, the rest is shared
+  private Path fileOf(String refname) {
+    return (refname.startsWith("refs/") ? commonDir : gitDir).resolve(refname);
+  }
+
+  private Path logOf(String refname) {
+    return (refname.startsWith("refs/") ? commonDir : gitDir).resolve("logs").resolve(refname);
+  }
+
+  private static Path lockOf(Path file) {
+    return file.resolveSibling(file.getFileName() + LOCK_SUFFIX);
+  }
+
+  // git removes the directories a deleted ref leaves empty, up to its namespace
+  private void pruneEmptyParents(Path file, String namespace) throws IOException {
+    var stop = commonDir.resolve(namespace);
+    for (var dir = file.getParent(); dir != null && dir.startsWith(stop) && !dir.equals(stop);
+        dir = dir.getParent()) {
+      try (var entries = Files.list(dir)) {
+        if (entries.findAny().isPresent()) {
+          return;
+        }
+      } catch (IOException e) {
+        return;
+      }
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  @Override
+  public void close() {
+    for (var lock : locks) {
+      try {
+        Files.deleteIfExists(lock);
+      } catch (IOException e) {
+        GisLog.debug(e);
+      }
+    }
+    locks.clear();
+  }
+}
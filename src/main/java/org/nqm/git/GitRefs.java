@@ -0,0 +1,432 @@
+package org.nqm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.nqm.config.GisLog;
+
+/**
+ * Reads the refs of a repository without asking git: {@code packed-refs} is mapped and, as git
+ * writes it sorted, binary searched for the namespace asked for; loose refs under that
+ * namespace are laid over it the way git does, a loose ref wins over its packed copy.
+ */
+public final class GitRefs {
+
+  private GitRefs() {}
+
+  public static final String HEADS = "refs/heads/";
+  public static final String REMOTES = "refs/remotes/";
+  public static final String TAGS = "refs/tags/";
+
+  private static final String PACKED_REFS = "packed-refs";
+  private static final String REFTABLE = "reftable";
+  private static final String LOCK_SUFFIX = ".lock";
+
+  private static final Pattern PLAIN_BRANCH_NAME = Pattern.compile("[\\w+][\\w./+-]*");
+  private static final Pattern ABBREVIATED_ID = Pattern.compile("[0-9a-fA-F]{4,}");
+
+  // same limit git puts on chains of symbolic refs
+  private static final int MAX_SYMREF_DEPTH = 5;
+
+  // the rules git resolves a short name with, in order. git does not shorten with the last one,
+  // refs/remotes/%s/HEAD, so origin/HEAD stays origin/HEAD
+  private static final List<String> SHORTEN_PREFIXES = List.of("", "refs/", TAGS, HEADS, REMOTES);
+
+  /**
+   * Short names of the refs under {@code namespaces}, sorted by refname, as
+   * {@code git for-each-ref --format=%(refname:short)} lists them. Empty when the refs cannot
+   * be read here (no git dir, reftable refs, I/O error), so the caller can ask git instead.
+   */
+  public static Optional<List<String>> shortNames(Path worktree, String... namespaces) {
+    return GitDirs.of(worktree).flatMap(gitDir -> shortNamesOf(gitDir, namespaces));
+  }
+
+  static Optional<List<String>> shortNamesOf(Path gitDir, String... namespaces) {
+    var commonDir = GitDirs.commonDir(gitDir);
+    if (Files.isDirectory(commonDir.resolve(REFTABLE))) {
+      return Optional.empty();
+    }
+    try {
+      var db = new RefDatabase(gitDir, commonDir, Packed.read(commonDir.resolve(PACKED_REFS)), namespaces);
+      return Optional.of(db.refs.keySet().stream()
+          .filter(db::resolves)
+          .map(db::shorten)
+          .toList());
+    } catch (IOException | UncheckedIOException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The object id {@code refname} points to once symbolic refs are followed, empty when it does
+   * not exist or cannot be read here.
+   */
+  public static Optional<String> resolve(Path gitDir, String refname) {
+    return open(gitDir).flatMap(db -> db.resolve(refname));
+  }
+
+  /**
+   * {@code refname} shortened as {@code %(refname:short)} shortens it.
+   */
+  public static String shortName(Path gitDir, String refname) {
+    return open(gitDir).map(db -> db.shorten(refname)).orElse(refname);
+  }
+
+  /**
+   * Whether {@code git checkout <name>} finds a ref to switch to in {@code worktree}: a branch,
+   * a tag, or a remote-tracking branch the branch would be created from. Empty when the refs
+   * cannot be read here or {@code name} may mean something else to git (a revision like
+   * {@code HEAD~1} or {@code @{-1}}, an abbreviated object id).
+   */
+  public static Optional<Boolean> hasCheckoutTarget(Path worktree, String name) {
+    if (!isPlainBranchName(name) || ABBREVIATED_ID.matcher(name).matches()) {
+      return Optional.empty();
+    }
+    return GitDirs.of(worktree).flatMap(gitDir -> open(gitDir).map(db -> {
+      if (db.resolve(HEADS + name).isPresent() || db.resolve(TAGS + name).isPresent()) {
+        return true;
+      }
+      var config = GitConfigFile.load(gitDir);
+      return config.subsections("remote").stream()
+          .map(remote -> GitStatus.trackingRef(config.getAll("remote", remote, "fetch"), HEADS + name))
+          .flatMap(Optional::stream)
+          .anyMatch(tracking -> db.resolve(tracking).isPresent());
+    }));
+  }
+
+  // a name git takes as nothing but a branch name, no option, no revision syntax
+  static boolean isPlainBranchName(String name) {
+    return PLAIN_BRANCH_NAME.matcher(name).matches() && !"HEAD".equals(name) && isValidRefname(HEADS + name);
+  }
+
+  /**
+   * What {@code refname} holds as stored, an object id or {@code ref: <target>}, symbolic refs
+   * are not followed. Empty when it does not exist or the refs cannot be read here.
+   */
+  static Optional<String> value(Path gitDir, String refname) {
+    return open(gitDir).flatMap(db -> db.valueOf(refname));
+  }
+
+  private static Optional<RefDatabase> open(Path gitDir) {
+    var commonDir = GitDirs.commonDir(gitDir);
+    if (Files.isDirectory(commonDir.resolve(REFTABLE))) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(new RefDatabase(gitDir, commonDir, Packed.read(commonDir.resolve(PACKED_REFS))));
+    } catch (IOException | UncheckedIOException e) {
+      GisLog.debug(e);
+      return Optional.empty();
+    }
+  }
+
+  private static final class RefDatabase {
+
+    private final Path gitDir;
+    private final Path commonDir;
+    private final Packed packed;
+    private final String[] namespaces;
+
+    // refname to its value, an object id or 'ref: <target>'
+    private final TreeMap<String, String> refs = new TreeMap<>();
+
+    private final Map<String, Boolean> exists = new HashMap<>();
+
+    RefDatabase(Path gitDir, Path commonDir, Packed packed, String... namespaces) throws IOException {
+      this.gitDir = gitDir;
+      this.commonDir = commonDir;
+      this.packed = packed;
+      this.namespaces = namespaces;
+      for (var namespace : namespaces) {
+        packed.forEachIn(namespace, refs::put);
+        readLoose(namespace);
+      }
+    }
+
+    private void readLoose(String namespace) throws IOException {
+      var dir = commonDir.resolve(namespace);
+      if (!Files.isDirectory(dir)) {
+        return;
+      }
+      try (var files = Files.walk(dir)) {
+        files.filter(Files::isRegularFile).forEach(file -> {
+          var refname = namespace + dir.relativize(file).toString().replace(File.separatorChar, '/');
+          if (isValidRefname(refname)) {
+            readRef(file).ifPresent(value -> refs.put(refname, value));
+          }
+        });
+      }
+    }
+
+    // a symbolic ref pointing nowhere is left out, as git does
+    boolean resolves(String refname) {
+      return resolve(refname).isPresent();
+    }
+
+    Optional<String> resolve(String refname) {
+      var value = valueOf(refname);
+      for (var depth = 0; depth < MAX_SYMREF_DEPTH && value.isPresent(); depth++) {
+        var target = GitHead.parseSymref(value.get());
+        if (target.isEmpty()) {
+          return value;
+        }
+        value = valueOf(target.get());
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * Drops the longest prefix that still leaves a short name no other rule resolves to an
+     * existing ref, the strict way {@code for-each-ref} does it.
+     */
+    String shorten(String refname) {
+      for (var i = SHORTEN_PREFIXES.size() - 1; i > 0; i--) {
+        var prefix = SHORTEN_PREFIXES.get(i);
+        if (!refname.startsWith(prefix) || refname.length() == prefix.length()) {
+          continue;
+        }
+        var shortName = refname.substring(prefix.length());
+        var rule = i;
+        if (IntStream.range(0, SHORTEN_PREFIXES.size())
+            .filter(j -> j != rule)
+            .noneMatch(j -> exists(SHORTEN_PREFIXES.get(j) + shortName))) {
+          return shortName;
+        }
+      }
+      return refname;
+    }
+
+    private boolean exists(String refname) {
+      return exists.computeIfAbsent(refname, name -> valueOf(name).isPresent());
+    }
+
+    private Optional<String> valueOf(String refname) {
+      if (Stream.of(namespaces).anyMatch(refname::startsWith)) {
+        return Optional.ofNullable(refs.get(refname));
+      }
+      // per-worktree refs (HEAD and friends) stay in the worktree's git dir, the rest is shared
+      if (!refname.startsWith("refs/")) {
+        return isValidRefname(refname) ? readRef(gitDir.resolve(refname)) : Optional.empty();
+      }
+      if (!isValidRefname(refname)) {
+        return Optional.empty();
+      }
+      var loose = readRef(commonDir.resolve(refname));
+      return loose.isPresent() ? loose : packed.lookup(refname);
+    }
+  }
+
+  private static Optional<String> readRef(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    try {
+      var value = Files.readString(file).trim();
+      return GitHead.isObjectId(value) || GitHead.parseSymref(value).isPresent()
+          ? Optional.of(value)
+          : Optional.empty();
+    } catch (NoSuchFileException e) {
+      // deleted or packed since it was listed
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // what git refuses to read as a ref: hidden components, lock files, '..'
+  static boolean isValidRefname(String refname) {
+    return !refname.isEmpty()
+        && !refname.endsWith(LOCK_SUFFIX)
+        && !refname.contains("..")
+        && Stream.of(refname.split("/")).noneMatch(part -> part.isEmpty() || part.startsWith("."));
+  }
+
+  /**
+   * {@code packed-refs} holds one {@code <object id> <refname>} line per ref, a ref pointing to
+   * an annotated tag is followed by a {@code ^<object id>} line with what the tag peels to. The
+   * header line lists the file's traits, {@code sorted} among them since git 1.8.
+   */
+  static final class Packed {
+
+    private static final Packed EMPTY = new Packed(ByteBuffer.allocate(0), 0, true);
+
+    private static final String SORTED_TRAIT = " sorted ";
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final boolean sorted;
+
+    private Packed(ByteBuffer buffer, int start, boolean sorted) {
+      this.buffer = buffer;
+      this.start = start;
+      this.sorted = sorted;
+    }
+
+    static Packed read(Path file) throws IOException {
+      if (!Files.isRegularFile(file)) {
+        return EMPTY;
+      }
+      try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        var size = channel.size();
+        if (size == 0) {
+          return EMPTY;
+        }
+        if (size > Integer.MAX_VALUE) {
+          throw new IOException("packed-refs is too large to map: " + file);
+        }
+        return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+      } catch (NoSuchFileException e) {
+        return EMPTY;
+      }
+    }
+
+    static Packed of(ByteBuffer buffer) {
+      if (buffer.limit() == 0 || buffer.get(0) != '#') {
+        return new Packed(buffer, 0, false);
+      }
+      var headerEnd = lineEnd(buffer, 0);
+      var header = decode(buffer, 0, headerEnd) + " ";
+      return new Packed(buffer, Math.min(headerEnd + 1, buffer.limit()), header.contains(SORTED_TRAIT));
+    }
+
+    void forEachIn(String namespace, BiConsumer<String, String> action) {
+      var prefix = namespace.getBytes(StandardCharsets.UTF_8);
+      var pos = sorted ? lowerBound(prefix) : start;
+      while (pos < buffer.limit()) {
+        var end = lineEnd(buffer, pos);
+        var space = refnameSeparator(pos, end);
+        if (space >= 0) {
+          if (compare(space + 1, end, prefix, true) == 0) {
+            action.accept(decode(buffer, space + 1, end), decode(buffer, pos, space));
+          } else if (sorted) {
+            break;
+          }
+        }
+        pos = end + 1;
+      }
+    }
+
+    Optional<String> lookup(String refname) {
+      var name = refname.getBytes(StandardCharsets.UTF_8);
+      var pos = sorted ? lowerBound(name) : start;
+      while (pos < buffer.limit()) {
+        var end = lineEnd(buffer, pos);
+        var space = refnameSeparator(pos, end);
+        if (space >= 0) {
+          if (compare(space + 1, end, name, false) == 0) {
+            return Optional.of(decode(buffer, pos, space));
+          }
+          if (sorted) {
+            break;
+          }
+        }
+        pos = end + 1;
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * Offset of the first ref line whose refname is not below {@code key}. A probe landing in
+     * the middle of a line backs up to its start, onto the ref line when it is a peeled line.
+     */
+    private int lowerBound(byte[] key) {
+      var lo = start;
+      var hi = buffer.limit();
+      while (lo < hi) {
+        var record = recordStart((lo + hi) >>> 1);
+        var end = lineEnd(buffer, record);
+        var space = refnameSeparator(record, end);
+        var refname = space >= 0 ? space + 1 : record;
+        if (compare(refname, end, key, false) < 0) {
+          lo = recordEnd(end);
+        } else {
+          hi = record;
+        }
+      }
+      return lo;
+    }
+
+    private int recordStart(int pos) {
+      var lineStart = lineStart(pos);
+      return buffer.get(lineStart) == '^' && lineStart > start ? lineStart(lineStart - 1) : lineStart;
+    }
+
+    private int recordEnd(int lineEnd) {
+      var next = lineEnd + 1;
+      if (next < buffer.limit() && buffer.get(next) == '^') {
+        next = lineEnd(buffer, next) + 1;
+      }
+      return Math.min(next, buffer.limit());
+    }
+
+    private int lineStart(int pos) {
+      while (pos > start && buffer.get(pos - 1) != '\n') {
+        pos--;
+      }
+      return pos;
+    }
+
+    // -1 for peeled and malformed lines
+    private int refnameSeparator(int from, int to) {
+      if (from >= to || buffer.get(from) == '^') {
+        return -1;
+      }
+      for (var i = from; i < to; i++) {
+        if (buffer.get(i) == ' ') {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Compares the bytes in {@code [from, to)} with {@code key} unsigned, as git sorts refnames;
+     * with {@code prefixOnly} only the first {@code key.length} bytes count.
+     */
+    private int compare(int from, int to, byte[] key, boolean prefixOnly) {
+      var length = to - from;
+      var n = Math.min(length, key.length);
+      for (var i = 0; i < n; i++) {
+        var diff = Byte.toUnsignedInt(buffer.get(from + i)) - Byte.toUnsignedInt(key[i]);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      if (prefixOnly && length >= key.length) {
+        return 0;
+      }
+      return length - key.length;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int from) {
+      var pos = from;
+      while (pos < buffer.limit() && buffer.get(pos) != '\n') {
+        pos++;
+      }
+      return pos;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) {
+      var bytes = new byte[to - from];
+      buffer.get(from, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,477 @@
+package org.nqm.git;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.nqm.config.GisLog;
+
+/**
+ * Works out what {@code git status -sb --porcelain=v1 --ignore-submodules} prints for a
+ * module from its index, refs and working tree, without starting git. The stat data git
+ * cached in the index is compared with the working tree in parallel, the way git decides a
+ * file is unchanged before it ever reads it.
+ *
+ * <p>Whatever only git can tell is not guessed: a file whose stat data moved (git would
+ * compare its contents), an index that no longer matches HEAD's tree, history that cannot
+ * be walked to count ahead/behind, conflicts, a detached or unborn HEAD, paths git would
+ * quote. The result is empty then, so the caller runs git for that module.
+ */
+public final class GitStatus {
+
+  private GitStatus() {}
+
+  private static final String STAT_ATTRIBUTES = "unix:mode,ino,uid,gid,size,lastModifiedTime,ctime";
+
+  private static final String DOT_GIT = ".git";
+  private static final String GITIGNORE = ".gitignore";
+
+  private enum EntryState { CLEAN, DELETED, UNDECIDED }
+
+  private record Settings(boolean fileMode, boolean trustCtime, boolean minimalStat, int hashSize) {}
+
+  public static Optional<List<String>> shortStatus(Path worktree) {
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      try {
+        return shortStatus(worktree, gitDir);
+      } catch (IOException | UncheckedIOException e) {
+        GisLog.debug(e);
+        return Optional.empty();
+      }
+    });
+  }
+
+  private static Optional<List<String>> shortStatus(Path worktree, Path gitDir) throws IOException {
+    var config = GitConfigFile.load(gitDir);
+    if (!isSupported(config)) {
+      return Optional.empty();
+    }
+    var settings = settingsOf(config);
+
+    var branch = GitHead.currentBranchOf(gitDir).filter(b -> !b.isEmpty());
+    if (branch.isEmpty()) {
+      return Optional.empty();
+    }
+    var head = GitRefs.resolve(gitDir, GitRefs.HEADS + branch.get());
+    if (head.isEmpty()) {
+      return Optional.empty();
+    }
+    var branchLine = branchLine(gitDir, config, branch.get(), head.get());
+    if (branchLine.isEmpty()) {
+      return Optional.empty();
+    }
+
+    var indexFile = gitDir.resolve("index");
+    if (!Files.isRegularFile(indexFile)) {
+      return Optional.empty();
+    }
+    var indexWritten = Files.getLastModifiedTime(indexFile);
+    var index = GitIndex.read(indexFile, settings.hashSize());
+    if (index.isEmpty() || !matchesHead(gitDir, index.get(), head.get())) {
+      return Optional.empty();
+    }
+
+    var changes = worktreeChanges(worktree, index.get(), settings, indexWritten);
+    if (changes.isEmpty()) {
+      return Optional.empty();
+    }
+    var untracked = new UntrackedWalk(worktree, gitDir, config, index.get()).run();
+    var lines = new ArrayList<String>();
+    lines.add(branchLine.get());
+    lines.addAll(changes.get());
+    lines.addAll(untracked);
+    return lines.stream().skip(1).allMatch(GitStatus::isPlainPath) ? Optional.of(lines) : Optional.empty();
+  }
+
+  /**
+   * Whether {@code worktree} has anything {@code git stash} would save, untracked files too
+   * with {@code withUntracked}. The check stops at the first change found. Empty when only
+   * git can tell: a file whose stat data moved, an index without a cached tree for the
+   * comparison with HEAD, an unborn branch.
+   */
+  public static Optional<Boolean> hasChanges(Path worktree, boolean withUntracked) {
+    return GitDirs.of(worktree).flatMap(gitDir -> {
+      try {
+        return hasChanges(worktree, gitDir, withUntracked);
+      } catch (IOException | UncheckedIOException e) {
+        GisLog.debug(e);
+        return Optional.empty();
+      }
+    });
+  }
+
+  private static Optional<Boolean> hasChanges(Path worktree, Path gitDir, boolean withUntracked)
+      throws IOException {
+    var config = GitConfigFile.load(gitDir);
+    var head = GitRefs.resolve(gitDir, "HEAD");
+    var indexFile = gitDir.resolve("index");
+    if (!isSupported(config) || head.isEmpty() || !Files.isRegularFile(indexFile)) {
+      return Optional.empty();
+    }
+    var settings = settingsOf(config);
+    var written = Files.getLastModifiedTime(indexFile).toInstant();
+    var index = GitIndex.read(indexFile, settings.hashSize());
+    if (index.isEmpty()) {
+      return Optional.empty();
+    }
+    if (index.get().entries().stream().anyMatch(entry -> entry.stage() != 0)) {
+      return Optional.of(true);
+    }
+    var firstChange = index.get().entries().parallelStream()
+        .map(entry -> stateOf(worktree, entry, settings, written.getEpochSecond(), written.getNano()))
+        .filter(state -> state != EntryState.CLEAN)
+        .findAny();
+    if (firstChange.isPresent()) {
+      return firstChange.get() == EntryState.DELETED ? Optional.of(true) : Optional.empty();
+    }
+    var indexTree = index.get().rootTree();
+    var headTree = GitObjects.commitTree(gitDir, head.get());
+    if (indexTree.isEmpty() || headTree.isEmpty()) {
+      return Optional.empty();
+    }
+    if (!indexTree.equals(headTree)) {
+      return Optional.of(true);
+    }
+    return Optional.of(withUntracked && new UntrackedWalk(worktree, gitDir, config, index.get()).any());
+  }
+
+  /**
+   * The untracked lines {@link #shortStatus} would show for {@code worktree}, empty where they
+   * are not worked out here.
+   */
+  static Optional<List<String>> untracked(Path worktree, Path gitDir, GitConfigFile config, GitIndex index) {
+    return isSupported(config)
+        ? Optional.of(new UntrackedWalk(worktree, gitDir, config, index).run())
+        : Optional.empty();
+  }
+
+  static int hashSizeOf(GitConfigFile config) {
+    return settingsOf(config).hashSize();
+  }
+
+  private static Settings settingsOf(GitConfigFile config) {
+    return new Settings(
+        config.getBoolean("core", "filemode", true),
+        config.getBoolean("core", "trustctime", true),
+        "minimal".equals(config.get("core", "checkstat").orElse("default")),
+        "sha256".equals(config.get("extensions", "objectformat").orElse("sha1")) ? 32 : 20);
+  }
+
+  // an included file may set core.excludesFile, status.showUntrackedFiles and the like
+  private static boolean isSupported(GitConfigFile config) {
+    var showUntracked = config.get("status", "showuntrackedfiles").orElse("normal");
+    return !config.hasIncludes()
+        && !config.getBoolean("core", "bare", false)
+        && !config.getBoolean("core", "ignorecase", false)
+        && ("normal".equals(showUntracked) || "true".equals(showUntracked));
+  }
+
+  /**
+   * {@code ## <branch>[...<upstream>[ [gone]|[ahead N, behind M]]]}, empty when how far the
+   * branch and its upstream diverged cannot be counted here.
+   */
+  private static Optional<String> branchLine(Path gitDir, GitConfigFile config, String branch, String head) {
+    var line = "## " + branch;
+    var tracking = upstreamRef(config, branch);
+    if (tracking.isEmpty()) {
+      return Optional.of(line);
+    }
+    var withUpstream = line + "..." + GitRefs.shortName(gitDir, tracking.get());
+    var upstream = GitRefs.resolve(gitDir, tracking.get());
+    if (upstream.isEmpty()) {
+      return Optional.of(withUpstream + " [gone]");
+    }
+    return GitHistory.aheadBehind(gitDir, head, upstream.get())
+        .map(divergence -> withUpstream + divergenceOf(divergence));
+  }
+
+  private static String divergenceOf(GitHistory.Divergence divergence) {
+    if (divergence.isEven()) {
+      return "";
+    }
+    if (divergence.behind() == 0) {
+      return " [ahead %d]".formatted(divergence.ahead());
+    }
+    if (divergence.ahead() == 0) {
+      return " [behind %d]".formatted(divergence.behind());
+    }
+    return " [ahead %d, behind %d]".formatted(divergence.ahead(), divergence.behind());
+  }
+
+  /**
+   * The ref {@code branch} tracks, from its {@code branch.<name>.remote} and
+   * {@code branch.<name>.merge}; a branch of the local repository tracks itself.
+   */
+  static Optional<String> upstreamRef(GitConfigFile config, String branch) {
+    var remote = config.get("branch", branch, "remote");
+    var merge = config.get("branch", branch, "merge");
+    if (remote.isEmpty() || merge.isEmpty()) {
+      return Optional.empty();
+    }
+    return ".".equals(remote.get())
+        ? merge
+        : trackingRef(config.getAll("remote", remote.get(), "fetch"), merge.get());
+  }
+
+  /**
+   * Where a fetch with {@code refspecs} stores the remote's {@code ref}, the first refspec
+   * whose source matches wins.
+   */
+  static Optional<String> trackingRef(List<String> refspecs, String ref) {
+    for (var refspec : refspecs) {
+      var spec = refspec.startsWith("+") ? refspec.substring(1) : refspec;
+      var colon = spec.indexOf(':');
+      if (spec.startsWith("^") || colon < 0) {
+        continue;
+      }
+      var src = spec.substring(0, colon);
+      var dst = spec.substring(colon + 1);
+      var star = src.indexOf('*');
+      if (star < 0) {
+        if (src.equals(ref) && !dst.isEmpty()) {
+          return Optional.of(dst);
+        }
+        continue;
+      }
+      var prefix = src.substring(0, star);
+      var suffix = src.substring(star + 1);
+      if (ref.startsWith(prefix) && ref.endsWith(suffix) && ref.length() >= prefix.length() + suffix.length()
+          && dst.indexOf('*') >= 0) {
+        return Optional.of(dst.replace("*", ref.substring(prefix.length(), ref.length() - suffix.length())));
+      }
+    }
+    return Optional.empty();
+  }
+
+  // nothing is staged when the index, as a tree, is the tree HEAD points to
+  private static boolean matchesHead(Path gitDir, GitIndex index, String head) {
+    return index.rootTree()
+        .flatMap(tree -> GitObjects.commitTree(gitDir, head).map(tree::equals))
+        .orElse(false);
+  }
+
+  /**
+   * {@code " D <path>"} per deleted file, empty when a file may have changed.
+   */
+  private static Optional<List<String>> worktreeChanges(Path worktree, GitIndex index, Settings settings,
+      FileTime indexWritten) {
+    var written = indexWritten.toInstant();
+    var states = index.entries().parallelStream()
+        .map(entry -> Map.entry(entry,
+            stateOf(worktree, entry, settings, written.getEpochSecond(), written.getNano())))
+        .toList();
+    if (states.stream().anyMatch(e -> e.getValue() == EntryState.UNDECIDED)) {
+      return Optional.empty();
+    }
+    return Optional.of(states.stream()
+        .filter(e -> e.getValue() == EntryState.DELETED)
+        .map(e -> " D " + e.getKey().path())
+        .sorted()
+        .toList());
+  }
+
+  private static EntryState stateOf(Path worktree, GitIndex.Entry entry, Settings settings, long indexSeconds,
+      int indexNanos) {
+    if (entry.stage() != 0 || entry.isIntentToAdd()) {
+      return EntryState.UNDECIDED;
+    }
+    if (entry.isSkipWorktree() || entry.isGitlink() || entry.isAssumeValid()) {
+      return EntryState.CLEAN;
+    }
+    Map<String, Object> stat;
+    try {
+      stat = Files.readAttributes(worktree.resolve(entry.path()), STAT_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException | NotDirectoryException e) {
+      return EntryState.DELETED;
+    } catch (IOException | UnsupportedOperationException e) {
+      GisLog.debug(e);
+      return EntryState.UNDECIDED;
+    }
+    return matchesStat(entry, stat, settings) && !isRacy(entry, indexSeconds, indexNanos)
+        ? EntryState.CLEAN
+        : EntryState.UNDECIDED;
+  }
+
+  /**
+   * What git compares before it trusts a file to be unchanged. Nanoseconds only count when
+   * git recorded them, a git built without them writes zeros.
+   */
+  private static boolean matchesStat(GitIndex.Entry entry, Map<String, Object> stat, Settings settings) {
+    var mode = (int) stat.get("mode");
+    if ((mode & GitIndex.MODE_TYPE) != (entry.mode() & GitIndex.MODE_TYPE)) {
+      return false;
+    }
+    if (settings.fileMode() && (entry.mode() & GitIndex.MODE_TYPE) == GitIndex.MODE_REGULAR
+        && ((entry.mode() & 0100) != 0) != ((mode & 0100) != 0)) {
+      return false;
+    }
+    var mtime = ((FileTime) stat.get("lastModifiedTime")).toInstant();
+    if (!sameTime(entry.mtimeSeconds(), entry.mtimeNanos(), mtime.getEpochSecond(), mtime.getNano())
+        || entry.size() != (int) (long) stat.get("size")) {
+      return false;
+    }
+    if (settings.minimalStat()) {
+      return true;
+    }
+    var ctime = ((FileTime) stat.get("ctime")).toInstant();
+    return (!settings.trustCtime()
+        || sameTime(entry.ctimeSeconds(), entry.ctimeNanos(), ctime.getEpochSecond(), ctime.getNano()))
+        && entry.ino() == (int) (long) stat.get("ino")
+        && entry.uid() == (int) stat.get("uid")
+        && entry.gid() == (int) stat.get("gid");
+  }
+
+  private static boolean sameTime(int seconds, int nanos, long fileSeconds, int fileNanos) {
+    return seconds == (int) fileSeconds && (nanos == 0 || nanos == fileNanos);
+  }
+
+  /**
+   * A file changed within the same tick the index was written in can still carry the stat
+   * data git cached, only its contents tell.
+   */
+  private static boolean isRacy(GitIndex.Entry entry, long indexSeconds, int indexNanos) {
+    var seconds = Integer.toUnsignedLong(entry.mtimeSeconds());
+    return seconds > indexSeconds
+        || seconds == indexSeconds && (entry.mtimeNanos() == 0 || entry.mtimeNanos() >= indexNanos);
+  }
+
+  // paths git prints as they are, anything else git quotes
+  private static boolean isPlainPath(String line) {
+    return line.chars().allMatch(c -> c >= 0x20 && c < 0x7f && c != '"' && c != '\\');
+  }
+
+  /**
+   * Lists what is neither tracked nor ignored as {@code ?? <path>}. A directory without
+   * tracked files is listed once as {@code ?? <dir>/} when anything in it is untracked, a
+   * nested repository always is.
+   */
+  private static final class UntrackedWalk {
+
+    private final Path worktree;
+    private final Set<String> tracked = new HashSet<>();
+    private final Set<String> trackedDirectories = new HashSet<>();
+
+    // info/exclude and core.excludesFile, the least specific last
+    private final List<GitIgnore> base;
+
+    UntrackedWalk(Path worktree, Path gitDir, GitConfigFile config, GitIndex index) {
+      this.worktree = worktree;
+      for (var entry : index.entries()) {
+        tracked.add(entry.path());
+        for (var slash = entry.path().indexOf('/'); slash >= 0; slash = entry.path().indexOf('/', slash + 1)) {
+          trackedDirectories.add(entry.path().substring(0, slash));
+        }
+      }
+      var home = System.getProperty("user.home");
+      var excludesFile = config.get("core", "excludesfile")
+          .map(file -> file.startsWith("~/") ? Path.of(home, file.substring(2)) : Path.of(file))
+          .orElseGet(() -> Optional.ofNullable(System.getenv("XDG_CONFIG_HOME"))
+              .filter(dir -> !dir.isEmpty())
+              .map(Path::of)
+              .orElseGet(() -> Path.of(home, ".config"))
+              .resolve("git/ignore"));
+      base = List.of(
+          GitIgnore.read(GitDirs.commonDir(gitDir).resolve("info/exclude"), ""),
+          GitIgnore.read(excludesFile, ""));
+    }
+
+    List<String> run() {
+      return walk("", List.of(), false).sorted().toList();
+    }
+
+    // the walk is a stream, so it stops taking paths once one is found
+    boolean any() {
+      return walk("", List.of(), false).findAny().isPresent();
+    }
+
+    /**
+     * @param ignores the {@code .gitignore} files above {@code dir}, the closest first
+     */
+    private Stream<String> walk(String dir, List<GitIgnore> ignores, boolean dirIgnored) {
+      var here = withIgnoreFile(dir, ignores);
+      return list(dir).parallelStream().flatMap(child -> {
+        var path = dir + child.getFileName();
+        if (tracked.contains(path)) {
+          return Stream.empty();
+        }
+        var isDirectory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+        if (isDirectory && trackedDirectories.contains(path)) {
+          return walk(path + "/", here, dirIgnored || isIgnored(path, true, here));
+        }
+        if (dirIgnored || isIgnored(path, isDirectory, here)) {
+          return Stream.empty();
+        }
+        if (!isDirectory) {
+          return Stream.of("?? " + path);
+        }
+        return hasUntracked(path + "/", here) ? Stream.of("?? " + path + "/") : Stream.empty();
+      });
+    }
+
+    private boolean hasUntracked(String dir, List<GitIgnore> ignores) {
+      if (Files.exists(worktree.resolve(dir + DOT_GIT), LinkOption.NOFOLLOW_LINKS)) {
+        return true;
+      }
+      var here = withIgnoreFile(dir, ignores);
+      for (var child : list(dir)) {
+        var path = dir + child.getFileName();
+        var isDirectory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+        if (!isIgnored(path, isDirectory, here) && (!isDirectory || hasUntracked(path + "/", here))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private List<GitIgnore> withIgnoreFile(String dir, List<GitIgnore> ignores) {
+      var ignoreFile = GitIgnore.read(worktree.resolve(dir + GITIGNORE), dir);
+      if (ignoreFile.isEmpty()) {
+        return ignores;
+      }
+      var withFile = new ArrayList<GitIgnore>(ignores.size() + 1);
+      withFile.add(ignoreFile);
+      withFile.addAll(ignores);
+      return withFile;
+    }
+
+    // the closest .gitignore with a matching pattern decides, then info/exclude, then core.excludesFile
+    private boolean isIgnored(String path, boolean isDirectory, List<GitIgnore> ignores) {
+      return Stream.concat(ignores.stream(), base.stream())
+          .map(ignore -> ignore.match(path, isDirectory))
+          .flatMap(Optional::stream)
+          .findFirst()
+          .orElse(false);
+    }
+
+    private List<Path> list(String dir) {
+      try (var children = Files.newDirectoryStream(worktree.resolve(dir))) {
+        var list = new ArrayList<Path>();
+        for (var child : children) {
+          if (!DOT_GIT.equals("" + child.getFileName())) {
+            list.add(child);
+          }
+        }
+        return list;
+      } catch (DirectoryIteratorException e) {
+        throw new UncheckedIOException(e.getCause());
+      } catch (NoSuchFileException | NotDirectoryException e) {
+        // removed while the walk was under way
+        return List.of();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
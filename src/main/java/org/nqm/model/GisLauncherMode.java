@@ -0,0 +1,7 @@
+package org.nqm.model;
+
+public enum GisLauncherMode {
+
+    direct, helper;  // NOSONAR: values are read as-is from gis.config
+
+}
@@ -0,0 +1,7 @@
+package org.nqm.model;
+
+public enum GisOutputCapture {
+
+    pipe, file;  // NOSONAR: values are read as-is from gis.config
+
+}
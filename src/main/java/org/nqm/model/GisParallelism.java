@@ -0,0 +1,7 @@
+package org.nqm.model;
+
+public enum GisParallelism {
+
+    fixed, adaptive;  // NOSONAR: values are read as-is from gis.config
+
+}
@@ -0,0 +1,136 @@
+package org.nqm.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import org.nqm.config.GisConfig;
+import org.nqm.config.GisLog;
+import org.nqm.model.GisOutputCapture;
+import org.nqm.model.GisProcessDto;
+
+/**
+ * Forks every child from the gis process itself through {@link ProcessBuilder}.
+ */
+final class GisDirectLauncher implements GisProcessLauncher {
+
+  static final GisDirectLauncher INSTANCE = new GisDirectLauncher();
+
+  private GisDirectLauncher() {}
+
+  @Override
+  public CompletableFuture<GisProcessDto> start(File directory, String... commands) throws IOException {
+    if (GisConfig.getOutputCapture() == GisOutputCapture.file) {
+      return startCapturingToFile(directory, commands);
+    }
+    return startCapturingToPipe(directory, commands);
+  }
+
+  @Override
+  public CompletableFuture<Integer> startStreaming(File directory, LineSink sink, String... commands)
+      throws IOException {
+    if (GisConfig.getOutputCapture() == GisOutputCapture.file) {
+      return startStreamingFromFile(directory, sink, commands);
+    }
+    return startStreamingFromPipe(directory, sink, commands);
+  }
+
+  @Override
+  public void spawn(File directory, String... commands) throws IOException {
+    new ProcessBuilder(commands)
+        .directory(directory)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .redirectError(ProcessBuilder.Redirect.DISCARD)
+        .start();
+  }
+
+  private static CompletableFuture<GisProcessDto> startCapturingToPipe(File directory, String... commands)
+      throws IOException {
+    var stderrPiped = isStderrPiped();
+    var p = launch(directory, ProcessBuilder.Redirect.PIPE, stderrPiped, commands);
+    var stdout = GisProcessEngine.drain(p.getInputStream());
+    var result = p.onExit()
+        .thenCombine(stdout, (exited, out) -> new GisProcessDto(
+            new String(out, StandardCharsets.UTF_8), exited.exitValue()));
+    return track(p, directory, withStderr(p, stderrPiped, result));
+  }
+
+  private static CompletableFuture<Integer> startStreamingFromPipe(File directory, LineSink sink,
+      String... commands) throws IOException {
+    var stderrPiped = isStderrPiped();
+    var p = launch(directory, ProcessBuilder.Redirect.PIPE, stderrPiped, commands);
+    var stdout = GisProcessEngine.pump(p.getInputStream(), sink);
+    var result = p.onExit().thenCombine(stdout, (exited, pumped) -> exited.exitValue());
+    return track(p, directory, withStderr(p, stderrPiped, result));
+  }
+
+  /**
+   * Lets the child write straight into a scratch file and maps it once the child is gone,
+   * so no thread sits on the stdout pipe and the output is decoded from the page cache.
+   */
+  private static CompletableFuture<GisProcessDto> startCapturingToFile(File directory, String... commands)
+      throws IOException {
+    var scratch = GisProcessEngine.createScratch();
+    var stderrPiped = isStderrPiped();
+    var p = launchToScratch(directory, scratch, stderrPiped, commands);
+    var result = p.onExit()
+        .thenApply(exited -> new GisProcessDto(GisProcessEngine.readMapped(scratch), exited.exitValue()));
+    result.whenComplete((dto, e) -> GisProcessEngine.deleteScratch(scratch));
+    return track(p, directory, withStderr(p, stderrPiped, result));
+  }
+
+  private static CompletableFuture<Integer> startStreamingFromFile(File directory, LineSink sink,
+      String... commands) throws IOException {
+    var scratch = GisProcessEngine.createScratch();
+    var stderrPiped = isStderrPiped();
+    var p = launchToScratch(directory, scratch, stderrPiped, commands);
+    var result = p.onExit().thenApply(exited -> {
+      GisProcessEngine.splitMapped(scratch, sink);
+      return exited.exitValue();
+    });
+    result.whenComplete((exitCode, e) -> GisProcessEngine.deleteScratch(scratch));
+    return track(p, directory, withStderr(p, stderrPiped, result));
+  }
+
+  private static Process launch(File directory, ProcessBuilder.Redirect stdout, boolean stderrPiped,
+      String... commands) throws IOException {
+    return new ProcessBuilder(commands)
+        .directory(directory)
+        .redirectOutput(stdout)
+        .redirectError(stderrPiped ? ProcessBuilder.Redirect.PIPE : ProcessBuilder.Redirect.DISCARD)
+        .start();
+  }
+
+  // stderr only ever reaches the debug log, so it is piped only when that log is on
+  private static boolean isStderrPiped() {
+    return GisLog.isDebugEnabled();
+  }
+
+  private static Process launchToScratch(File directory, Path scratch, boolean stderrPiped, String... commands)
+      throws IOException {
+    try {
+      return launch(directory, ProcessBuilder.Redirect.to(scratch.toFile()), stderrPiped, commands);
+    } catch (IOException e) {
+      Files.deleteIfExists(scratch);
+      throw e;
+    }
+  }
+
+  private static <T> CompletableFuture<T> withStderr(Process p, boolean stderrPiped, CompletableFuture<T> result) {
+    if (!stderrPiped) {
+      return result;
+    }
+    return result.thenCombine(GisProcessEngine.drain(p.getErrorStream()), (r, err) -> {
+      if (err.length > 0) {
+        GisLog.debug(new String(err, StandardCharsets.UTF_8));
+      }
+      return r;
+    });
+  }
+
+  private static <T> CompletableFuture<T> track(Process p, File directory, CompletableFuture<T> result) {
+    return GisProcessEngine.track(result, directory, () -> GisProcessEngine.destroyTree(p.toHandle()));
+  }
+}
@@ -0,0 +1,267 @@
+package org.nqm.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.nqm.config.GisLog;
+import org.nqm.model.GisProcessDto;
+
+/**
+ * Forks children from one small long-lived {@code /bin/sh} helper instead of from gis, whose
+ * address space is much bigger when it runs as a JVM jar. gis writes one request per line to
+ * the helper's stdin, the helper starts the command in the background with stdout going to a
+ * scratch file and reports its pid and exit code back over its own stdout.
+ *
+ * <p>Output always travels through scratch files, as with {@code output_capture=file}.
+ */
+final class GisForkServerLauncher implements GisProcessLauncher {
+
+  static final GisForkServerLauncher INSTANCE = new GisForkServerLauncher();
+
+  private GisForkServerLauncher() {}
+
+  private static final String DEV_NULL = "/dev/null";
+
+  private static final String CD_FAILED = "cd-failed";
+
+  // request: <id> <dir> <stdout file> <stderr file> <command>..., every field single-quoted,
+  // an empty <dir> runs in the helper's own directory, which is gis's
+  // replies: '<id> pid <pid>' once started, '<id> exit <code>' once done, '<id> cd-failed'
+  // instead of both when <dir> cannot be entered
+  private static final String SERVER_SCRIPT = """
+      while IFS= read -r request; do
+        eval "set -- $request"
+        id=$1 dir=${2:-.} out=$3 err=$4
+        shift 4
+        if [ ! -d "$dir" ] || [ ! -x "$dir" ]; then
+          echo "$id cd-failed"
+          continue
+        fi
+        { (cd "$dir" && exec "$@") </dev/null >"$out" 2>"$err"; echo "$id exit $?"; } &
+        echo "$id pid $!"
+      done
+      """;
+
+  private static final class Task {
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+    private volatile long pid = -1;
+    private volatile Process server;
+  }
+
+  private final AtomicLong ids = new AtomicLong();
+
+  private final Map<Long, Task> tasks = new ConcurrentHashMap<>();
+
+  private Process server;
+
+  private Writer requests;
+
+  @Override
+  public CompletableFuture<GisProcessDto> start(File directory, String... commands) throws IOException {
+    if (!isExpressible(directory, commands)) {
+      return GisDirectLauncher.INSTANCE.start(directory, commands);
+    }
+    var stdout = GisProcessEngine.createScratch();
+    var stderr = GisLog.isDebugEnabled() ? GisProcessEngine.createScratch() : null;
+    var task = submit(directory, stdout, stderr, commands);
+    var result = task.exit.thenApply(exitCode -> {
+      logStderr(stderr);
+      return new GisProcessDto(GisProcessEngine.readMapped(stdout), exitCode);
+    });
+    result.whenComplete((dto, e) -> deleteScratches(stdout, stderr));
+    return GisProcessEngine.track(result, directory, () -> kill(task));
+  }
+
+  @Override
+  public CompletableFuture<Integer> startStreaming(File directory, LineSink sink, String... commands)
+      throws IOException {
+    if (!isExpressible(directory, commands)) {
+      return GisDirectLauncher.INSTANCE.startStreaming(directory, sink, commands);
+    }
+    var stdout = GisProcessEngine.createScratch();
+    var stderr = GisLog.isDebugEnabled() ? GisProcessEngine.createScratch() : null;
+    var task = submit(directory, stdout, stderr, commands);
+    var result = task.exit.thenApply(exitCode -> {
+      logStderr(stderr);
+      GisProcessEngine.splitMapped(stdout, sink);
+      return exitCode;
+    });
+    result.whenComplete((exitCode, e) -> deleteScratches(stdout, stderr));
+    return GisProcessEngine.track(result, directory, () -> kill(task));
+  }
+
+  @Override
+  public void spawn(File directory, String... commands) throws IOException {
+    if (!isExpressible(directory, commands)) {
+      GisDirectLauncher.INSTANCE.spawn(directory, commands);
+      return;
+    }
+    submit(directory, null, null, commands);
+  }
+
+  // the protocol is line based, so anything carrying a newline goes through a direct fork
+  private static boolean isExpressible(File directory, String... commands) {
+    return Stream.concat(Stream.of(dirOrEmpty(directory)), Stream.of(commands)).noneMatch(s -> s.indexOf('\n') >= 0);
+  }
+
+  /**
+   * Returns once the helper started the command, failing like {@link ProcessBuilder#start}
+   * does when {@code directory} cannot be entered.
+   */
+  private Task submit(File directory, Path stdout, Path stderr, String... commands) throws IOException {
+    var id = ids.incrementAndGet();
+    var task = new Task();
+    tasks.put(id, task);
+    var request = Stream.concat(
+        Stream.of("" + id, dirOrEmpty(directory), pathOrDevNull(stdout), pathOrDevNull(stderr)),
+        Stream.of(commands))
+        .map(GisForkServerLauncher::quote)
+        .collect(Collectors.joining(" "));
+    try {
+      synchronized (this) {
+        var writer = ensureServer();
+        task.server = server;
+        writer.write(request);
+        writer.write('\n');
+        writer.flush();
+      }
+    } catch (IOException e) {
+      tasks.remove(id);
+      throw new IOException("Cannot run program \"%s\" through fork server: %s"
+          .formatted(commands[0], e.getMessage()), e);
+    }
+    try {
+      task.started.get();
+    } catch (ExecutionException e) {
+      throw new IOException("Cannot run program \"%s\" (in directory \"%s\"): %s"
+          .formatted(commands[0], directory, e.getCause().getMessage()), e.getCause());
+    } catch (InterruptedException e) {
+      GisLog.debug(e);
+      Thread.currentThread().interrupt();
+      kill(task);
+      throw new IOException("interrupted while starting \"%s\"".formatted(commands[0]), e);
+    }
+    return task;
+  }
+
+  private Writer ensureServer() throws IOException {
+    if (server == null || !server.isAlive()) {
+      var p = new ProcessBuilder("/bin/sh", "-c", SERVER_SCRIPT)
+          .redirectError(ProcessBuilder.Redirect.DISCARD)
+          .start();
+      Thread.ofVirtual().start(() -> readReplies(p));
+      server = p;
+      requests = new BufferedWriter(new OutputStreamWriter(p.getOutputStream(), StandardCharsets.UTF_8));
+      GisLog.debug("started fork server with pid '%s'".formatted(p.pid()));
+    }
+    return requests;
+  }
+
+  private void readReplies(Process p) {
+    try (var replies = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+      String reply;
+      while ((reply = replies.readLine()) != null) {
+        onReply(reply);
+      }
+    } catch (IOException e) {
+      GisLog.debug(e);
+    }
+    // whatever is still pending on this server will never be answered, a server started
+    // since then keeps its own tasks
+    tasks.values().removeIf(task -> {
+      if (task.server != p) {
+        return false;
+      }
+      var failure = new IOException("fork server exited");
+      task.started.completeExceptionally(failure);
+      task.exit.completeExceptionally(failure);
+      return true;
+    });
+  }
+
+  private void onReply(String reply) {
+    var fields = reply.split(" ", 3);
+    if (fields.length != 3 && !(fields.length == 2 && CD_FAILED.equals(fields[1]))) {
+      GisLog.debug("unexpected fork server reply '%s'".formatted(reply));
+      return;
+    }
+    var id = Long.parseLong(fields[0]);
+    var task = tasks.get(id);
+    if (task == null) {
+      return;
+    }
+    if (CD_FAILED.equals(fields[1])) {
+      tasks.remove(id);
+      var failure = new IOException("No such directory or not accessible");
+      task.started.completeExceptionally(failure);
+      task.exit.completeExceptionally(failure);
+      return;
+    }
+    if ("pid".equals(fields[1])) {
+      task.pid = Long.parseLong(fields[2]);
+      task.started.complete(null);
+      if (task.exit.isDone()) {
+        kill(task);
+      }
+      return;
+    }
+    tasks.remove(id);
+    task.exit.complete(Integer.parseInt(fields[2]));
+  }
+
+  /**
+   * The pid the helper reports is the subshell wrapping the command, so its descendants go
+   * as well. A task cancelled before its pid is known gets killed once the pid arrives.
+   */
+  private void kill(Task task) {
+    task.exit.cancel(true);
+    if (task.pid < 0) {
+      return;
+    }
+    tasks.values().remove(task);
+    ProcessHandle.of(task.pid).ifPresent(GisProcessEngine::destroyTree);
+  }
+
+  private static String dirOrEmpty(File directory) {
+    return directory == null ? "" : "" + directory;
+  }
+
+  private static String pathOrDevNull(Path path) {
+    return path == null ? DEV_NULL : "" + path;
+  }
+
+  static String quote(String s) {
+    return "'" + s.replace("'", "'\\''") + "'";
+  }
+
+  private static void logStderr(Path stderr) {
+    if (stderr == null) {
+      return;
+    }
+    var err = GisProcessEngine.readMapped(stderr);
+    if (GisStringUtils.isNotBlank(err)) {
+      GisLog.debug(err);
+    }
+  }
+
+  private static void deleteScratches(Path stdout, Path stderr) {
+    GisProcessEngine.deleteScratch(stdout);
+    if (stderr != null) {
+      GisProcessEngine.deleteScratch(stderr);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package org.nqm.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cuts raw process output into LF-terminated lines as the bytes arrive, so a line is decoded
+ * on its own and the whole output never has to exist as one string.
+ */
+final class GisLineSplitter {
+
+  private static final byte LF = '\n';
+
+  private final LineSink sink;
+
+  // bytes of a line whose LF has not arrived yet
+  private byte[] pending = new byte[256];
+  private int pendingLength;
+
+  GisLineSplitter(LineSink sink) {
+    this.sink = sink;
+  }
+
+  void feed(byte[] bytes, int offset, int length) {
+    var lineStart = offset;
+    var end = offset + length;
+    for (var i = offset; i < end; i++) {
+      if (bytes[i] == LF) {
+        emit(bytes, lineStart, i - lineStart);
+        lineStart = i + 1;
+      }
+    }
+    keep(bytes, lineStart, end - lineStart);
+  }
+
+  void feed(ByteBuffer buffer) {
+    var chunk = new byte[8192];
+    while (buffer.hasRemaining()) {
+      var length = Math.min(chunk.length, buffer.remaining());
+      buffer.get(chunk, 0, length);
+      feed(chunk, 0, length);
+    }
+  }
+
+  /**
+   * Delivers what is left after the last LF, output does not have to end with one.
+   */
+  void finish() {
+    if (pendingLength > 0) {
+      sink.accept(new String(pending, 0, pendingLength, StandardCharsets.UTF_8));
+      pendingLength = 0;
+    }
+  }
+
+  private void emit(byte[] bytes, int offset, int length) {
+    if (pendingLength == 0) {
+      sink.accept(new String(bytes, offset, length, StandardCharsets.UTF_8));
+      return;
+    }
+    keep(bytes, offset, length);
+    sink.accept(new String(pending, 0, pendingLength, StandardCharsets.UTF_8));
+    pendingLength = 0;
+  }
+
+  private void keep(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return;
+    }
+    if (pendingLength + length > pending.length) {
+      pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+    }
+    System.arraycopy(bytes, offset, pending, pendingLength, length);
+    pendingLength += length;
+  }
+}
@@ -0,0 +1,248 @@
+package org.nqm.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.nqm.GisException;
+import org.nqm.config.GisConfig;
+import org.nqm.config.GisLog;
+import org.nqm.model.GisLauncherMode;
+import org.nqm.model.GisProcessDto;
+
+/**
+ * Single place where gis starts child processes. Results are completed from the exit of the
+ * child instead of a thread blocking in {@link Process#waitFor()}, and stderr is only read
+ * when debug logging wants it. Which {@link GisProcessLauncher} forks the child is chosen
+ * by the {@code process_launcher} config.
+ */
+final class GisProcessEngine {
+
+  private GisProcessEngine() {}
+
+  private static final byte[] NO_BYTES = new byte[0];
+
+  // tmpfs keeps the scratch files of the 'file' capture off the disk
+  private static final Path SHM_DIR = Path.of("/dev/shm");
+
+  private static final int MAX_TREE_SWEEPS = 3;
+
+  // how long a child asked to stop gets to clean up before it is killed
+  static final Duration TERMINATE_GRACE = Duration.ofSeconds(2);
+
+  // a child still in its grace when gis exits is killed on the way out
+  private static final Set<CompletableFuture<Void>> PENDING_KILLS = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(
+        () -> PENDING_KILLS.forEach(CompletableFuture::join)));
+  }
+
+  private static final Map<CompletableFuture<?>, File> LIVE_PROCESSES = new ConcurrentHashMap<>();
+
+  // background children are left out, nobody waits for them
+  private static final Map<File, Long> STARTED = new ConcurrentHashMap<>();
+
+  static CompletableFuture<GisProcessDto> start(File directory, String... commands) throws IOException {
+    countStart(directory);
+    return launcher().start(directory, commands);
+  }
+
+  static CompletableFuture<Integer> startStreaming(File directory, LineSink sink, String... commands)
+      throws IOException {
+    countStart(directory);
+    return launcher().startStreaming(directory, sink, commands);
+  }
+
+  static void spawn(File directory, String... commands) throws IOException {
+    launcher().spawn(directory, commands);
+  }
+
+  // the mode is resolved once by GisConfig, this is only a field read per child
+  private static GisProcessLauncher launcher() {
+    return GisConfig.getProcessLauncher() == GisLauncherMode.helper
+        ? GisForkServerLauncher.INSTANCE
+        : GisDirectLauncher.INSTANCE;
+  }
+
+  private static void countStart(File directory) {
+    STARTED.merge(directory == null ? new File("").getAbsoluteFile() : directory, 1L, Long::sum);
+  }
+
+  static long startedIn(File directory) {
+    return STARTED.getOrDefault(directory, 0L);
+  }
+
+  /**
+   * Registers the result of a child running in {@code directory} until it completes,
+   * {@code destroy} runs when the result is cancelled or fails.
+   */
+  static <T> CompletableFuture<T> track(CompletableFuture<T> result, File directory, Runnable destroy) {
+    LIVE_PROCESSES.put(result, directory == null ? new File("").getAbsoluteFile() : directory);
+    result.whenComplete((r, e) -> {
+      LIVE_PROCESSES.remove(result);
+      if (e != null) {
+        destroy.run();
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Cancelling a derived stage does not reach the stage it was derived from, so the process
+   * behind {@code source} would keep running. This links them back.
+   */
+  static <T, U> CompletableFuture<U> cancelling(CompletableFuture<T> source, CompletableFuture<U> derived) {
+    derived.whenComplete((r, e) -> {
+      if (derived.isCancelled()) {
+        source.cancel(true);
+      }
+    });
+    return derived;
+  }
+
+  /**
+   * Cancels rather than just kills, so whoever waits on a live process sees it aborted
+   * instead of a regular result carrying the kill signal's exit code. What those children
+   * started in turn, and background children, are swept up from the descendants of gis.
+   * Returns once every one of them is gone, at most {@link #TERMINATE_GRACE} later.
+   */
+  static void destroyLiveProcesses() {
+    LIVE_PROCESSES.keySet().forEach(result -> result.cancel(true));
+    destroyTree(ProcessHandle.current()).join();
+  }
+
+  /**
+   * SIGTERM instead of SIGKILL, git removes its lock files on the way out.
+   */
+  static void terminateLiveProcesses() {
+    ProcessHandle.current().descendants().forEach(ProcessHandle::destroy);
+  }
+
+  static void destroyLiveProcessesIn(File directory) {
+    LIVE_PROCESSES.forEach((result, dir) -> {
+      if (dir.equals(directory)) {
+        result.cancel(true);
+      }
+    });
+  }
+
+  /**
+   * Stops the descendants of {@code root} (git-remote-https, ssh, upload-pack...) and then root
+   * itself unless it is gis. They get SIGTERM first, so a git half way through a pull,
+   * checkout, rebase or stash removes its {@code index.lock} and ref locks on the way out;
+   * whatever is still alive after {@link #TERMINATE_GRACE} gets SIGKILL. A child may fork
+   * while the tree is walked, so it is walked again until no new child shows up.
+   *
+   * <p>The future completes once the tree is gone.
+   */
+  static CompletableFuture<Void> destroyTree(ProcessHandle root) {
+    var tree = new LinkedHashSet<ProcessHandle>();
+    for (var round = 0; round < MAX_TREE_SWEEPS; round++) {
+      var found = root.descendants().filter(tree::add).toList();
+      if (found.isEmpty()) {
+        break;
+      }
+      found.forEach(ProcessHandle::destroy);
+    }
+    if (!root.equals(ProcessHandle.current())) {
+      tree.add(root);
+      root.destroy();
+    }
+    var exited = CompletableFuture.allOf(tree.stream().map(ProcessHandle::onExit).toArray(CompletableFuture[]::new));
+    var killed = exited.completeOnTimeout(null, TERMINATE_GRACE.toMillis(), TimeUnit.MILLISECONDS)
+        .thenRun(() -> {
+          // forked after the walk, or reparented once root was gone
+          root.descendants().forEach(tree::add);
+          tree.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+        });
+    PENDING_KILLS.add(killed);
+    killed.whenComplete((r, e) -> PENDING_KILLS.remove(killed));
+    return killed;
+  }
+
+  static CompletableFuture<byte[]> drain(InputStream stream) {
+    var bytes = new CompletableFuture<byte[]>();
+    Thread.ofVirtual().start(() -> {
+      try (stream) {
+        bytes.complete(stream.readAllBytes());
+      } catch (IOException e) {
+        GisLog.debug(e);
+        bytes.complete(NO_BYTES);
+      }
+    });
+    return bytes;
+  }
+
+  static CompletableFuture<Void> pump(InputStream stream, LineSink sink) {
+    var pumped = new CompletableFuture<Void>();
+    Thread.ofVirtual().start(() -> {
+      var splitter = new GisLineSplitter(sink);
+      var chunk = new byte[8192];
+      try (stream) {
+        int read;
+        while ((read = stream.read(chunk)) != -1) {
+          splitter.feed(chunk, 0, read);
+        }
+        splitter.finish();
+        pumped.complete(null);
+      } catch (IOException e) {
+        GisLog.debug(e);
+        pumped.complete(null);
+      } catch (RuntimeException e) {
+        pumped.completeExceptionally(e);
+      }
+    });
+    return pumped;
+  }
+
+  static Path createScratch() throws IOException {
+    var dir = Files.isDirectory(SHM_DIR) && Files.isWritable(SHM_DIR)
+        ? SHM_DIR
+        : Path.of(System.getProperty("java.io.tmpdir"));
+    return Files.createTempFile(dir, "gis-", ".out");
+  }
+
+  static String readMapped(Path file) {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size == 0) {
+        return "";
+      }
+      return StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).toString();
+    } catch (IOException e) {
+      GisLog.debug(e);
+      throw new GisException("Could not read output of process: " + e.getMessage());
+    }
+  }
+
+  static void splitMapped(Path file, LineSink sink) {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var splitter = new GisLineSplitter(sink);
+      splitter.feed(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      splitter.finish();
+    } catch (IOException e) {
+      GisLog.debug(e);
+      throw new GisException("Could not read output of process: " + e.getMessage());
+    }
+  }
+
+  static void deleteScratch(Path scratch) {
+    try {
+      Files.deleteIfExists(scratch);
+    } catch (IOException e) {
+      GisLog.debug(e);
+    }
+  }
+}
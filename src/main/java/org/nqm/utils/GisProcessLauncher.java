@@ -0,0 +1,20 @@
+package org.nqm.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import org.nqm.model.GisProcessDto;
+
+/**
+ * How a child process actually gets forked. Every implementation registers what it starts
+ * with {@link GisProcessEngine#track} so aborting a run reaches it.
+ */
+interface GisProcessLauncher {
+
+  CompletableFuture<GisProcessDto> start(File directory, String... commands) throws IOException;
+
+  CompletableFuture<Integer> startStreaming(File directory, LineSink sink, String... commands) throws IOException;
+
+  void spawn(File directory, String... commands) throws IOException;
+
+}
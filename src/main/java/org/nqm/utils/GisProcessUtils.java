@@ -3,8 +3,8 @@ package org.nqm.utils;
 import static org.nqm.utils.StdOutUtils.warnln;
 import java.io.File;
 import java.io.IOException;
-import java.io.ByteArrayOutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.nqm.config.GisLog;
 import org.nqm.model.GisProcessDto;
 
@@ -23,6 +23,10 @@ public class GisProcessUtils {
     dryRunEnabled = b;
   }
 
+  public static boolean dryRunEnabled() {
+    return dryRunEnabled;
+  }
+
   public static boolean anyProcessFailed() {
     return anyProcessFailed;
   }
@@ -31,6 +35,13 @@ public class GisProcessUtils {
     anyProcessFailed = false;
   }
 
+  /**
+   * For failures gis detects itself rather than through a child's exit code.
+   */
+  public static void recordProcessFailure() {
+    anyProcessFailed = true;
+  }
+
   private static void debugLogIfExitCodeNotZero(int exitCode, File directory) {
     if (exitCode == 0) {
       return;
@@ -40,107 +51,115 @@ public class GisProcessUtils {
     warnln(WARN_MSG_FMT.formatted(directory.getName()));
   }
 
-  public static GisProcessDto run(File directory, String... commands)
-      throws IOException, InterruptedException {
+  public static CompletableFuture<GisProcessDto> runAsync(File directory, String... commands) throws IOException {
     if (dryRunEnabled) {
       StdOutUtils.println(String.join(" ", commands));
-      return GisProcessDto.EMPTY;
+      return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
     }
-    var pb = new ProcessBuilder(commands).directory(directory);
-    var p = pb.start();
-
-    var outBaos = new ByteArrayOutputStream();
-    var errBaos = new ByteArrayOutputStream();
-
-    var tOut = Thread.ofVirtual().start(() -> {
-      try (var is = p.getInputStream()) {
-        is.transferTo(outBaos);
-      } catch (IOException e) {
-        GisLog.debug(e);
-      }
-    });
-
-    var tErr = Thread.ofVirtual().start(() -> {
-      try (var es = p.getErrorStream()) {
-        es.transferTo(errBaos);
-      } catch (IOException e) {
-        GisLog.debug(e);
-      }
-    });
+    var process = GisProcessEngine.start(directory, commands);
+    return GisProcessEngine.cancelling(process, process.thenApply(result -> {
+      debugLogIfExitCodeNotZero(result.exitCode(), directory);
+      return result;
+    }));
+  }
 
-    int exitCode;
-    try {
-      exitCode = p.waitFor();
-      tOut.join();
-      tErr.join();
-    } catch (InterruptedException e) {
-      p.destroyForcibly();
-      throw e;
+  public static CompletableFuture<GisProcessDto> quickRunAsync(File directory, String... commands)
+      throws IOException {
+    if (dryRunEnabled) {
+      StdOutUtils.println(String.join(" ", commands));
+      return CompletableFuture.completedFuture(GisProcessDto.EMPTY);
     }
+    return GisProcessEngine.start(directory, commands);
+  }
 
-    debugLogIfExitCodeNotZero(exitCode, directory);
-    var stdout = outBaos.toString(StandardCharsets.UTF_8);
-    var stderr = errBaos.toString(StandardCharsets.UTF_8);
-    if (GisStringUtils.isNotBlank(stderr)) {
-      GisLog.debug(stderr);
+  /**
+   * Like {@link #runAsync} but hands stdout to {@code sink} line by line while it arrives
+   * instead of collecting it, the future only carries the exit code.
+   */
+  public static CompletableFuture<Integer> runStreamingAsync(File directory, LineSink sink, String... commands)
+      throws IOException {
+    if (dryRunEnabled) {
+      StdOutUtils.println(String.join(" ", commands));
+      return CompletableFuture.completedFuture(0);
     }
-    return new GisProcessDto(stdout, exitCode);
+    var process = GisProcessEngine.startStreaming(directory, sink, commands);
+    return GisProcessEngine.cancelling(process, process.thenApply(exitCode -> {
+      debugLogIfExitCodeNotZero(exitCode, directory);
+      return exitCode;
+    }));
+  }
+
+  public static int runStreaming(File directory, LineSink sink, String... commands)
+      throws IOException, InterruptedException {
+    return await(runStreamingAsync(directory, sink, commands));
+  }
+
+  public static GisProcessDto run(File directory, String... commands)
+      throws IOException, InterruptedException {
+    return await(runAsync(directory, commands));
   }
 
   public static GisProcessDto quickRun(File directory, String... commands) throws IOException, InterruptedException {
+    return await(quickRunAsync(directory, commands));
+  }
+
+  public static void spawn(File directory, String... commands) throws IOException {
     if (dryRunEnabled) {
       StdOutUtils.println(String.join(" ", commands));
-      return GisProcessDto.EMPTY;
+      return;
     }
-    var pb = new ProcessBuilder(commands).directory(directory);
-    var p = pb.start();
+    GisProcessEngine.spawn(directory, commands);
+  }
 
-    var outBaos = new ByteArrayOutputStream();
-    var errBaos = new ByteArrayOutputStream();
+  /**
+   * Kills every child gis started that has not exited yet, including background processes
+   * from {@link #spawn} and whatever the children started themselves. They are asked to stop
+   * first and only killed if they are still there a moment later, so git removes its lock files.
+   */
+  public static void destroyLiveProcesses() {
+    GisProcessEngine.destroyLiveProcesses();
+  }
 
-    var tOut = Thread.ofVirtual().start(() -> {
-      try (var is = p.getInputStream()) {
-        is.transferTo(outBaos);
-      } catch (IOException e) {
-        GisLog.debug(e);
-      }
-    });
+  /**
+   * Asks every child to stop rather than killing it, so a git that is half way through
+   * changing a repository can clean up after itself.
+   */
+  public static void terminateLiveProcesses() {
+    GisProcessEngine.terminateLiveProcesses();
+  }
 
-    var tErr = Thread.ofVirtual().start(() -> {
-      try (var es = p.getErrorStream()) {
-        es.transferTo(errBaos);
-      } catch (IOException e) {
-        GisLog.debug(e);
-      }
-    });
+  /**
+   * Kills the children still running in {@code directory}, and what they started, the same
+   * way as {@link #destroyLiveProcesses()}. Returns without waiting for them to be gone.
+   */
+  public static void destroyLiveProcessesIn(File directory) {
+    GisProcessEngine.destroyLiveProcessesIn(directory);
+  }
+
+  /**
+   * How many children gis waited on were started in {@code directory} so far, background ones
+   * not counted.
+   */
+  public static long processesStartedIn(File directory) {
+    return GisProcessEngine.startedIn(directory);
+  }
 
-    int exitCode;
+  private static <T> T await(CompletableFuture<T> result)
+      throws IOException, InterruptedException {
     try {
-      exitCode = p.waitFor();
-      tOut.join();
-      tErr.join();
+      return result.get();
     } catch (InterruptedException e) {
-      p.destroyForcibly();
+      result.cancel(true);
       throw e;
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      if (cause instanceof IOException ioe) {
+        throw ioe;
+      }
+      if (cause instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IOException(cause);
     }
-
-    var stdout = outBaos.toString(StandardCharsets.UTF_8);
-    var stderr = errBaos.toString(StandardCharsets.UTF_8);
-    if (GisStringUtils.isNotBlank(stderr)) {
-      GisLog.debug(stderr);
-    }
-    return new GisProcessDto(stdout, exitCode);
-  }
-
-  public static void spawn(File directory, String... commands) throws IOException {
-    if (dryRunEnabled) {
-      StdOutUtils.println(String.join(" ", commands));
-      return;
-    }
-    new ProcessBuilder(commands)
-        .directory(directory)
-        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
-        .redirectError(ProcessBuilder.Redirect.DISCARD)
-        .start();
   }
 }
@@ -0,0 +1,12 @@
+package org.nqm.utils;
+
+/**
+ * Receives the output of a process one line at a time, without the trailing LF, in the
+ * order the process wrote them. Lines of one process are never delivered concurrently.
+ */
+@FunctionalInterface
+public interface LineSink {
+
+  void accept(String line);
+
+}
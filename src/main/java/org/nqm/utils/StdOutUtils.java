@@ -4,6 +4,8 @@ import static java.lang.System.err; // NOSONAR
 import static java.lang.System.out; // NOSONAR
 import static java.util.function.Predicate.not;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -60,6 +62,13 @@ public class StdOutUtils {
     return "%s".formatted(CL_CYAN + word + CL_RESET);
   }
 
+  /**
+   * {@code branch} colored as the status of a module shows it.
+   */
+  public static String branchf(String branch) {
+    return coloringBranch(branch);
+  }
+
   private static String coloringBranch(String branch) {
     if (Stream.of(GisConfig.getDefaultBranches()).anyMatch(branch::equals)) {
       return coloringWord(branch, CL_RED);
@@ -265,6 +274,67 @@ public class StdOutUtils {
         + coloringFile(extractPaths(line), extractFile(line), isRootModule, rootModuleName);
   }
 
+  /**
+   * A module's last commit, shown after its branch: on a line of its own, or in parentheses
+   * with {@code oneLine}.
+   */
+  public static String gitLastCommit(String oid, String subject, long commitTime, boolean oneLine) {
+    var age = relativeAge(Instant.ofEpochSecond(commitTime), Instant.now());
+    if (oneLine) {
+      return " " + coloringWord("(%s, %s)".formatted(subject, age), CL_GRAY);
+    }
+    return "\n  " + coloringWord(oid.substring(0, Math.min(7, oid.length())), CL_YELLOW)
+        + " " + subject + " " + coloringWord("(%s)".formatted(age), CL_GRAY);
+  }
+
+  /**
+   * How long ago {@code then} was, rounded the way {@code git log --date=relative} does.
+   */
+  static String relativeAge(Instant then, Instant now) {
+    var seconds = Duration.between(then, now).getSeconds();
+    if (seconds < 0) {
+      return "in the future";
+    }
+    if (seconds < 90) {
+      return ago(seconds, "second");
+    }
+    var minutes = (seconds + 30) / 60;
+    if (minutes < 90) {
+      return ago(minutes, "minute");
+    }
+    var hours = (minutes + 30) / 60;
+    if (hours < 36) {
+      return ago(hours, "hour");
+    }
+    var days = (hours + 12) / 24;
+    if (days < 14) {
+      return ago(days, "day");
+    }
+    if (days < 70) {
+      return ago((days + 3) / 7, "week");
+    }
+    if (days < 365) {
+      return ago((days + 15) / 30, "month");
+    }
+    if (days < 5 * 365) {
+      var totalMonths = (days * 12 * 2 + 365) / (365 * 2);
+      var years = totalMonths / 12;
+      var months = totalMonths % 12;
+      return months == 0
+          ? ago(years, "year")
+          : "%s, %s".formatted(count(years, "year"), ago(months, "month"));
+    }
+    return ago((days + 183) / 365, "year");
+  }
+
+  private static String ago(long n, String unit) {
+    return count(n, unit) + " ago";
+  }
+
+  private static String count(long n, String unit) {
+    return "%d %s%s".formatted(n, unit, n == 1 ? "" : "s");
+  }
+
   public static String gitStatusOneLine(String line, boolean isRootModule) {
     return gitStatusOneLine(line, isRootModule, "");
   }
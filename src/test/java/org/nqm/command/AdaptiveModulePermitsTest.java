@@ -0,0 +1,167 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.nqm.command.AdaptiveModulePermits.Pressure;
+
+class AdaptiveModulePermitsTest {
+
+  private final AtomicReference<Pressure> pressure = new AtomicReference<>(Pressure.NONE);
+  private final AtomicLong clock = new AtomicLong();
+
+  private AdaptiveModulePermits permits(int max) {
+    return new AdaptiveModulePermits(max, pressure::get, clock::get);
+  }
+
+  private void complete(ModulePermits permits, long latencyMillis, long expectedMillis)
+      throws InterruptedException {
+    assertThat(permits.acquire(TimeUnit.SECONDS.toNanos(1))).isTrue();
+    clock.addAndGet(latencyMillis);
+    permits.release(TimeUnit.MILLISECONDS.toNanos(latencyMillis), TimeUnit.MILLISECONDS.toNanos(expectedMillis));
+  }
+
+  @Test
+  void limit_withSteadyLatency_growsAdditivelyUpToMax() throws InterruptedException {
+    // given:
+    var permits = permits(16);
+    assertThat(permits.limit()).isEqualTo(4);
+
+    // when:
+    for (var i = 0; i < 5; i++) {
+      complete(permits, 100, 100);
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(5);
+
+    // when:
+    for (var i = 0; i < 500; i++) {
+      complete(permits, 100, 100);
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(16);
+  }
+
+  @Test
+  void limit_withIoPressure_isHalved() throws InterruptedException {
+    // given:
+    var permits = permits(16);
+    for (var i = 0; i < 500; i++) {
+      complete(permits, 100, 100);
+    }
+    assertThat(permits.limit()).isEqualTo(16);
+
+    // when:
+    pressure.set(new Pressure(75.0, 0));
+    complete(permits, 1000, 100);
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(8);
+  }
+
+  @Test
+  void limit_withInflatedLatency_decreasesOncePerLatency() throws InterruptedException {
+    // given:
+    var permits = permits(16);
+    for (var i = 0; i < 500; i++) {
+      complete(permits, 50, 50);
+    }
+
+    // when:
+    for (var i = 0; i < 20; i++) {
+      complete(permits, 500, 50);
+    }
+
+    // then:
+    assertThat(permits.limit()).isBetween(1, 8);
+  }
+
+  @Test
+  void limit_withModulesOfDifferentSizes_growsUpToMax() throws InterruptedException {
+    // given:
+    var permits = permits(16);
+
+    // when:
+    for (var i = 0; i < 250; i++) {
+      complete(permits, 30, 30);
+      complete(permits, 3000, 3000);
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(16);
+  }
+
+  @Test
+  void limit_withModulesWithoutGit_staysPut() throws InterruptedException {
+    // given:
+    var permits = permits(16);
+
+    // when:
+    for (var i = 0; i < 100; i++) {
+      assertThat(permits.acquire(TimeUnit.SECONDS.toNanos(1))).isTrue();
+      permits.release();
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(4);
+
+    // when:
+    for (var i = 0; i < 500; i++) {
+      complete(permits, 400, 400);
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(16);
+  }
+
+  @Test
+  void limit_withoutTimings_followsPressureOnly() throws InterruptedException {
+    // given:
+    var permits = permits(16);
+
+    // when:
+    for (var i = 0; i < 500; i++) {
+      complete(permits, i % 2 == 0 ? 1 : 2000, -1);
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(16);
+
+    // when:
+    pressure.set(new Pressure(75.0, 0));
+    complete(permits, 2000, -1);
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(8);
+  }
+
+  @Test
+  void limit_neverDropsBelowOne() throws InterruptedException {
+    // given:
+    var permits = permits(2);
+    pressure.set(new Pressure(0, 99.0));
+
+    // when:
+    for (var i = 0; i < 50; i++) {
+      complete(permits, 1000, 100);
+    }
+
+    // then:
+    assertThat(permits.limit()).isEqualTo(1);
+  }
+
+  @Test
+  void parseSomeAvg10_OK() {
+    var psi = """
+        some avg10=12.50 avg60=3.00 avg300=0.80 total=123456
+        full avg10=4.00 avg60=1.00 avg300=0.20 total=65432
+        """;
+    assertThat(AdaptiveModulePermits.parseSomeAvg10(psi)).isEqualTo(12.5);
+    assertThat(AdaptiveModulePermits.parseSomeAvg10("")).isZero();
+    assertThat(AdaptiveModulePermits.parseSomeAvg10("some avg10=abc")).isZero();
+  }
+}
@@ -0,0 +1,61 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.nqm.git.GitBranches.FastForward;
+import org.nqm.git.GitBranches.FastForward.Outcome;
+import org.nqm.model.GisProcessDto;
+
+class BranchSyncTest {
+
+  private static String plain(String line) {
+    return line.replaceAll("\u001B\\[[0-9;]*m", "");
+  }
+
+  @Test
+  void report_OK() {
+    // given:
+    var sync = new BranchSync("master", "develop", "main");
+    sync.record(Path.of("/ws/a"), "master", new FastForward(Outcome.FAST_FORWARDED, 0, 3));
+    sync.record(Path.of("/ws/b"), "master", new FastForward(Outcome.UP_TO_DATE, 0, 0));
+    sync.record(Path.of("/ws/c"), "master", new FastForward(Outcome.CHECKED_OUT, 0, 1));
+    sync.record(Path.of("/ws/d"), "master", new FastForward(Outcome.FAST_FORWARDED, 0, 0));
+    sync.record(Path.of("/ws/a"), "develop", new FastForward(Outcome.DIVERGED, 2, 5));
+    sync.recordFailure(Path.of("/ws/b"), "develop");
+    sync.record(Path.of("/ws/c"), "develop", new FastForward(Outcome.NO_UPSTREAM, 0, 0));
+    sync.record(Path.of("/ws/a"), "main", new FastForward(Outcome.ABSENT, 0, 0));
+
+    // when:
+    var report = sync.report().stream().map(BranchSyncTest::plain).toList();
+
+    // then:
+    assertThat(report).containsExactly(
+        "'master': 2 fast-forwarded, 1 up to date, 1 checked out (pull them)",
+        "'develop': 0 fast-forwarded, 0 up to date, 1 without upstream, 1 diverged, 1 failed",
+        "diverged from upstream:",
+        "  a develop: ahead 2, behind 5");
+  }
+
+  @Test
+  void outcomeOf_readsPorcelainPush() {
+    // given:
+    var ref = "dev@{upstream}:refs/heads/dev";
+
+    // when + then:
+    assertThat(BranchSync.outcomeOf(push(" \t%s\tb0ececb..7cb3a20".formatted(ref), 0)))
+        .contains(Outcome.FAST_FORWARDED);
+    assertThat(BranchSync.outcomeOf(push("=\t%s\t[up to date]".formatted(ref), 0)))
+        .contains(Outcome.UP_TO_DATE);
+    assertThat(BranchSync.outcomeOf(push("!\t%s\t[rejected] (non-fast-forward)".formatted(ref), 1)))
+        .contains(Outcome.DIVERGED);
+    assertThat(BranchSync.outcomeOf(push("!\t%s\t[remote rejected] (branch is currently checked out)"
+        .formatted(ref), 1))).contains(Outcome.CHECKED_OUT);
+    assertThat(BranchSync.outcomeOf(new GisProcessDto("dev", 128))).isEmpty();
+  }
+
+  // as the module's printer renders git's output
+  private static GisProcessDto push(String statusLine, int exitCode) {
+    return new GisProcessDto("dev%n  To .%n  %s%n  Done".formatted(statusLine), exitCode);
+  }
+}
@@ -0,0 +1,79 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nqm.command.CheckoutPlan.Step;
+
+class CheckoutPlanTest {
+
+  private static final String OID = "9fceb02d0ae598e95dc970b74767f19372d61af8";
+
+  @TempDir
+  private Path tempPath;
+
+  private Path module(String name, String head, String... branches) throws IOException {
+    var module = tempPath.resolve(name);
+    var gitDir = Files.createDirectories(module.resolve(".git"));
+    Files.writeString(gitDir.resolve("HEAD"), "ref: refs/heads/" + head + "\n");
+    for (var branch : branches) {
+      var ref = gitDir.resolve("refs/heads/" + branch);
+      Files.createDirectories(ref.getParent());
+      Files.writeString(ref, OID + "\n");
+    }
+    return module;
+  }
+
+  @Test
+  void classify_OK() throws IOException {
+    // given:
+    var plan = new CheckoutPlan("develop");
+    var onBranch = module("on-branch", "develop", "develop");
+    var missing = module("missing", "master", "master");
+    var needsCheckout = module("needs-checkout", "master", "master", "develop");
+    var notARepo = Files.createDirectories(tempPath.resolve("not-a-repo"));
+
+    // when + then:
+    assertThat(plan.classify(onBranch)).isEqualTo(Step.ON_BRANCH);
+    assertThat(plan.classify(missing)).isEqualTo(Step.MISSING);
+    assertThat(plan.classify(needsCheckout)).isEqualTo(Step.CHECKOUT);
+    assertThat(plan.classify(notARepo)).isEqualTo(Step.CHECKOUT);
+  }
+
+  @Test
+  void classify_withPathOfSameName_leavesItToGit() throws IOException {
+    // given:
+    var plan = new CheckoutPlan("develop");
+    var module = module("module", "master", "master");
+    Files.writeString(module.resolve("develop"), "a file, not a branch");
+
+    // when + then:
+    assertThat(plan.classify(module)).isEqualTo(Step.CHECKOUT);
+  }
+
+  @Test
+  void summary_OK() throws IOException {
+    // given:
+    var plan = new CheckoutPlan("develop");
+    plan.classify(module("a", "develop", "develop"));
+    plan.classify(module("b", "master", "master"));
+    plan.classify(module("c", "master", "master"));
+    var d = module("d", "master", "master", "develop");
+    plan.classify(d);
+    plan.checkedOut(d, true);
+
+    // when:
+    var summary = plan.summary();
+
+    // then:
+    assertThat(summary)
+        .contains("'develop'")
+        .contains("1 checked out")
+        .contains("1 already on it")
+        .contains("2 without it: b, c")
+        .doesNotContain("failed");
+  }
+}
@@ -45,7 +45,7 @@ class CommandVerticleTest extends StdBaseTest {
   @Test
   void execute_withSimpleCommand_OK() {
     // given:
-    GisProcessUtilsMock.mockRun(
+    GisProcessUtilsMock.mockRunStreaming(
         new GisProcessDto("On branch master", 0),
         tempPath.toFile(),
         GIT_HOME_DIR, "status");
@@ -61,7 +61,7 @@ class CommandVerticleTest extends StdBaseTest {
   @Test
   void executeSimpleCommand_withGisOption1_OK() {
     // given:
-    GisProcessUtilsMock.mockRun(
+    GisProcessUtilsMock.mockRunStreaming(
         new GisProcessDto("""
             ## test-prune-local
             """, 0),
@@ -84,7 +84,7 @@ class CommandVerticleTest extends StdBaseTest {
     GisConfigMock.mockCurrentDirectory("" + tempPath);
     GisConfigMock.mockBranchesColorDefault();
     GisConfigMock.mockDontCareFiles("pom.xml");
-    GisProcessUtilsMock.mockRun(
+    GisProcessUtilsMock.mockRunStreaming(
         new GisProcessDto("""
             ## master
              M pom.xml
@@ -110,7 +110,7 @@ class CommandVerticleTest extends StdBaseTest {
     GisConfigMock.mockCurrentDirectory("" + srcPath);
     GisConfigMock.mockBranchesColorDefault();
     GisConfigMock.mockDontCareFiles("mem-console");
-    GisProcessUtilsMock.mockRun(
+    GisProcessUtilsMock.mockRunStreaming(
         new GisProcessDto("""
             ## oc_develop...origin/oc_develop
             ?? src/mem-console/
@@ -146,7 +146,7 @@ class CommandVerticleTest extends StdBaseTest {
         %s
         """.formatted(f3WithoutTmpAndRoot, f2WithoutTmpAndRoot, f1WithoutTmpAndProject);
 
-    GisProcessUtilsMock.mockRun(
+    GisProcessUtilsMock.mockRunStreaming(
         new GisProcessDto(output, 0),
         tempPath.toFile(),
         GIT_HOME_DIR, "diff", "--name-only");
@@ -175,7 +175,7 @@ class CommandVerticleTest extends StdBaseTest {
   @Test
   void execute_withNotStatusCommand_OK() {
     // given:
-    GisProcessUtilsMock.mockRun(
+    GisProcessUtilsMock.mockRunStreaming(
         new GisProcessDto("Already up to date.", 0),
         tempPath.toFile(),
         GIT_HOME_DIR, "pull");
@@ -191,7 +191,7 @@ class CommandVerticleTest extends StdBaseTest {
   @Test
   void execute_withInterruptedException_NOK() {
     // given:
-    GisProcessUtilsMock.mockRunThrowException(
+    GisProcessUtilsMock.mockRunStreamingThrowException(
         new InterruptedException("youre hackedd!!!"), tempPath.toFile(), GIT_HOME_DIR, "pull");
 
     // when:
@@ -203,7 +203,7 @@ class CommandVerticleTest extends StdBaseTest {
   @Test
   void execute_withIOException_NOK() {
     // given:
-    GisProcessUtilsMock.mockRunThrowException(
+    GisProcessUtilsMock.mockRunStreamingThrowException(
         new IOException("you be hacke"), tempPath.toFile(), GIT_HOME_DIR, "pull");
 
     // when:
@@ -224,7 +224,7 @@ class CommandVerticleTest extends StdBaseTest {
   @Test
   void executeGisFiles_OK() throws IOException {
     // given:
-    new GitCommand().init();
+    new GitCommand().init(null);
     GitBaseTest.git(tempPath, "init");
     GitBaseTest.scrambleFiles(List.of(tempPath));
     resetOutputStreamTest();
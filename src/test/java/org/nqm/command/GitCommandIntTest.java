@@ -44,7 +44,7 @@ class GitCommandIntTest extends GitBaseTest {
     create_clone_gitRepositories("pub_1_w", "pub_2_r", "pub_3_p");
 
     // when:
-    gis.init();
+    gis.init(null);
 
     // then:
     assertThat(Files.readAllLines(tempPath.resolve(".gis-modules"), UTF_8))
@@ -55,7 +55,7 @@ class GitCommandIntTest extends GitBaseTest {
   void pull_OK() throws IOException {
     // given:
     create_clone_gitRepositories("sub_1_w", "sub_2_r", "sub_3_p");
-    gis.init();
+    gis.init(null);
 
     // when:
     gis.pull();
@@ -69,7 +69,7 @@ class GitCommandIntTest extends GitBaseTest {
   void fetch_OK() throws IOException {
     // given:
     create_clone_gitRepositories("sub_4_w", "sub_5_r", "sub_6_p");
-    gis.init();
+    gis.init(null);
 
     // when:
     gis.fetchStatus(false, null);
@@ -109,7 +109,7 @@ class GitCommandIntTest extends GitBaseTest {
   void listBranches_withEmptyModifiedFiles_OK() throws IOException {
     // given:
     create_clone_gitRepositories("sub_7_w", "sub_8_r", "sub_9_p");
-    gis.init();
+    gis.init(null);
 
     // when:
     gis.listBranches(false, false);
@@ -124,8 +124,8 @@ class GitCommandIntTest extends GitBaseTest {
     // given:
     var repos = create_clone_gitRepositories("ype_7_i", "ype_8_ii", "ype_9_iii");
     commitFile(repos);
-    gis.init();
-    gis.spinOff("bb1");
+    gis.init(null);
+    gis.spinOff("bb1", new String[] {}, false);
     commitFile(repos);
     resetOutputStreamTest();
 
@@ -152,8 +152,8 @@ class GitCommandIntTest extends GitBaseTest {
     // given:
     var repos = create_clone_gitRepositories("opu_7_i", "opu_8_ii", "opu_9_iii");
     commitFile(repos);
-    gis.init();
-    gis.spinOff("bb1");
+    gis.init(null);
+    gis.spinOff("bb1", new String[] {}, false);
     commitFile(repos);
     resetOutputStreamTest();
 
@@ -169,13 +169,13 @@ class GitCommandIntTest extends GitBaseTest {
     // given:
     var repos = create_clone_gitRepositories("opu_7_i", "opu_8_ii", "opu_9_iii");
     commitFile(repos);
-    gis.init();
-    gis.spinOff("bb1");
+    gis.init(null);
+    gis.spinOff("bb1", new String[] {}, false);
     commitFile(repos);
     System.setIn(new ByteArrayInputStream("y".getBytes()));
     gis.push("bb1", true, true, false);
 
-    gis.spinOff("bb2");
+    gis.spinOff("bb2", new String[] {}, false);
     commitFile(repos);
     System.setIn(new ByteArrayInputStream("yeS".getBytes()));
     gis.push("bb2", true, true, false);
@@ -198,7 +198,7 @@ class GitCommandIntTest extends GitBaseTest {
   void listFilesChanged_OK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("otq_1_a", "otq_2_b", "otq_3_c");
-    gis.init();
+    gis.init(null);
     scrambleFiles(repos);
     resetOutputStreamTest();
 
@@ -217,8 +217,8 @@ class GitCommandIntTest extends GitBaseTest {
     // given:
     var repos = create_clone_gitRepositories("qqq_7_i", "qqq_8_ii", "qqq_9_iii");
     commitFile(repos);
-    gis.init();
-    gis.spinOff("new_master");
+    gis.init(null);
+    gis.spinOff("new_master", new String[] {}, false);
     commitFile(repos);
     resetOutputStreamTest();
 
@@ -242,14 +242,14 @@ class GitCommandIntTest extends GitBaseTest {
   void checkoutNewBranch_OK() throws IOException {
     // given:
     create_clone_gitRepositories("two_1_i", "two_2_ii", "two_3_iii");
-    gis.init();
+    gis.init(null);
 
     // when:
-    gis.spinOff("nwebra");
+    gis.spinOff("nwebra", new String[] {}, false);
 
     // then:
     resetOutputStreamTest();
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
     assertThat(stripColors.apply(outCaptor.toString())).contains(
         "" + tempPath.getFileName(),
         "two_1_i nwebra",
@@ -261,14 +261,14 @@ class GitCommandIntTest extends GitBaseTest {
   void checkoutNewBranch_withEmptyArrayModules_OK() throws IOException {
     // given:
     create_clone_gitRepositories("two_4_i", "two_5_ii", "two_6_iii");
-    gis.init();
+    gis.init(null);
 
     // when:
-    gis.spinOff("nwebra", new String[] {});
+    gis.spinOff("nwebra", new String[] {}, false);
 
     // then:
     resetOutputStreamTest();
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
     assertThat(stripColors.apply(outCaptor.toString())).contains(
         "" + tempPath.getFileName(),
         "two_4_i nwebra",
@@ -280,14 +280,14 @@ class GitCommandIntTest extends GitBaseTest {
   void checkoutNewBranch_withSpecifiedModules_OK() throws IOException {
     // given:
     create_clone_gitRepositories("two_1_y", "two_2_yy", "two_3_yyy");
-    gis.init();
+    gis.init(null);
 
     // when:
-    gis.spinOff("batabranch", "two_2_yy", "two_3_yyy");
+    gis.spinOff("batabranch", new String[] {"two_2_yy", "two_3_yyy"}, false);
 
     // then:
     resetOutputStreamTest();
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
         "" + tempPath.getFileName(),
         "two_1_y master",
@@ -305,11 +305,11 @@ class GitCommandIntTest extends GitBaseTest {
 
     // when:
     var rootModule = "" + tempPath.getFileName();
-    gis.spinOff("batabranch", "two_2_hh", rootModule);
+    gis.spinOff("batabranch", new String[] {"two_2_hh", rootModule}, false);
 
     // then:
     resetOutputStreamTest();
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
     assertThat(stripColors.apply(outCaptor.toString())).contains(
         rootModule + " batabranch .gitmodules two_1_h two_2_hh two_3_hhh",
         "two_1_h master",
@@ -322,7 +322,7 @@ class GitCommandIntTest extends GitBaseTest {
     // given:
     var repos = create_clone_gitRepositories("xcom_1_h", "xcom_2_hh", "xcom_3_hhh");
     commitFile(repos);
-    gis.init();
+    gis.init(null);
     resetOutputStreamTest();
 
     // when:
@@ -347,7 +347,7 @@ class GitCommandIntTest extends GitBaseTest {
     // given:
     var repos = create_clone_gitRepositories("hori_1_h", "hori_2_hh", "hori_3_hhh");
     commitFile(repos);
-    gis.init();
+    gis.init(null);
     resetOutputStreamTest();
 
     // when:
@@ -367,7 +367,7 @@ class GitCommandIntTest extends GitBaseTest {
   void pushOrigin_withoutSettingRemote_OK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("xcom_1_h", "xcom_2_hh", "xcom_3_hhh");
-    gis.init();
+    gis.init(null);
     commitFile(repos);
     resetOutputStreamTest();
 
@@ -388,8 +388,8 @@ class GitCommandIntTest extends GitBaseTest {
   void pushOrigin_withSpecifiedRepos_OK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("batpo_1_h", "batpo_2_hh", "batpo_3_hhh");
-    gis.init();
-    gis.spinOff("batabranch", "batpo_1_h", "batpo_3_hhh");
+    gis.init(null);
+    gis.spinOff("batabranch", new String[] {"batpo_1_h", "batpo_3_hhh"}, false);
     commitFile(repos);
     resetOutputStreamTest();
 
@@ -411,10 +411,12 @@ class GitCommandIntTest extends GitBaseTest {
   void pushOrigin_withIOException_NOK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("batpo_1_h", "batpo_2_hh", "batpo_3_hhh");
-    gis.init();
-    gis.spinOff("batabranch", "batpo_1_h", "batpo_3_hhh");
+    gis.init(null);
+    gis.spinOff("batabranch", new String[] {"batpo_1_h", "batpo_3_hhh"}, false);
     commitFile(repos);
     resetOutputStreamTest();
+    // HEAD the resolver does not understand, so the current branch is asked from git
+    Files.writeString(tempPath.resolve(".git/HEAD"), "garbage");
     GisProcessUtilsMock.mockQuickRunThrowException(new IOException("nope!!,"), tempPath.toFile(),
         GIT_HOME_DIR, "branch", "--show-current");
 
@@ -429,18 +431,18 @@ class GitCommandIntTest extends GitBaseTest {
   void checkout_OK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("tppo_1_b", "tppo_2_bb", "tppo_3_bbb");
-    gis.init();
-    gis.spinOff("batabranch");
+    gis.init(null);
+    gis.spinOff("batabranch", new String[] {}, false);
     commitFile(repos);
-    gis.spinOff("master");
+    gis.spinOff("master", new String[] {}, false);
     commitFile(repos);
 
     // when:
-    gis.checkout("batabranch");
+    gis.checkout("batabranch", false);
     resetOutputStreamTest();
 
     // then:
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
     assertThat(stripColors.apply(outCaptor.toString())).contains(
         "tppo_1_b batabranch",
         "tppo_2_bb batabranch",
@@ -452,12 +454,12 @@ class GitCommandIntTest extends GitBaseTest {
   void stash_OK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("pom_1_x", "pom_2_xx", "pom_3_xxx");
-    gis.init();
-    gis.spinOff("batabranch");
+    gis.init(null);
+    gis.spinOff("batabranch", new String[] {}, false);
     commitFile(repos);
     scrambleFiles(repos);
     resetOutputStreamTest();
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
     assertThat(stripColors.apply(outCaptor.toString()))
         .contains(
             "" + tempPath.getFileName(),
@@ -467,7 +469,7 @@ class GitCommandIntTest extends GitBaseTest {
 
     // when:
     resetOutputStreamTest();
-    gis.stash(false);
+    gis.stash(false, false);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString()))
@@ -486,15 +488,15 @@ class GitCommandIntTest extends GitBaseTest {
   void stashPop_OK() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("pja_4_x", "pja_5_xx", "pja_6_xxx");
-    gis.init();
-    gis.spinOff("batabranch");
+    gis.init(null);
+    gis.spinOff("batabranch", new String[] {}, false);
     commitFile(repos);
     scrambleFiles(repos);
-    gis.stash(false);
+    gis.stash(false, false);
     resetOutputStreamTest();
 
     // when:
-    gis.stash(true);
+    gis.stash(true, false);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString()))
@@ -522,7 +524,7 @@ class GitCommandIntTest extends GitBaseTest {
   void rebaseCurrentOrigin() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("ali_4_x", "ali_5_xx", "ali_6_xxx");
-    gis.init();
+    gis.init(null);
     commitFile(repos);
     commitFile(repos);
     gis.push("master", true, true, true);
@@ -530,7 +532,7 @@ class GitCommandIntTest extends GitBaseTest {
     cleanUntrackedFiles(repos);
     resetOutputStreamTest();
 
-    gis.status(true, null);
+    gis.status(true, false, false, false, null);
     assertThat(stripColors.apply(outCaptor.toString())).containsOnly(
         "" + tempPath.getFileName(),
         "ali_4_x master[behind 1]",
@@ -539,10 +541,10 @@ class GitCommandIntTest extends GitBaseTest {
 
     // when:
     resetOutputStreamTest();
-    gis.rebaseCurrentOrigin();
+    gis.rebaseCurrentOrigin(false);
 
     // then:
-    gis.status(true, null);
+    gis.status(true, false, false, false, null);
     assertThat(stripColors.apply(outCaptor.toString())).containsOnly(
         "" + tempPath.getFileName(),
         "ali_4_x master",
@@ -554,12 +556,12 @@ class GitCommandIntTest extends GitBaseTest {
   void rebaseCurrentOrigin_withEachModuleHasDifferentBranch() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("ali_4_x", "ali_5_xx", "ali_6_xxx");
-    gis.init();
+    gis.init(null);
     commitFile(repos);
     gis.push("master", true, true, true);
-    gis.spinOff("bbb4", "ali_4_x");
-    gis.spinOff("bbb5", "ali_5_xx");
-    gis.spinOff("bbb6", "ali_6_xxx");
+    gis.spinOff("bbb4", new String[] {"ali_4_x"}, false);
+    gis.spinOff("bbb5", new String[] {"ali_5_xx"}, false);
+    gis.spinOff("bbb6", new String[] {"ali_6_xxx"}, false);
     commitFile(repos);
     gis.push("bbb4", true, true, true);
     gis.push("bbb5", true, true, true);
@@ -568,7 +570,7 @@ class GitCommandIntTest extends GitBaseTest {
     cleanUntrackedFiles(repos);
     resetOutputStreamTest();
 
-    gis.status(true, null);
+    gis.status(true, false, false, false, null);
     assertThat(stripColors.apply(outCaptor.toString())).containsOnly(
         "" + tempPath.getFileName(),
         "ali_4_x bbb4[behind 1]",
@@ -577,10 +579,10 @@ class GitCommandIntTest extends GitBaseTest {
 
     // when:
     resetOutputStreamTest();
-    gis.rebaseCurrentOrigin();
+    gis.rebaseCurrentOrigin(false);
 
     // then:
-    gis.status(true, null);
+    gis.status(true, false, false, false, null);
     assertThat(stripColors.apply(outCaptor.toString())).containsOnly(
         "" + tempPath.getFileName(),
         "ali_4_x bbb4",
@@ -592,11 +594,11 @@ class GitCommandIntTest extends GitBaseTest {
   void localPrune_withoutPushPrunedBranch() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("pru_1_ne", "pru_2_ne", "pru_3_ne");
-    gis.init();
+    gis.init(null);
     commitFile(repos);
     gis.push("master", false, true, true);
-    gis.spinOff("prune-branch");
-    gis.checkout("master");
+    gis.spinOff("prune-branch", new String[] {}, false);
+    gis.checkout("master", false);
     commitFile(repos);
     gis.push("master", true, false, true);
     resetOutputStreamTest();
@@ -639,12 +641,12 @@ class GitCommandIntTest extends GitBaseTest {
   void localPrune_withPushPrunedBranch() throws IOException {
     // given:
     var repos = create_clone_gitRepositories("pru_4_ne", "pru_5_ne", "pru_6_ne");
-    gis.init();
+    gis.init(null);
     commitFile(repos);
     gis.push("master", false, true, true);
-    gis.spinOff("prune-branch");
+    gis.spinOff("prune-branch", new String[] {}, false);
     gis.push("prune-branch", false, true, true);
-    gis.checkout("master");
+    gis.checkout("master", false);
     commitFile(repos);
     gis.push("master", false, false, true);
     resetOutputStreamTest();
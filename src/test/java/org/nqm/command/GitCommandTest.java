@@ -18,6 +18,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.nqm.Gis;
 import org.nqm.helper.ExecutorsMock;
 import org.nqm.helper.GisConfigMock;
 import org.nqm.helper.GisProcessUtilsMock;
@@ -120,7 +121,7 @@ class GitCommandTest extends StdBaseTest {
   @Test
   void statusShort_withDefaultSort_OK() throws IOException {
     // when:
-    gis.status(true, null);
+    gis.status(true, false, false, false, null);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -133,7 +134,7 @@ class GitCommandTest extends StdBaseTest {
   @Test
   void statusShort_withModuleNameSort_OK() throws IOException {
     // when:
-    gis.status(true, null);
+    gis.status(true, false, false, false, null);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -143,10 +144,21 @@ class GitCommandTest extends StdBaseTest {
         "submodule3 master");
   }
 
+  @Test
+  void status_withSummaryAndOtherOptions_isRejected() {
+    // when:
+    var exitCode = Gis.launch("status", "--summary", "--dirty-only");
+
+    // then:
+    assertThat(exitCode).isEqualTo(2);
+    assertThat("" + errCaptor).contains("--summary cannot be combined with").contains("Usage: gis status");
+    assertThat(outCaptor.toString()).isEmpty();
+  }
+
   @Test
   void statusFull_withDefaultSort_OK() throws IOException {
     // when:
-    gis.status(false, null);
+    gis.status(false, false, false, false, null);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -167,7 +179,7 @@ class GitCommandTest extends StdBaseTest {
   @Test
   void statusFull_withSortedByModuleName_OK() throws IOException {
     // when:
-    gis.status(false, GisSort.module_name);
+    gis.status(false, false, false, false, GisSort.module_name);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -188,13 +200,13 @@ class GitCommandTest extends StdBaseTest {
   @Test
   void statusFull_withSortedByBranchName_OK() throws IOException {
     // given:
-    gis.spinOff("aaa", "submodule3");
-    gis.spinOff("bbb", "submodule2");
-    gis.spinOff("ccc", "submodule1");
+    gis.spinOff("aaa", new String[] {"submodule3"}, false);
+    gis.spinOff("bbb", new String[] {"submodule2"}, false);
+    gis.spinOff("ccc", new String[] {"submodule1"}, false);
     resetOutputStreamTest();
 
     // when:
-    gis.status(false, GisSort.branch_name);
+    gis.status(false, false, false, false, GisSort.branch_name);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -215,13 +227,13 @@ class GitCommandTest extends StdBaseTest {
   @Test
   void statusShort_withSortedByBranchName_OK() throws IOException {
     // given:
-    gis.spinOff("aaa", "submodule3");
-    gis.spinOff("bbb", "submodule1");
-    gis.spinOff("ccc", "submodule2");
+    gis.spinOff("aaa", new String[] {"submodule3"}, false);
+    gis.spinOff("bbb", new String[] {"submodule1"}, false);
+    gis.spinOff("ccc", new String[] {"submodule2"}, false);
     resetOutputStreamTest();
 
     // when:
-    gis.status(true, GisSort.branch_name);
+    gis.status(true, false, false, false, GisSort.branch_name);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -243,7 +255,7 @@ class GitCommandTest extends StdBaseTest {
 
     // when:
     resetOutputStreamTest();
-    gis.status(false, GisSort.tracking_status);
+    gis.status(false, false, false, false, GisSort.tracking_status);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -279,7 +291,7 @@ class GitCommandTest extends StdBaseTest {
 
     // when:
     resetOutputStreamTest();
-    gis.status(true, GisSort.tracking_status);
+    gis.status(true, false, false, false, GisSort.tracking_status);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString())).containsExactly(
@@ -292,7 +304,7 @@ class GitCommandTest extends StdBaseTest {
   @Test
   void status_withOneLiner_OK() throws IOException {
     // when:
-    gis.status(true, GisSort.module_name);
+    gis.status(true, false, false, false, GisSort.module_name);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString()))
@@ -388,7 +400,7 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.stash(false);
+    gis.stash(false, false);
 
     // then:
     verify(exe, times(5)).submit((Callable<?>) any());
@@ -401,7 +413,7 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.stash(true);
+    gis.stash(true, false);
 
     // then:
     verify(exe, times(5)).submit((Callable<?>) any());
@@ -414,7 +426,20 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.checkout("batabranch");
+    gis.checkout("batabranch", false);
+
+    // then:
+    verify(exe, times(5)).submit((Callable<?>) any());
+    verify(exe, times(0)).submit((Runnable) any());
+  }
+
+  @Test
+  void syncBranches_OK() throws IOException {
+    // given:
+    ExecutorsMock.mockVirtualThreadCallable(exe);
+
+    // when:
+    gis.syncBranches();
 
     // then:
     verify(exe, times(5)).submit((Callable<?>) any());
@@ -427,7 +452,7 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.spinOff("batabranch");
+    gis.spinOff("batabranch", new String[] {}, false);
 
     // then:
     verify(exe, times(5)).submit((Callable<?>) any());
@@ -440,7 +465,7 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.spinOff("batabranch", "submodule1", "submodule2");
+    gis.spinOff("batabranch", new String[] {"submodule1", "submodule2"}, false);
 
     // then:
     verify(exe, times(3)).submit((Callable<?>) any());
@@ -453,8 +478,7 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.spinOff(
-        "batabranch", "submodule1", "submodule2", "" + tempPath.subpath(1, tempPath.getNameCount()));
+    gis.spinOff("batabranch", new String[] {"submodule1", "submodule2", "" + tempPath.subpath(1, tempPath.getNameCount())}, false);
 
     // then:
     verify(exe, times(4)).submit((Callable<?>) any());
@@ -467,7 +491,7 @@ class GitCommandTest extends StdBaseTest {
     ExecutorsMock.mockVirtualThreadCallable(exe);
 
     // when:
-    gis.rebaseOrigin("batabranch");
+    gis.rebaseOrigin("batabranch", false);
 
     // then:
     verify(exe, times(5)).submit((Callable<?>) any());
@@ -567,7 +591,7 @@ class GitCommandTest extends StdBaseTest {
     Files.writeString(markerFile, "path = notagit\n", java.nio.file.StandardOpenOption.APPEND);
 
     // when:
-    gis.status(true, GisSort.branch_name);
+    gis.status(true, false, false, false, GisSort.branch_name);
 
     // then:
     assertThat(stripColors.apply(outCaptor.toString()))
@@ -0,0 +1,95 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModuleTimingsTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path store;
+
+  @BeforeEach
+  void setup() throws IOException {
+    store = Files.createDirectories(tempPath.resolve(".git")).resolve("gis-timings");
+  }
+
+  @Test
+  void longestFirst_withoutHistory_keepsOrder() {
+    // given:
+    var modules = List.of(tempPath, tempPath.resolve("a"), tempPath.resolve("b"));
+
+    // when:
+    var ordered = ModuleTimings.load(tempPath, "fetch").longestFirst(modules);
+
+    // then:
+    assertThat(ordered).containsExactlyElementsOf(modules);
+  }
+
+  @Test
+  void longestFirst_withHistory_putsSlowestFirstAndUnknownAtAverage() throws IOException {
+    // given:
+    Files.writeString(store, """
+        fetch\t.\t100
+        fetch\ta\t900
+        fetch\tb\t500
+        pull\tc\t99999
+        """);
+    var modules = List.of(tempPath, tempPath.resolve("a"), tempPath.resolve("b"), tempPath.resolve("c"));
+
+    // when:
+    var ordered = ModuleTimings.load(tempPath, "fetch").longestFirst(modules);
+
+    // then:
+    assertThat(ordered).containsExactly(tempPath.resolve("a"), tempPath.resolve("b"), tempPath.resolve("c"), tempPath);
+  }
+
+  @Test
+  void expectedMillis_OK() throws IOException {
+    // given:
+    Files.writeString(store, "fetch\ta\t900\npull\tb\t500\n");
+
+    // when:
+    var timings = ModuleTimings.load(tempPath, "fetch");
+
+    // then:
+    assertThat(timings.expectedMillis(tempPath.resolve("a"))).isEqualTo(900);
+    assertThat(timings.expectedMillis(tempPath.resolve("b"))).isEqualTo(-1);
+  }
+
+  @Test
+  void save_OK() throws IOException {
+    // given:
+    Files.writeString(store, "fetch\ta\t1000\nbroken line\n");
+    var timings = ModuleTimings.load(tempPath, "fetch");
+
+    // when:
+    timings.record(tempPath.resolve("a"), 200);
+    timings.record(tempPath, 50);
+    timings.save();
+
+    // then:
+    assertThat(Files.readString(store)).isEqualTo("fetch\t.\t50\nfetch\ta\t600\n");
+  }
+
+  @Test
+  void save_withoutGitDir_writesNothing() throws IOException {
+    // given:
+    var workspace = Files.createDirectories(tempPath.resolve("plain"));
+    var timings = ModuleTimings.load(workspace, "fetch");
+
+    // when:
+    timings.record(workspace, 50);
+    timings.save();
+
+    // then:
+    assertThat(workspace.resolve(".git")).doesNotExist();
+  }
+}
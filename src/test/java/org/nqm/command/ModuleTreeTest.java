@@ -0,0 +1,58 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ModuleTreeTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path module(String path, String... nested) throws IOException {
+    var dir = Files.createDirectories(tempPath.resolve(path));
+    if (nested.length > 0) {
+      var lines = List.of(nested).stream().map("path = %s"::formatted).toList();
+      Files.write(dir.resolve(".gis-modules"), lines);
+    }
+    return dir;
+  }
+
+  @Test
+  void expand_OK() throws IOException {
+    // given:
+    var a = module("a", "x", "y");
+    module("a/x", "deep");
+    module("a/x/deep");
+    module("a/y");
+    var b = module("b", "../a", "missing");
+
+    // when:
+    var modules = ModuleTree.expand(tempPath, List.of(a, b));
+
+    // then:
+    assertThat(modules).containsExactly(a, a.resolve("x"), a.resolve("x/deep"), a.resolve("y"), b);
+  }
+
+  @Test
+  void expand_withGitmodules_OK() throws IOException {
+    // given:
+    var a = module("a");
+    module("a/lib");
+    Files.writeString(a.resolve(".gitmodules"), """
+        [submodule "lib"]
+        \tpath = lib
+        \turl = ../lib.git
+        """);
+
+    // when:
+    var modules = ModuleTree.expand(tempPath, List.of(a));
+
+    // then:
+    assertThat(modules).containsExactly(a, a.resolve("lib"));
+  }
+}
@@ -0,0 +1,53 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryScanTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path repository(String path) throws IOException {
+    var dir = tempPath.resolve(path);
+    Files.createDirectories(dir.resolve(".git"));
+    Files.writeString(dir.resolve(".git/HEAD"), "ref: refs/heads/master\n");
+    return dir;
+  }
+
+  @Test
+  void find_OK() throws IOException {
+    // given:
+    var api = repository("api");
+    var web = repository("frontend/web");
+    repository("api/vendored");
+    repository("frontend/node_modules/some-lib");
+    repository("backend/target/checkout");
+    Files.createDirectories(tempPath.resolve("docs/img"));
+    Files.createDirectories(tempPath.resolve("broken/.git"));
+    // a worktree or submodule whose .git is a file
+    var linked = Files.createDirectories(tempPath.resolve("linked"));
+    Files.writeString(linked.resolve(".git"), "gitdir: ../api/.git\n");
+
+    // when:
+    var found = RepositoryScan.find(tempPath, RepositoryScan.DEFAULT_DEPTH);
+
+    // then:
+    assertThat(found).containsExactly(api, web, linked);
+  }
+
+  @Test
+  void find_withDepth_OK() throws IOException {
+    // given:
+    var top = repository("top");
+    repository("a/b/deep");
+
+    // when + then:
+    assertThat(RepositoryScan.find(tempPath, 1)).containsExactly(top);
+    assertThat(RepositoryScan.find(tempPath, 3)).containsExactly(tempPath.resolve("a/b/deep"), top);
+  }
+}
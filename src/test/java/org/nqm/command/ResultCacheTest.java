@@ -0,0 +1,86 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultCacheTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path store;
+
+  @BeforeEach
+  void setup() throws IOException {
+    store = Files.createDirectories(tempPath.resolve(".git")).resolve("gis-cache");
+  }
+
+  @Test
+  void get_withSameFingerprint_OK() {
+    // given:
+    var cache = ResultCache.load(tempPath, "status -sb");
+    cache.put(tempPath.resolve("a"), "f1", "a\n  ## master");
+    cache.save();
+
+    // when:
+    var reloaded = ResultCache.load(tempPath, "status -sb");
+
+    // then:
+    assertThat(reloaded.get(tempPath.resolve("a"), "f1")).contains("a\n  ## master");
+    assertThat(ResultCache.load(tempPath, "diff --name-only").get(tempPath.resolve("a"), "f1")).isEmpty();
+  }
+
+  @Test
+  void get_withMovedFingerprint_evicts() {
+    // given:
+    var cache = ResultCache.load(tempPath, "status -sb");
+    cache.put(tempPath.resolve("a"), "f1", "a");
+    cache.save();
+    var reloaded = ResultCache.load(tempPath, "status -sb");
+
+    // when:
+    var kept = reloaded.get(tempPath.resolve("a"), "f2");
+
+    // then:
+    assertThat(kept).isEmpty();
+    assertThat(reloaded.get(tempPath.resolve("a"), "f1")).isEmpty();
+  }
+
+  @Test
+  void save_dropsEntriesOfModulesNotLookedUp() {
+    // given:
+    var status = ResultCache.load(tempPath, "status -sb");
+    status.put(tempPath, "f0", "root");
+    status.put(tempPath.resolve("a"), "f1", "a");
+    status.save();
+    var files = ResultCache.load(tempPath, "diff --name-only");
+    files.put(tempPath.resolve("a"), "f1", "a/README.md");
+    files.save();
+
+    // when:
+    var rerun = ResultCache.load(tempPath, "status -sb");
+    rerun.get(tempPath.resolve("a"), "f1");
+    rerun.save();
+
+    // then:
+    var reloaded = ResultCache.load(tempPath, "status -sb");
+    assertThat(reloaded.get(tempPath, "f0")).isEmpty();
+    assertThat(reloaded.get(tempPath.resolve("a"), "f1")).contains("a");
+    assertThat(ResultCache.load(tempPath, "diff --name-only").get(tempPath.resolve("a"), "f1"))
+        .contains("a/README.md");
+  }
+
+  @Test
+  void load_withCorruptStore_isEmpty() throws IOException {
+    // given:
+    Files.write(store, new byte[] {0x47, 0x49, 0x53, 0x43, 0, 0, 0, 1, 0, 0, 0, 5});
+
+    // when + then:
+    assertThat(ResultCache.load(tempPath, "status -sb").get(tempPath, "f0")).isEmpty();
+  }
+}
@@ -0,0 +1,130 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkspaceManifestTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path marker;
+
+  private Path store;
+
+  @BeforeEach
+  void setup() throws IOException {
+    store = Files.createDirectories(tempPath.resolve(".git")).resolve("gis-manifest");
+    Files.createDirectories(tempPath.resolve("a"));
+    marker = Files.writeString(tempPath.resolve(".gis-modules"), "path = a\npath = b\n");
+    settle();
+  }
+
+  // as if the workspace was last touched an hour ago
+  private void settle() throws IOException {
+    var anHourAgo = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+    Files.setLastModifiedTime(marker, anHourAgo);
+    Files.setLastModifiedTime(tempPath, anHourAgo);
+  }
+
+  @Test
+  void load_OK() throws IOException {
+    // when:
+    var modules = WorkspaceManifest.load(tempPath, marker).modules();
+
+    // then:
+    assertThat(modules).extracting(WorkspaceManifest.Module::path, WorkspaceManifest.Module::exists)
+        .containsExactly(
+            Tuple.tuple(tempPath.resolve("a"), true),
+            Tuple.tuple(tempPath.resolve("b"), false));
+  }
+
+  @Test
+  void load_withSavedManifest_doesNotReadMarker() throws IOException {
+    // given:
+    WorkspaceManifest.load(tempPath, marker).save();
+    var anHourAgo = Files.getLastModifiedTime(marker);
+    // same size and mtime, so only a manifest still knows of 'a'
+    Files.writeString(marker, "path = x\npath = y\n");
+    Files.setLastModifiedTime(marker, anHourAgo);
+
+    // when:
+    var modules = WorkspaceManifest.load(tempPath, marker).modules();
+
+    // then:
+    assertThat(store).exists();
+    assertThat(modules).extracting(WorkspaceManifest.Module::name).containsExactly("a", "b");
+  }
+
+  @Test
+  void load_withChangedMarker_readsItAgain() throws IOException {
+    // given:
+    WorkspaceManifest.load(tempPath, marker).save();
+    Files.writeString(marker, "path = a\n");
+    settle();
+
+    // when:
+    var modules = WorkspaceManifest.load(tempPath, marker).modules();
+
+    // then:
+    assertThat(modules).extracting(WorkspaceManifest.Module::name).containsExactly("a");
+  }
+
+  @Test
+  void load_withCreatedModule_readsItAgain() throws IOException {
+    // given:
+    WorkspaceManifest.load(tempPath, marker).save();
+    Files.createDirectories(tempPath.resolve("b"));
+
+    // when:
+    var modules = WorkspaceManifest.load(tempPath, marker).modules();
+
+    // then:
+    assertThat(modules).allMatch(WorkspaceManifest.Module::exists);
+  }
+
+  @Test
+  void save_withFreshMarker_keepsNothing() throws IOException {
+    // given:
+    Files.writeString(marker, "path = a\n");
+
+    // when:
+    WorkspaceManifest.load(tempPath, marker).save();
+
+    // then:
+    assertThat(store).doesNotExist();
+  }
+
+  @Test
+  void modulePaths_withGitmodules_OK() {
+    // when:
+    var paths = WorkspaceManifest.modulePaths("""
+        [submodule "api"]
+        	path=services/api
+        	url = git@github.com:nqminhuit/api.git
+        [submodule "web ui"]
+        	path = "web ui" ; quoted, with a comment
+        """);
+
+    // then:
+    assertThat(paths).containsExactly("services/api", "web ui");
+  }
+
+  @Test
+  void modulePaths_withGisModules_OK() {
+    // when:
+    var paths = WorkspaceManifest.modulePaths("path = a\n\tpath=b\n# path = c\npath = a\n");
+
+    // then:
+    assertThat(paths).containsExactly("a", "b");
+  }
+}
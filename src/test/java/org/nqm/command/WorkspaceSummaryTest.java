@@ -0,0 +1,78 @@
+package org.nqm.command;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nqm.utils.StdOutUtils;
+
+class WorkspaceSummaryTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path module(String name, String head, boolean withUpstream) throws IOException {
+    var module = tempPath.resolve(name);
+    var gitDir = Files.createDirectories(module.resolve(".git"));
+    Files.writeString(gitDir.resolve("HEAD"), head + "\n");
+    if (withUpstream) {
+      Files.writeString(gitDir.resolve("config"), """
+          [remote "origin"]
+          \tfetch = +refs/heads/*:refs/remotes/origin/*
+          [branch "master"]
+          \tremote = origin
+          \tmerge = refs/heads/master
+          """);
+    }
+    return module;
+  }
+
+  private static String plain(String line) {
+    return line.replaceAll("\u001B\\[[0-9;]*m", "");
+  }
+
+  @Test
+  void lines_OK() throws IOException {
+    // given:
+    var summary = new WorkspaceSummary();
+    summary.add(module("a", "ref: refs/heads/master", true));
+    summary.add(module("b", "ref: refs/heads/master", true));
+    summary.add(module("c", "ref: refs/heads/master", false));
+    var rebasing = module("d", "9fceb02d0ae598e95dc970b74767f19372d61af8", true);
+    Files.createDirectories(rebasing.resolve(".git/rebase-merge"));
+    Files.writeString(rebasing.resolve(".git/rebase-merge/head-name"), "refs/heads/master\n");
+    summary.add(rebasing);
+    summary.add(module("e", "ref: refs/heads/develop", false));
+    summary.add(module("f", "9fceb02d0ae598e95dc970b74767f19372d61af8", false));
+    summary.add(Files.createDirectories(tempPath.resolve("g")));
+
+    // when:
+    var lines = summary.lines().stream().map(WorkspaceSummaryTest::plain).toList();
+
+    // then:
+    assertThat(lines).containsExactly(
+        "7 modules on 4 branches",
+        "  master     4 " + "#".repeat(40),
+        "  (detached) 1 " + "#".repeat(10),
+        "  (unknown)  1 " + "#".repeat(10),
+        "  develop    1 " + "#".repeat(10),
+        "outliers:",
+        "  c: no upstream for 'master'",
+        "  d: rebase in progress",
+        "  e: no upstream for 'develop'",
+        "  f: detached HEAD",
+        "  g: HEAD cannot be read");
+  }
+
+  @Test
+  void lines_colorsBranches() throws IOException {
+    // given:
+    var summary = new WorkspaceSummary();
+    summary.add(module("a", "ref: refs/heads/develop", true));
+
+    // when + then:
+    assertThat(summary.lines().get(1)).contains(StdOutUtils.branchf("develop"));
+  }
+}
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -213,24 +214,101 @@ class WrapperTest extends StdBaseTest {
   }
 
   @Test
-  void forEachModuleWith_whenModuleHangs_abortsAfterTimeout() throws IOException {
+  void forEachModuleWith_whenModuleHangs_reportsItTimedOut() throws IOException {
     // given: 'git credential fill' blocks forever reading stdin that nobody writes
     GisConfigMock.mockModuleTimeoutSeconds(1);
+    GisProcessUtils.resetProcessFailures();
 
     // when:
     var startedAt = System.nanoTime();
     var output = Wrapper.forEachModuleWith(p -> true, "credential", "fill");
 
-    // then: gis returns shortly after the deadline instead of waiting for the hung processes
+    // then: gis returns shortly after the timeout instead of waiting for the hung processes
     assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt)).isLessThan(30);
-    assertThat(output).isEmpty();
+    assertThat(output).hasSize(4);
+    assertThat(output.stream().map(stripColorsToString))
+        .containsExactlyInAnyOrder(
+            tempPath.getFileName() + " timed out after 1s",
+            "submodule1 timed out after 1s",
+            "submodule2 timed out after 1s",
+            "submodule3 timed out after 1s");
+    assertThat(GisProcessUtils.anyProcessFailed()).isTrue();
+    GisProcessUtils.resetProcessFailures();
+  }
+
+  @Test
+  void forEachModuleWith_whenOneModuleHangs_keepsResultsOfOthers() throws IOException, InterruptedException {
+    // given: submodule2 hangs, submodule1 is slow but has its own longer timeout
+    for (var module : new Path[] {tempPath, tempPath.resolve("submodule3")}) {
+      GisProcessUtils.run(module.toFile(), GIT_HOME_DIR, "config", "alias.probe", "!echo done");
+    }
+    GisProcessUtils.run(tempPath.resolve("submodule1").toFile(), GIT_HOME_DIR, "config", "alias.probe",
+        "!sleep 2; echo done");
+    GisProcessUtils.run(tempPath.resolve("submodule2").toFile(), GIT_HOME_DIR, "config", "alias.probe", "!sleep 30");
+    GisConfigMock.mockModuleTimeoutSeconds(1);
+    GisConfigMock.mockModuleTimeoutSeconds("submodule1", 10);
+    var printed = new ConcurrentLinkedQueue<String>();
+
+    // when:
+    Wrapper.forEachModuleWith(p -> true, printed::add, "probe");
+
+    // then:
+    assertThat(printed.stream().map(stripColorsToString))
+        .hasSize(4)
+        .containsOnlyOnce("submodule2 timed out after 1s")
+        .filteredOn(entry -> entry.contains("done"))
+        .hasSize(3);
+    GisProcessUtils.resetProcessFailures();
+  }
+
+  @Test
+  void forEachModuleWith_withFailFast_stopsAtFirstFailure() throws IOException {
+    // given: one module at a time, and no module has the branch
+    GisConfigMock.mockMaxParallelProcesses(1);
+    GisProcessUtils.resetProcessFailures();
+    var printed = new ConcurrentLinkedQueue<String>();
+
+    // when:
+    Wrapper.forEachModuleWith(p -> true, printed::add, true, "checkout", "no-such-branch");
+
+    // then:
+    assertThat(printed).hasSize(1);
     assertThat(stripColorsToString.apply(errCaptor.toString()))
-        .contains("WARNING: module execution timed out after 1s, unfinished modules are aborted!");
+        .containsPattern("WARNING: stopped after module '.+' failed, 3 modules were not touched: ");
+    assertThat(GisProcessUtils.anyProcessFailed()).isTrue();
+    GisProcessUtils.resetProcessFailures();
+  }
+
+  @Test
+  void forEachModuleWith_withSingleProcessAllowed_runsEveryModule() throws IOException {
+    // given:
+    GisConfigMock.mockMaxParallelProcesses(1);
+
+    // when:
+    var output = Wrapper.forEachModuleWith(p -> true, "status", "-sb", "--porcelain=v1", "--gis-one-line");
+
+    // then: modules queue behind the single permit instead of being dropped
+    assertThat(output).hasSize(4);
+    assertThat(stripColorsToString.apply(String.join(" ", output)))
+        .contains("submodule1 ", "submodule2 ", "submodule3 ", tempPath.getFileName() + " ");
   }
 
   @Test
-  void getCurrentBranchUnderPath_withNullResult_NOK() {
+  void getCurrentBranchUnderPath_readsHeadWithoutGit() throws IOException {
     // given:
+    Files.writeString(tempPath.resolve("submodule1/.git/HEAD"), "ref: refs/heads/feature/x\n");
+
+    // when:
+    var result = Wrapper.getCurrentBranchUnderPath(tempPath.resolve("submodule1"));
+
+    // then:
+    assertThat(result).isEqualTo("feature/x");
+  }
+
+  @Test
+  void getCurrentBranchUnderPath_withUnreadableHeadAndNullResult_NOK() throws IOException {
+    // given: HEAD the resolver does not understand, so git is asked
+    Files.writeString(tempPath.resolve(".git/HEAD"), "garbage");
     GisProcessUtilsMock.mockQuickRun(
         null,
         tempPath.toFile(),
@@ -3,6 +3,9 @@ package org.nqm.config;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.jupiter.api.Test;
 import org.nqm.helper.StdBaseTest;
+import org.nqm.model.GisLauncherMode;
+import org.nqm.model.GisOutputCapture;
+import org.nqm.model.GisParallelism;
 
 class GisConfigTest extends StdBaseTest {
 
@@ -35,4 +38,68 @@ class GisConfigTest extends StdBaseTest {
         .contains("WARNING: config 'module_timeout_seconds=0' must be positive, falling back to 60s")
         .contains("WARNING: config 'module_timeout_seconds=-5' must be positive, falling back to 60s");
   }
+
+  @Test
+  void parseOutputCapture_withUnsetOrBlank_usesPipe() {
+    assertThat(GisConfig.parseOutputCapture(null)).isEqualTo(GisOutputCapture.pipe);
+    assertThat(GisConfig.parseOutputCapture(" ")).isEqualTo(GisOutputCapture.pipe);
+    assertThat(errCaptor.toString()).isEmpty();
+  }
+
+  @Test
+  void parseOutputCapture_withValidValue_OK() {
+    assertThat(GisConfig.parseOutputCapture("file")).isEqualTo(GisOutputCapture.file);
+    assertThat(GisConfig.parseOutputCapture(" pipe ")).isEqualTo(GisOutputCapture.pipe);
+  }
+
+  @Test
+  void parseOutputCapture_withUnknownValue_warnsAndUsesPipe() {
+    assertThat(GisConfig.parseOutputCapture("mmap")).isEqualTo(GisOutputCapture.pipe);
+    assertThat(stripColorsToString.apply(errCaptor.toString()))
+        .contains("WARNING: config 'output_capture=mmap' is not one of [pipe, file], falling back to 'pipe'");
+  }
+
+  @Test
+  void parseProcessLauncher_OK() {
+    assertThat(GisConfig.parseProcessLauncher(null)).isEqualTo(GisLauncherMode.direct);
+    assertThat(GisConfig.parseProcessLauncher("helper")).isEqualTo(GisLauncherMode.helper);
+    assertThat(GisConfig.parseProcessLauncher("zygote")).isEqualTo(GisLauncherMode.direct);
+    assertThat(stripColorsToString.apply(errCaptor.toString()))
+        .contains("WARNING: config 'process_launcher=zygote' is not one of [direct, helper], falling back to 'direct'");
+  }
+
+  @Test
+  void parseMaxParallelProcesses_OK() {
+    assertThat(GisConfig.parseMaxParallelProcesses(null, 12)).isEqualTo(12);
+    assertThat(GisConfig.parseMaxParallelProcesses("32", 12)).isEqualTo(32);
+    assertThat(GisConfig.parseMaxParallelProcesses("-1", 12)).isEqualTo(12);
+    assertThat(stripColorsToString.apply(errCaptor.toString()))
+        .contains("WARNING: config 'max_parallel_processes=-1' must be positive, falling back to 12");
+  }
+
+  @Test
+  void parseParallelism_OK() {
+    assertThat(GisConfig.parseParallelism(null)).isEqualTo(GisParallelism.fixed);
+    assertThat(GisConfig.parseParallelism("adaptive")).isEqualTo(GisParallelism.adaptive);
+    assertThat(GisConfig.parseParallelism("greedy")).isEqualTo(GisParallelism.fixed);
+    assertThat(stripColorsToString.apply(errCaptor.toString()))
+        .contains("WARNING: config 'parallelism=greedy' is not one of");
+  }
+
+  @Test
+  void parseRemoteHostMaxParallel_OK() {
+    assertThat(GisConfig.parseRemoteHostMaxParallel("remote_host_max_parallel", null)).isEqualTo(8);
+    assertThat(GisConfig.parseRemoteHostMaxParallel("remote_host_max_parallel.github.com", "2")).isEqualTo(2);
+    assertThat(GisConfig.parseRemoteHostMaxParallel("remote_host_max_parallel.github.com", "0")).isEqualTo(8);
+    assertThat(stripColorsToString.apply(errCaptor.toString()))
+        .contains("WARNING: config 'remote_host_max_parallel.github.com=0' must be positive, falling back to 8");
+  }
+
+  @Test
+  void parseModuleTimeoutSeconds_withModuleOverride_warnsWithModuleKey() {
+    assertThat(GisConfig.parseModuleTimeoutSeconds("module_timeout_seconds.big-repo", "300")).isEqualTo(300);
+    assertThat(GisConfig.parseModuleTimeoutSeconds("module_timeout_seconds.big-repo", "x")).isEqualTo(60);
+    assertThat(stripColorsToString.apply(errCaptor.toString()))
+        .contains("WARNING: config 'module_timeout_seconds.big-repo=x' is not a number, falling back to 60s");
+  }
 }
@@ -0,0 +1,41 @@
+package org.nqm.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import org.junit.jupiter.api.Test;
+
+class GisSystemLimitsTest {
+
+  @Test
+  void parseCgroupV2CpuMax_OK() {
+    assertThat(GisSystemLimits.parseCgroupV2CpuMax("200000 100000\n")).isEqualTo(OptionalInt.of(2));
+    assertThat(GisSystemLimits.parseCgroupV2CpuMax("150000 100000")).isEqualTo(OptionalInt.of(2));
+    assertThat(GisSystemLimits.parseCgroupV2CpuMax("50000 100000")).isEqualTo(OptionalInt.of(1));
+    assertThat(GisSystemLimits.parseCgroupV2CpuMax("max 100000")).isEmpty();
+    assertThat(GisSystemLimits.parseCgroupV2CpuMax("")).isEmpty();
+  }
+
+  @Test
+  void parseCgroupV1Quota_withUnlimitedQuota_isEmpty() {
+    assertThat(GisSystemLimits.parseCgroupV1Quota("-1", "100000")).isEmpty();
+    assertThat(GisSystemLimits.parseCgroupV1Quota("400000", "100000")).isEqualTo(OptionalInt.of(4));
+  }
+
+  @Test
+  void parseOpenFilesLimit_OK() {
+    var limits = """
+        Limit                     Soft Limit           Hard Limit           Units
+        Max processes             127451               127451               processes
+        Max open files            1024                 524288               files
+        """;
+    assertThat(GisSystemLimits.parseOpenFilesLimit(limits)).isEqualTo(OptionalLong.of(1024));
+    assertThat(GisSystemLimits.parseOpenFilesLimit("Max open files  unlimited  unlimited  files"))
+        .isEmpty();
+  }
+
+  @Test
+  void defaultParallelProcesses_isPositive() {
+    assertThat(GisSystemLimits.defaultParallelProcesses()).isPositive();
+  }
+}
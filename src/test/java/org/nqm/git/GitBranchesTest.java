@@ -0,0 +1,257 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nqm.git.GitBranches.FastForward;
+import org.nqm.git.GitBranches.FastForward.Outcome;
+
+class GitBranchesTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path gitDir;
+
+  private String base;
+
+  private String head;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    gitDir = GitFixtures.gitDir(tempPath, "master");
+    Files.writeString(gitDir.resolve("config"), """
+        [user]
+        \tname = Tester
+        \temail = tester@example.com
+        """);
+    base = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "base");
+    head = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "head", base);
+    Files.writeString(gitDir.resolve("refs/heads/master"), head + "\n");
+  }
+
+  @Test
+  void spinOff_OK() throws IOException {
+    // when:
+    var output = GitBranches.spinOff(tempPath, "feature/abc");
+
+    // then:
+    assertThat(output).contains(List.of());
+    assertThat(Files.readString(gitDir.resolve("refs/heads/feature/abc"))).isEqualTo(head + "\n");
+    assertThat(Files.readString(gitDir.resolve("HEAD"))).isEqualTo("ref: refs/heads/feature/abc\n");
+    assertThat(Files.readString(gitDir.resolve("logs/refs/heads/feature/abc")))
+        .startsWith("0".repeat(40) + " " + head + " Tester <tester@example.com> ")
+        .endsWith("\tbranch: Created from HEAD\n");
+    assertThat(Files.readString(gitDir.resolve("logs/HEAD")))
+        .startsWith(head + " " + head + " Tester <tester@example.com> ")
+        .endsWith("\tcheckout: moving from master to feature/abc\n");
+    assertThat(gitDir.resolve("refs/heads/feature/abc.lock")).doesNotExist();
+    assertThat(gitDir.resolve("HEAD.lock")).doesNotExist();
+  }
+
+  @Test
+  void spinOff_withClashingBranch_isEmpty() throws IOException {
+    // given:
+    Files.writeString(gitDir.resolve("packed-refs"), "%s refs/heads/feature%n".formatted(base));
+
+    // when + then:
+    assertThat(GitBranches.spinOff(tempPath, "master")).isEmpty();
+    assertThat(GitBranches.spinOff(tempPath, "feature")).isEmpty();
+    assertThat(GitBranches.spinOff(tempPath, "feature/abc")).isEmpty();
+    assertThat(GitBranches.spinOff(tempPath, "-b")).isEmpty();
+    assertThat(Files.readString(gitDir.resolve("HEAD"))).isEqualTo("ref: refs/heads/master\n");
+  }
+
+  @Test
+  void spinOff_whenLocked_leavesRefsAlone() throws IOException {
+    // given:
+    Files.writeString(gitDir.resolve("HEAD.lock"), "");
+
+    // when:
+    var output = GitBranches.spinOff(tempPath, "develop");
+
+    // then:
+    assertThat(output).isEmpty();
+    assertThat(gitDir.resolve("refs/heads/develop")).doesNotExist();
+    assertThat(gitDir.resolve("refs/heads/develop.lock")).doesNotExist();
+    assertThat(gitDir.resolve("HEAD.lock")).exists();
+    assertThat(Files.readString(gitDir.resolve("HEAD"))).isEqualTo("ref: refs/heads/master\n");
+  }
+
+  @Test
+  void spinOff_withHook_isEmpty() throws IOException {
+    // given:
+    var hook = gitDir.resolve("hooks/post-checkout");
+    Files.createDirectories(hook.getParent());
+    Files.writeString(hook, "#!/bin/sh\n");
+
+    // when + then:
+    assertThat(GitBranches.spinOff(tempPath, "develop")).isPresent();
+    assertThat(hook.toFile().setExecutable(true)).isTrue();
+    assertThat(GitBranches.spinOff(tempPath, "feature")).isEmpty();
+    assertThat(gitDir.resolve("refs/heads/feature")).doesNotExist();
+  }
+
+  @Test
+  void spinOff_withHookUnderHooksPath_isEmpty() throws IOException {
+    // given:
+    Files.writeString(gitDir.resolve("config"), "[core]\n\thooksPath = .husky\n", StandardOpenOption.APPEND);
+    var hook = tempPath.resolve(".husky/reference-transaction");
+    Files.createDirectories(hook.getParent());
+    Files.writeString(hook, "#!/bin/sh\n");
+    assertThat(hook.toFile().setExecutable(true)).isTrue();
+
+    // when:
+    var output = GitBranches.spinOff(tempPath, "develop");
+
+    // then:
+    assertThat(output).isEmpty();
+    assertThat(Files.readString(gitDir.resolve("HEAD"))).isEqualTo("ref: refs/heads/master\n");
+  }
+
+  @Test
+  void deleteMerged_OK() throws IOException {
+    // given:
+    Files.writeString(gitDir.resolve("packed-refs"), """
+        # pack-refs with: peeled fully-peeled sorted
+        %s refs/heads/done/abc
+        %s refs/heads/master
+        %s refs/tags/v1
+        ^%s
+        """.formatted(base, base, head, base));
+    Files.createDirectories(gitDir.resolve("refs/heads/done"));
+    Files.writeString(gitDir.resolve("refs/heads/done/abc"), base + "\n");
+    Files.createDirectories(gitDir.resolve("logs/refs/heads/done"));
+    Files.writeString(gitDir.resolve("logs/refs/heads/done/abc"), "");
+
+    // when:
+    var output = GitBranches.deleteMerged(tempPath, "done/abc");
+
+    // then:
+    assertThat(output).contains(List.of("Deleted branch done/abc."));
+    assertThat(gitDir.resolve("refs/heads/done")).doesNotExist();
+    assertThat(gitDir.resolve("logs/refs/heads/done")).doesNotExist();
+    assertThat(gitDir.resolve("packed-refs.lock")).doesNotExist();
+    assertThat(Files.readAllLines(gitDir.resolve("packed-refs"))).containsExactly(
+        "# pack-refs with: peeled fully-peeled sorted",
+        base + " refs/heads/master",
+        head + " refs/tags/v1",
+        "^" + base);
+  }
+
+  @Test
+  void deleteMerged_whenPackedRefsLocked_leavesRefsAlone() throws IOException {
+    // given:
+    Files.writeString(gitDir.resolve("packed-refs"), "%s refs/tags/v1%n".formatted(head));
+    Files.writeString(gitDir.resolve("packed-refs.lock"), "");
+    Files.writeString(gitDir.resolve("refs/heads/done"), base + "\n");
+
+    // when:
+    var output = GitBranches.deleteMerged(tempPath, "done");
+
+    // then:
+    assertThat(output).isEmpty();
+    assertThat(Files.readString(gitDir.resolve("refs/heads/done"))).isEqualTo(base + "\n");
+    assertThat(gitDir.resolve("refs/heads/done.lock")).doesNotExist();
+    assertThat(gitDir.resolve("packed-refs.lock")).exists();
+  }
+
+  @Test
+  void deleteMerged_withoutPackedRefs_OK() throws IOException {
+    // given:
+    Files.writeString(gitDir.resolve("refs/heads/done"), base + "\n");
+
+    // when:
+    var output = GitBranches.deleteMerged(tempPath, "done");
+
+    // then:
+    assertThat(output).isPresent();
+    assertThat(gitDir.resolve("refs/heads/done")).doesNotExist();
+    assertThat(gitDir.resolve("packed-refs")).doesNotExist();
+    assertThat(gitDir.resolve("packed-refs.lock")).doesNotExist();
+  }
+
+  @Test
+  void deleteMerged_withWhatOnlyGitDoes_isEmpty() throws IOException {
+    // given:
+    var unmerged = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "unmerged", head);
+    Files.writeString(gitDir.resolve("refs/heads/unmerged"), unmerged + "\n");
+    Files.writeString(gitDir.resolve("refs/heads/tracking"), base + "\n");
+    Files.writeString(gitDir.resolve("config"), """
+        [branch "tracking"]
+        \tremote = origin
+        \tmerge = refs/heads/tracking
+        """, StandardOpenOption.APPEND);
+
+    // when + then:
+    assertThat(GitBranches.deleteMerged(tempPath, "unmerged")).isEmpty();
+    assertThat(GitBranches.deleteMerged(tempPath, "tracking")).isEmpty();
+    assertThat(GitBranches.deleteMerged(tempPath, "master")).isEmpty();
+    assertThat(GitBranches.deleteMerged(tempPath, "missing")).isEmpty();
+    assertThat(gitDir.resolve("refs/heads/unmerged")).exists();
+    assertThat(gitDir.resolve("refs/heads/tracking")).exists();
+  }
+
+  @Test
+  void fastForward_OK() throws IOException {
+    // given:
+    var upstream = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "upstream", head);
+    Files.writeString(gitDir.resolve("refs/heads/develop"), base + "\n");
+    Files.createDirectories(gitDir.resolve("refs/remotes/origin"));
+    Files.writeString(gitDir.resolve("refs/remotes/origin/develop"), upstream + "\n");
+    Files.writeString(gitDir.resolve("config"), """
+        [remote "origin"]
+        \tfetch = +refs/heads/*:refs/remotes/origin/*
+        [branch "develop"]
+        \tremote = origin
+        \tmerge = refs/heads/develop
+        """, StandardOpenOption.APPEND);
+
+    // when:
+    var result = GitBranches.fastForward(tempPath, "develop");
+
+    // then:
+    assertThat(result).contains(new FastForward(Outcome.FAST_FORWARDED, 0, 2));
+    assertThat(Files.readString(gitDir.resolve("refs/heads/develop"))).isEqualTo(upstream + "\n");
+    assertThat(Files.readString(gitDir.resolve("logs/refs/heads/develop")))
+        .startsWith(base + " " + upstream + " Tester <tester@example.com> ")
+        .endsWith("\tsync-branches: fast-forward\n");
+    assertThat(GitBranches.fastForward(tempPath, "develop")).contains(new FastForward(Outcome.UP_TO_DATE, 0, 0));
+  }
+
+  @Test
+  void fastForward_whatCannotMove_isLeftAlone() throws IOException {
+    // given:
+    var upstream = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "upstream", head);
+    var local = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "local", base);
+    Files.writeString(gitDir.resolve("refs/heads/develop"), local + "\n");
+    Files.writeString(gitDir.resolve("refs/heads/feature"), base + "\n");
+    Files.createDirectories(gitDir.resolve("refs/remotes/origin"));
+    Files.writeString(gitDir.resolve("refs/remotes/origin/develop"), upstream + "\n");
+    Files.writeString(gitDir.resolve("refs/remotes/origin/master"), upstream + "\n");
+    Files.writeString(gitDir.resolve("config"), """
+        [remote "origin"]
+        \tfetch = +refs/heads/*:refs/remotes/origin/*
+        [branch "develop"]
+        \tremote = origin
+        \tmerge = refs/heads/develop
+        [branch "master"]
+        \tremote = origin
+        \tmerge = refs/heads/master
+        """, StandardOpenOption.APPEND);
+
+    // when + then:
+    assertThat(GitBranches.fastForward(tempPath, "develop")).contains(new FastForward(Outcome.DIVERGED, 1, 2));
+    assertThat(GitBranches.fastForward(tempPath, "master")).contains(new FastForward(Outcome.CHECKED_OUT, 0, 1));
+    assertThat(GitBranches.fastForward(tempPath, "feature")).contains(new FastForward(Outcome.NO_UPSTREAM, 0, 0));
+    assertThat(GitBranches.fastForward(tempPath, "missing")).contains(new FastForward(Outcome.ABSENT, 0, 0));
+    assertThat(Files.readString(gitDir.resolve("refs/heads/develop"))).isEqualTo(local + "\n");
+    assertThat(Files.readString(gitDir.resolve("refs/heads/master"))).isEqualTo(head + "\n");
+  }
+}
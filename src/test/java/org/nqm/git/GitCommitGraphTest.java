@@ -0,0 +1,61 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitCommitGraphTest {
+
+  @TempDir
+  private Path tempPath;
+
+  @Test
+  void open_OK() throws IOException {
+    // given:
+    var gitDir = GitFixtures.gitDir(tempPath, "master");
+    var root = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "root");
+    var left = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "left", root);
+    var right = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "right", root);
+    var octopus = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "octopus", left, right, root);
+    GitFixtures.writeCommitGraph(gitDir, List.of(List.of(root, left, right, octopus)));
+
+    // when:
+    var graph = GitCommitGraph.open(gitDir);
+
+    // then:
+    assertThat(graph).isPresent();
+    var at = graph.get().position(octopus).orElseThrow();
+    assertThat(graph.get().oid(at)).isEqualTo(octopus);
+    assertThat(graph.get().generation(at)).isEqualTo(3);
+    assertThat(graph.get().parents(at)).extracting(graph.get()::oid).containsExactly(left, right, root);
+    assertThat(graph.get().parents(graph.get().position(root).orElseThrow())).isEmpty();
+    assertThat(graph.get().position("ab".repeat(20))).isEmpty();
+  }
+
+  @Test
+  void open_withSplitChain_OK() throws IOException {
+    // given:
+    var gitDir = GitFixtures.gitDir(tempPath, "master");
+    var root = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "root");
+    var second = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "second", root);
+    var third = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "third", second);
+    GitFixtures.writeCommitGraph(gitDir, List.of(List.of(root), List.of(second, third)));
+
+    // when:
+    var graph = GitCommitGraph.open(gitDir).orElseThrow();
+
+    // then:
+    assertThat(graph.position(root)).hasValue(0);
+    var at = graph.position(third).orElseThrow();
+    assertThat(graph.generation(at)).isEqualTo(3);
+    assertThat(graph.parents(graph.parents(at).get(0))).containsExactly(0);
+  }
+
+  @Test
+  void open_withoutGraph_isEmpty() throws IOException {
+    assertThat(GitCommitGraph.open(GitFixtures.gitDir(tempPath, "master"))).isEmpty();
+  }
+}
@@ -0,0 +1,82 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.Test;
+
+class GitConfigFileTest {
+
+  @Test
+  void parse_OK() {
+    // given:
+    var config = GitConfigFile.parse("""
+        # comment
+        [core]
+        \tbare = false ; trailing comment
+        \tFileMode
+        [remote "origin"]
+        \turl = git@github.com:nqminhuit/gis.git
+        \tfetch = +refs/heads/*:refs/remotes/origin/*
+        \tfetch = +refs/tags/*:refs/tags/*
+        [Branch "Feature/X"]
+        \tremote=origin
+        \tmerge = "refs/heads/feature/x"
+        [submodule.Old]
+        \tpath = old
+        """);
+
+    // when + then:
+    assertThat(config.get("core", "bare")).contains("false");
+    assertThat(config.getBoolean("core", "bare", true)).isFalse();
+    assertThat(config.getBoolean("core", "filemode", false)).isTrue();
+    assertThat(config.get("remote", "origin", "url")).contains("git@github.com:nqminhuit/gis.git");
+    assertThat(config.getAll("remote", "origin", "fetch"))
+        .containsExactly("+refs/heads/*:refs/remotes/origin/*", "+refs/tags/*:refs/tags/*");
+    assertThat(config.get("branch", "Feature/X", "remote")).contains("origin");
+    assertThat(config.get("branch", "feature/x", "remote")).isEmpty();
+    assertThat(config.get("branch", "Feature/X", "merge")).contains("refs/heads/feature/x");
+    assertThat(config.get("submodule", "old", "path")).contains("old");
+    assertThat(config.subsections("remote")).containsExactly("origin");
+  }
+
+  @Test
+  void parse_withQuotesEscapesAndContinuation_OK() {
+    // given:
+    var config = GitConfigFile.parse("""
+        [alias]
+        \tsay = "echo \\"hi\\"  there" # comment
+        \tlong = one \\
+        two
+        \tspaced =   inner   spaces   \s
+        \tsemi = "a;b#c"
+        """);
+
+    // when + then:
+    assertThat(config.get("alias", "say")).contains("echo \"hi\"  there");
+    assertThat(config.get("alias", "long")).contains("one two");
+    assertThat(config.get("alias", "spaced")).contains("inner   spaces");
+    assertThat(config.get("alias", "semi")).contains("a;b#c");
+  }
+
+  @Test
+  void parse_lastValueWins() {
+    var config = GitConfigFile.parse("[core]\n\tautocrlf = true\n[core]\n\tautocrlf = input\n");
+    assertThat(config.get("core", "autocrlf")).contains("input");
+  }
+
+  @Test
+  void hasIncludes_OK() {
+    assertThat(GitConfigFile.parse("[include]\n\tpath = ~/.gitconfig.work\n").hasIncludes()).isTrue();
+    assertThat(GitConfigFile.parse("[includeIf \"gitdir:~/work/\"]\n\tpath = work.inc\n").hasIncludes()).isTrue();
+    assertThat(GitConfigFile.parse("[core]\n\tbare = false\n[includeIf \"onbranch:x\"]\n").hasIncludes()).isFalse();
+  }
+
+  @Test
+  void parse_withBrokenLine_NOK() {
+    assertThatThrownBy(() -> GitConfigFile.parse("[core]\n\t= nothing\n"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("bad config line 2");
+    assertThatThrownBy(() -> GitConfigFile.parse("name = outside any section\n"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,95 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nqm.git.GitFingerprint.Scope;
+
+class GitFingerprintTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path gitDir;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    gitDir = GitFixtures.gitDir(tempPath, "master");
+    Files.writeString(tempPath.resolve("README.md"), "readme");
+    var head = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "init");
+    Files.writeString(gitDir.resolve("refs/heads/master"), head + "\n");
+    GitFixtures.writeIndex(gitDir, tempPath, 2, GitFixtures.EMPTY_TREE, List.of("README.md"));
+  }
+
+  // as if the module was last touched an hour ago, which moves every ctime though
+  private void settle() throws IOException {
+    settle(tempPath);
+  }
+
+  private static void settle(Path dir) throws IOException {
+    var anHourAgo = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+    try (var paths = Files.walk(dir)) {
+      for (var path : paths.toList()) {
+        Files.setLastModifiedTime(path, anHourAgo);
+      }
+    }
+  }
+
+  @Test
+  void of_withSettledModule_isStable() throws IOException {
+    // given:
+    settle();
+
+    // when:
+    var fingerprint = GitFingerprint.of(tempPath, Scope.WORKTREE);
+
+    // then:
+    assertThat(fingerprint).isPresent();
+    assertThat(GitFingerprint.of(tempPath, Scope.WORKTREE)).isEqualTo(fingerprint);
+  }
+
+  @Test
+  void of_withFreshWrite_isEmpty() throws IOException {
+    // given:
+    settle();
+    Files.writeString(tempPath.resolve("README.md"), "changed");
+
+    // when + then:
+    assertThat(GitFingerprint.of(tempPath, Scope.INDEX)).isEmpty();
+    assertThat(GitFingerprint.of(tempPath, Scope.REFS)).isPresent();
+  }
+
+  @Test
+  void of_withMovedRef_changes() throws IOException {
+    // given:
+    settle();
+    var before = GitFingerprint.of(tempPath, Scope.REFS);
+    Files.createDirectories(gitDir.resolve("refs/heads/feature"));
+    Files.writeString(gitDir.resolve("refs/heads/feature/x"), GitFixtures.EMPTY_TREE + "\n");
+    settle(gitDir.resolve("refs/heads"));
+
+    // when + then:
+    assertThat(GitFingerprint.of(tempPath, Scope.REFS)).isPresent().isNotEqualTo(before);
+  }
+
+  @Test
+  void of_withUntrackedFile_changesWorktreeScopeOnly() throws IOException {
+    // given:
+    settle();
+    var index = GitFingerprint.of(tempPath, Scope.INDEX);
+    var worktree = GitFingerprint.of(tempPath, Scope.WORKTREE);
+    settle(Files.writeString(tempPath.resolve("NOTES.md"), "notes"));
+
+    // when + then:
+    assertThat(GitFingerprint.of(tempPath, Scope.INDEX)).isEqualTo(index);
+    assertThat(GitFingerprint.of(tempPath, Scope.WORKTREE)).isPresent().isNotEqualTo(worktree);
+  }
+}
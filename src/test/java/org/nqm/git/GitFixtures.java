@@ -0,0 +1,320 @@
+package org.nqm.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes repository files the way git would, so the readers can be tested without git.
+ */
+final class GitFixtures {
+
+  private GitFixtures() {}
+
+  static final String EMPTY_TREE = "4b825dc642cb6eb9a060e54bf8d69288fbee4904";
+
+  static Path gitDir(Path worktree, String branch) throws IOException {
+    var gitDir = Files.createDirectories(worktree.resolve(".git"));
+    Files.createDirectories(gitDir.resolve("refs/heads"));
+    Files.writeString(gitDir.resolve("HEAD"), "ref: refs/heads/%s%n".formatted(branch));
+    return gitDir;
+  }
+
+  static String writeObject(Path gitDir, String type, byte[] data) throws IOException {
+    var header = "%s %d\0".formatted(type, data.length).getBytes(StandardCharsets.US_ASCII);
+    var raw = ByteBuffer.allocate(header.length + data.length).put(header).put(data).array();
+    var oid = HexFormat.of().formatHex(sha1(raw));
+    var file = gitDir.resolve("objects").resolve(oid.substring(0, 2)).resolve(oid.substring(2));
+    Files.createDirectories(file.getParent());
+    Files.write(file, deflate(raw));
+    return oid;
+  }
+
+  static String commit(Path gitDir, String tree, String subject, String... parents) throws IOException {
+    var body = new StringBuilder("tree %s%n".formatted(tree));
+    for (var parent : parents) {
+      body.append("parent %s%n".formatted(parent));
+    }
+    body.append("author a <a@a> 0 +0000%ncommitter a <a@a> 0 +0000%n%n%s%n".formatted(subject));
+    return writeObject(gitDir, "commit", body.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * A commit-graph of {@code layers}, each holding the given commits (read back from the
+   * object store for their parents). More than one layer makes a split chain, base first.
+   */
+  static void writeCommitGraph(Path gitDir, List<List<String>> layers) throws IOException {
+    var info = Files.createDirectories(gitDir.resolve("objects/info"));
+    var positions = new ArrayList<String>();
+    var chain = new StringBuilder();
+    for (var layer : layers) {
+      var content = commitGraphLayer(gitDir, layer.stream().sorted().toList(), positions);
+      if (layers.size() == 1) {
+        Files.write(info.resolve("commit-graph"), content);
+        return;
+      }
+      var hash = HexFormat.of().formatHex(sha1(content));
+      Files.createDirectories(info.resolve("commit-graphs"));
+      Files.write(info.resolve("commit-graphs/graph-%s.graph".formatted(hash)), content);
+      chain.append(hash).append('\n');
+    }
+    Files.writeString(info.resolve("commit-graphs/commit-graph-chain"), chain);
+  }
+
+  private static byte[] commitGraphLayer(Path gitDir, List<String> commits, List<String> positions)
+      throws IOException {
+    positions.addAll(commits);
+    var fanout = ByteBuffer.allocate(256 * 4);
+    for (var b = 0; b < 256; b++) {
+      var first = b;
+      fanout.putInt((int) commits.stream().filter(oid -> Integer.parseInt(oid.substring(0, 2), 16) <= first).count());
+    }
+    var lookup = new ByteArrayOutputStream();
+    var data = new ByteArrayOutputStream();
+    var edges = new ByteArrayOutputStream();
+    for (var oid : commits) {
+      lookup.writeBytes(HexFormat.of().parseHex(oid));
+      var parents = parentsOf(gitDir, oid).stream().map(positions::indexOf).toList();
+      var entry = ByteBuffer.allocate(36).put(HexFormat.of().parseHex(EMPTY_TREE));
+      entry.putInt(parents.isEmpty() ? 0x70000000 : parents.get(0));
+      if (parents.size() > 2) {
+        entry.putInt(0x80000000 | edges.size() / 4);
+        for (var i = 1; i < parents.size(); i++) {
+          edges.writeBytes(ByteBuffer.allocate(4)
+              .putInt(parents.get(i) | (i == parents.size() - 1 ? 0x80000000 : 0)).array());
+        }
+      } else {
+        entry.putInt(parents.size() == 2 ? parents.get(1) : 0x70000000);
+      }
+      entry.putInt(generationOf(gitDir, oid) << 2).putInt(0);
+      data.writeBytes(entry.array());
+    }
+    var chunks = new ArrayList<Map.Entry<String, byte[]>>();
+    chunks.add(Map.entry("OIDF", fanout.array()));
+    chunks.add(Map.entry("OIDL", lookup.toByteArray()));
+    chunks.add(Map.entry("CDAT", data.toByteArray()));
+    if (edges.size() > 0) {
+      chunks.add(Map.entry("EDGE", edges.toByteArray()));
+    }
+    var out = new ByteArrayOutputStream();
+    out.writeBytes("CGPH".getBytes(StandardCharsets.US_ASCII));
+    out.writeBytes(new byte[] {1, 1, (byte) chunks.size(), 0});
+    long offset = 8 + (chunks.size() + 1) * 12L;
+    for (var chunk : chunks) {
+      out.writeBytes(chunk.getKey().getBytes(StandardCharsets.US_ASCII));
+      out.writeBytes(ByteBuffer.allocate(8).putLong(offset).array());
+      offset += chunk.getValue().length;
+    }
+    out.writeBytes(ByteBuffer.allocate(12).putInt(0).putLong(offset).array());
+    chunks.forEach(chunk -> out.writeBytes(chunk.getValue()));
+    out.writeBytes(new byte[20]);
+    return out.toByteArray();
+  }
+
+  private static List<String> parentsOf(Path gitDir, String oid) {
+    var commit = new String(GitObjects.read(gitDir, oid).orElseThrow().data(), StandardCharsets.UTF_8);
+    return commit.lines().takeWhile(line -> !line.isEmpty())
+        .filter(line -> line.startsWith("parent "))
+        .map(line -> line.substring("parent ".length()))
+        .toList();
+  }
+
+  private static int generationOf(Path gitDir, String oid) {
+    return 1 + parentsOf(gitDir, oid).stream().mapToInt(parent -> generationOf(gitDir, parent)).max().orElse(0);
+  }
+
+  /**
+   * A pack of {@code versions} of one object: the first stored whole, each next one as a
+   * delta of the one before, against its offset and its id in turns. Gives the object ids.
+   */
+  static List<String> writePack(Path gitDir, String type, byte[]... versions) throws IOException {
+    var typeCode = List.of("commit", "tree", "blob", "tag").indexOf(type) + 1;
+    var pack = new ByteArrayOutputStream();
+    pack.writeBytes("PACK".getBytes(StandardCharsets.US_ASCII));
+    pack.writeBytes(ByteBuffer.allocate(8).putInt(2).putInt(versions.length).array());
+    var oids = new ArrayList<String>();
+    var offsets = new ArrayList<Integer>();
+    for (var i = 0; i < versions.length; i++) {
+      var header = "%s %d\0".formatted(type, versions[i].length).getBytes(StandardCharsets.US_ASCII);
+      oids.add(HexFormat.of().formatHex(sha1(ByteBuffer.allocate(header.length + versions[i].length)
+          .put(header).put(versions[i]).array())));
+      offsets.add(pack.size());
+      if (i == 0) {
+        writePackHeader(pack, typeCode, versions[i].length);
+        pack.writeBytes(deflate(versions[i]));
+        continue;
+      }
+      var delta = delta(versions[i - 1], versions[i]);
+      if (i % 2 == 1) {
+        writePackHeader(pack, 6, delta.length);
+        writeVarint(pack, offsets.get(i) - offsets.get(i - 1));
+      } else {
+        writePackHeader(pack, 7, delta.length);
+        pack.writeBytes(HexFormat.of().parseHex(oids.get(i - 1)));
+      }
+      pack.writeBytes(deflate(delta));
+    }
+    var packChecksum = sha1(pack.toByteArray());
+    pack.writeBytes(packChecksum);
+
+    var sorted = oids.stream().sorted().toList();
+    var idx = new ByteArrayOutputStream();
+    idx.writeBytes(ByteBuffer.allocate(8).putInt(0xff744f63).putInt(2).array());
+    for (var b = 0; b < 256; b++) {
+      var first = b;
+      idx.writeBytes(ByteBuffer.allocate(4)
+          .putInt((int) sorted.stream().filter(oid -> Integer.parseInt(oid.substring(0, 2), 16) <= first).count())
+          .array());
+    }
+    sorted.forEach(oid -> idx.writeBytes(HexFormat.of().parseHex(oid)));
+    idx.writeBytes(new byte[4 * sorted.size()]);
+    sorted.forEach(oid -> idx.writeBytes(ByteBuffer.allocate(4).putInt(offsets.get(oids.indexOf(oid))).array()));
+    idx.writeBytes(packChecksum);
+    idx.writeBytes(sha1(idx.toByteArray()));
+
+    var name = "pack-" + HexFormat.of().formatHex(packChecksum);
+    var dir = Files.createDirectories(gitDir.resolve("objects/pack"));
+    Files.write(dir.resolve(name + ".pack"), pack.toByteArray());
+    Files.write(dir.resolve(name + ".idx"), idx.toByteArray());
+    return oids;
+  }
+
+  // type in bits 4-6 of the first byte, the size in 4 bits there and 7 bits per byte after
+  private static void writePackHeader(ByteArrayOutputStream out, int type, int size) {
+    var c = (type << 4) | (size & 0x0f);
+    size >>>= 4;
+    while (size != 0) {
+      out.write(c | 0x80);
+      c = size & 0x7f;
+      size >>>= 7;
+    }
+    out.write(c);
+  }
+
+  // copies the prefix both share and inserts the rest
+  private static byte[] delta(byte[] base, byte[] target) {
+    var out = new ByteArrayOutputStream();
+    for (var size : new int[] {base.length, target.length}) {
+      while (size >= 0x80) {
+        out.write((size & 0x7f) | 0x80);
+        size >>>= 7;
+      }
+      out.write(size);
+    }
+    var common = 0;
+    while (common < Math.min(Math.min(base.length, target.length), 0xffff) && base[common] == target[common]) {
+      common++;
+    }
+    if (common > 0) {
+      out.write(0x80 | 0x10 | 0x20);
+      out.write(common & 0xff);
+      out.write(common >>> 8);
+    }
+    for (var at = common; at < target.length; at += 127) {
+      var length = Math.min(127, target.length - at);
+      out.write(length);
+      out.write(target, at, length);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] deflate(byte[] data) {
+    var deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    var compressed = new ByteArrayOutputStream();
+    var chunk = new byte[1024];
+    while (!deflater.finished()) {
+      compressed.write(chunk, 0, deflater.deflate(chunk));
+    }
+    deflater.end();
+    return compressed.toByteArray();
+  }
+
+  /**
+   * An index holding {@code paths} with the stat data they have on disk now, its cache tree
+   * claims {@code rootTree} (invalidated when null).
+   */
+  static void writeIndex(Path gitDir, Path worktree, int version, String rootTree, List<String> paths)
+      throws IOException {
+    var out = new ByteArrayOutputStream();
+    out.writeBytes("DIRC".getBytes(StandardCharsets.US_ASCII));
+    out.writeBytes(ByteBuffer.allocate(8).putInt(version).putInt(paths.size()).array());
+    var previous = "";
+    for (var path : paths.stream().sorted().toList()) {
+      var stat = Files.readAttributes(worktree.resolve(path), "unix:*", LinkOption.NOFOLLOW_LINKS);
+      var mtime = ((FileTime) stat.get("lastModifiedTime")).toInstant();
+      var ctime = ((FileTime) stat.get("ctime")).toInstant();
+      var name = path.getBytes(StandardCharsets.UTF_8);
+      var entry = ByteBuffer.allocate(62)
+          .putInt((int) ctime.getEpochSecond()).putInt(ctime.getNano())
+          .putInt((int) mtime.getEpochSecond()).putInt(mtime.getNano())
+          .putInt((int) (long) stat.get("dev")).putInt((int) (long) stat.get("ino"))
+          .putInt((int) stat.get("mode")).putInt((int) stat.get("uid")).putInt((int) stat.get("gid"))
+          .putInt((int) (long) stat.get("size"))
+          .put(new byte[20])
+          .putShort((short) Math.min(name.length, 0xfff));
+      out.writeBytes(entry.array());
+      if (version == 4) {
+        var common = 0;
+        while (common < previous.length() && common < path.length() && previous.charAt(common) == path.charAt(common)) {
+          common++;
+        }
+        writeVarint(out, previous.length() - common);
+        out.writeBytes(path.substring(common).getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+      } else {
+        out.writeBytes(name);
+        out.writeBytes(new byte[8 - (62 + name.length) % 8]);
+      }
+      previous = path;
+    }
+    var tree = new ByteArrayOutputStream();
+    tree.write(0);
+    if (rootTree == null) {
+      tree.writeBytes("-1 0\n".getBytes(StandardCharsets.US_ASCII));
+    } else {
+      tree.writeBytes("%d 0\n".formatted(paths.size()).getBytes(StandardCharsets.US_ASCII));
+      tree.writeBytes(HexFormat.of().parseHex(rootTree));
+    }
+    out.writeBytes("TREE".getBytes(StandardCharsets.US_ASCII));
+    out.writeBytes(ByteBuffer.allocate(4).putInt(tree.size()).array());
+    out.writeBytes(tree.toByteArray());
+    out.writeBytes(sha1(out.toByteArray()));
+    var index = gitDir.resolve("index");
+    Files.write(index, out.toByteArray());
+    // written "later" than every file in it, so none of them is racily clean
+    Files.setLastModifiedTime(index, FileTime.from(Instant.now().plusSeconds(2)));
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    var bytes = new byte[16];
+    var pos = bytes.length - 1;
+    bytes[pos] = (byte) (value & 0x7f);
+    while ((value >>= 7) != 0) {
+      bytes[--pos] = (byte) (0x80 | (--value & 0x7f));
+    }
+    out.write(bytes, pos, bytes.length - pos);
+  }
+
+  private static byte[] sha1(byte[] data) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(data);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
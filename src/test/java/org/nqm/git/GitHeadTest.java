@@ -0,0 +1,104 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitHeadTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path gitDir(Path worktree, String head) throws IOException {
+    var gitDir = Files.createDirectories(worktree.resolve(".git"));
+    Files.writeString(gitDir.resolve("HEAD"), head);
+    return gitDir;
+  }
+
+  @Test
+  void currentBranch_OK() throws IOException {
+    // given:
+    gitDir(tempPath, "ref: refs/heads/feature/abc\n");
+
+    // when + then:
+    assertThat(GitHead.currentBranch(tempPath)).contains("feature/abc");
+  }
+
+  @Test
+  void currentBranch_withDetachedHead_isBlank() throws IOException {
+    // given:
+    gitDir(tempPath, "9fceb02d0ae598e95dc970b74767f19372d61af8\n");
+
+    // when + then:
+    assertThat(GitHead.currentBranch(tempPath)).contains("");
+  }
+
+  @Test
+  void currentBranch_withSubmoduleGitFile_followsGitDir() throws IOException {
+    // given:
+    var moduleGitDir = Files.createDirectories(tempPath.resolve(".git/modules/sub"));
+    Files.writeString(moduleGitDir.resolve("HEAD"), "ref: refs/heads/develop\n");
+    var module = Files.createDirectories(tempPath.resolve("sub"));
+    Files.writeString(module.resolve(".git"), "gitdir: ../.git/modules/sub\n");
+
+    // when + then:
+    assertThat(GitHead.currentBranch(module)).contains("develop");
+  }
+
+  @Test
+  void currentBranch_withSymbolicRef_followsItToTheBranch() throws IOException {
+    // given:
+    var gitDir = gitDir(tempPath, "ref: refs/heads/current\n");
+    Files.createDirectories(gitDir.resolve("refs/heads"));
+    Files.writeString(gitDir.resolve("refs/heads/current"), "ref: refs/heads/main\n");
+    Files.writeString(gitDir.resolve("refs/heads/main"), "9fceb02d0ae598e95dc970b74767f19372d61af8\n");
+
+    // when + then:
+    assertThat(GitHead.currentBranch(tempPath)).contains("main");
+  }
+
+  @Test
+  void currentBranch_withLinkedWorktree_readsBranchesFromCommonDir() throws IOException {
+    // given:
+    var mainGitDir = gitDir(tempPath.resolve("main"), "ref: refs/heads/master\n");
+    Files.createDirectories(mainGitDir.resolve("refs/heads"));
+    Files.writeString(mainGitDir.resolve("refs/heads/alias"), "ref: refs/heads/topic\n");
+    var worktreeGitDir = Files.createDirectories(mainGitDir.resolve("worktrees/wt"));
+    Files.writeString(worktreeGitDir.resolve("HEAD"), "ref: refs/heads/alias\n");
+    Files.writeString(worktreeGitDir.resolve("commondir"), "../..\n");
+    var worktree = Files.createDirectories(tempPath.resolve("wt"));
+    Files.writeString(worktree.resolve(".git"), "gitdir: %s\n".formatted(worktreeGitDir));
+
+    // when + then:
+    assertThat(GitHead.currentBranch(worktree)).contains("topic");
+  }
+
+  @Test
+  void currentBranch_withUnreadableHead_isEmpty() throws IOException {
+    assertThat(GitHead.currentBranch(tempPath)).isEmpty();
+
+    gitDir(tempPath, "ref: refs/heads/.invalid\n");
+    assertThat(GitHead.currentBranch(tempPath)).isEmpty();
+
+    gitDir(tempPath, "garbage\n");
+    assertThat(GitHead.currentBranch(tempPath)).isEmpty();
+  }
+
+  @Test
+  void operationInProgress_OK() throws IOException {
+    // given:
+    var gitDir = gitDir(tempPath, "9fceb02d0ae598e95dc970b74767f19372d61af8\n");
+
+    // when + then:
+    assertThat(GitHead.operationInProgress(tempPath)).isEmpty();
+    Files.createDirectories(gitDir.resolve("rebase-merge"));
+    Files.writeString(gitDir.resolve("rebase-merge/head-name"), "refs/heads/feature/abc\n");
+    assertThat(GitHead.operationInProgress(tempPath)).contains("rebase");
+    assertThat(GitHead.rebasingBranchOf(gitDir)).contains("feature/abc");
+    Files.writeString(gitDir.resolve("MERGE_HEAD"), "9fceb02d0ae598e95dc970b74767f19372d61af8\n");
+    assertThat(GitHead.operationInProgress(tempPath)).contains("merge");
+  }
+}
@@ -0,0 +1,84 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nqm.git.GitHistory.Divergence;
+
+class GitHistoryTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path gitDir;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    gitDir = GitFixtures.gitDir(tempPath, "master");
+  }
+
+  private String commit(String subject, String... parents) throws IOException {
+    return GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, subject, parents);
+  }
+
+  @Test
+  void aheadBehind_withLooseCommits_OK() throws IOException {
+    // given:
+    var base = commit("base");
+    var ours = commit("ours 2", commit("ours 1", base));
+    var theirs = commit("theirs", base);
+
+    // when + then:
+    assertThat(GitHistory.aheadBehind(gitDir, ours, theirs)).contains(new Divergence(2, 1));
+    assertThat(GitHistory.aheadBehind(gitDir, base, ours)).contains(new Divergence(0, 2));
+    assertThat(GitHistory.aheadBehind(gitDir, ours, ours)).contains(new Divergence(0, 0));
+  }
+
+  @Test
+  void aheadBehind_withCommitGraphChain_OK() throws IOException {
+    // given:
+    var root = commit("root");
+    var x1 = commit("x1", root);
+    var x2 = commit("x2", x1);
+    var y1 = commit("y1", root);
+    var merge = commit("merge", x2, y1);
+    var octopus = commit("octopus", root, x1, y1);
+    GitFixtures.writeCommitGraph(gitDir, List.of(List.of(root, x1, x2, y1), List.of(merge, octopus)));
+    // not written to the graph yet
+    var ours = commit("ours", merge);
+
+    // when + then:
+    assertThat(GitHistory.aheadBehind(gitDir, ours, octopus)).contains(new Divergence(3, 1));
+    assertThat(GitHistory.aheadBehind(gitDir, y1, x2)).contains(new Divergence(1, 2));
+  }
+
+  @Test
+  void aheadBehind_withMissingCommit_isEmpty() throws IOException {
+    assertThat(GitHistory.aheadBehind(gitDir, commit("base"), "ab".repeat(20))).isEmpty();
+  }
+
+  @Test
+  void lastCommit_OK() throws IOException {
+    // given:
+    var message = "tree %s\nauthor a <a@a> 1 +0000\ncommitter a <a@a> 1700000000 +0100\n\n"
+        + "Fix the parser\nfor long lines\n\nBody text.\n";
+    var head = GitFixtures.writeObject(gitDir, "commit",
+        message.formatted(GitFixtures.EMPTY_TREE).getBytes(StandardCharsets.UTF_8));
+    Files.writeString(gitDir.resolve("refs/heads/master"), head + "\n");
+
+    // when + then:
+    assertThat(GitHistory.lastCommit(tempPath))
+        .contains(new GitHistory.LastCommit(head, "Fix the parser for long lines", 1700000000L));
+  }
+
+  @Test
+  void lastCommit_withUnbornBranch_isEmpty() {
+    assertThat(GitHistory.lastCommit(tempPath)).isEmpty();
+  }
+}
@@ -0,0 +1,72 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+class GitIgnoreTest {
+
+  @Test
+  void match_withBasenamePattern_matchesAtAnyDepth() {
+    var ignore = GitIgnore.parse("*.log\n", "");
+    assertThat(ignore.match("debug.log", false)).contains(true);
+    assertThat(ignore.match("a/b/debug.log", false)).contains(true);
+    assertThat(ignore.match("a/b/debug.txt", false)).isEmpty();
+  }
+
+  @Test
+  void match_withSlash_isAnchored() {
+    var ignore = GitIgnore.parse("/target\ndocs/*.md\n", "");
+    assertThat(ignore.match("target", true)).contains(true);
+    assertThat(ignore.match("sub/target", true)).isEmpty();
+    assertThat(ignore.match("docs/a.md", false)).contains(true);
+    assertThat(ignore.match("docs/sub/a.md", false)).isEmpty();
+  }
+
+  @Test
+  void match_withTrailingSlash_onlyMatchesDirectories() {
+    var ignore = GitIgnore.parse("build/\n", "");
+    assertThat(ignore.match("build", true)).contains(true);
+    assertThat(ignore.match("build", false)).isEmpty();
+  }
+
+  @Test
+  void match_withNegation_lastPatternWins() {
+    var ignore = GitIgnore.parse("*.log\n!keep.log\n", "");
+    assertThat(ignore.match("debug.log", false)).contains(true);
+    assertThat(ignore.match("keep.log", false)).contains(false);
+  }
+
+  @Test
+  void match_withDoubleStar_spansDirectories() {
+    var ignore = GitIgnore.parse("**/gen\nlogs/**\na/**/b\n", "");
+    assertThat(ignore.match("gen", true)).contains(true);
+    assertThat(ignore.match("x/y/gen", true)).contains(true);
+    assertThat(ignore.match("logs/2024/jan.txt", false)).contains(true);
+    assertThat(ignore.match("a/b", true)).contains(true);
+    assertThat(ignore.match("a/x/y/b", true)).contains(true);
+  }
+
+  @Test
+  void match_withBracketsAndEscapes_OK() {
+    var ignore = GitIgnore.parse("file[0-9].txt\n[!a]x\n\\#hash\n\\!bang\ntrailing\\ \n", "");
+    assertThat(ignore.match("file7.txt", false)).contains(true);
+    assertThat(ignore.match("filex.txt", false)).isEmpty();
+    assertThat(ignore.match("bx", false)).contains(true);
+    assertThat(ignore.match("ax", false)).isEmpty();
+    assertThat(ignore.match("#hash", false)).contains(true);
+    assertThat(ignore.match("!bang", false)).contains(true);
+    assertThat(ignore.match("trailing ", false)).contains(true);
+  }
+
+  @Test
+  void match_fromNestedFile_isRelativeToItsDirectory() {
+    var ignore = GitIgnore.parse("/out\n", "module/");
+    assertThat(ignore.match("module/out", true)).contains(true);
+    assertThat(ignore.match("out", true)).isEmpty();
+  }
+
+  @Test
+  void parse_withCommentsAndBlankLines_isEmpty() {
+    assertThat(GitIgnore.parse("# comment\n\n   \n", "").isEmpty()).isTrue();
+  }
+}
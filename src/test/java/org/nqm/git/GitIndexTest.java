@@ -0,0 +1,99 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitIndexTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path worktree(String... files) throws IOException {
+    for (var file : files) {
+      var path = tempPath.resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.writeString(path, file);
+    }
+    return GitFixtures.gitDir(tempPath, "master");
+  }
+
+  @Test
+  void read_OK() throws IOException {
+    for (var version : new int[] {2, 3, 4}) {
+      read_OK(version);
+    }
+  }
+
+  private void read_OK(int version) throws IOException {
+    // given:
+    var gitDir = worktree("README.md", "src/main/App.java", "src/main/Apple.java", "src/test/AppTest.java");
+    GitFixtures.writeIndex(gitDir, tempPath, version, GitFixtures.EMPTY_TREE,
+        List.of("README.md", "src/main/App.java", "src/main/Apple.java", "src/test/AppTest.java"));
+
+    // when:
+    var index = GitIndex.read(gitDir.resolve("index"), 20);
+
+    // then:
+    assertThat(index).isPresent();
+    assertThat(index.get().version()).isEqualTo(version);
+    assertThat(index.get().entries())
+        .extracting(GitIndex.Entry::path)
+        .containsExactly("README.md", "src/main/App.java", "src/main/Apple.java", "src/test/AppTest.java");
+    assertThat(index.get().entries())
+        .extracting(GitIndex.Entry::size)
+        .containsExactly(9, 17, 19, 21);
+    assertThat(index.get().entries()).allSatisfy(entry -> {
+      assertThat(entry.mode() & GitIndex.MODE_TYPE).isEqualTo(GitIndex.MODE_REGULAR);
+      assertThat(entry.stage()).isZero();
+    });
+    assertThat(index.get().rootTree()).contains(GitFixtures.EMPTY_TREE);
+  }
+
+  @Test
+  void read_withInvalidatedCacheTree_hasNoRootTree() throws IOException {
+    // given:
+    var gitDir = worktree("a");
+    GitFixtures.writeIndex(gitDir, tempPath, 2, null, List.of("a"));
+
+    // when + then:
+    assertThat(GitIndex.read(gitDir.resolve("index"), 20))
+        .hasValueSatisfying(index -> assertThat(index.rootTree()).isEmpty());
+  }
+
+  @Test
+  void parse_withRequiredExtension_isEmpty() {
+    // given: an index without entries followed by a 'link' (split index) extension
+    var buffer = ByteBuffer.allocate(12 + 8 + 20)
+        .putInt(0x44495243).putInt(2).putInt(0)
+        .putInt(0x6c696e6b).putInt(0)
+        .put(new byte[20])
+        .flip();
+
+    // when + then:
+    assertThat(GitIndex.parse(buffer, 20)).isEmpty();
+  }
+
+  @Test
+  void parse_withOptionalExtension_skipsIt() {
+    // given: an index without entries followed by an 'UNTR' (untracked cache) extension
+    var buffer = ByteBuffer.allocate(12 + 8 + 4 + 20)
+        .putInt(0x44495243).putInt(2).putInt(0)
+        .putInt(0x554e5452).putInt(4).putInt(0)
+        .put(new byte[20])
+        .flip();
+
+    // when + then:
+    assertThat(GitIndex.parse(buffer, 20)).hasValueSatisfying(index -> assertThat(index.entries()).isEmpty());
+  }
+
+  @Test
+  void parse_withBadSignature_isEmpty() {
+    assertThat(GitIndex.parse(ByteBuffer.wrap(new byte[64]), 20)).isEmpty();
+  }
+}
@@ -0,0 +1,66 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitPackTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void read_withDeltaChain_OK() throws IOException {
+    // given: the second version is an offset delta, the third a delta against an object id
+    var gitDir = GitFixtures.gitDir(tempPath, "master");
+    var first = "line 1\nline 2\n".repeat(40);
+    var second = first + "line 3\n";
+    var third = second + "a line long enough to need more than one insert instruction: ".repeat(4);
+    var oids = GitFixtures.writePack(gitDir, "blob", bytes(first), bytes(second), bytes(third));
+
+    // when + then:
+    assertThat(GitObjects.read(gitDir, oids.get(0))).hasValueSatisfying(object -> {
+      assertThat(object.type()).isEqualTo("blob");
+      assertThat(object.data()).isEqualTo(bytes(first));
+    });
+    assertThat(GitObjects.read(gitDir, oids.get(1)))
+        .hasValueSatisfying(object -> assertThat(object.data()).isEqualTo(bytes(second)));
+    assertThat(GitObjects.read(gitDir, oids.get(2)))
+        .hasValueSatisfying(object -> assertThat(object.data()).isEqualTo(bytes(third)));
+  }
+
+  @Test
+  void read_withPackedCommit_OK() throws IOException {
+    // given:
+    var gitDir = GitFixtures.gitDir(tempPath, "master");
+    var commit = "tree %s\ncommitter a <a@a> 1700000000 +0000\n\nsubject\n".formatted(GitFixtures.EMPTY_TREE);
+    var oid = GitFixtures.writePack(gitDir, "commit", bytes(commit)).get(0);
+
+    // when + then:
+    assertThat(GitObjects.commitTree(gitDir, oid)).contains(GitFixtures.EMPTY_TREE);
+    assertThat(GitObjects.read(gitDir, "ab".repeat(20))).isEmpty();
+  }
+
+  @Test
+  void applyDelta_withCopyAndInsert_OK() {
+    // given: copy 4 bytes from offset 6 of the base, then insert "!"
+    var base = bytes("hello world");
+    var delta = new byte[] {11, 5, (byte) 0x91, 6, 4, 1, '!'};
+
+    // when + then:
+    assertThat(GitPack.applyDelta(base, delta))
+        .hasValueSatisfying(result -> assertThat(result).isEqualTo(bytes("worl!")));
+  }
+
+  @Test
+  void applyDelta_withWrongBaseSize_isEmpty() {
+    assertThat(GitPack.applyDelta(bytes("short"), new byte[] {11, 1, 1, 'x'})).isEmpty();
+  }
+}
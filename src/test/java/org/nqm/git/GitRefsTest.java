@@ -0,0 +1,171 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitRefsTest {
+
+  private static final String OID = "9fceb02d0ae598e95dc970b74767f19372d61af8";
+  private static final String OTHER_OID = "1e8bd1e2a3f07c4b6d0e5f9a8b7c6d5e4f3a2b1c";
+
+  @TempDir
+  private Path tempPath;
+
+  private Path gitDir() throws IOException {
+    var gitDir = Files.createDirectories(tempPath.resolve(".git"));
+    Files.writeString(gitDir.resolve("HEAD"), "ref: refs/heads/master\n");
+    return gitDir;
+  }
+
+  private static void packedRefs(Path gitDir, String... refnames) throws IOException {
+    var lines = new ArrayList<String>();
+    lines.add("# pack-refs with: peeled fully-peeled sorted ");
+    for (var refname : refnames) {
+      lines.add(OID + " " + refname);
+      if (refname.startsWith("refs/tags/")) {
+        lines.add("^" + OTHER_OID);
+      }
+    }
+    Files.write(gitDir.resolve("packed-refs"), lines);
+  }
+
+  private static void looseRef(Path gitDir, String refname, String value) throws IOException {
+    var file = gitDir.resolve(refname);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, value + "\n");
+  }
+
+  @Test
+  void shortNames_mergesPackedAndLooseRefs() throws IOException {
+    // given:
+    var gitDir = gitDir();
+    packedRefs(gitDir,
+        "refs/heads/develop",
+        "refs/heads/master",
+        "refs/remotes/origin/develop",
+        "refs/remotes/origin/master",
+        "refs/tags/v1.0");
+    looseRef(gitDir, "refs/heads/feature/abc", OID);
+    looseRef(gitDir, "refs/heads/master", OTHER_OID);
+    looseRef(gitDir, "refs/remotes/origin/HEAD", "ref: refs/remotes/origin/master");
+
+    // when + then:
+    assertThat(GitRefs.shortNames(tempPath, GitRefs.HEADS))
+        .contains(List.of("develop", "feature/abc", "master"));
+    assertThat(GitRefs.shortNames(tempPath, GitRefs.HEADS, GitRefs.REMOTES))
+        .contains(List.of("develop", "feature/abc", "master",
+            "origin/HEAD", "origin/develop", "origin/master"));
+  }
+
+  @Test
+  void shortNames_withAmbiguousNames_keepsNamespace() throws IOException {
+    // given:
+    var gitDir = gitDir();
+    packedRefs(gitDir, "refs/heads/origin/master", "refs/heads/v1.0", "refs/remotes/origin/master", "refs/tags/v1.0");
+
+    // when + then:
+    assertThat(GitRefs.shortNames(tempPath, GitRefs.HEADS, GitRefs.REMOTES))
+        .contains(List.of("heads/origin/master", "heads/v1.0", "remotes/origin/master"));
+  }
+
+  @Test
+  void shortNames_skipsDanglingSymrefsAndLockFiles() throws IOException {
+    // given:
+    var gitDir = gitDir();
+    looseRef(gitDir, "refs/heads/master", OID);
+    looseRef(gitDir, "refs/heads/master.lock", OID);
+    looseRef(gitDir, "refs/heads/broken", "garbage");
+    looseRef(gitDir, "refs/remotes/origin/HEAD", "ref: refs/remotes/origin/gone");
+
+    // when + then:
+    assertThat(GitRefs.shortNames(tempPath, GitRefs.HEADS, GitRefs.REMOTES))
+        .contains(List.of("master"));
+  }
+
+  @Test
+  void shortNames_withReftable_isEmpty() throws IOException {
+    // given:
+    var gitDir = gitDir();
+    Files.createDirectories(gitDir.resolve("reftable"));
+
+    // when + then:
+    assertThat(GitRefs.shortNames(tempPath, GitRefs.HEADS)).isEmpty();
+  }
+
+  @Test
+  void shortNames_withoutGitDir_isEmpty() {
+    assertThat(GitRefs.shortNames(tempPath, GitRefs.HEADS)).isEmpty();
+  }
+
+  @Test
+  void hasCheckoutTarget_findsBranchesTagsAndRemoteTrackingBranches() throws IOException {
+    // given:
+    var gitDir = gitDir();
+    packedRefs(gitDir, "refs/heads/master", "refs/tags/v1.0");
+    looseRef(gitDir, "refs/remotes/origin/feature/abc", OID);
+    Files.writeString(gitDir.resolve("config"), """
+        [remote "origin"]
+        	url = git@example.com:org/repo.git
+        	fetch = +refs/heads/*:refs/remotes/origin/*
+        """);
+
+    // when + then:
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "master")).contains(true);
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "v1.0")).contains(true);
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "feature/abc")).contains(true);
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "develop")).contains(false);
+  }
+
+  @Test
+  void hasCheckoutTarget_withRevisionLikeName_isEmpty() throws IOException {
+    // given:
+    var gitDir = gitDir();
+    packedRefs(gitDir, "refs/heads/master");
+
+    // when + then:
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "HEAD")).isEmpty();
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "HEAD~1")).isEmpty();
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "@{-1}")).isEmpty();
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "9fceb02")).isEmpty();
+    assertThat(GitRefs.hasCheckoutTarget(tempPath, "-b")).isEmpty();
+  }
+
+  @Test
+  void packed_binarySearchFindsEveryRef() {
+    // given:
+    var refnames = IntStream.range(0, 500).mapToObj("refs/heads/b%04d"::formatted).toList();
+    var content = new StringBuilder("# pack-refs with: peeled fully-peeled sorted \n");
+    refnames.forEach(refname -> content.append(OID).append(' ').append(refname).append('\n')
+        .append('^').append(OTHER_OID).append('\n'));
+    var packed = GitRefs.Packed.of(ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)));
+
+    // when + then:
+    assertThat(refnames).allSatisfy(refname -> assertThat(packed.lookup(refname)).contains(OID));
+    assertThat(packed.lookup("refs/heads/b0250x")).isEmpty();
+    assertThat(packed.lookup("refs/heads/a")).isEmpty();
+    assertThat(packed.lookup("refs/heads/z")).isEmpty();
+  }
+
+  @Test
+  void packed_withoutSortedTrait_scansAll() {
+    // given:
+    var content = OID + " refs/heads/b\n" + OID + " refs/heads/a\n" + OID + " refs/remotes/origin/a\n";
+    var packed = GitRefs.Packed.of(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    var found = new ArrayList<String>();
+
+    // when:
+    packed.forEachIn(GitRefs.HEADS, (refname, oid) -> found.add(refname));
+
+    // then:
+    assertThat(found).containsExactly("refs/heads/b", "refs/heads/a");
+  }
+}
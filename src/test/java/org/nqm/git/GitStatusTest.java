@@ -0,0 +1,234 @@
+package org.nqm.git;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitStatusTest {
+
+  @TempDir
+  private Path tempPath;
+
+  private Path gitDir;
+
+  private String head;
+
+  /**
+   * A repository on master whose index holds {@code files} and matches HEAD.
+   */
+  private void repository(String... files) throws IOException {
+    gitDir = GitFixtures.gitDir(tempPath, "master");
+    for (var file : files) {
+      var path = tempPath.resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.writeString(path, file);
+    }
+    // the cache tree only has to name the tree HEAD points to
+    head = GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "init");
+    Files.writeString(gitDir.resolve("refs/heads/master"), head + "\n");
+    GitFixtures.writeIndex(gitDir, tempPath, 2, GitFixtures.EMPTY_TREE, List.of(files));
+  }
+
+  private void upstream(String oid) throws IOException {
+    Files.writeString(gitDir.resolve("config"), """
+        [remote "origin"]
+        \turl = git@github.com:nqminhuit/gis.git
+        \tfetch = +refs/heads/*:refs/remotes/origin/*
+        [branch "master"]
+        \tremote = origin
+        \tmerge = refs/heads/master
+        """);
+    if (oid != null) {
+      Files.createDirectories(gitDir.resolve("refs/remotes/origin"));
+      Files.writeString(gitDir.resolve("refs/remotes/origin/master"), oid + "\n");
+    }
+  }
+
+  @Test
+  void shortStatus_withCleanModule_OK() throws IOException {
+    // given:
+    repository("README.md", "src/App.java");
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).contains(List.of("## master"));
+  }
+
+  @Test
+  void shortStatus_withUntrackedAndDeletedFiles_OK() throws IOException {
+    // given:
+    repository("README.md", "src/App.java", "src/Gone.java");
+    Files.delete(tempPath.resolve("src/Gone.java"));
+    Files.writeString(tempPath.resolve("src/New.java"), "new");
+    Files.createDirectories(tempPath.resolve("docs/img"));
+    Files.writeString(tempPath.resolve("docs/img/logo.png"), "png");
+    Files.createDirectories(tempPath.resolve("empty/dir"));
+    Files.createDirectories(tempPath.resolve("target/classes"));
+    Files.writeString(tempPath.resolve("target/classes/App.class"), "class");
+    Files.writeString(tempPath.resolve("debug.log"), "log");
+    Files.writeString(tempPath.resolve("keep.log"), "log");
+    Files.writeString(tempPath.resolve(".gitignore"), "/target/\n*.log\n!keep.log\n");
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).contains(List.of(
+        "## master",
+        " D src/Gone.java",
+        "?? .gitignore",
+        "?? docs/",
+        "?? keep.log",
+        "?? src/New.java"));
+  }
+
+  @Test
+  void shortStatus_withModifiedFile_isEmpty() throws IOException {
+    // given:
+    repository("README.md", "src/App.java");
+    Files.writeString(tempPath.resolve("src/App.java"), "changed");
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).isEmpty();
+  }
+
+  @Test
+  void shortStatus_withIncludedConfig_isEmpty() throws IOException {
+    // given:
+    repository("README.md");
+    Files.writeString(gitDir.resolve("config"), "[includeIf \"gitdir:/\"]\n\tpath = status.inc\n");
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).isEmpty();
+    assertThat(GitStatus.hasChanges(tempPath, true)).isEmpty();
+  }
+
+  @Test
+  void shortStatus_withIndexNotMatchingHead_isEmpty() throws IOException {
+    // given:
+    repository("README.md");
+    GitFixtures.writeIndex(gitDir, tempPath, 2, null, List.of("README.md"));
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).isEmpty();
+  }
+
+  @Test
+  void shortStatus_withUpstreamAtHead_OK() throws IOException {
+    // given:
+    repository("README.md");
+    upstream(head);
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).contains(List.of("## master...origin/master"));
+  }
+
+  @Test
+  void shortStatus_withUpstreamGone_OK() throws IOException {
+    // given:
+    repository("README.md");
+    upstream(null);
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).contains(List.of("## master...origin/master [gone]"));
+  }
+
+  @Test
+  void shortStatus_withUpstreamElsewhere_OK() throws IOException {
+    // given:
+    repository("README.md");
+    upstream(GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "other"));
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).contains(List.of("## master...origin/master [ahead 1, behind 1]"));
+  }
+
+  @Test
+  void shortStatus_withUpstreamBehind_OK() throws IOException {
+    // given:
+    repository("README.md");
+    upstream(GitFixtures.commit(gitDir, GitFixtures.EMPTY_TREE, "next", head));
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).contains(List.of("## master...origin/master [behind 1]"));
+  }
+
+  @Test
+  void shortStatus_withUnreadableUpstream_isEmpty() throws IOException {
+    // given:
+    repository("README.md");
+    upstream("ab".repeat(20));
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).isEmpty();
+  }
+
+  @Test
+  void shortStatus_withDetachedHead_isEmpty() throws IOException {
+    // given:
+    repository("README.md");
+    Files.writeString(gitDir.resolve("HEAD"), head + "\n");
+
+    // when + then:
+    assertThat(GitStatus.shortStatus(tempPath)).isEmpty();
+  }
+
+  @Test
+  void hasChanges_withCleanModule_isFalse() throws IOException {
+    // given:
+    repository("README.md", "src/App.java");
+
+    // when + then:
+    assertThat(GitStatus.hasChanges(tempPath, true)).contains(false);
+  }
+
+  @Test
+  void hasChanges_withDeletedFile_isTrue() throws IOException {
+    // given:
+    repository("README.md", "src/App.java");
+    Files.delete(tempPath.resolve("src/App.java"));
+
+    // when + then:
+    assertThat(GitStatus.hasChanges(tempPath, false)).contains(true);
+  }
+
+  @Test
+  void hasChanges_withUntrackedFile_OK() throws IOException {
+    // given:
+    repository("README.md");
+    Files.writeString(tempPath.resolve("NOTES.md"), "notes");
+
+    // when + then:
+    assertThat(GitStatus.hasChanges(tempPath, true)).contains(true);
+    assertThat(GitStatus.hasChanges(tempPath, false)).contains(false);
+  }
+
+  @Test
+  void hasChanges_withIndexNotMatchingHead_isTrue() throws IOException {
+    // given:
+    repository("README.md");
+    GitFixtures.writeIndex(gitDir, tempPath, 2, "ab".repeat(20), List.of("README.md"));
+
+    // when + then:
+    assertThat(GitStatus.hasChanges(tempPath, false)).contains(true);
+  }
+
+  @Test
+  void hasChanges_withModifiedFile_isUndecided() throws IOException {
+    // given:
+    repository("README.md");
+    Files.writeString(tempPath.resolve("README.md"), "changed");
+
+    // when + then:
+    assertThat(GitStatus.hasChanges(tempPath, false)).isEmpty();
+  }
+
+  @Test
+  void trackingRef_OK() {
+    var refspecs = List.of("^refs/heads/tmp/*", "+refs/heads/*:refs/remotes/origin/*");
+    assertThat(GitStatus.trackingRef(refspecs, "refs/heads/feature/x")).contains("refs/remotes/origin/feature/x");
+    assertThat(GitStatus.trackingRef(List.of("refs/heads/main:refs/remotes/up/main"), "refs/heads/main"))
+        .contains("refs/remotes/up/main");
+    assertThat(GitStatus.trackingRef(List.of("refs/heads/main:refs/remotes/up/main"), "refs/heads/dev")).isEmpty();
+  }
+}
@@ -1,8 +1,12 @@
 package org.nqm.helper;
 
+import static org.mockito.ArgumentMatchers.anyString;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.nqm.config.GisConfig;
+import org.nqm.model.GisLauncherMode;
+import org.nqm.model.GisOutputCapture;
+import org.nqm.model.GisParallelism;
 
 public class GisConfigMock {
 
@@ -11,7 +15,12 @@ public class GisConfigMock {
   private static void ensureMock() {
     if (mock == null || mock.isClosed()) {
       mock = Mockito.mockStatic(GisConfig.class);
-      mock.when(GisConfig::getModuleTimeoutSeconds).thenReturn(60);
+      mock.when(() -> GisConfig.getModuleTimeoutSeconds(anyString())).thenReturn(60);
+      mock.when(GisConfig::getMaxParallelProcesses).thenReturn(8);
+      mock.when(GisConfig::getParallelism).thenReturn(GisParallelism.fixed);
+      mock.when(() -> GisConfig.getRemoteHostMaxParallel(anyString())).thenReturn(8);
+      mock.when(GisConfig::getOutputCapture).thenReturn(GisOutputCapture.pipe);
+      mock.when(GisConfig::getProcessLauncher).thenReturn(GisLauncherMode.direct);
     }
   }
 
@@ -42,7 +51,32 @@ public class GisConfigMock {
 
   public static void mockModuleTimeoutSeconds(int seconds) {
     ensureMock();
-    mock.when(GisConfig::getModuleTimeoutSeconds).thenReturn(seconds);
+    mock.when(() -> GisConfig.getModuleTimeoutSeconds(anyString())).thenReturn(seconds);
+  }
+
+  public static void mockModuleTimeoutSeconds(String module, int seconds) {
+    ensureMock();
+    mock.when(() -> GisConfig.getModuleTimeoutSeconds(module)).thenReturn(seconds);
+  }
+
+  public static void mockMaxParallelProcesses(int max) {
+    ensureMock();
+    mock.when(GisConfig::getMaxParallelProcesses).thenReturn(max);
+  }
+
+  public static void mockParallelism(GisParallelism parallelism) {
+    ensureMock();
+    mock.when(GisConfig::getParallelism).thenReturn(parallelism);
+  }
+
+  public static void mockOutputCapture(GisOutputCapture capture) {
+    ensureMock();
+    mock.when(GisConfig::getOutputCapture).thenReturn(capture);
+  }
+
+  public static void mockProcessLauncher(GisLauncherMode launcher) {
+    ensureMock();
+    mock.when(GisConfig::getProcessLauncher).thenReturn(launcher);
   }
 
   public static void close() {
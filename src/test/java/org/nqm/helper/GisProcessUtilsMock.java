@@ -1,11 +1,16 @@
 package org.nqm.helper;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import java.io.File;
 import java.util.List;
+import java.util.stream.Stream;
+import org.mockito.ArgumentMatchers;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.nqm.model.GisProcessDto;
 import org.nqm.utils.GisProcessUtils;
+import org.nqm.utils.LineSink;
 
 public class GisProcessUtilsMock {
 
@@ -54,6 +59,30 @@ public class GisProcessUtilsMock {
     mock.when(() -> GisProcessUtils.spawn(directory, commands)).thenAnswer(invocation -> null);
   }
 
+  public static void mockRunStreaming(GisProcessDto mockResult, File directory, String... commands) {
+    if (mock == null || mock.isClosed()) {
+      mock = Mockito.mockStatic(GisProcessUtils.class);
+    }
+    mock.when(() -> GisProcessUtils.runStreaming(eq(directory), any(), eqEach(commands)))
+        .thenAnswer(invocation -> {
+          LineSink sink = invocation.getArgument(1);
+          Stream.of(mockResult.output().split("\n")).forEach(sink::accept);
+          return mockResult.exitCode();
+        });
+  }
+
+  public static void mockRunStreamingThrowException(Throwable e, File directory, String... commands) {
+    if (mock == null || mock.isClosed()) {
+      mock = Mockito.mockStatic(GisProcessUtils.class);
+    }
+    mock.when(() -> GisProcessUtils.runStreaming(eq(directory), any(), eqEach(commands))).thenThrow(e);
+  }
+
+  // varargs have to be matched one by one once any other argument uses a matcher
+  private static String[] eqEach(String... commands) {
+    return Stream.of(commands).map(ArgumentMatchers::eq).toArray(String[]::new);
+  }
+
   public static void close() {
     if (mock != null && !mock.isClosed()) {
       mock.close();
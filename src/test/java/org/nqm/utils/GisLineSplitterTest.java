@@ -0,0 +1,57 @@
+package org.nqm.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+class GisLineSplitterTest {
+
+  @Test
+  void feed_withLineSpreadOverChunks_OK() {
+    // given:
+    var lines = new ArrayList<String>();
+    var splitter = new GisLineSplitter(lines::add);
+    var bytes = "## master\n M pom.xml\n?? notes".getBytes(StandardCharsets.UTF_8);
+
+    // when: every byte arrives on its own
+    for (var i = 0; i < bytes.length; i++) {
+      splitter.feed(bytes, i, 1);
+    }
+    splitter.finish();
+
+    // then:
+    assertThat(lines).containsExactly("## master", " M pom.xml", "?? notes");
+  }
+
+  @Test
+  void feed_withMultiByteCharacterCutInHalf_OK() {
+    // given:
+    var lines = new ArrayList<String>();
+    var splitter = new GisLineSplitter(lines::add);
+    var bytes = "tài liệu\n".getBytes(StandardCharsets.UTF_8);
+
+    // when:
+    splitter.feed(bytes, 0, 2);
+    splitter.feed(bytes, 2, bytes.length - 2);
+    splitter.finish();
+
+    // then:
+    assertThat(lines).containsExactly("tài liệu");
+  }
+
+  @Test
+  void feed_withByteBuffer_keepsEmptyLines() {
+    // given:
+    var lines = new ArrayList<String>();
+    var splitter = new GisLineSplitter(lines::add);
+
+    // when:
+    splitter.feed(ByteBuffer.wrap("a\n\nb\n".getBytes(StandardCharsets.UTF_8)));
+    splitter.finish();
+
+    // then:
+    assertThat(lines).containsExactly("a", "", "b");
+  }
+}
@@ -3,9 +3,18 @@ package org.nqm.utils;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.nqm.helper.GisConfigMock;
+import org.nqm.model.GisLauncherMode;
+import org.nqm.model.GisOutputCapture;
 
 class GisProcessUtilsTest {
 
@@ -65,4 +74,206 @@ class GisProcessUtilsTest {
             .hasMessageContaining("(in directory \"%s\")".formatted("" + tempPath))
             .hasMessageContaining("No such file or directory");
   }
+
+  @Test
+  void run_withFileCapture_OK() throws IOException, InterruptedException {
+    // given:
+    GisConfigMock.mockOutputCapture(GisOutputCapture.file);
+    try {
+      // when:
+      var result = GisProcessUtils.run(tempPath.toFile(), "pwd");
+
+      // then:
+      assertThat(result.exitCode()).isZero();
+      assertThat(result.output()).isEqualTo("" + tempPath + "%n".formatted());
+    } finally {
+      GisConfigMock.close();
+    }
+  }
+
+  @Test
+  void run_withFileCaptureAndNoOutput_OK() throws IOException, InterruptedException {
+    // given:
+    GisConfigMock.mockOutputCapture(GisOutputCapture.file);
+    try {
+      // when:
+      var result = GisProcessUtils.run(tempPath.toFile(), "true");
+
+      // then:
+      assertThat(result.exitCode()).isZero();
+      assertThat(result.output()).isEmpty();
+    } finally {
+      GisConfigMock.close();
+    }
+  }
+
+  @Test
+  void runStreaming_OK() throws IOException, InterruptedException {
+    // given:
+    var lines = new ArrayList<String>();
+
+    // when:
+    var exitCode = GisProcessUtils.runStreaming(tempPath.toFile(), lines::add, "printf", "a\\nb\\nc");
+
+    // then:
+    assertThat(exitCode).isZero();
+    assertThat(lines).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  void runStreaming_withFileCapture_OK() throws IOException, InterruptedException {
+    // given:
+    var lines = new ArrayList<String>();
+    GisConfigMock.mockOutputCapture(GisOutputCapture.file);
+    try {
+      // when:
+      var exitCode = GisProcessUtils.runStreaming(tempPath.toFile(), lines::add, "printf", "a\\nb\\n");
+
+      // then:
+      assertThat(exitCode).isZero();
+      assertThat(lines).containsExactly("a", "b");
+    } finally {
+      GisConfigMock.close();
+    }
+  }
+
+  @Test
+  void run_withForkServer_OK() throws IOException, InterruptedException {
+    // given:
+    GisConfigMock.mockProcessLauncher(GisLauncherMode.helper);
+    try {
+      // when:
+      var result = GisProcessUtils.run(tempPath.toFile(), "pwd");
+      var quoted = GisProcessUtils.run(tempPath.toFile(), "printf", "it's %s", "a \"test\"");
+
+      // then:
+      assertThat(result.exitCode()).isZero();
+      assertThat(result.output()).isEqualTo("" + tempPath + "%n".formatted());
+      assertThat(quoted.output()).isEqualTo("it's a \"test\"");
+    } finally {
+      GisConfigMock.close();
+    }
+  }
+
+  @Test
+  void run_withForkServerAndNoDirectory_runsInCurrentDirectory() throws IOException, InterruptedException {
+    // given:
+    GisConfigMock.mockProcessLauncher(GisLauncherMode.helper);
+    try {
+      // when:
+      var result = GisProcessUtils.run(null, "pwd");
+
+      // then:
+      assertThat(result.exitCode()).isZero();
+      assertThat(result.output()).isEqualTo(System.getProperty("user.dir") + "%n".formatted());
+    } finally {
+      GisConfigMock.close();
+    }
+  }
+
+  @Test
+  void run_withForkServerAndMissingDirectory_NOK() {
+    // given:
+    var missing = tempPath.resolve("missing");
+    GisConfigMock.mockProcessLauncher(GisLauncherMode.helper);
+    try {
+      // when + then:
+      assertThatThrownBy(() -> GisProcessUtils.run(missing.toFile(), "pwd"))
+          .isInstanceOf(IOException.class)
+          .hasMessageContaining("Cannot run program \"pwd\"")
+          .hasMessageContaining("(in directory \"%s\")".formatted("" + missing));
+    } finally {
+      GisConfigMock.close();
+    }
+  }
+
+  @Test
+  void runStreaming_withForkServerAndFailingCommand_reportsExitCode() throws IOException, InterruptedException {
+    // given:
+    var lines = new ArrayList<String>();
+    GisConfigMock.mockProcessLauncher(GisLauncherMode.helper);
+    try {
+      // when:
+      var exitCode = GisProcessUtils.runStreaming(tempPath.toFile(), lines::add, "sh", "-c", "echo a; exit 3");
+
+      // then:
+      assertThat(exitCode).isEqualTo(3);
+      assertThat(lines).containsExactly("a");
+    } finally {
+      GisConfigMock.close();
+      GisProcessUtils.resetProcessFailures();
+    }
+  }
+
+  @Test
+  void destroyLiveProcesses_killsWholeProcessTree()
+      throws IOException, InterruptedException, ExecutionException, TimeoutException {
+    // given:
+    var result = GisProcessUtils.runAsync(tempPath.toFile(), "sh", "-c", "sleep 30 & sleep 30 & wait");
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    List<ProcessHandle> tree;
+    do {
+      Thread.sleep(10);
+      tree = ProcessHandle.current().descendants().toList();
+    } while (tree.size() < 3 && System.nanoTime() < deadline);
+    assertThat(tree).hasSizeGreaterThanOrEqualTo(3);
+
+    // when:
+    GisProcessUtils.destroyLiveProcesses();
+
+    // then:
+    assertThat(result).isCompletedExceptionally();
+    for (var handle : tree) {
+      handle.onExit().get(5, TimeUnit.SECONDS);
+    }
+    assertThat(tree).noneMatch(ProcessHandle::isAlive);
+  }
+
+  @Test
+  void destroyLiveProcessesIn_letsChildRemoveItsLock() throws IOException, InterruptedException {
+    // given:
+    var lock = tempPath.resolve("index.lock");
+    var result = GisProcessUtils.runAsync(tempPath.toFile(), "sh", "-c",
+        "trap 'rm -f index.lock; exit 1' TERM; touch index.lock; while true; do sleep 0.1; done");
+    awaitExists(lock);
+
+    // when:
+    GisProcessUtils.destroyLiveProcessesIn(tempPath.toFile());
+
+    // then:
+    assertThat(result).isCompletedExceptionally();
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (Files.exists(lock) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(lock).doesNotExist();
+  }
+
+  @Test
+  void destroyLiveProcesses_killsChildIgnoringTerm()
+      throws IOException, InterruptedException, ExecutionException, TimeoutException {
+    // given:
+    var ready = tempPath.resolve("ready");
+    var result = GisProcessUtils.runAsync(tempPath.toFile(), "sh", "-c", "trap '' TERM; touch ready; sleep 30");
+    awaitExists(ready);
+    var tree = ProcessHandle.current().descendants().toList();
+
+    // when:
+    GisProcessUtils.destroyLiveProcesses();
+
+    // then:
+    assertThat(result).isCompletedExceptionally();
+    for (var handle : tree) {
+      handle.onExit().get(5, TimeUnit.SECONDS);
+    }
+    assertThat(tree).noneMatch(ProcessHandle::isAlive);
+  }
+
+  private static void awaitExists(Path file) throws InterruptedException {
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!Files.exists(file) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(file).exists();
+  }
 }
@@ -7,6 +7,8 @@ import static org.nqm.utils.StdOutUtils.CL_GREEN;
 import static org.nqm.utils.StdOutUtils.CL_RED;
 import static org.nqm.utils.StdOutUtils.CL_RESET;
 import static org.nqm.utils.StdOutUtils.CL_YELLOW;
+import java.time.Duration;
+import java.time.Instant;
 import org.junit.jupiter.api.Test;
 import org.nqm.helper.GisConfigMock;
 import org.nqm.helper.StdBaseTest;
@@ -301,4 +303,30 @@ class StdOutUtilsTest extends StdBaseTest {
     // then:
     assertThat(outCaptor.toString()).isEmpty();
   }
+
+  @Test
+  void relativeAge_OK() {
+    var now = Instant.parse("2024-06-01T12:00:00Z");
+    assertThat(StdOutUtils.relativeAge(now.minusSeconds(1), now)).isEqualTo("1 second ago");
+    assertThat(StdOutUtils.relativeAge(now.minusSeconds(89), now)).isEqualTo("89 seconds ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofMinutes(45)), now)).isEqualTo("45 minutes ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofHours(3)), now)).isEqualTo("3 hours ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofDays(2)), now)).isEqualTo("2 days ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofDays(20)), now)).isEqualTo("3 weeks ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofDays(100)), now)).isEqualTo("3 months ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofDays(365)), now)).isEqualTo("1 year ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofDays(500)), now)).isEqualTo("1 year, 4 months ago");
+    assertThat(StdOutUtils.relativeAge(now.minus(Duration.ofDays(4000)), now)).isEqualTo("11 years ago");
+    assertThat(StdOutUtils.relativeAge(now.plusSeconds(60), now)).isEqualTo("in the future");
+  }
+
+  @Test
+  void gitLastCommit_OK() {
+    var halfAnHourAgo = Instant.now().minus(Duration.ofMinutes(30)).getEpochSecond();
+    assertThat(StdOutUtils.gitLastCommit("0123456789abcdef", "Fix parser", halfAnHourAgo, false))
+        .isEqualTo("\n  %s Fix parser %s".formatted(
+            coloringWord("0123456", CL_YELLOW), coloringWord("(30 minutes ago)", CL_GRAY)));
+    assertThat(StdOutUtils.gitLastCommit("0123456789abcdef", "Fix parser", halfAnHourAgo, true))
+        .isEqualTo(" " + coloringWord("(Fix parser, 30 minutes ago)", CL_GRAY));
+  }
 }